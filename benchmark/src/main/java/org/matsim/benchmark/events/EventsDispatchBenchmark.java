@@ -0,0 +1,206 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventsDispatchBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark.events;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.events.handler.ActivityEndEventHandler;
+import org.matsim.api.core.v01.events.handler.ActivityStartEventHandler;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
+import org.matsim.api.core.v01.events.handler.PersonArrivalEventHandler;
+import org.matsim.api.core.v01.events.handler.PersonDepartureEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleEntersTrafficEventHandler;
+import org.matsim.api.core.v01.events.handler.VehicleLeavesTrafficEventHandler;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.EventsManagerImpl;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.examples.ExamplesUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures how fast {@link EventsManagerImpl} passes events to event handlers. The events of a
+ * real events file are read into memory once and then replayed through 20 event handlers of
+ * different types, either with or without locking the handlers on every call.
+ * <p></p>
+ * Run with <code>java -cp matsim-benchmark.jar org.matsim.benchmark.events.EventsDispatchBenchmark [eventsFile]</code>.
+ * If no events file is given, the events of the equil example are used.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class EventsDispatchBenchmark {
+
+	private static final int NUMBER_OF_HANDLERS = 20;
+
+	@Param({""})
+	public String eventsFile;
+
+	@Param({"true", "false"})
+	public boolean synchronizeOnHandlers;
+
+	private Event[] events;
+	private EventsManager eventsManager;
+	private final List<CountingHandler> handlers = new ArrayList<>();
+
+	@Setup
+	public void setup() throws IOException {
+		final List<Event> eventsList = new ArrayList<>();
+		EventsManager collector = EventsUtils.createEventsManager();
+		collector.addHandler((BasicEventHandler) eventsList::add);
+		if (this.eventsFile.isEmpty()) {
+			try (InputStream stream = IOUtils.getInputStream(IOUtils.newUrl(ExamplesUtils.getTestScenarioURL("equil"), "output_events.xml.gz"))) {
+				new MatsimEventsReader(collector).readStream(stream);
+			}
+		} else {
+			new MatsimEventsReader(collector).readFile(this.eventsFile);
+		}
+		this.events = eventsList.toArray(new Event[eventsList.size()]);
+
+		this.eventsManager = new EventsManagerImpl(this.synchronizeOnHandlers);
+		this.handlers.clear();
+		for (int i = 0; i < NUMBER_OF_HANDLERS; i++) {
+			CountingHandler handler;
+			switch (i % 4) {
+				case 0: handler = new LinkHandler(); break;
+				case 1: handler = new TrafficHandler(); break;
+				case 2: handler = new TripHandler(); break;
+				default: handler = new AllEventsHandler(); break;
+			}
+			this.handlers.add(handler);
+			this.eventsManager.addHandler(handler);
+		}
+	}
+
+	@Benchmark
+	public long replayEvents() {
+		for (Event event : this.events) {
+			this.eventsManager.processEvent(event);
+		}
+		long sum = 0;
+		for (CountingHandler handler : this.handlers) {
+			sum += handler.counter;
+		}
+		return sum;
+	}
+
+	private static abstract class CountingHandler {
+		long counter = 0;
+	}
+
+	private static class LinkHandler extends CountingHandler implements LinkEnterEventHandler, LinkLeaveEventHandler {
+		@Override
+		public void handleEvent(LinkEnterEvent event) {
+			this.counter++;
+		}
+
+		@Override
+		public void handleEvent(LinkLeaveEvent event) {
+			this.counter += 2;
+		}
+	}
+
+	private static class TrafficHandler extends CountingHandler implements VehicleEntersTrafficEventHandler, VehicleLeavesTrafficEventHandler {
+		@Override
+		public void handleEvent(VehicleEntersTrafficEvent event) {
+			this.counter++;
+		}
+
+		@Override
+		public void handleEvent(VehicleLeavesTrafficEvent event) {
+			this.counter += 2;
+		}
+	}
+
+	private static class TripHandler extends CountingHandler implements ActivityEndEventHandler, PersonDepartureEventHandler,
+			PersonArrivalEventHandler, ActivityStartEventHandler {
+		@Override
+		public void handleEvent(ActivityEndEvent event) {
+			this.counter++;
+		}
+
+		@Override
+		public void handleEvent(PersonDepartureEvent event) {
+			this.counter += 2;
+		}
+
+		@Override
+		public void handleEvent(PersonArrivalEvent event) {
+			this.counter += 3;
+		}
+
+		@Override
+		public void handleEvent(ActivityStartEvent event) {
+			this.counter += 4;
+		}
+	}
+
+	private static class AllEventsHandler extends CountingHandler implements BasicEventHandler {
+		@Override
+		public void handleEvent(Event event) {
+			this.counter++;
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		OptionsBuilder options = new OptionsBuilder();
+		options.include(EventsDispatchBenchmark.class.getSimpleName());
+		if (args.length > 0) {
+			options.param("eventsFile", args[0]);
+		}
+		Options opt = options.build();
+		new Runner(opt).run();
+	}
+
+}
@@ -0,0 +1,249 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ActiveNetElementsBenchmark.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.benchmark.qsim;
+
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.matsim.core.mobsim.qsim.qnetsimengine.ActiveNetElementList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares how the QNetsimEngineRunner keeps track of its active links and nodes: with a LinkedList (links) and a
+ * ConcurrentLinkedQueue (nodes) as before, or with {@link ActiveNetElementList}s. One benchmark invocation simulates
+ * a number of time steps on a network with 1M links and 1M nodes: all active elements are visited, a part of them
+ * becomes inactive, and as many inactive elements are activated again, so a fixed share of the network stays active.
+ * <p></p>
+ * Run with <code>java -cp matsim-benchmark.jar org.matsim.benchmark.qsim.ActiveNetElementsBenchmark</code>. Add
+ * <code>-prof gc</code> to the JMH options to see the allocation rates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ActiveNetElementsBenchmark {
+
+	private static final int TIME_STEPS = 10;
+
+	@Param({"1000000"})
+	public int numberOfElements;
+
+	@Param({"0.1"})
+	public double activeShare;
+
+	private Element[] listLinks;
+	private Element[] listNodes;
+	private Element[] arrayLinks;
+	private Element[] arrayNodes;
+	private int[] activations;
+	private int nextActivation;
+
+	private final List<Element> linksList = new LinkedList<>();
+	private final Queue<Element> nodesQueue = new ConcurrentLinkedQueue<>();
+
+	private ActiveNetElementList<Element> activeLinks;
+	private ActiveNetElementList<Element> activeNodes;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(4711);
+		this.listLinks = new Element[this.numberOfElements];
+		this.listNodes = new Element[this.numberOfElements];
+		this.arrayLinks = new Element[this.numberOfElements];
+		this.arrayNodes = new Element[this.numberOfElements];
+		for (int i = 0; i < this.numberOfElements; i++) {
+			// every element stays active for a few steps once it is activated
+			int linkSteps = 1 + random.nextInt(9);
+			int nodeSteps = 1 + random.nextInt(9);
+			this.listLinks[i] = new Element(linkSteps);
+			this.listNodes[i] = new Element(nodeSteps);
+			this.arrayLinks[i] = new Element(linkSteps);
+			this.arrayNodes[i] = new Element(nodeSteps);
+		}
+		this.activations = new int[1 << 20];
+		for (int i = 0; i < this.activations.length; i++) {
+			this.activations[i] = random.nextInt(this.numberOfElements);
+		}
+		this.activeLinks = new ActiveNetElementList<>(16);
+		this.activeNodes = new ActiveNetElementList<>(this.numberOfElements);
+
+		int initiallyActive = (int) (this.numberOfElements * this.activeShare);
+		for (int i = 0; i < initiallyActive; i++) {
+			activateList(i);
+			activateArray(i);
+		}
+	}
+
+	@Benchmark
+	public long linkedLists() {
+		long steps = 0;
+		for (int t = 0; t < TIME_STEPS; t++) {
+			int deactivated = 0;
+			Iterator<Element> simNodes = this.nodesQueue.iterator();
+			while (simNodes.hasNext()) {
+				Element node = simNodes.next();
+				steps++;
+				if (!node.doSimStep()) {
+					simNodes.remove();
+					deactivated++;
+				}
+			}
+			Iterator<Element> simLinks = this.linksList.iterator();
+			while (simLinks.hasNext()) {
+				Element link = simLinks.next();
+				steps++;
+				if (!link.doSimStep()) {
+					simLinks.remove();
+					deactivated++;
+				}
+			}
+			while (deactivated > 0) {
+				deactivated -= activateList(nextActivation());
+			}
+		}
+		return steps;
+	}
+
+	@Benchmark
+	public long arrays() {
+		long steps = 0;
+		for (int t = 0; t < TIME_STEPS; t++) {
+			int deactivated = 0;
+			int size = this.activeNodes.size();
+			int remaining = 0;
+			for (int i = 0; i < size; i++) {
+				Element node = this.activeNodes.get(i);
+				steps++;
+				if (node.doSimStep()) {
+					this.activeNodes.set(remaining++, node);
+				} else {
+					deactivated++;
+				}
+			}
+			this.activeNodes.truncate(remaining);
+			size = this.activeLinks.size();
+			remaining = 0;
+			for (int i = 0; i < size; i++) {
+				Element link = this.activeLinks.get(i);
+				steps++;
+				if (link.doSimStep()) {
+					this.activeLinks.set(remaining++, link);
+				} else {
+					deactivated++;
+				}
+			}
+			this.activeLinks.truncate(remaining);
+			while (deactivated > 0) {
+				deactivated -= activateArray(nextActivation());
+			}
+		}
+		return steps;
+	}
+
+	private int nextActivation() {
+		int index = this.activations[this.nextActivation];
+		this.nextActivation = (this.nextActivation + 1) & (this.activations.length - 1);
+		return index;
+	}
+
+	/**
+	 * @return the number of elements that were activated
+	 */
+	private int activateList(final int index) {
+		int activated = 0;
+		if (this.listLinks[index].activate()) {
+			this.linksList.add(this.listLinks[index]);
+			activated++;
+		}
+		if (this.listNodes[index].activate()) {
+			this.nodesQueue.add(this.listNodes[index]);
+			activated++;
+		}
+		return activated;
+	}
+
+	private int activateArray(final int index) {
+		int activated = 0;
+		if (this.arrayLinks[index].activate()) {
+			this.activeLinks.add(this.arrayLinks[index]);
+			activated++;
+		}
+		if (this.arrayNodes[index].activate()) {
+			this.activeNodes.addConcurrently(this.arrayNodes[index]);
+			activated++;
+		}
+		return activated;
+	}
+
+	/**
+	 * A link or node that stays active for a fixed number of steps once it is activated.
+	 */
+	private static final class Element {
+		private final int activeSteps;
+		private int remainingSteps = 0;
+
+		Element(final int activeSteps) {
+			this.activeSteps = activeSteps;
+		}
+
+		boolean activate() {
+			if (this.remainingSteps > 0) {
+				return false;
+			}
+			this.remainingSteps = this.activeSteps;
+			return true;
+		}
+
+		boolean doSimStep() {
+			this.remainingSteps--;
+			return this.remainingSteps > 0;
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		Options opt = new OptionsBuilder()
+				.include(ActiveNetElementsBenchmark.class.getSimpleName())
+				.build();
+		new Runner(opt).run();
+	}
+
+}
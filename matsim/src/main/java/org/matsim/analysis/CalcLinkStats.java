@@ -86,6 +86,32 @@ public class CalcLinkStats {
 		this.volScaleFactor = vol_scale_factor;
 	}
 
+	private CalcLinkStats(final CalcLinkStats original) {
+		this.network = original.network;
+		this.nofHours = original.nofHours;
+		this.volScaleFactor = original.volScaleFactor;
+		this.count = original.count;
+		this.linkData = new TreeMap<>();
+		for (Map.Entry<Id<Link>, LinkData> e : original.linkData.entrySet()) {
+			this.linkData.put(e.getKey(), new LinkData(copyOf(e.getValue().volumes), copyOf(e.getValue().ttimes)));
+		}
+	}
+
+	/**
+	 * @return a copy of the data collected so far, which is not changed by further calls to {@link #addData} or {@link #reset()}
+	 */
+	public CalcLinkStats snapshot() {
+		return new CalcLinkStats(this);
+	}
+
+	private static double[][] copyOf(final double[][] values) {
+		double[][] copy = new double[values.length][];
+		for (int i = 0; i < values.length; i++) {
+			copy[i] = values[i].clone();
+		}
+		return copy;
+	}
+
 	public void addData(final VolumesAnalyzer analyzer, final TravelTime ttimes) {
 		this.count++;
 		// TODO verify ttimes has hourly timeBin-Settings
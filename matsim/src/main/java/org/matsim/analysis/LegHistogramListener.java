@@ -23,6 +23,7 @@ package org.matsim.analysis;
 import org.apache.log4j.Logger;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.ControlerConfigGroup;
+import org.matsim.core.controler.BackgroundOutputWriter;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
 import org.matsim.core.controler.events.IterationEndsEvent;
 import org.matsim.core.controler.events.IterationStartsEvent;
@@ -43,6 +44,7 @@ final class LegHistogramListener implements IterationEndsListener, IterationStar
 	@Inject private LegHistogram histogram;
 	@Inject private ControlerConfigGroup controlerConfigGroup;
 	@Inject private OutputDirectoryHierarchy controlerIO;
+	@Inject private BackgroundOutputWriter backgroundOutputWriter;
 
 	static private final Logger log = Logger.getLogger(LegHistogramListener.class);
 
@@ -53,14 +55,22 @@ final class LegHistogramListener implements IterationEndsListener, IterationStar
 
 	@Override
 	public void notifyIterationEnds(final IterationEndsEvent event) {
-		this.histogram.write(controlerIO.getIterationFilename(event.getIteration(), "legHistogram.txt"));
 		this.printStats();
-		if (controlerConfigGroup.isCreateGraphs()) {
-			LegHistogramChart.writeGraphic(this.histogram, controlerIO.getIterationFilename(event.getIteration(), "legHistogram_all.png"));
-			for (String legMode : this.histogram.getLegModes()) {
-				LegHistogramChart.writeGraphic(this.histogram, controlerIO.getIterationFilename(event.getIteration(), "legHistogram_" + legMode + ".png"), legMode);
+		final int iteration = event.getIteration();
+		// the histogram is reset at the start of the next iteration, so a background writer needs its own copy:
+		final LegHistogram data = backgroundOutputWriter.isWritingInBackground() ? this.histogram.snapshot() : this.histogram;
+		backgroundOutputWriter.submit("leg histogram of iteration " + iteration, new Runnable() {
+			@Override
+			public void run() {
+				data.write(controlerIO.getIterationFilename(iteration, "legHistogram.txt"));
+				if (controlerConfigGroup.isCreateGraphs()) {
+					LegHistogramChart.writeGraphic(data, controlerIO.getIterationFilename(iteration, "legHistogram_all.png"));
+					for (String legMode : data.getLegModes()) {
+						LegHistogramChart.writeGraphic(data, controlerIO.getIterationFilename(iteration, "legHistogram_" + legMode + ".png"), legMode);
+					}
+				}
 			}
-		}
+		});
 
 	}
 
@@ -23,11 +23,13 @@
 package org.matsim.analysis;
 
 import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.BackgroundOutputWriterModule;
 
 public final class LegHistogramModule extends AbstractModule {
 	@Override
 	public void install() {
 		bind(LegHistogram.class);
+		install(new BackgroundOutputWriterModule());
 		addControlerListenerBinding().to(LegHistogramListener.class);
 	}
 }
@@ -22,6 +22,7 @@ package org.matsim.analysis;
 import org.matsim.api.core.v01.TransportMode;
 import org.matsim.core.config.groups.ControlerConfigGroup;
 import org.matsim.core.config.groups.LinkStatsConfigGroup;
+import org.matsim.core.controler.BackgroundOutputWriter;
 import org.matsim.core.controler.Controler;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
 import org.matsim.core.controler.events.IterationEndsEvent;
@@ -45,6 +46,7 @@ final class LinkStatsControlerListener implements IterationEndsListener, Iterati
 	@Inject private VolumesAnalyzer volumes;
 	@Inject private OutputDirectoryHierarchy controlerIO;
 	@Inject private Map<String, TravelTime> travelTime;
+	@Inject private BackgroundOutputWriter backgroundOutputWriter;
     private int iterationsUsed = 0;
 	private boolean doReset = false;
 
@@ -58,7 +60,15 @@ final class LinkStatsControlerListener implements IterationEndsListener, Iterati
 		}
 
 		if (createLinkStatsInIteration(iteration)) {
-			linkStats.writeFile(this.controlerIO.getIterationFilename(iteration, Controler.FILENAME_LINKSTATS));
+			final String filename = this.controlerIO.getIterationFilename(iteration, Controler.FILENAME_LINKSTATS);
+			// the link stats are reset at the start of the next iteration, so a background writer needs its own copy:
+			final CalcLinkStats data = backgroundOutputWriter.isWritingInBackground() ? linkStats.snapshot() : linkStats;
+			backgroundOutputWriter.submit("link stats of iteration " + iteration, new Runnable() {
+				@Override
+				public void run() {
+					data.writeFile(filename);
+				}
+			});
 			this.doReset = true;
 		}
 	}
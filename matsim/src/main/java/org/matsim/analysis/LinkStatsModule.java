@@ -26,6 +26,7 @@ import com.google.inject.Singleton;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.core.config.Config;
 import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.BackgroundOutputWriterModule;
 
 import javax.inject.Inject;
 import javax.inject.Provider;
@@ -43,6 +44,7 @@ public final class LinkStatsModule extends AbstractModule {
 		    15min-steps, while volumes uses 60min-steps! It works a.t.m., but the
 		    traveltimes in linkStats are the avg. traveltimes between xx.00 and
 		    xx.15, and not between xx.00 and xx.59*/
+            install(new BackgroundOutputWriterModule());
             bind(LinkStatsControlerListener.class).asEagerSingleton();
             addControlerListenerBinding().to(LinkStatsControlerListener.class);
         }
@@ -41,6 +41,7 @@ import org.matsim.api.core.v01.population.PlanElement;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.core.config.groups.ControlerConfigGroup;
 import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.controler.BackgroundOutputWriter;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
 import org.matsim.core.controler.events.IterationEndsEvent;
 import org.matsim.core.controler.events.ShutdownEvent;
@@ -85,6 +86,7 @@ public class ScoreStatsControlerListener implements StartupListener, IterationEn
 	
 	private final boolean createPNG;
 	private final ControlerConfigGroup controlerConfigGroup;
+	private final BackgroundOutputWriter backgroundOutputWriter;
 
 	Map<ScoreItem,Map< Integer, Double>> scoreHistory = new HashMap<>() ;
 	private int minIteration = 0;
@@ -93,8 +95,9 @@ public class ScoreStatsControlerListener implements StartupListener, IterationEn
 
 	@Inject
 	ScoreStatsControlerListener(ControlerConfigGroup controlerConfigGroup, Population population1, OutputDirectoryHierarchy controlerIO,
-			PlanCalcScoreConfigGroup scoreConfig, Provider<TripRouter> tripRouterFactory ) {
+			PlanCalcScoreConfigGroup scoreConfig, Provider<TripRouter> tripRouterFactory, BackgroundOutputWriter backgroundOutputWriter ) {
 		this.controlerConfigGroup = controlerConfigGroup;
+		this.backgroundOutputWriter = backgroundOutputWriter;
 		this.population = population1;
 		this.fileName = controlerIO.getOutputFilename(FILENAME_SCORESTATS);
 		this.createPNG = controlerConfigGroup.isCreateGraphs();
@@ -193,13 +196,19 @@ public class ScoreStatsControlerListener implements StartupListener, IterationEn
 		log.info("-- avg. of the avg. plan score per agent: " + (sumAvgScores / nofAvgScores));
 		log.info("-- avg. score of the best plan of each agent: " + (sumScoreBest / nofScoreBest));
 
-		try {
-			this.out.write(event.getIteration() + "\t" + (sumExecutedScores / nofExecutedScores) + "\t" +
-					(sumScoreWorst / nofScoreWorst) + "\t" + (sumAvgScores / nofAvgScores) + "\t" + (sumScoreBest / nofScoreBest) + "\n");
-			this.out.flush();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		final String line = event.getIteration() + "\t" + (sumExecutedScores / nofExecutedScores) + "\t" +
+				(sumScoreWorst / nofScoreWorst) + "\t" + (sumAvgScores / nofAvgScores) + "\t" + (sumScoreBest / nofScoreBest) + "\n";
+		this.backgroundOutputWriter.submit("score stats of iteration " + event.getIteration(), new Runnable() {
+			@Override
+			public void run() {
+				try {
+					out.write(line);
+					out.flush();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
 
 //		int index = event.getIteration() - this.minIteration;
 
@@ -210,27 +219,38 @@ public class ScoreStatsControlerListener implements StartupListener, IterationEn
 
 		if (this.createPNG && event.getIteration() > this.minIteration) {
 			// create chart when data of more than one iteration is available.
-			XYLineChart chart = new XYLineChart("Score Statistics", "iteration", "score");
-//			double[] iterations = new double[index + 1];
-//			for (int i = 0; i <= index; i++) {
-//				iterations[i] = i + this.minIteration;
-//			}
-			chart.addSeries("avg. worst score", this.scoreHistory.get( ScoreItem.worst ) ) ;
-			chart.addSeries("avg. best score", this.scoreHistory.get( ScoreItem.best) );
-			chart.addSeries("avg. of plans' average score", this.scoreHistory.get( ScoreItem.average) );
-			chart.addSeries("avg. executed score", this.scoreHistory.get( ScoreItem.executed ) );
-			chart.addMatsimLogo();
-			chart.saveAsPng(this.fileName + ".png", 800, 600);
+			// copies of the history, since the next iterations add to it while the chart may still be written:
+			final Map<Integer, Double> worst = new TreeMap<>(this.scoreHistory.get( ScoreItem.worst ));
+			final Map<Integer, Double> best = new TreeMap<>(this.scoreHistory.get( ScoreItem.best ));
+			final Map<Integer, Double> average = new TreeMap<>(this.scoreHistory.get( ScoreItem.average ));
+			final Map<Integer, Double> executed = new TreeMap<>(this.scoreHistory.get( ScoreItem.executed ));
+			this.backgroundOutputWriter.submit("score stats chart of iteration " + event.getIteration(), new Runnable() {
+				@Override
+				public void run() {
+					XYLineChart chart = new XYLineChart("Score Statistics", "iteration", "score");
+					chart.addSeries("avg. worst score", worst ) ;
+					chart.addSeries("avg. best score", best );
+					chart.addSeries("avg. of plans' average score", average );
+					chart.addSeries("avg. executed score", executed );
+					chart.addMatsimLogo();
+					chart.saveAsPng(fileName + ".png", 800, 600);
+				}
+			});
 		}
 	}
 
 	@Override
 	public void notifyShutdown(final ShutdownEvent controlerShudownEvent) {
-		try {
-			this.out.close();
-		} catch (IOException e) {
-			e.printStackTrace();
-		}
+		this.backgroundOutputWriter.submit("closing score stats", new Runnable() {
+			@Override
+			public void run() {
+				try {
+					out.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+		});
 
 	}
 
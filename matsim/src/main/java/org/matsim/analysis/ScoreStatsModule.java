@@ -24,10 +24,12 @@ package org.matsim.analysis;
 
 import com.google.inject.Singleton;
 import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.BackgroundOutputWriterModule;
 
 public class ScoreStatsModule extends AbstractModule {
     @Override
     public void install() {
+        install(new BackgroundOutputWriterModule());
         bind(ScoreStatsControlerListener.class).in(Singleton.class);
         addControlerListenerBinding().to(ScoreStatsControlerListener.class);
         bind(ScoreStats.class).to(ScoreStatsControlerListener.class);
@@ -27,6 +27,7 @@ import java.util.TreeSet;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.IdMap;
 import org.matsim.api.core.v01.events.LinkLeaveEvent;
 import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
 import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
@@ -70,12 +71,12 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 		this.timeBinSize = timeBinSize;
 		this.maxTime = maxTime;
 		this.maxSlotIndex = (this.maxTime/this.timeBinSize) + 1;
-		this.links = new HashMap<>((int) (network.getLinks().size() * 1.1), 0.95f);
+		this.links = new IdMap<>(Link.class);
 		
 		this.observeModes = observeModes;
 		if (this.observeModes) {
-			this.enRouteModes = new HashMap<>();
-			this.linksPerMode = new HashMap<>((int) (network.getLinks().size() * 1.1), 0.95f);
+			this.enRouteModes = new IdMap<>(Vehicle.class);
+			this.linksPerMode = new IdMap<>(Link.class);
 		} else {
 			this.enRouteModes = null;
 			this.linksPerMode = null;
@@ -85,7 +86,11 @@ public class VolumesAnalyzer implements LinkLeaveEventHandler, VehicleEntersTraf
 	@Override
 	public void handleEvent(VehicleEntersTrafficEvent event) {
 		if (observeModes) {
-			enRouteModes.put(event.getVehicleId(), event.getNetworkMode());
+			if (event.getNetworkMode() == null) {
+				enRouteModes.remove(event.getVehicleId());
+			} else {
+				enRouteModes.put(event.getVehicleId(), event.getNetworkMode());
+			}
 		}
 	}
 	
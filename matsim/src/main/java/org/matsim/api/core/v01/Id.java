@@ -20,6 +20,7 @@
 
 package org.matsim.api.core.v01;
 
+import java.util.Arrays;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -41,6 +42,7 @@ import org.matsim.vehicles.Vehicle;
 public abstract class Id<T> implements Comparable<Id<T>> {
 
 	private final static Map<Class<?>, Map<String, Id<?>>> cache = new ConcurrentHashMap<Class<?>, Map<String, Id<?>>>();
+	private final static Map<Class<?>, IdsByIndex> cacheByIndex = new ConcurrentHashMap<Class<?>, IdsByIndex>();
 	
 	
 	public static <T> Id<T> create(final long key, final Class<T> type) {
@@ -55,24 +57,82 @@ public abstract class Id<T> implements Comparable<Id<T>> {
 	}
 	
 	/**
-	 * This method supports a cache where ids are stored and re-used per type.   
+	 * This method supports a cache where ids are stored and re-used per type.
+	 * Every newly created id additionally gets a dense index per type, see {@link #index()}.
 	 */
 	public static <T> Id<T> create(final String key, final Class<T> type) {
+		Gbl.assertNotNull(key);
 		Map<String, Id<?>> map = cache.get(type);
 		if (map == null) {
-			map = new ConcurrentHashMap<String, Id<?>>();
-			cache.put(type, map);
+			synchronized (cache) {
+				map = cache.get(type);
+				if (map == null) {
+					cacheByIndex.put(type, new IdsByIndex());
+					map = new ConcurrentHashMap<String, Id<?>>();
+					cache.put(type, map);
+				}
+			}
 		}
-		Gbl.assertNotNull(key);
 		Id<?> id = map.get(key);
 		if (id == null) {
-			id = new IdImpl<T>(key);
-			map.put(key, id);
+			synchronized (map) {
+				id = map.get(key);
+				if (id == null) {
+					IdsByIndex ids = cacheByIndex.get(type);
+					id = new IdImpl<T>(key, ids.size);
+					ids.add(id);
+					map.put(key, id);
+				}
+			}
 		}
 		
 		return (Id<T>) id;
 	}
 	
+	/**
+	 * @return the id of the given type with the given index, or <code>null</code> if no such id was created yet.
+	 * 
+	 * @see #index()
+	 */
+	public static <T> Id<T> get(final int index, final Class<T> type) {
+		IdsByIndex ids = cacheByIndex.get(type);
+		if (ids == null || index < 0) {
+			return null;
+		}
+		int size = ids.size; // read the size first, the array read afterwards contains at least this many ids
+		return index < size ? (Id<T>) ids.ids[index] : null;
+	}
+	
+	/**
+	 * @return the number of ids created so far for the given type. All indices of this type are 
+	 * smaller than this number.
+	 */
+	public static <T> int getNumberOfIds(final Class<T> type) {
+		IdsByIndex ids = cacheByIndex.get(type);
+		return ids == null ? 0 : ids.size;
+	}
+	
+	/**
+	 * @return the ids of the given type, at the position of their index, so they can be looked up repeatedly without
+	 * going through the cache. The array must not be modified. It contains at least the ids created before this call,
+	 * further positions may be <code>null</code>.
+	 */
+	/*package*/ static Id<?>[] getIdsByIndex(final Class<?> type) {
+		IdsByIndex ids = cacheByIndex.get(type);
+		if (ids == null) {
+			return new Id<?>[0];
+		}
+		int size = ids.size; // read the size first, the array read afterwards contains at least this many ids
+		return size == 0 ? new Id<?>[0] : ids.ids;
+	}
+	
+	/**
+	 * @return a dense, non-negative index of this id. Indices are assigned per type in the order the ids are 
+	 * created, starting at 0, and can be used to store id-related data in plain arrays, see {@link IdMap} and {@link IdSet}.
+	 * The index of an id is only meaningful together with its type, ids of different types may have the same index.
+	 */
+	public abstract int index();
+	
 	/**
 	 * @return <code>0</code> when the two objects being compared are the same objects, other values according to their ids being compared to each other.
 	 * 
@@ -113,9 +173,16 @@ public abstract class Id<T> implements Comparable<Id<T>> {
 	private static class IdImpl<T> extends Id<T> {
 
 		private final String id; 
+		private final int index;
 		
-		/*package*/ IdImpl(final String id) {
+		/*package*/ IdImpl(final String id, final int index) {
 			this.id = id;
+			this.index = index;
+		}
+
+		@Override
+		public int index() {
+			return this.index;
 		}
 
 		@Override
@@ -129,6 +196,25 @@ public abstract class Id<T> implements Comparable<Id<T>> {
 		}
 	}
 	
+	/**
+	 * The ids of one type in the order of their index. Ids are only added while holding the lock of the type's
+	 * cache; the volatile fields let readers access the ids without locking.
+	 */
+	private static final class IdsByIndex {
+		private volatile Id<?>[] ids = new Id<?>[16];
+		private volatile int size = 0;
+
+		void add(final Id<?> id) {
+			Id<?>[] array = this.ids;
+			if (this.size == array.length) {
+				array = Arrays.copyOf(array, array.length * 2);
+			}
+			array[this.size] = id;
+			this.ids = array;
+			this.size = this.size + 1;
+		}
+	}
+	
 	public static <T> String writeId( Id<T> id ) {
 		if ( id==null ) {
 			return "null" ;
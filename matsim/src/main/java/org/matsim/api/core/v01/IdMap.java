@@ -0,0 +1,298 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IdMap.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.api.core.v01;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map with {@link Id}s as keys, backed by a plain array indexed by {@link Id#index()}.
+ * Lookups and updates are simple array accesses and do not need to compute any hash codes,
+ * making this map well suited for data that is accessed often, e.g. per link or per person
+ * in event handlers. The memory consumption is proportional to the highest index of the keys
+ * stored, so this map is best used if a large part of all ids of the given type are stored in it.
+ * <p></p>
+ * Iteration order is the order of the indices, i.e. the order in which the ids were created.
+ * <code>null</code> keys and <code>null</code> values are not supported.
+ * <p></p>
+ * Only ids of the type given in the constructor should be used as keys, as ids of different types
+ * may have the same index.
+ */
+public class IdMap<T, V> extends AbstractMap<Id<T>, V> {
+
+	private static final int INCREMENT = 100;
+	private static final float INCREMENT_FACTOR = 1.5f;
+
+	private final Class<T> idClass;
+	private Object[] data;
+	private int size = 0;
+	private int modCount = 0;
+
+	public IdMap(final Class<T> idClass) {
+		this(idClass, Math.max(Id.getNumberOfIds(idClass), INCREMENT));
+	}
+
+	public IdMap(final Class<T> idClass, final int capacity) {
+		this.idClass = idClass;
+		this.data = new Object[capacity];
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	@Override
+	public boolean containsKey(final Object key) {
+		return get(key) != null;
+	}
+
+	public boolean containsKey(final int index) {
+		return get(index) != null;
+	}
+
+	@Override
+	public boolean containsValue(final Object value) {
+		if (value == null) {
+			return false;
+		}
+		for (Object v : this.data) {
+			if (value.equals(v)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public V get(final Object key) {
+		if (key instanceof Id) {
+			return get(((Id<?>) key).index());
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(final int index) {
+		if (index < 0 || index >= this.data.length) {
+			return null;
+		}
+		return (V) this.data[index];
+	}
+
+	@Override
+	public V put(final Id<T> key, final V value) {
+		return put(key.index(), value);
+	}
+
+	@SuppressWarnings("unchecked")
+	public V put(final int index, final V value) {
+		if (value == null) {
+			throw new NullPointerException("null values are not supported.");
+		}
+		ensureCapacity(index);
+		V old = (V) this.data[index];
+		this.data[index] = value;
+		if (old == null) {
+			this.size++;
+			this.modCount++;
+		}
+		return old;
+	}
+
+	@Override
+	public V remove(final Object key) {
+		if (key instanceof Id) {
+			return remove(((Id<?>) key).index());
+		}
+		return null;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V remove(final int index) {
+		if (index < 0 || index >= this.data.length) {
+			return null;
+		}
+		V old = (V) this.data[index];
+		if (old != null) {
+			this.data[index] = null;
+			this.size--;
+			this.modCount++;
+		}
+		return old;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(this.data, null);
+		this.size = 0;
+		this.modCount++;
+	}
+
+	private void ensureCapacity(final int index) {
+		if (index >= this.data.length) {
+			int newSize = Math.max(index + 1, (int) (this.data.length * INCREMENT_FACTOR) + INCREMENT);
+			this.data = Arrays.copyOf(this.data, newSize);
+		}
+	}
+
+	@Override
+	public Set<Map.Entry<Id<T>, V>> entrySet() {
+		return new EntrySet();
+	}
+
+	private class EntrySet extends AbstractSet<Map.Entry<Id<T>, V>> {
+
+		@Override
+		public int size() {
+			return IdMap.this.size;
+		}
+
+		@Override
+		public void clear() {
+			IdMap.this.clear();
+		}
+
+		@Override
+		public Iterator<Map.Entry<Id<T>, V>> iterator() {
+			return new EntryIterator();
+		}
+	}
+
+	private class EntryIterator implements Iterator<Map.Entry<Id<T>, V>> {
+
+		private final Id<?>[] ids = Id.getIdsByIndex(IdMap.this.idClass);
+		private int expectedModCount = IdMap.this.modCount;
+		private int nextIndex = -1;
+		private int currentIndex = -1;
+
+		EntryIterator() {
+			moveToNext();
+		}
+
+		private void moveToNext() {
+			Object[] data = IdMap.this.data;
+			do {
+				this.nextIndex++;
+			} while (this.nextIndex < data.length && data[this.nextIndex] == null);
+		}
+
+		@Override
+		public boolean hasNext() {
+			return this.nextIndex < IdMap.this.data.length;
+		}
+
+		@Override
+		public Map.Entry<Id<T>, V> next() {
+			if (this.expectedModCount != IdMap.this.modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			this.currentIndex = this.nextIndex;
+			moveToNext();
+			return new Entry(this.currentIndex, getId(this.ids, this.currentIndex, IdMap.this.idClass));
+		}
+
+		@Override
+		public void remove() {
+			if (this.currentIndex < 0) {
+				throw new IllegalStateException();
+			}
+			if (this.expectedModCount != IdMap.this.modCount) {
+				throw new ConcurrentModificationException();
+			}
+			IdMap.this.remove(this.currentIndex);
+			this.currentIndex = -1;
+			this.expectedModCount = IdMap.this.modCount;
+		}
+	}
+
+	private class Entry implements Map.Entry<Id<T>, V> {
+
+		private final int index;
+		private final Id<T> key;
+
+		Entry(final int index, final Id<T> key) {
+			this.index = index;
+			this.key = key;
+		}
+
+		@Override
+		public Id<T> getKey() {
+			return this.key;
+		}
+
+		@Override
+		public V getValue() {
+			return IdMap.this.get(this.index);
+		}
+
+		@Override
+		public V setValue(final V value) {
+			return IdMap.this.put(this.index, value);
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Map.Entry)) {
+				return false;
+			}
+			Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+			return getKey().equals(e.getKey()) && getValue().equals(e.getValue());
+		}
+
+		@Override
+		public int hashCode() {
+			return getKey().hashCode() ^ getValue().hashCode();
+		}
+
+		@Override
+		public String toString() {
+			return getKey() + "=" + getValue();
+		}
+	}
+
+	/**
+	 * Looks the id up in the ids taken from {@link Id#getIdsByIndex(Class)} when the iteration started, so iterating
+	 * does not need to go through the id cache for every element.
+	 */
+	@SuppressWarnings("unchecked")
+	/*package*/ static <T> Id<T> getId(final Id<?>[] ids, final int index, final Class<T> idClass) {
+		if (index < ids.length && ids[index] != null) {
+			return (Id<T>) ids[index];
+		}
+		return Id.get(index, idClass);
+	}
+
+}
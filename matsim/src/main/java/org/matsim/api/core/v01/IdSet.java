@@ -0,0 +1,152 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IdSet.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.api.core.v01;
+
+import java.util.AbstractSet;
+import java.util.BitSet;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Set of {@link Id}s, backed by a {@link BitSet} indexed by {@link Id#index()}.
+ * Iteration order is the order of the indices, i.e. the order in which the ids were created.
+ * <p></p>
+ * Only ids of the type given in the constructor should be added, as ids of different types
+ * may have the same index.
+ * 
+ */
+public class IdSet<T> extends AbstractSet<Id<T>> {
+
+	private final Class<T> idClass;
+	private final BitSet data;
+	private int size = 0;
+	private int modCount = 0;
+
+	public IdSet(final Class<T> idClass) {
+		this.idClass = idClass;
+		this.data = new BitSet(Id.getNumberOfIds(idClass));
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	@Override
+	public boolean contains(final Object o) {
+		if (o instanceof Id) {
+			return contains(((Id<?>) o).index());
+		}
+		return false;
+	}
+
+	public boolean contains(final int index) {
+		return this.data.get(index);
+	}
+
+	@Override
+	public boolean add(final Id<T> id) {
+		int index = id.index();
+		if (this.data.get(index)) {
+			return false;
+		}
+		this.data.set(index);
+		this.size++;
+		this.modCount++;
+		return true;
+	}
+
+	@Override
+	public boolean remove(final Object o) {
+		if (o instanceof Id) {
+			return remove(((Id<?>) o).index());
+		}
+		return false;
+	}
+
+	public boolean remove(final int index) {
+		if (!this.data.get(index)) {
+			return false;
+		}
+		this.data.clear(index);
+		this.size--;
+		this.modCount++;
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		this.data.clear();
+		this.size = 0;
+		this.modCount++;
+	}
+
+	@Override
+	public Iterator<Id<T>> iterator() {
+		return new IdSetIterator();
+	}
+
+	private class IdSetIterator implements Iterator<Id<T>> {
+
+		private final Id<?>[] ids = Id.getIdsByIndex(IdSet.this.idClass);
+		private int expectedModCount = IdSet.this.modCount;
+		private int nextIndex = IdSet.this.data.nextSetBit(0);
+		private int currentIndex = -1;
+
+		@Override
+		public boolean hasNext() {
+			return this.nextIndex >= 0;
+		}
+
+		@Override
+		public Id<T> next() {
+			if (this.expectedModCount != IdSet.this.modCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (this.nextIndex < 0) {
+				throw new NoSuchElementException();
+			}
+			this.currentIndex = this.nextIndex;
+			this.nextIndex = IdSet.this.data.nextSetBit(this.currentIndex + 1);
+			return IdMap.getId(this.ids, this.currentIndex, IdSet.this.idClass);
+		}
+
+		@Override
+		public void remove() {
+			if (this.currentIndex < 0) {
+				throw new IllegalStateException();
+			}
+			if (this.expectedModCount != IdSet.this.modCount) {
+				throw new ConcurrentModificationException();
+			}
+			IdSet.this.remove(this.currentIndex);
+			this.currentIndex = -1;
+			this.expectedModCount = IdSet.this.modCount;
+		}
+	}
+
+}
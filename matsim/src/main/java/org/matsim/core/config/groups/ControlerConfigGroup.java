@@ -37,9 +37,11 @@ import org.matsim.core.utils.misc.StringUtils;
 public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	private static final Logger log = Logger.getLogger( ControlerConfigGroup.class );
 
-	public enum RoutingAlgorithmType {Dijkstra, AStarLandmarks, FastDijkstra, FastAStarLandmarks}
+	public enum RoutingAlgorithmType {Dijkstra, AStarLandmarks, FastDijkstra, FastAStarLandmarks, ContractionHierarchies, CustomizableRoutePlanning, CompactDijkstra}
 
-	public enum EventsFileFormat {xml}
+	public enum EventsFileFormat {xml, binary}
+
+	public enum PlansFileFormat {xml, binary}
 
 	public static final String GROUP_NAME = "controler";
 
@@ -53,9 +55,11 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	private static final String SNAPSHOT_FORMAT = "snapshotFormat";
 	private static final String WRITE_EVENTS_INTERVAL = "writeEventsInterval";
 	private static final String WRITE_PLANS_INTERVAL = "writePlansInterval";
+	private static final String PLANS_FILE_FORMAT = "plansFileFormat";
 	private static final String OVERWRITE_FILE = "overwriteFiles";
 	private static final String CREATE_GRAPHS = "createGraphs";
 	private static final String DUMP_DATA_AT_END = "dumpDataAtEnd";
+	private static final String WRITE_OUTPUT_IN_BACKGROUND = "writeOutputInBackground";
 
 	/*package*/ static final String MOBSIM = "mobsim";
 	public enum MobsimType {qsim, JDEQSim}
@@ -76,11 +80,13 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 
 	private int writeEventsInterval=10;
 	private int writePlansInterval=10;
+	private PlansFileFormat plansFileFormat = PlansFileFormat.xml;
 	private Set<String> snapshotFormat = Collections.emptySet();
 	private String mobsim = MobsimType.qsim.toString();
 	private int writeSnapshotsInterval = 1;
 	private boolean createGraphs = true;
 	private boolean dumpDataAtEnd = true;
+	private boolean writingOutputInBackground = false;
 	private OverwriteFileSetting overwriteFileSetting = OverwriteFileSetting.failIfDirectoryExists;
 
 	public ControlerConfigGroup() {
@@ -91,14 +97,20 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	public final Map<String, String> getComments() {
 		Map<String,String> map = super.getComments();
 		map.put(ROUTINGALGORITHM_TYPE, "The type of routing (least cost path) algorithm used, may have the values: " + RoutingAlgorithmType.Dijkstra + ", " + 
-				RoutingAlgorithmType.FastDijkstra + ", " + RoutingAlgorithmType.AStarLandmarks + " or "  + RoutingAlgorithmType.FastAStarLandmarks);
+				RoutingAlgorithmType.FastDijkstra + ", " + RoutingAlgorithmType.AStarLandmarks + ", "  + RoutingAlgorithmType.FastAStarLandmarks + ", " +
+				RoutingAlgorithmType.ContractionHierarchies + " (customized per travel time bin, uses the travel costs at the departure time for the whole route) or " +
+				RoutingAlgorithmType.CustomizableRoutePlanning + " (re-customized in parallel when the travel times change, same time bin handling as " + RoutingAlgorithmType.ContractionHierarchies + ") or " +
+				RoutingAlgorithmType.CompactDijkstra + " (one compact graph shared by all routing threads and modes)");
 		map.put(RUNID, "An identifier for the current run which is used as prefix for output files and mentioned in output xml files etc.");
-		map.put(EVENTS_FILE_FORMAT, "Default="+EventsFileFormat.xml+"; Specifies the file format for writing events. Currently supported: xml."+IOUtils.NATIVE_NEWLINE+ "\t\t" +
+		map.put(EVENTS_FILE_FORMAT, "Default="+EventsFileFormat.xml+"; Specifies the file format for writing events. Currently supported: xml, binary (columnar, uncompressed, can be filtered by event type and time when reading)."+IOUtils.NATIVE_NEWLINE+ "\t\t" +
 				"Multiple values can be specified separated by commas (',').");
 		map.put(WRITE_EVENTS_INTERVAL, "iterationNumber % writeEventsInterval == 0 defines in which iterations events are written " +
 				"to a file. `0' disables events writing completely.");
 		map.put(WRITE_PLANS_INTERVAL, "iterationNumber % writePlansInterval == 0 defines (hopefully) in which iterations plans are " +
 				"written to a file. `0' disables plans writing completely.  Some plans in early iterations are always written");
+		map.put(PLANS_FILE_FORMAT, "Default="+PlansFileFormat.xml+"; Specifies the file format for writing plans in the iterations. Currently supported: xml, " +
+				"binary (compressed in chunks, written and read by several threads; can be read wherever a plans file is expected). " +
+				"With binary, the output plans at the end of the run are written in both formats.");
 		map.put(LINKTOLINK_ROUTING_ENABLED, "Default=false. If enabled, the router takes travel times needed for turning moves into account."
 		        + " Cannot be used if the (Fast)AStarLandmarks routing or TravelTimeCalculator.separateModes is enabled.");
 		map.put(FIRST_ITERATION, "Default=0; "); // TODO: add description
@@ -120,6 +132,8 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 		map.put(WRITE_SNAPSHOTS_INTERVAL, "iterationNumber % " + WRITE_SNAPSHOTS_INTERVAL + " == 0 defines in which iterations snapshots are written " +
 				"to a file. `0' disables snapshots writing completely");
 		map.put(DUMP_DATA_AT_END, "true if at the end of a run, plans, network, config etc should be dumped to a file");
+		map.put(WRITE_OUTPUT_IN_BACKGROUND, "Default=false; if true, plans dumps, score statistics, link statistics and leg histograms are written " +
+				"from snapshots on a background thread, so that the next iteration does not wait for them. The run waits for all output at its end.");
 		return map;
 	}
 
@@ -294,6 +308,16 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 		this.writePlansInterval = writePlansInterval;
 	}
 	
+	@StringGetter( PLANS_FILE_FORMAT )
+	public PlansFileFormat getPlansFileFormat() {
+		return this.plansFileFormat;
+	}
+
+	@StringSetter( PLANS_FILE_FORMAT )
+	public void setPlansFileFormat(final PlansFileFormat plansFileFormat) {
+		this.plansFileFormat = plansFileFormat;
+	}
+
 	@StringGetter( WRITE_SNAPSHOTS_INTERVAL )
 	public int getWriteSnapshotsInterval() {
 		return writeSnapshotsInterval;
@@ -343,6 +367,15 @@ public final class ControlerConfigGroup extends ReflectiveConfigGroup {
 	public void setDumpDataAtEnd(boolean dumpDataAtEnd) {
 		this.dumpDataAtEnd = dumpDataAtEnd;
 	}
+	@StringGetter(WRITE_OUTPUT_IN_BACKGROUND)
+	public boolean isWritingOutputInBackground() {
+		return this.writingOutputInBackground;
+	}
+
+	@StringSetter(WRITE_OUTPUT_IN_BACKGROUND)
+	public void setWritingOutputInBackground(final boolean writingOutputInBackground) {
+		this.writingOutputInBackground = writingOutputInBackground;
+	}
 	// ---
 	int writePlansUntilIteration = 1 ;
 	public int getWritePlansUntilIteration() {
@@ -29,6 +29,8 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 	private static final Logger log = Logger.getLogger(GlobalConfigGroup.class);
 
 	public static final String GROUP_NAME = "global";
+
+	public enum ReplanningScheduling { roundRobin, dynamic }
 	private boolean insistingOnDeprecatedConfigVersion = true ;
 	
 	public GlobalConfigGroup() {
@@ -38,10 +40,12 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 	private static final String RANDOM_SEED = "randomSeed";
 	private static final String NUMBER_OF_THREADS = "numberOfThreads";
 	private static final String COORDINATE_SYSTEM = "coordinateSystem";
+	private static final String REPLANNING_SCHEDULING = "replanningScheduling";
 
 	private long randomSeed = 4711L;
 	private int numberOfThreads = 2;
 	private String coordinateSystem = "Atlantis";
+	private ReplanningScheduling replanningScheduling = ReplanningScheduling.roundRobin;
 	
 	@Override
 	public Map<String, String> getComments() {
@@ -49,6 +53,12 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 		map.put(NUMBER_OF_THREADS, "\"global\" number of threads.  "
 				+ "This number is used, e.g., for replanning, but NOT in the mobsim.  "
 				+ "This can typically be set to as many cores as you have available, or possibly even slightly more.") ;
+		map.put(REPLANNING_SCHEDULING, "How the plans are distributed to the threads of the multi-threaded replanning modules.  "
+				+ ReplanningScheduling.roundRobin + ": the plans are assigned to the threads in turn before the threads start; "
+				+ "the runs are reproducible, but fast threads wait for slow ones.  "
+				+ ReplanningScheduling.dynamic + ": the threads take chunks of plans while running until no plans are left; "
+				+ "all threads are busy until the end, but which random generator handles which plan depends on the timing, "
+				+ "so runs with more than one thread are not reproducible.") ;
 		return map ;
 	}
 
@@ -73,6 +83,15 @@ public final class GlobalConfigGroup extends ReflectiveConfigGroup {
 		this.numberOfThreads = numberOfThreads;
 	}
 
+	@StringGetter( REPLANNING_SCHEDULING )
+	public ReplanningScheduling getReplanningScheduling() {
+		return this.replanningScheduling;
+	}
+	@StringSetter( REPLANNING_SCHEDULING )
+	public void setReplanningScheduling(final ReplanningScheduling replanningScheduling) {
+		this.replanningScheduling = replanningScheduling;
+	}
+
 	@StringGetter( COORDINATE_SYSTEM )
 	public String getCoordinateSystem() {
 		return this.coordinateSystem;
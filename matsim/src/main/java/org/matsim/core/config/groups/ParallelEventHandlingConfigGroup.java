@@ -20,6 +20,7 @@
 
 package org.matsim.core.config.groups;
 
+import java.util.Arrays;
 import java.util.Map;
 
 import org.matsim.core.config.ReflectiveConfigGroup;
@@ -45,6 +46,31 @@ public final class ParallelEventHandlingConfigGroup extends ReflectiveConfigGrou
 	private final static String ONE_THREAD_PER_HANDLER = "oneThreadPerHandler"; 
 	private Boolean oneThreadPerHandler = false;
 	
+	private final static String SYNCHRONIZE_ON_HANDLERS = "synchronizeOnHandlers";
+	private Boolean synchronizeOnHandlers = true;
+
+	private final static String USE_RING_BUFFER = "useRingBuffer";
+	private Boolean useRingBuffer = false;
+
+	private final static String RING_BUFFER_SIZE = "ringBufferSize";
+	private Integer ringBufferSize = 65536;
+
+	private final static String WAIT_STRATEGY = "waitStrategy";
+	private WaitStrategy waitStrategy = WaitStrategy.blocking;
+
+	/**
+	 * How the threads of the ring buffer events manager wait for events (and the mobsim waits for the events
+	 * handling threads) when there is nothing to do.
+	 */
+	public enum WaitStrategy {
+		/** park the thread until it is signalled; uses the least CPU time */
+		blocking,
+		/** yield the CPU to other threads while waiting */
+		yielding,
+		/** spin on the CPU; lowest latency, but every events handling thread occupies a core for the whole mobsim */
+		busySpin
+	}
+
 	private boolean locked = false;
 
 	public ParallelEventHandlingConfigGroup() {
@@ -60,6 +86,14 @@ public final class ParallelEventHandlingConfigGroup extends ReflectiveConfigGrou
 				+ "before the next time step is simulated. E.g. neccessary when within-day replanning is used.");
 		comments.put(ONE_THREAD_PER_HANDLER, "If enabled, each event handler is assigned to its own thread. Note that enabling this feature disabled the " + NUMBER_OF_THREADS + " option! "
 				+ "This feature is still experimental!");
+		comments.put(SYNCHRONIZE_ON_HANDLERS, "If enabled, the events processing threads lock each event handler while passing an event to it. "
+				+ "Disabling this avoids the locking overhead on every event, but is only safe if the event handlers are not accessed concurrently by other threads while events are processed.");
+		comments.put(USE_RING_BUFFER, "If enabled, events are handed to the events processing threads in batches through a ring buffer instead of queues. "
+				+ "Uses " + NUMBER_OF_THREADS + ", " + SYNCHRONIZE_ON_SIMSTEPS + ", " + RING_BUFFER_SIZE + " and " + WAIT_STRATEGY + ". This feature is still experimental!");
+		comments.put(RING_BUFFER_SIZE, "Number of events the ring buffer can hold. Rounded up to the next power of two. The mobsim has to wait if the events processing threads "
+				+ "fall behind by this many events.");
+		comments.put(WAIT_STRATEGY, "How the threads wait if there is nothing to do when the ring buffer is used. Possible values: " + Arrays.toString(WaitStrategy.values()) + ". "
+				+ WaitStrategy.busySpin + " has the lowest latency, but occupies one core per events processing thread.");
 		return comments;
 	}
 
@@ -127,6 +161,62 @@ public final class ParallelEventHandlingConfigGroup extends ReflectiveConfigGrou
 		}
 	}
 	
+	@StringGetter( SYNCHRONIZE_ON_HANDLERS )
+	public Boolean getSynchronizeOnHandlers() {
+		return this.synchronizeOnHandlers;
+	}
+
+	@StringSetter( SYNCHRONIZE_ON_HANDLERS )
+	public void setSynchronizeOnHandlers(Boolean synchronizeOnHandlers) {
+		if ( !this.locked ) {
+			this.synchronizeOnHandlers = synchronizeOnHandlers;
+		} else {
+			throw new RuntimeException("it is too late in the control flow to modify this parameter");
+		}
+	}
+
+	@StringGetter( USE_RING_BUFFER )
+	public Boolean getUseRingBuffer() {
+		return this.useRingBuffer;
+	}
+
+	@StringSetter( USE_RING_BUFFER )
+	public void setUseRingBuffer(Boolean useRingBuffer) {
+		if ( !this.locked ) {
+			this.useRingBuffer = useRingBuffer;
+		} else {
+			throw new RuntimeException("it is too late in the control flow to modify this parameter");
+		}
+	}
+
+	@StringGetter( RING_BUFFER_SIZE )
+	public Integer getRingBufferSize() {
+		return this.ringBufferSize;
+	}
+
+	@StringSetter( RING_BUFFER_SIZE )
+	public void setRingBufferSize(Integer ringBufferSize) {
+		if ( !this.locked ) {
+			this.ringBufferSize = ringBufferSize;
+		} else {
+			throw new RuntimeException("it is too late in the control flow to modify this parameter");
+		}
+	}
+
+	@StringGetter( WAIT_STRATEGY )
+	public WaitStrategy getWaitStrategy() {
+		return this.waitStrategy;
+	}
+
+	@StringSetter( WAIT_STRATEGY )
+	public void setWaitStrategy(WaitStrategy waitStrategy) {
+		if ( !this.locked ) {
+			this.waitStrategy = waitStrategy;
+		} else {
+			throw new RuntimeException("it is too late in the control flow to modify this parameter");
+		}
+	}
+
 	public void makeLocked() {
 		this.locked = true;
 	}
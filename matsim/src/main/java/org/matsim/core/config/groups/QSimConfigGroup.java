@@ -124,11 +124,20 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 	private float linkWidth = 30;
 	private boolean usingThreadpool = true;
 
+	public static enum NodePartitioning { roundRobin, spaceFillingCurve, spaceFillingCurveWithObservedLoad }
+	private NodePartitioning nodePartitioning = NodePartitioning.roundRobin;
+
 	public static final String LINK_WIDTH = "linkWidth";
 
 	// ---
 	private final static String FAST_CAPACITY_UPDATE = "usingFastCapacityUpdate";
 	private boolean usingFastCapacityUpdate = true ;
+
+	private final static String USING_EVENT_HORIZON = "usingEventHorizon";
+	private boolean usingEventHorizon = false ;
+
+	private final static String INDEXING_WAITING_PASSENGERS_BY_LINE = "indexingWaitingPassengersByLine";
+	private boolean indexingWaitingPassengersByLine = false ;
 	// ---
 	private static final String VEHICLES_SOURCE = "vehiclesSource";
 	public enum VehiclesSource { defaultVehicle, modeVehicleTypesFromVehiclesData, fromVehiclesData} ;
@@ -263,9 +272,24 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 		map.put(USE_PERSON_ID_FOR_MISSING_VEHICLE_ID, "If a route does not reference a vehicle, agents will use the vehicle with the same id as their own.");
 		map.put(USING_THREADPOOL, "if the qsim should use as many runners as there are threads (Christoph's dissertation version)"
 				+ " or more of them, together with a thread pool (seems to be faster in some situations, but is not tested).") ;
+		map.put(NODE_PARTITIONING, "how the nodes (and their out-links) are assigned to the runners of the qsim, if there is more than one thread.  "
+				+ NodePartitioning.roundRobin + ": in turn.  "
+				+ NodePartitioning.spaceFillingCurve + ": the nodes are ordered along a Hilbert curve over their coordinates, "
+				+ "and the curve is cut into pieces of equal expected load, so neighbouring nodes and links are handled by the same runner.  "
+				+ NodePartitioning.spaceFillingCurveWithObservedLoad + ": as before, but from the second iteration on, the load is "
+				+ "what the runners simulated at every node in the previous iteration.  The partitioning depends only on the network and on "
+				+ "the simulation itself (not on timings), so results stay deterministic for a given number of threads.") ;
 		map.put(FAST_CAPACITY_UPDATE, "If false, the qsim accumulates fractional flows up to one flow unit in every time step.  If true, "
 				+ "flows are updated only if an agent wants to enter the link or an agent is added to buffer. "
 				+ "Default is true.") ;
+		map.put(USING_EVENT_HORIZON, "If true, the qsim asks its engines after every time step when they have something to do next, and "
+				+ "jumps directly to the earliest of these times, skipping e.g. the night hours.  The results are the same as without.  "
+				+ "Only has an effect if all engines and sim step listeners can tell their next time of interest; otherwise, every time step is "
+				+ "simulated.  Default is false.") ;
+		map.put(INDEXING_WAITING_PASSENGERS_BY_LINE, "If true, the passengers waiting at a transit stop are grouped by the line they want to use, "
+				+ "so an arriving vehicle only asks the passengers of its own line whether they want to board.  This speeds up scenarios "
+				+ "with many passengers waiting at the same stops.  The results are the same as without, unless agents change the line they "
+				+ "want to use while waiting at a stop (e.g. by within-day replanning).  Default is false.") ;
 		map.put(USE_LANES, "Set this parameter to true if lanes should be used, false if not.");
 		{	
 			StringBuilder stb = new StringBuilder() ;
@@ -293,6 +317,26 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 		return this.usingFastCapacityUpdate ;
 	}
 
+	@StringSetter(USING_EVENT_HORIZON)
+	public final void setUsingEventHorizon( boolean val ) {
+		this.usingEventHorizon = val ;
+	}
+
+	@StringGetter(USING_EVENT_HORIZON)
+	public final boolean isUsingEventHorizon() {
+		return this.usingEventHorizon ;
+	}
+
+	@StringSetter(INDEXING_WAITING_PASSENGERS_BY_LINE)
+	public final void setIndexingWaitingPassengersByLine( boolean val ) {
+		this.indexingWaitingPassengersByLine = val ;
+	}
+
+	@StringGetter(INDEXING_WAITING_PASSENGERS_BY_LINE)
+	public final boolean isIndexingWaitingPassengersByLine() {
+		return this.indexingWaitingPassengersByLine ;
+	}
+
 	public void setStartTime(final double startTime) {
 		this.startTime = startTime;
 	}
@@ -514,6 +558,16 @@ public final class QSimConfigGroup extends ReflectiveConfigGroup {
 		this.usingThreadpool = val ;
 	}
 
+	private static final String NODE_PARTITIONING = "nodePartitioning" ;
+	@StringGetter(NODE_PARTITIONING)
+	public NodePartitioning getNodePartitioning() {
+		return this.nodePartitioning ;
+	}
+	@StringSetter(NODE_PARTITIONING)
+	public void setNodePartitioning( NodePartitioning val ) {
+		this.nodePartitioning = val ;
+	}
+
 	private static final String USE_LANES="useLanes" ;
 	private boolean useLanes = false ;
 
@@ -277,6 +277,10 @@ public final class StrategyConfigGroup extends ConfigGroup {
 		map.put(ReflectiveDelegate.EXTERNAL_EXE_TMP_FILE_ROOT_DIR, "root directory for temporary files generated by the external executable. Provided as a service; "
 				+ "I don't think this is used by MATSim.") ;
 		map.put(ReflectiveDelegate.EXTERNAL_EXE_TIME_OUT, "time out value (in seconds) after which matsim will consider the external strategy as failed") ;
+		map.put(ReflectiveDelegate.STREAMING_REPLANNING_CHUNK_SIZE, "if larger than ``0'', only the selected plans are kept in memory.  All plans are kept in "
+				+ "replanningStore.xml.gz in the output directory, and the replanning streams the persons from there through the strategies "
+				+ "in chunks of this size.  The plans dumps and the output plans then only contain the selected plans.  "
+				+ "``0'' (the default) keeps the whole population in memory.") ;
 		return map ;
 	}
 
@@ -340,6 +344,14 @@ public final class StrategyConfigGroup extends ConfigGroup {
 		return delegate.getMaxAgentPlanMemorySize();
 	}
 
+	public void setStreamingReplanningChunkSize(int streamingReplanningChunkSize) {
+		delegate.setStreamingReplanningChunkSize(streamingReplanningChunkSize);
+	}
+
+	public int getStreamingReplanningChunkSize() {
+		return delegate.getStreamingReplanningChunkSize();
+	}
+
 	public void setExternalExeConfigTemplate(String externalExeConfigTemplate) {
 		delegate.setExternalExeConfigTemplate(externalExeConfigTemplate);
 	}
@@ -401,11 +413,13 @@ public final class StrategyConfigGroup extends ConfigGroup {
 		 static final String EXTERNAL_EXE_TIME_OUT = "ExternalExeTimeOut";
 		 static final String ITERATION_FRACTION_TO_DISABLE_INNOVATION = "fractionOfIterationsToDisableInnovation" ;
 		 static final String PLAN_SELECTOR_FOR_REMOVAL = "planSelectorForRemoval" ;
+		 static final String STREAMING_REPLANNING_CHUNK_SIZE = "streamingReplanningChunkSize" ;
 
 		private int maxAgentPlanMemorySize = 5;
 		private String externalExeConfigTemplate = null;
 		private String externalExeTmpFileRootDir = null;
 		private long externalExeTimeOut = 3600;
+		private int streamingReplanningChunkSize = 0;
 
 		private String planSelectorForRemoval = "WorstPlanSelector";
 		
@@ -458,6 +472,19 @@ public final class StrategyConfigGroup extends ConfigGroup {
 			return this.externalExeTimeOut;
 		}
 
+		@StringSetter( STREAMING_REPLANNING_CHUNK_SIZE )
+		public void setStreamingReplanningChunkSize(final int streamingReplanningChunkSize) {
+			if ( streamingReplanningChunkSize < 0 ) {
+				throw new IllegalArgumentException( STREAMING_REPLANNING_CHUNK_SIZE + " must not be negative, but is " + streamingReplanningChunkSize ) ;
+			}
+			this.streamingReplanningChunkSize = streamingReplanningChunkSize;
+		}
+
+		@StringGetter( STREAMING_REPLANNING_CHUNK_SIZE )
+		public int getStreamingReplanningChunkSize() {
+			return this.streamingReplanningChunkSize;
+		}
+
 		@StringGetter( PLAN_SELECTOR_FOR_REMOVAL )
 		public String getPlanSelectorForRemoval() {
 			return planSelectorForRemoval;
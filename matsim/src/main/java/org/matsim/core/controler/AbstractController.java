@@ -83,12 +83,20 @@ import org.matsim.core.gbl.MatsimRandom;
             @Override
             public void shutdown(boolean unexpected) {
                 controlerListenerManagerImpl.fireControlerShutdownEvent(unexpected);
+                awaitBackgroundOutput();
             }
         };
         MatsimRuntimeModifications.run(runnable);
         OutputDirectoryLogging.closeOutputDirLogging();
     }
 
+    /**
+     * Called after all shutdown listeners, which may still have submitted output to be written in the background.
+     * Output submitted by the core listeners is already complete when the other shutdown listeners run.
+     */
+    void awaitBackgroundOutput() {
+    }
+
     protected abstract void loadCoreListeners();
 
     protected abstract void runMobSim();
@@ -0,0 +1,152 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BackgroundOutputWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.controler;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.log4j.Logger;
+import org.matsim.core.config.groups.ControlerConfigGroup;
+
+/**
+ * Runs output tasks of the controler listeners (writing plans, statistics and charts) on a background thread, so that
+ * the next iteration can start while the output of the previous one is still being written.  Tasks are run one after
+ * the other, in the order in which they were submitted.  A task must only use data which is not changed afterwards by
+ * the simulation, i.e. the listeners need to submit snapshots of their data.
+ * <p></p>
+ * At most {@value #MAX_PENDING_TASKS} tasks may be pending; {@link #submit} blocks when the limit is reached, which also
+ * bounds the memory used by the snapshots.  The controler waits for all pending tasks at the end of the run.
+ * <p></p>
+ * If {@link ControlerConfigGroup#isWritingOutputInBackground()} is off, the tasks are run directly in {@link #submit}.
+ */
+@Singleton
+public final class BackgroundOutputWriter {
+	private static final Logger log = Logger.getLogger(BackgroundOutputWriter.class);
+
+	public static final int MAX_PENDING_TASKS = 8;
+
+	private final ExecutorService executor;
+	private final Semaphore pendingTasks = new Semaphore(MAX_PENDING_TASKS);
+	private volatile Throwable failure = null;
+
+	@Inject
+	BackgroundOutputWriter(final ControlerConfigGroup controlerConfigGroup) {
+		this(controlerConfigGroup.isWritingOutputInBackground());
+	}
+
+	public BackgroundOutputWriter(final boolean inBackground) {
+		if (inBackground) {
+			this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable r) {
+					Thread thread = new Thread(r, "BackgroundOutputWriter");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		} else {
+			this.executor = null;
+		}
+	}
+
+	public boolean isWritingInBackground() {
+		return this.executor != null && !this.executor.isShutdown();
+	}
+
+	/**
+	 * Runs the task in the background, or directly if writing in the background is off or the writer was closed.
+	 */
+	public void submit(final String description, final Runnable task) {
+		checkFailure();
+		if (!isWritingInBackground()) {
+			task.run();
+			return;
+		}
+		try {
+			this.pendingTasks.acquire();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+		this.executor.execute(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					if (BackgroundOutputWriter.this.failure == null) {
+						task.run();
+					}
+				} catch (Throwable t) {
+					log.error("writing " + description + " in the background failed.", t);
+					BackgroundOutputWriter.this.failure = t;
+				} finally {
+					BackgroundOutputWriter.this.pendingTasks.release();
+				}
+			}
+		});
+	}
+
+	/**
+	 * Waits until all tasks submitted so far are done.
+	 *
+	 * @throws RuntimeException if one of the tasks failed
+	 */
+	public void awaitCompletion() {
+		if (isWritingInBackground()) {
+			Future<?> marker = this.executor.submit(new Runnable() {
+				@Override
+				public void run() {
+				}
+			});
+			try {
+				marker.get();
+			} catch (InterruptedException | ExecutionException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		checkFailure();
+	}
+
+	/**
+	 * Waits for all pending tasks and stops the background thread; tasks submitted later are run directly.
+	 */
+	public void close() {
+		try {
+			awaitCompletion();
+		} finally {
+			if (this.executor != null) {
+				this.executor.shutdown();
+			}
+		}
+	}
+
+	private void checkFailure() {
+		if (this.failure != null) {
+			throw new RuntimeException("writing output in the background failed", this.failure);
+		}
+	}
+
+}
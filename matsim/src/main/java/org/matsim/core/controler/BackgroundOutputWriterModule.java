@@ -0,0 +1,45 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BackgroundOutputWriterModule.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.controler;
+
+/**
+ * Binds the {@link BackgroundOutputWriter}. It is installed by every module whose listeners use the writer, so these
+ * modules also work without the controler. All instances of this module are equal, so Guice installs it only once,
+ * no matter how many modules install it.
+ */
+public final class BackgroundOutputWriterModule extends AbstractModule {
+
+	@Override
+	public void install() {
+		bind(BackgroundOutputWriter.class).asEagerSingleton();
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		return obj instanceof BackgroundOutputWriterModule;
+	}
+
+	@Override
+	public int hashCode() {
+		return BackgroundOutputWriterModule.class.hashCode();
+	}
+
+}
@@ -20,6 +20,7 @@
 package org.matsim.core.controler.corelisteners;
 
 import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.BackgroundOutputWriterModule;
 import org.matsim.core.scoring.PlansScoringModule;
 
 /**
@@ -35,7 +36,12 @@ public class ControlerDefaultCoreListenersModule extends AbstractModule {
 	@Override
 	public void install() {
 		install(new PlansScoringModule());
-		bind( PlansReplanning.class ).to( PlansReplanningImpl.class );
+		install(new BackgroundOutputWriterModule());
+		if ( getConfig().strategy().getStreamingReplanningChunkSize() > 0 ) {
+			bind( PlansReplanning.class ).to( StreamingPlansReplanningImpl.class );
+		} else {
+			bind( PlansReplanning.class ).to( PlansReplanningImpl.class );
+		}
 		bind( PlansDumping.class ).to( PlansDumpingImpl.class );
 		bind( EventsHandling.class ).to( EventsHandlingImpl.class );
 		bind( DumpDataAtEnd.class ).to( DumpDataAtEndImpl.class );
@@ -30,7 +30,10 @@ import org.matsim.api.core.v01.population.PopulationWriter;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigWriter;
 import org.matsim.core.config.groups.ControlerConfigGroup;
+import org.matsim.core.config.groups.ControlerConfigGroup.EventsFileFormat;
+import org.matsim.core.config.groups.ControlerConfigGroup.PlansFileFormat;
 import org.matsim.core.config.groups.VspExperimentalConfigGroup;
+import org.matsim.core.controler.BackgroundOutputWriter;
 import org.matsim.core.controler.Controler;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
 import org.matsim.core.controler.events.ShutdownEvent;
@@ -38,7 +41,9 @@ import org.matsim.core.controler.listener.ShutdownListener;
 import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.network.io.NetworkChangeEventsWriter;
 import org.matsim.core.network.io.NetworkWriter;
+import org.matsim.core.population.io.BinaryPopulationWriter;
 import org.matsim.core.utils.geometry.CoordinateTransformation;
+import org.matsim.core.utils.geometry.transformations.IdentityTransformation;
 import org.matsim.core.utils.geometry.transformations.TransformationFactory;
 import org.matsim.core.utils.io.UncheckedIOException;
 import org.matsim.counts.Counts;
@@ -112,35 +117,50 @@ final class DumpDataAtEndImpl implements DumpDataAtEnd, ShutdownListener {
 	@Inject
 	private Map<Class<?>,AttributeConverter<?>> attributeConverters = Collections.emptyMap();
 
+	@Inject
+	private BackgroundOutputWriter backgroundOutputWriter;
+
+	@Inject(optional = true)
+	private PlansReplanning plansReplanning = null;
+
 	@Override
 	public void notifyShutdown(ShutdownEvent event) {
 		if ( event.isUnexpected() ) {
 			return ;
 		}
-		dumpPlans();
-		dumpNetwork();
-		dumpConfig();
-		dumpFacilities();
-		dumpNetworkChangeEvents();
-
-		dumpTransitSchedule();
-		dumpTransitVehicles();
-		dumpVehicles();
-		dumpHouseholds();
-		dumpLanes();
-		dumpCounts();
+		// nothing is changed after the run, so the data can be written in the background without copies; the controler
+		// waits for the background writer right after the core shutdown listeners, before the other ones run.
+		backgroundOutputWriter.submit("output plans", this::dumpPlans);
+		backgroundOutputWriter.submit("output network", this::dumpNetwork);
+		backgroundOutputWriter.submit("output config", this::dumpConfig);
+		backgroundOutputWriter.submit("output facilities", this::dumpFacilities);
+		backgroundOutputWriter.submit("output network change events", this::dumpNetworkChangeEvents);
+
+		backgroundOutputWriter.submit("output transit schedule", this::dumpTransitSchedule);
+		backgroundOutputWriter.submit("output transit vehicles", this::dumpTransitVehicles);
+		backgroundOutputWriter.submit("output vehicles", this::dumpVehicles);
+		backgroundOutputWriter.submit("output households", this::dumpHouseholds);
+		backgroundOutputWriter.submit("output lanes", this::dumpLanes);
+		backgroundOutputWriter.submit("output counts", this::dumpCounts);
 
 		if (!event.isUnexpected() && vspConfig.isWritingOutputEvents() && (controlerConfigGroup.getWriteEventsInterval()!=0)) {
-			dumpOutputEvents();
+			backgroundOutputWriter.submit("output events", this::dumpOutputEvents);
 		}
 		
-		dumpExperiencedPlans() ;
+		backgroundOutputWriter.submit("output experienced plans", this::dumpExperiencedPlans) ;
 	}
 
 	private void dumpOutputEvents() {
+		dumpOutputEvents(Controler.FILENAME_EVENTS_XML);
+		if (controlerConfigGroup.getEventsFileFormats().contains(EventsFileFormat.binary)) {
+			dumpOutputEvents(Controler.FILENAME_EVENTS_BINARY);
+		}
+	}
+
+	private void dumpOutputEvents(String eventsFilename) {
 		try {
-			File toFile = new File(	controlerIO.getOutputFilename("output_events.xml.gz"));
-			File fromFile = new File(controlerIO.getIterationFilename(controlerConfigGroup.getLastIteration(), "events.xml.gz"));
+			File toFile = new File(	controlerIO.getOutputFilename("output_" + eventsFilename));
+			File fromFile = new File(controlerIO.getIterationFilename(controlerConfigGroup.getLastIteration(), eventsFilename));
 			try {
 				Files.copy(fromFile.toPath(), toFile.toPath(),StandardCopyOption.REPLACE_EXISTING,StandardCopyOption.COPY_ATTRIBUTES);
 			} catch (IOException e) {
@@ -312,7 +332,19 @@ final class DumpDataAtEndImpl implements DumpDataAtEnd, ShutdownListener {
 		final String inputCRS = config.plans().getInputCRS();
 		final String internalCRS = config.global().getCoordinateSystem();
 
-		if ( inputCRS == null ) {
+		final StreamingPlansReplanningImpl plansStore = StreamingPlansReplanningImpl.getPlansStore(plansReplanning);
+
+		if ( plansStore != null ) {
+			// the population has only the selected plans:
+			final CoordinateTransformation transformation = inputCRS == null ?
+					new IdentityTransformation() :
+					TransformationFactory.getCoordinateTransformation(internalCRS, inputCRS);
+			plansStore.writeAllPlans(transformation, attributeConverters,
+					controlerIO.getOutputFilename(Controler.FILENAME_POPULATION),
+					controlerConfigGroup.getPlansFileFormat() == PlansFileFormat.binary ?
+							controlerIO.getOutputFilename(Controler.FILENAME_POPULATION_BINARY) : null);
+		}
+		else if ( inputCRS == null ) {
 			final PopulationWriter writer = new PopulationWriter(population, network);
 			writer.putAttributeConverters( attributeConverters );
 			writer.write(controlerIO.getOutputFilename(Controler.FILENAME_POPULATION));
@@ -331,6 +363,15 @@ final class DumpDataAtEndImpl implements DumpDataAtEnd, ShutdownListener {
 
 		}
 
+		if ( controlerConfigGroup.getPlansFileFormat() == PlansFileFormat.binary && plansStore == null ) {
+			final BinaryPopulationWriter writer = inputCRS == null ?
+					new BinaryPopulationWriter(population) :
+					new BinaryPopulationWriter(TransformationFactory.getCoordinateTransformation(internalCRS, inputCRS), population);
+			writer.putAttributeConverters( attributeConverters );
+			writer.setNumberOfThreads( config.global().getNumberOfThreads() );
+			writer.write(controlerIO.getOutputFilename(Controler.FILENAME_POPULATION_BINARY));
+		}
+
 		final ObjectAttributes personAttributes = population.getPersonAttributes();
 		if ( personAttributes!=null ) {
 			ObjectAttributesXmlWriter writer = new ObjectAttributesXmlWriter(personAttributes) ;
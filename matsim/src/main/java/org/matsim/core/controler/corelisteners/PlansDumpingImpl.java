@@ -20,21 +20,36 @@
 
 package org.matsim.core.controler.corelisteners;
 
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+
 import org.apache.log4j.Logger;
 import org.matsim.analysis.IterationStopWatch;
 import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.api.core.v01.population.PopulationWriter;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.ControlerConfigGroup;
+import org.matsim.core.config.groups.ControlerConfigGroup.PlansFileFormat;
+import org.matsim.core.controler.BackgroundOutputWriter;
 import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.events.AfterMobsimEvent;
 import org.matsim.core.controler.events.BeforeMobsimEvent;
+import org.matsim.core.controler.listener.AfterMobsimListener;
 import org.matsim.core.controler.listener.BeforeMobsimListener;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.io.BinaryPopulationWriter;
 
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.matsim.core.utils.geometry.CoordinateTransformation;
+import org.matsim.core.utils.geometry.transformations.IdentityTransformation;
 import org.matsim.core.utils.geometry.transformations.TransformationFactory;
+import org.matsim.utils.objectattributes.AttributeConverter;
+import org.matsim.utils.objectattributes.attributable.AttributesUtils;
 
 /**
  * {@link org.matsim.core.controler.listener.ControlerListener} that dumps the
@@ -42,11 +57,17 @@ import org.matsim.core.utils.geometry.transformations.TransformationFactory;
  * ({@link ControlerConfigGroup#getWritePlansInterval()} as well as in the first
  * iteration, just in case someone might check that the replanning worked
  * correctly in the first iteration.
+ * <p></p>
+ * If the output is written in the background, the writer thread copies the persons one by one before writing them.
+ * The persons it has not reached when the mobsim ends are copied by the controler thread, before the scoring changes them.
+ * <p></p>
+ * With the streaming replanning, the population only has the selected plans; all plans are then streamed from the file of
+ * the replanning, in the foreground, as the next replanning replaces the file.
  *
  * @author mrieser
  */
 @Singleton
-final class PlansDumpingImpl implements PlansDumping, BeforeMobsimListener {
+final class PlansDumpingImpl implements PlansDumping, BeforeMobsimListener, AfterMobsimListener {
 
 	static final private Logger log = Logger.getLogger(PlansDumpingImpl.class);
 
@@ -55,14 +76,22 @@ final class PlansDumpingImpl implements PlansDumping, BeforeMobsimListener {
 	@Inject private Population population;
 	@Inject private IterationStopWatch stopwatch;
 	@Inject private OutputDirectoryHierarchy controlerIO;
+	@Inject private BackgroundOutputWriter backgroundOutputWriter;
+	@Inject private Map<Class<?>,AttributeConverter<?>> attributeConverters = Collections.emptyMap();
+	@Inject(optional = true) private PlansReplanning plansReplanning = null;
 	private int writePlansInterval ;
 
 	private int writeMoreUntilIteration;
 
+	private final PlansFileFormat plansFileFormat;
+
+	private PopulationSnapshot pendingSnapshot = null;
+
 	@Inject
 	PlansDumpingImpl(ControlerConfigGroup config) {
 		this.writePlansInterval = config.getWritePlansInterval();
 		this.writeMoreUntilIteration = config.getWritePlansUntilIteration() ;
+		this.plansFileFormat = config.getPlansFileFormat();
 	}
 
 	@Override
@@ -72,25 +101,126 @@ final class PlansDumpingImpl implements PlansDumping, BeforeMobsimListener {
 		final boolean earlyIteration = event.getIteration() <= writeMoreUntilIteration ;
 		if ( writingPlansAtAll && (regularWritePlans || earlyIteration) ) {
 			stopwatch.beginOperation("dump all plans");
-			log.info("dumping plans...");
-			final String inputCRS = config.plans().getInputCRS();
-			final String internalCRS = config.global().getCoordinateSystem();
-
-			if ( inputCRS == null ) {
-				new PopulationWriter(population, network).write(controlerIO.getIterationFilename(event.getIteration(), "plans.xml.gz"));
+			final int iteration = event.getIteration();
+			final StreamingPlansReplanningImpl plansStore = StreamingPlansReplanningImpl.getPlansStore(plansReplanning);
+			if ( plansStore != null ) {
+				dumpPlans(plansStore, iteration);
+			} else if ( backgroundOutputWriter.isWritingInBackground() ) {
+				// the writer thread copies the persons one by one, the rest is copied before the plans are changed:
+				final PopulationSnapshot snapshot = new PopulationSnapshot(population);
+				this.pendingSnapshot = snapshot;
+				backgroundOutputWriter.submit("plans of iteration " + iteration, new Runnable() {
+					@Override
+					public void run() {
+						while (snapshot.copyNext()) {
+						}
+						dumpPlans(snapshot.getPopulation(), iteration);
+					}
+				});
+			} else {
+				dumpPlans(population, iteration);
 			}
-			else {
-				log.info( "re-projecting population from "+internalCRS+" back to "+inputCRS+" for export" );
+			stopwatch.endOperation("dump all plans");
+		}
+	}
+
+	@Override
+	public void notifyAfterMobsim(final AfterMobsimEvent event) {
+		// the mobsim does not change the plans, but the scoring and the replanning after it do:
+		if ( this.pendingSnapshot != null ) {
+			this.pendingSnapshot.copyRemaining();
+			this.pendingSnapshot = null;
+		}
+	}
+
+	private void dumpPlans(final Population plans, final int iteration) {
+		log.info("dumping plans...");
+		final String inputCRS = config.plans().getInputCRS();
+		final String internalCRS = config.global().getCoordinateSystem();
 
-				final CoordinateTransformation transformation =
-						TransformationFactory.getCoordinateTransformation(
-								internalCRS,
-								inputCRS );
+		if ( plansFileFormat == PlansFileFormat.binary ) {
+			final BinaryPopulationWriter writer = inputCRS == null ?
+					new BinaryPopulationWriter(plans) :
+					new BinaryPopulationWriter(TransformationFactory.getCoordinateTransformation(internalCRS, inputCRS), plans);
+			writer.putAttributeConverters(attributeConverters);
+			writer.setNumberOfThreads(config.global().getNumberOfThreads());
+			writer.write(controlerIO.getIterationFilename(iteration, "plans.bin"));
+		}
+		else if ( inputCRS == null ) {
+			final PopulationWriter writer = new PopulationWriter(plans, network);
+			writer.putAttributeConverters(attributeConverters);
+			writer.write(controlerIO.getIterationFilename(iteration, "plans.xml.gz"));
+		}
+		else {
+			log.info( "re-projecting population from "+internalCRS+" back to "+inputCRS+" for export" );
 
-				new PopulationWriter(transformation, population, network).write(controlerIO.getIterationFilename(event.getIteration(), "plans.xml.gz"));
+			final CoordinateTransformation transformation =
+					TransformationFactory.getCoordinateTransformation(
+							internalCRS,
+							inputCRS );
+
+			final PopulationWriter writer = new PopulationWriter(transformation, plans, network);
+			writer.putAttributeConverters(attributeConverters);
+			writer.write(controlerIO.getIterationFilename(iteration, "plans.xml.gz"));
+		}
+		log.info("finished plans dump.");
+	}
+
+	private void dumpPlans(final StreamingPlansReplanningImpl plansStore, final int iteration) {
+		log.info("dumping plans...");
+		final String inputCRS = config.plans().getInputCRS();
+		final CoordinateTransformation transformation = inputCRS == null ?
+				new IdentityTransformation() :
+				TransformationFactory.getCoordinateTransformation(config.global().getCoordinateSystem(), inputCRS);
+		if ( plansFileFormat == PlansFileFormat.binary ) {
+			plansStore.writeAllPlans(transformation, attributeConverters, null, controlerIO.getIterationFilename(iteration, "plans.bin"));
+		} else {
+			plansStore.writeAllPlans(transformation, attributeConverters, controlerIO.getIterationFilename(iteration, "plans.xml.gz"), null);
+		}
+		log.info("finished plans dump.");
+	}
+
+	/**
+	 * A copy of the population that is filled person by person, either by the writer thread with {@link #copyNext()} or,
+	 * for the persons it has not reached yet, by the controler thread with {@link #copyRemaining()}.
+	 */
+	private final class PopulationSnapshot {
+		private final Population snapshot;
+		private final Iterator<? extends Person> persons;
+
+		PopulationSnapshot(final Population original) {
+			this.snapshot = PopulationUtils.createPopulation(config, network);
+			this.snapshot.setName(original.getName());
+			AttributesUtils.copyTo(original.getAttributes(), this.snapshot.getAttributes());
+			this.persons = original.getPersons().values().iterator();
+		}
+
+		synchronized boolean copyNext() {
+			if (!this.persons.hasNext()) {
+				return false;
 			}
-			log.info("finished plans dump.");
-			stopwatch.endOperation("dump all plans");
+			final Person person = this.persons.next();
+			final Person copy = this.snapshot.getFactory().createPerson(person.getId());
+			AttributesUtils.copyAttributesFromTo(person, copy);
+			for (Plan plan : person.getPlans()) {
+				final Plan planCopy = this.snapshot.getFactory().createPlan();
+				PopulationUtils.copyFromTo(plan, planCopy);
+				copy.addPlan(planCopy);
+				if (plan == person.getSelectedPlan()) {
+					copy.setSelectedPlan(planCopy);
+				}
+			}
+			this.snapshot.addPerson(copy);
+			return true;
+		}
+
+		synchronized void copyRemaining() {
+			while (copyNext()) {
+			}
+		}
+
+		synchronized Population getPopulation() {
+			return this.snapshot;
 		}
 	}
 
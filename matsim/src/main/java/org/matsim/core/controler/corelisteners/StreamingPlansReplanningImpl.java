@@ -0,0 +1,191 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * StreamingPlansReplanningImpl.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.controler.corelisteners;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+import javax.inject.Provider;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.controler.OutputDirectoryHierarchy;
+import org.matsim.core.controler.events.ReplanningEvent;
+import org.matsim.core.controler.listener.ReplanningListener;
+import org.matsim.core.population.PersonUtils;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.algorithms.PersonAlgorithm;
+import org.matsim.core.population.io.BinaryPopulationWriter;
+import org.matsim.core.population.io.PopulationWriter;
+import org.matsim.core.population.io.StreamingPopulationReader;
+import org.matsim.core.population.io.StreamingPopulationWriter;
+import org.matsim.core.replanning.ReplanningContext;
+import org.matsim.core.replanning.StrategyManager;
+import org.matsim.core.replanning.StreamingReplanning;
+import org.matsim.core.scenario.MutableScenario;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.geometry.CoordinateTransformation;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.utils.objectattributes.AttributeConverter;
+
+import com.google.inject.Inject;
+import com.google.inject.Singleton;
+
+/**
+ * Replaces {@link PlansReplanningImpl} if {@link org.matsim.core.config.groups.StrategyConfigGroup#getStreamingReplanningChunkSize()}
+ * is set.  Only the selected plans, which are needed by the mobsim and the scoring, are kept in the population.  All plans
+ * are kept in a plans file in the output directory, which is streamed through the {@link StrategyManager} by
+ * {@link StreamingReplanning} in every replanning.  The scores of the executed plans are copied into the persons read from
+ * the file before, and the newly selected plans are put into the population after the replanning.
+ * <p></p>
+ * At the first replanning, the population still has all plans; they are written to the file, and the non-selected ones are
+ * removed from the population.  From then on, the plans dumps write the plans from the file, see {@link #writeAllPlans}.
+ */
+@Singleton
+final class StreamingPlansReplanningImpl implements PlansReplanning, ReplanningListener {
+
+	static final String STORE_FILENAME = "replanningStore.xml.gz";
+
+	private final Scenario scenario;
+	private final StrategyManager strategyManager;
+	private final Provider<ReplanningContext> replanningContextProvider;
+	private final OutputDirectoryHierarchy controlerIO;
+	private boolean storeWritten = false;
+
+	@Inject
+	StreamingPlansReplanningImpl(Scenario scenario, StrategyManager strategyManager, Provider<ReplanningContext> replanningContextProvider,
+			OutputDirectoryHierarchy controlerIO) {
+		this.scenario = scenario;
+		this.strategyManager = strategyManager;
+		this.replanningContextProvider = replanningContextProvider;
+		this.controlerIO = controlerIO;
+	}
+
+	@Override
+	public void notifyReplanning(final ReplanningEvent event) {
+		final Population population = this.scenario.getPopulation();
+		final String storeFile = this.controlerIO.getOutputFilename(STORE_FILENAME);
+		final String newStoreFile = this.controlerIO.getTempPath() + "/" + STORE_FILENAME;
+		if (!this.storeWritten) {
+			new PopulationWriter(population).write(storeFile);
+			this.storeWritten = true;
+		}
+
+		StreamingReplanning replanning = new StreamingReplanning(this.scenario, this.strategyManager,
+				this.scenario.getConfig().strategy().getStreamingReplanningChunkSize());
+		replanning.addPreparatoryAlgorithm(new PersonAlgorithm() {
+			@Override
+			public void run(final Person person) {
+				person.getSelectedPlan().setScore(getPersonInPopulation(population, person).getSelectedPlan().getScore());
+			}
+		});
+		replanning.addFinishingAlgorithm(new PersonAlgorithm() {
+			@Override
+			public void run(final Person person) {
+				Person personInPopulation = getPersonInPopulation(population, person);
+				Plan selectedPlan = person.getSelectedPlan();
+				// the plan is now shared with the person from the file, which is discarded after it is written:
+				personInPopulation.addPlan(selectedPlan);
+				personInPopulation.setSelectedPlan(selectedPlan);
+				PersonUtils.removeUnselectedPlans(personInPopulation);
+			}
+		});
+		replanning.run(storeFile, newStoreFile, this.replanningContextProvider.get());
+
+		try {
+			Files.move(new File(newStoreFile).toPath(), new File(storeFile).toPath(), StandardCopyOption.REPLACE_EXISTING);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * @return the streaming replanning, if it is used and has already moved the non-selected plans from the population
+	 * into its file, i.e. from the first replanning on; <code>null</code> otherwise, when the population has all plans.
+	 */
+	static StreamingPlansReplanningImpl getPlansStore(final PlansReplanning plansReplanning) {
+		if (plansReplanning instanceof StreamingPlansReplanningImpl && ((StreamingPlansReplanningImpl) plansReplanning).storeWritten) {
+			return (StreamingPlansReplanningImpl) plansReplanning;
+		}
+		return null;
+	}
+
+	/**
+	 * Writes all plans, streaming them from the file.  The selected plans are taken from the population, as they have been
+	 * executed and scored since the last replanning.
+	 *
+	 * @param transformation from the internal CRS to the CRS in which the files should be written
+	 * @param plansFile the plans file to write in xml, or <code>null</code>
+	 * @param binaryPlansFile the plans file to write in the binary format, or <code>null</code>
+	 */
+	void writeAllPlans(final CoordinateTransformation transformation, final Map<Class<?>, AttributeConverter<?>> attributeConverters,
+			final String plansFile, final String binaryPlansFile) {
+		final Population population = this.scenario.getPopulation();
+		MutableScenario readerScenario = ScenarioUtils.createMutableScenario(this.scenario.getConfig());
+		readerScenario.setNetwork(this.scenario.getNetwork());
+		StreamingPopulationReader reader = new StreamingPopulationReader(readerScenario);
+		reader.addAlgorithm(new PersonAlgorithm() {
+			@Override
+			public void run(final Person person) {
+				PopulationUtils.copyFromTo(getPersonInPopulation(population, person).getSelectedPlan(), person.getSelectedPlan());
+			}
+		});
+		StreamingPopulationWriter writer = null;
+		BinaryPopulationWriter binaryWriter = null;
+		try {
+			if (plansFile != null) {
+				writer = new StreamingPopulationWriter(transformation);
+				writer.putAttributeConverters(attributeConverters);
+				writer.startStreaming(plansFile);
+				reader.addAlgorithm(writer);
+			}
+			if (binaryPlansFile != null) {
+				binaryWriter = new BinaryPopulationWriter(transformation, population);
+				binaryWriter.putAttributeConverters(attributeConverters);
+				binaryWriter.setNumberOfThreads(this.scenario.getConfig().global().getNumberOfThreads());
+				binaryWriter.startStreaming(binaryPlansFile);
+				reader.addAlgorithm(binaryWriter);
+			}
+			reader.readFile(this.controlerIO.getOutputFilename(STORE_FILENAME));
+		} finally {
+			if (writer != null) {
+				writer.closeStreaming();
+			}
+			if (binaryWriter != null) {
+				binaryWriter.closeStreaming();
+			}
+		}
+	}
+
+	private static Person getPersonInPopulation(final Population population, final Person person) {
+		Person personInPopulation = population.getPersons().get(person.getId());
+		if (personInPopulation == null) {
+			throw new IllegalStateException("person " + person.getId() + " from the replanning store is not in the population.");
+		}
+		return personInPopulation;
+	}
+
+}
@@ -0,0 +1,117 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventHandlerCaller.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.events.handler.EventHandler;
+
+/**
+ * Passes an event to the <code>handleEvent</code> method of an event handler.
+ * <p></p>
+ * Instances are created once per event handler method when an event handler is added to an events
+ * manager, using {@link LambdaMetafactory}. The resulting callers are ordinary classes calling the
+ * typed <code>handleEvent</code> method directly, so the JIT can inline them like hand-written code,
+ * without the overhead of {@link Method#invoke(Object, Object...)}. If no caller can be generated
+ * (e.g. because the handler interface is not accessible), a reflection-based caller is used instead.
+ */
+/*package*/ interface EventHandlerCaller {
+
+	void call(EventHandler handler, Event event);
+
+	/**
+	 * @param handlerClass the class of the event handler the caller will be used for
+	 * @param method the <code>handleEvent</code> method of an event handler interface implemented by <code>handlerClass</code>
+	 */
+	static EventHandlerCaller create(final Class<?> handlerClass, final Method method) {
+		Class<?> eventClass = method.getParameterTypes()[0];
+		if (Event.class.isAssignableFrom(eventClass)) {
+			/* First try the method of the concrete handler class, so the generated caller
+			 * can call it with invokevirtual on a single, known receiver type. */
+			try {
+				Method concreteMethod = handlerClass.getMethod(method.getName(), eventClass);
+				if (Modifier.isPublic(handlerClass.getModifiers()) && !handlerClass.isInterface()) {
+					return generate(concreteMethod);
+				}
+			} catch (Throwable e) {
+				// try the interface method below
+			}
+			try {
+				return generate(method);
+			} catch (Throwable e) {
+				Logger.getLogger(EventHandlerCaller.class).info("Could not generate caller for " + method + ", falling back to reflection. Reason: " + e.getMessage());
+			}
+		}
+		return new ReflectiveEventHandlerCaller(method);
+	}
+
+	static EventHandlerCaller generate(final Method method) throws Throwable {
+		MethodHandles.Lookup lookup = MethodHandles.lookup();
+		MethodHandle target = lookup.unreflect(method);
+		CallSite site = LambdaMetafactory.metafactory(lookup, "call",
+				MethodType.methodType(EventHandlerCaller.class),
+				MethodType.methodType(void.class, EventHandler.class, Event.class),
+				target, target.type());
+		return (EventHandlerCaller) site.getTarget().invoke();
+	}
+
+	/*package*/ static final class ReflectiveEventHandlerCaller implements EventHandlerCaller {
+		private final Method method;
+
+		/*package*/ ReflectiveEventHandlerCaller(final Method method) {
+			this.method = method;
+			try {
+				// the handler interface may not be accessible from this package
+				this.method.setAccessible(true);
+			} catch (SecurityException e) {
+				// try to invoke it anyway
+			}
+		}
+
+		@Override
+		public void call(final EventHandler handler, final Event event) {
+			try {
+				this.method.invoke(handler, event);
+			} catch (IllegalAccessException e) {
+				throw new RuntimeException(e);
+			} catch (InvocationTargetException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error) cause;
+				}
+				throw new RuntimeException(cause);
+			}
+		}
+	}
+
+}
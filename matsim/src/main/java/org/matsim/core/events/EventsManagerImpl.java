@@ -20,7 +20,6 @@
 
 package org.matsim.core.events;
 
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -76,6 +75,9 @@ import org.matsim.core.events.handler.EventHandler;
  * <li>(optional) add an appropriate line in callHandlerFast() for speeding
  * up execution!</li>
  * </ol>
+ * Events of types not covered by callHandlerFast() are passed to the handlers using
+ * {@link EventHandlerCaller}s, which are generated when a handler is added and call the
+ * typed <code>handleEvent</code> method directly instead of using reflection.
  *
  * @author dstrippgen
  * @author mrieser
@@ -88,25 +90,34 @@ public final class EventsManagerImpl implements EventsManager {
 
 		protected Class<?> eventklass;
 		protected ArrayList<EventHandler> handlerList = new ArrayList<EventHandler>(5);
+		protected ArrayList<EventHandlerCaller> callerList = new ArrayList<EventHandlerCaller>(5);
 		protected Method method;
 		protected HandlerData(final Class<?> eventklass, final Method method) {
 			this.eventklass = eventklass;
 			this.method = method;
 		}
+		protected void addHandler(final EventHandler handler) {
+			this.handlerList.add(handler);
+			this.callerList.add(EventHandlerCaller.create(handler.getClass(), this.method));
+		}
 		protected void removeHandler(final EventHandler handler) {
-			this.handlerList.remove(handler);
+			int index = this.handlerList.indexOf(handler);
+			if (index >= 0) {
+				this.handlerList.remove(index);
+				this.callerList.remove(index);
+			}
 		}
 	}
 
 	static private class HandlerInfo {
 		protected final Class<?> eventClass;
 		protected final EventHandler eventHandler;
-		protected final Method method;
+		protected final EventHandlerCaller caller;
 
-		protected HandlerInfo(final Class<?> eventClass, final EventHandler eventHandler, final Method method) {
+		protected HandlerInfo(final Class<?> eventClass, final EventHandler eventHandler, final EventHandlerCaller caller) {
 			this.eventClass = eventClass;
 			this.eventHandler = eventHandler;
-			this.method = method;
+			this.caller = caller;
 		}
 	}
 
@@ -114,9 +125,25 @@ public final class EventsManagerImpl implements EventsManager {
 
 	private final Map<Class<?>, HandlerInfo[]> cacheHandlers = new ConcurrentHashMap<Class<?>, HandlerInfo[]>(15);
 
+	private final boolean synchronizeOnHandlers;
+
 	private long counter = 0;
 	private long nextCounterMsg = 1;
 
+	public EventsManagerImpl() {
+		this(true);
+	}
+
+	/**
+	 * @param synchronizeOnHandlers if <code>true</code>, each event handler is locked while an event is passed to it, so
+	 * events can be processed concurrently from several threads. Set this to <code>false</code> only if all events are 
+	 * processed by a single thread at a time and the event handlers do not rely on being locked, e.g. for the per-thread
+	 * events managers of parallel events handling. 
+	 */
+	public EventsManagerImpl(final boolean synchronizeOnHandlers) {
+		this.synchronizeOnHandlers = synchronizeOnHandlers;
+	}
+
 	private HandlerData findHandler(final Class<?> evklass) {
 		for (HandlerData handler : this.handlerData) {
 			if (handler.eventklass == evklass) {
@@ -210,7 +237,7 @@ public final class EventsManagerImpl implements EventsManager {
 						dat = new HandlerData(eventClass, method);
 						this.handlerData.add(dat);
 					}
-					dat.handlerList.add(handler);
+					dat.addHandler(handler);
 				}
 			}
 		}
@@ -218,21 +245,27 @@ public final class EventsManagerImpl implements EventsManager {
 
 	private void computeEvent(final Event event) {
 		for (HandlerInfo info : getHandlersForClass(event.getClass())) {
-			synchronized(info.eventHandler) {
-				if (callHandlerFast(info.eventClass, event, info.eventHandler)) {
-					continue;
-				}
-				try {
-					info.method.invoke(info.eventHandler, event);
-				} catch (IllegalArgumentException | IllegalAccessException e) {
-					throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e);
-				} catch (InvocationTargetException e) {
-					throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e.getCause());
+			if (this.synchronizeOnHandlers) {
+				synchronized(info.eventHandler) {
+					callHandler(info, event);
 				}
+			} else {
+				callHandler(info, event);
 			}
 		}
 	}
 
+	private void callHandler(final HandlerInfo info, final Event event) {
+		if (callHandlerFast(info.eventClass, event, info.eventHandler)) {
+			return;
+		}
+		try {
+			info.caller.call(info.eventHandler, event);
+		} catch (RuntimeException e) {
+			throw new RuntimeException("problem invoking EventHandler " + info.eventHandler.getClass().getCanonicalName() + " for event-class " + info.eventClass.getCanonicalName(), e);
+		}
+	}
+
 	private HandlerInfo[] getHandlersForClass(final Class<?> eventClass) {
 		Class<?> klass = eventClass;
 		HandlerInfo[] cache = this.cacheHandlers.get(eventClass);
@@ -245,8 +278,8 @@ public final class EventsManagerImpl implements EventsManager {
 		while (klass != Object.class) {
 			HandlerData dat = findHandler(klass);
 			if (dat != null) {
-				for(EventHandler handler: dat.handlerList) {
-					info.add(new HandlerInfo(klass, handler, dat.method));
+				for (int i = 0; i < dat.handlerList.size(); i++) {
+					info.add(new HandlerInfo(klass, dat.handlerList.get(i), dat.callerList.get(i)));
 				}
 			}
 			klass = klass.getSuperclass();
@@ -255,8 +288,8 @@ public final class EventsManagerImpl implements EventsManager {
 		for (Class<?> intfc : getAllInterfaces(eventClass)) {
 			HandlerData dat = findHandler(intfc);
 			if (dat != null) {
-				for(EventHandler handler: dat.handlerList) {
-					info.add(new HandlerInfo(intfc, handler, dat.method));
+				for (int i = 0; i < dat.handlerList.size(); i++) {
+					info.add(new HandlerInfo(intfc, dat.handlerList.get(i), dat.callerList.get(i)));
 				}
 			}
 		}
@@ -0,0 +1,272 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventsReaderBinary.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.internal.MatsimReader;
+import org.matsim.core.events.EventsReaderXMLv1.CustomEventMapper;
+import org.matsim.core.events.algorithms.EventWriterBinary;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Reads events files written by {@link EventWriterBinary}. The file is memory-mapped chunk by chunk,
+ * the attribute columns are read directly from the mapped memory.
+ * <p></p>
+ * The events can be filtered by event type and time window. Chunks that contain none of the requested
+ * event types or that lie completely outside of the time window are skipped without being touched,
+ * using the chunk index at the end of the file. Within a chunk, only the columns of the requested
+ * event types are decoded.
+ * <p></p>
+ * The events are created in the same way as by {@link EventsReaderXMLv1}, so custom event mappers work
+ * for both formats.
+ * <p></p>
+ * File layout (all numbers big-endian):
+ * <pre>
+ * header:     int magic, int version
+ * chunk*:     int eventCount, int blockCount, int[eventCount] block of each event, double[eventCount] time,
+ *             blockCount * (int type, int byteLength, int rowCount, int columnCount,
+ *                           columnCount * (int key, byte kind, int[rowCount] dictionary index (-1 = not set) or double[rowCount] value))
+ * dictionary: int count, count * (int byteLength, UTF-8 bytes)
+ * index:      int chunkCount, chunkCount * (long offset, int eventCount, double minTime, double maxTime, int typeCount, int[typeCount] type)
+ * footer:     long dictionaryOffset, long indexOffset, int magic
+ * </pre>
+ * Types and keys are stored as indices into the dictionary.
+ */
+public final class EventsReaderBinary implements MatsimReader {
+
+	private final static Logger log = Logger.getLogger(EventsReaderBinary.class);
+
+	public static final String FILE_EXTENSION = ".events.bin";
+
+	public static final int MAGIC = 0x4d455642; // "MEVB"
+	public static final int VERSION = 1;
+	public static final byte KIND_STRING = 0;
+	public static final byte KIND_DOUBLE = 1;
+
+	private static final int FOOTER_SIZE = 8 + 8 + 4;
+
+	private final EventsReaderXMLv1 delegate;
+	private Set<String> eventTypes = null;
+	private double fromTime = Double.NEGATIVE_INFINITY;
+	private double toTime = Double.POSITIVE_INFINITY;
+
+	public EventsReaderBinary(final EventsManager events) {
+		this.delegate = new EventsReaderXMLv1(events);
+	}
+
+	public void addCustomEventMapper(String eventType, CustomEventMapper<?> cem) {
+		this.delegate.addCustomEventMapper(eventType, cem);
+	}
+
+	/**
+	 * Only events of the given types are read. <code>null</code> reads all events (the default).
+	 */
+	public void setEventTypes(final Collection<String> eventTypes) {
+		this.eventTypes = eventTypes == null ? null : new HashSet<>(eventTypes);
+	}
+
+	/**
+	 * Only events with <code>fromTime &lt;= time &lt;= toTime</code> are read.
+	 */
+	public void setTimeWindow(final double fromTime, final double toTime) {
+		this.fromTime = fromTime;
+		this.toTime = toTime;
+	}
+
+	/**
+	 * Other binary files (e.g. binary populations) often use the same file extension, so binary events
+	 * files are recognized by their magic number instead.
+	 *
+	 * @return <code>true</code> if the file exists and starts with the {@link #MAGIC} number
+	 */
+	public static boolean isBinaryEventsFile(final String filename) {
+		try (DataInputStream in = new DataInputStream(new FileInputStream(filename))) {
+			return in.readInt() == MAGIC;
+		} catch (IOException e) {
+			// also thrown if the file is shorter than the magic number
+			return false;
+		}
+	}
+
+	@Override
+	public void readFile(final String filename) {
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size < 8 + FOOTER_SIZE) {
+				throw new IllegalArgumentException("File " + filename + " is too short to be a binary events file.");
+			}
+			ByteBuffer header = channel.map(MapMode.READ_ONLY, 0, 8);
+			ByteBuffer footer = channel.map(MapMode.READ_ONLY, size - FOOTER_SIZE, FOOTER_SIZE);
+			long dictionaryOffset = footer.getLong();
+			long indexOffset = footer.getLong();
+			if (header.getInt() != MAGIC || footer.getInt() != MAGIC) {
+				throw new IllegalArgumentException("File " + filename + " is not a binary events file or is incomplete.");
+			}
+			int version = header.getInt();
+			if (version != VERSION) {
+				throw new IllegalArgumentException("Binary events file version " + version + " is not supported.");
+			}
+
+			String[] dictionary = readDictionary(channel.map(MapMode.READ_ONLY, dictionaryOffset, indexOffset - dictionaryOffset));
+			boolean[] readType = new boolean[dictionary.length];
+			for (int i = 0; i < dictionary.length; i++) {
+				readType[i] = this.eventTypes == null || this.eventTypes.contains(dictionary[i]);
+			}
+
+			MappedByteBuffer index = channel.map(MapMode.READ_ONLY, indexOffset, size - FOOTER_SIZE - indexOffset);
+			int chunkCount = index.getInt();
+			long[] offsets = new long[chunkCount + 1];
+			boolean[] readChunk = new boolean[chunkCount];
+			int skipped = 0;
+			for (int c = 0; c < chunkCount; c++) {
+				offsets[c] = index.getLong();
+				index.getInt(); // event count
+				double minTime = index.getDouble();
+				double maxTime = index.getDouble();
+				int typeCount = index.getInt();
+				boolean hasType = false;
+				for (int t = 0; t < typeCount; t++) {
+					hasType |= readType[index.getInt()];
+				}
+				readChunk[c] = hasType && maxTime >= this.fromTime && minTime <= this.toTime;
+				if (!readChunk[c]) skipped++;
+			}
+			offsets[chunkCount] = dictionaryOffset;
+
+			for (int c = 0; c < chunkCount; c++) {
+				if (readChunk[c]) {
+					readChunk(channel.map(MapMode.READ_ONLY, offsets[c], offsets[c + 1] - offsets[c]), dictionary, readType);
+				}
+			}
+			log.info("read " + (chunkCount - skipped) + " of " + chunkCount + " chunks from " + filename);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static String[] readDictionary(ByteBuffer buffer) {
+		String[] dictionary = new String[buffer.getInt()];
+		byte[] bytes = new byte[256];
+		for (int i = 0; i < dictionary.length; i++) {
+			int length = buffer.getInt();
+			if (length > bytes.length) bytes = new byte[Math.max(length, bytes.length * 2)];
+			buffer.get(bytes, 0, length);
+			dictionary[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+		}
+		return dictionary;
+	}
+
+	private void readChunk(ByteBuffer buffer, String[] dictionary, boolean[] readType) {
+		int eventCount = buffer.getInt();
+		int blockCount = buffer.getInt();
+		int blocksPosition = 8;
+		int timesPosition = blocksPosition + 4 * eventCount;
+
+		TypeBlock[] blocks = new TypeBlock[blockCount];
+		int position = timesPosition + 8 * eventCount;
+		for (int b = 0; b < blockCount; b++) {
+			int type = buffer.getInt(position);
+			int byteLength = buffer.getInt(position + 4);
+			if (readType[type]) {
+				blocks[b] = new TypeBlock(buffer, position + 8, dictionary[type], dictionary);
+			}
+			position += 8 + byteLength;
+		}
+
+		int[] rows = new int[blockCount];
+		for (int i = 0; i < eventCount; i++) {
+			int b = buffer.getInt(blocksPosition + 4 * i);
+			int row = rows[b]++;
+			TypeBlock block = blocks[b];
+			if (block == null) {
+				continue;
+			}
+			double time = buffer.getDouble(timesPosition + 8 * i);
+			if (time < this.fromTime || time > this.toTime) {
+				continue;
+			}
+			this.delegate.startEvent(block.getAttributes(buffer, time, row, dictionary));
+		}
+	}
+
+	private static class TypeBlock {
+		private final String type;
+		private final String[] keys;
+		private final byte[] kinds;
+		private final int[] positions;
+		private final AttributesImpl attributes = new AttributesImpl();
+
+		TypeBlock(ByteBuffer buffer, int position, String type, String[] dictionary) {
+			this.type = type;
+			int rowCount = buffer.getInt(position);
+			int columnCount = buffer.getInt(position + 4);
+			this.keys = new String[columnCount];
+			this.kinds = new byte[columnCount];
+			this.positions = new int[columnCount];
+			int p = position + 8;
+			for (int c = 0; c < columnCount; c++) {
+				this.keys[c] = dictionary[buffer.getInt(p)];
+				this.kinds[c] = buffer.get(p + 4);
+				this.positions[c] = p + 5;
+				p += 5 + rowCount * (this.kinds[c] == KIND_DOUBLE ? 8 : 4);
+			}
+		}
+
+		AttributesImpl getAttributes(ByteBuffer buffer, double time, int row, String[] dictionary) {
+			AttributesImpl atts = this.attributes;
+			atts.clear();
+			atts.addAttribute("", Event.ATTRIBUTE_TIME, Event.ATTRIBUTE_TIME, "CDATA", Double.toString(time));
+			atts.addAttribute("", Event.ATTRIBUTE_TYPE, Event.ATTRIBUTE_TYPE, "CDATA", this.type);
+			for (int c = 0; c < this.keys.length; c++) {
+				String value;
+				if (this.kinds[c] == KIND_DOUBLE) {
+					value = Double.toString(buffer.getDouble(this.positions[c] + 8 * row));
+				} else {
+					int index = buffer.getInt(this.positions[c] + 4 * row);
+					if (index < 0) {
+						continue;
+					}
+					value = dictionary[index];
+				}
+				atts.addAttribute("", this.keys[c], this.keys[c], "CDATA", value);
+			}
+			return atts;
+		}
+	}
+
+}
@@ -67,6 +67,7 @@ public final class ParallelEventsManagerImpl implements EventsManager {
 	private ProcessEventThread[] eventsProcessThread = null;
 	private Thread[] threads = null;
 	private int numberOfAddedEventsHandler = 0;
+	private boolean synchronizeOnHandlers = true;
 	private final AtomicBoolean hadException = new AtomicBoolean(false);
 	private final ExceptionHandler uncaughtExceptionHandler = new ExceptionHandler(hadException);
 
@@ -86,6 +87,9 @@ public final class ParallelEventsManagerImpl implements EventsManager {
 		if (config.parallelEventHandling().getEstimatedNumberOfEvents() != null) {
 			preInputBufferMaxLength = (int) (config.parallelEventHandling().getEstimatedNumberOfEvents() / 10);
 		}
+		if (config.parallelEventHandling().getSynchronizeOnHandlers() != null) {
+			this.synchronizeOnHandlers = config.parallelEventHandling().getSynchronizeOnHandlers();
+		}
 		init(config.parallelEventHandling().getNumberOfThreads());
 	}
 
@@ -165,7 +169,7 @@ public final class ParallelEventsManagerImpl implements EventsManager {
 		this.threads = new Thread[numberOfThreads];
 		// the additional 1 is for the simulation barrier
 		for (int i = 0; i < numberOfThreads; i++) {
-			events[i] = (EventsManagerImpl) EventsUtils.createEventsManager();
+			events[i] = new EventsManagerImpl(this.synchronizeOnHandlers);
 		}
 	}
 
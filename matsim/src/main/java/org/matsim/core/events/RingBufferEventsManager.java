@@ -0,0 +1,516 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RingBufferEventsManager.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.inject.Inject;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.groups.ParallelEventHandlingConfigGroup;
+import org.matsim.core.config.groups.ParallelEventHandlingConfigGroup.WaitStrategy;
+import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.gbl.Gbl;
+
+/**
+ * An EventsManager that hands the events to its processing threads through a ring buffer.
+ * <p></p>
+ * All events are written into one pre-allocated array. Each processing thread owns a subset of the
+ * event handlers and reads all events from the ring buffer, following its own sequence number. A
+ * processing thread always takes all events that are available in one go. It publishes its
+ * progress with a volatile write after each event, so producers waiting for free slots can
+ * continue early, but only wakes up a waiting producer once per batch. Events can be
+ * created by several threads at the same time (e.g. by the QNetsimEngine threads): a producer
+ * claims a slot with a single atomic increment and marks it as published afterwards; it only has
+ * to wait if the slowest processing thread is a full ring buffer behind.
+ * <p></p>
+ * Event handlers may create events as well. As a processing thread must never wait for itself or
+ * for another processing thread, such events are put into an overflow queue if the ring buffer is
+ * full. The overflow queue is moved into the ring buffer by the next producer that is not a
+ * processing thread, at the latest by {@link #afterSimStep(double)} or {@link #finishProcessing()}.
+ * <p></p>
+ * If <code>syncOnTimeSteps</code> is set, {@link #afterSimStep(double)} waits until all events of
+ * the time step (including events created by event handlers) have been processed. Otherwise the
+ * mobsim only waits at the end of the iteration. How the threads wait is defined by the
+ * {@link WaitStrategy}.
+ * <p></p>
+ * Usage via config.xml:
+ *
+ * <pre>
+ * &lt;module name="parallelEventHandling"&gt;
+ *  &lt;param name="numberOfThreads" value="4" /&gt;
+ *  &lt;param name="useRingBuffer" value="true" /&gt;
+ *  &lt;param name="waitStrategy" value="yielding" /&gt;
+ * &lt;/module&gt;
+ * </pre>
+ */
+public final class RingBufferEventsManager implements EventsManager {
+
+	private final static Logger log = Logger.getLogger(RingBufferEventsManager.class);
+
+	/*
+	 * With the blocking wait strategy, processing threads are only woken up after this many events
+	 * (or at the end of a time step), not for every single event.
+	 */
+	private final static int MAX_SIGNAL_INTERVAL = 512;
+	private final static int SPIN_TRIES = 100;
+	private final static int BUSY_SPIN_YIELD_MASK = 0xFFF;
+	private final static long PARK_NANOS = 1000000;
+
+	private final int numOfThreads;
+	private final boolean syncOnTimeSteps;
+	private final boolean synchronizeOnHandlers;
+	private final WaitStrategy waitStrategy;
+
+	private final int bufferSize;
+	private final int mask;
+	private final int indexShift;
+	private final int signalMask;
+
+	private final EventsManager singleThreadEventsManager;
+	private final List<EventHandler> eventHandlers = new ArrayList<>();
+
+	private Event[] ringBuffer;
+	private AtomicIntegerArray publishedRounds;
+	private final AtomicLong claimSequence = new AtomicLong(-1);
+	private volatile long gatingSequenceCache = -1;
+	private volatile Thread waitingProducer = null;
+	private final Queue<Event> overflow = new ConcurrentLinkedQueue<>();
+
+	private EventsManagerImpl[] eventsManagers;
+	private ProcessEventsRunnable[] runnables;
+	private Thread[] threads;
+
+	private volatile boolean parallelMode = false;
+	private volatile boolean halt = false;
+	private boolean locked = false;
+
+	private final AtomicReference<Throwable> hadException = new AtomicReference<>();
+
+	@Inject
+	RingBufferEventsManager(ParallelEventHandlingConfigGroup config) {
+		this(config.getNumberOfThreads() != null ? config.getNumberOfThreads() : 1,
+				config.getSynchronizeOnSimSteps() != null ? config.getSynchronizeOnSimSteps() : true,
+				config.getSynchronizeOnHandlers() != null ? config.getSynchronizeOnHandlers() : true,
+				config.getWaitStrategy(), config.getRingBufferSize());
+	}
+
+	public RingBufferEventsManager(final int numOfThreads, final boolean syncOnTimeSteps) {
+		this(numOfThreads, syncOnTimeSteps, true, WaitStrategy.blocking, 65536);
+	}
+
+	/**
+	 * @param ringBufferSize the number of events the ring buffer can hold; is rounded up to the next power of two
+	 */
+	public RingBufferEventsManager(final int numOfThreads, final boolean syncOnTimeSteps, final boolean synchronizeOnHandlers,
+			final WaitStrategy waitStrategy, final int ringBufferSize) {
+		if (numOfThreads < 1) throw new IllegalArgumentException("number of threads must be at least 1, but is " + numOfThreads);
+		if (ringBufferSize < 1) throw new IllegalArgumentException("ring buffer size must be at least 1, but is " + ringBufferSize);
+		this.numOfThreads = numOfThreads;
+		this.syncOnTimeSteps = syncOnTimeSteps;
+		this.synchronizeOnHandlers = synchronizeOnHandlers;
+		this.waitStrategy = waitStrategy;
+
+		int size = Math.max(2, Integer.highestOneBit(ringBufferSize - 1) << 1);
+		this.bufferSize = size;
+		this.mask = size - 1;
+		this.indexShift = Integer.numberOfTrailingZeros(size);
+		this.signalMask = Math.min(MAX_SIGNAL_INTERVAL, Math.max(1, size / 4)) - 1;
+
+		this.singleThreadEventsManager = new EventsManagerImpl();
+		log.info("number of threads=" + numOfThreads + ", ring buffer size=" + size + ", wait strategy=" + waitStrategy);
+	}
+
+	@Override
+	public void processEvent(final Event event) {
+		if (!this.parallelMode) {
+			this.singleThreadEventsManager.processEvent(event);
+			return;
+		}
+
+		if (isProcessingThread()) {
+			processEventFromHandler(event);
+			return;
+		}
+		if (!this.overflow.isEmpty()) drainOverflow();
+		publish(event);
+	}
+
+	/**
+	 * Events created by event handlers must never wait for free slots, as the processing thread would
+	 * wait for itself or for another processing thread that might in turn wait for it. The overflow
+	 * queue also keeps the events of a handler in order once one of them could not be put into the
+	 * ring buffer.
+	 */
+	private void processEventFromHandler(final Event event) {
+		if (this.overflow.isEmpty()) {
+			long sequence = tryClaim();
+			if (sequence >= 0) {
+				write(sequence, event);
+				return;
+			}
+		}
+		this.overflow.add(event);
+	}
+
+	/**
+	 * Moves the events created by event handlers into the ring buffer. The events are only removed from
+	 * the overflow queue after they were published, so handlers keep adding to the queue until it is empty.
+	 *
+	 * @return <code>false</code> if the events processing crashed while waiting
+	 */
+	private boolean drainOverflow() {
+		synchronized (this.overflow) {
+			Event event;
+			while ((event = this.overflow.peek()) != null) {
+				if (!publish(event)) return false;
+				this.overflow.poll();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return <code>false</code> if the events processing crashed while waiting for a free slot
+	 */
+	private boolean publish(final Event event) {
+		long sequence = this.claimSequence.incrementAndGet();
+		long wrapPoint = sequence - this.bufferSize;
+		if (wrapPoint > this.gatingSequenceCache && !waitForProcessingThreads(wrapPoint)) {
+			// the events processing crashed, finishProcessing() will report it
+			return false;
+		}
+		write(sequence, event);
+		return true;
+	}
+
+	/**
+	 * @return the claimed sequence number, or <code>-1</code> if the ring buffer is full
+	 */
+	private long tryClaim() {
+		while (true) {
+			long current = this.claimSequence.get();
+			long wrapPoint = current + 1 - this.bufferSize;
+			if (wrapPoint > this.gatingSequenceCache) {
+				long minSequence = getMinimumSequence();
+				if (wrapPoint > minSequence) return -1;
+				this.gatingSequenceCache = minSequence;
+			}
+			if (this.claimSequence.compareAndSet(current, current + 1)) return current + 1;
+		}
+	}
+
+	private void write(final long sequence, final Event event) {
+		int index = (int) sequence & this.mask;
+		this.ringBuffer[index] = event;
+		this.publishedRounds.lazySet(index, (int) (sequence >>> this.indexShift));
+
+		if ((sequence & this.signalMask) == this.signalMask) signalProcessingThreads();
+	}
+
+	private boolean isProcessingThread() {
+		Thread current = Thread.currentThread();
+		for (ProcessEventsRunnable runnable : this.runnables) {
+			if (runnable.thread == current) return true;
+		}
+		return false;
+	}
+
+	@Override
+	public void addHandler(final EventHandler handler) {
+		if (this.locked) throw new RuntimeException("Cannot add an event handler at the moment!");
+
+		this.eventHandlers.add(handler);
+		this.singleThreadEventsManager.addHandler(handler);
+	}
+
+	@Override
+	public void removeHandler(final EventHandler handler) {
+		if (this.parallelMode) log.warn("Removing EventHandler while RingBufferEventsManager is in 'parallel' mode. This is not expected to happen :?");
+
+		this.eventHandlers.remove(handler);
+		this.singleThreadEventsManager.removeHandler(handler);
+
+		if (this.eventsManagers != null) {
+			for (EventsManager eventsManager : this.eventsManagers) eventsManager.removeHandler(handler);
+		}
+	}
+
+	@Override
+	public void resetHandlers(int iteration) {
+		this.singleThreadEventsManager.resetHandlers(iteration);
+	}
+
+	@Override
+	public void initProcessing() {
+		this.locked = true;
+
+		// don't create more threads than we have handlers
+		int numThreads = Math.max(1, Math.min(this.numOfThreads, this.eventHandlers.size()));
+
+		this.eventsManagers = new EventsManagerImpl[numThreads];
+		for (int i = 0; i < numThreads; i++) this.eventsManagers[i] = new EventsManagerImpl(this.synchronizeOnHandlers);
+		for (int i = 0; i < this.eventHandlers.size(); i++) this.eventsManagers[i % numThreads].addHandler(this.eventHandlers.get(i));
+		for (EventsManager eventsManager : this.eventsManagers) eventsManager.initProcessing();
+
+		this.ringBuffer = new Event[this.bufferSize];
+		this.publishedRounds = new AtomicIntegerArray(this.bufferSize);
+		for (int i = 0; i < this.bufferSize; i++) this.publishedRounds.set(i, -1);
+		this.claimSequence.set(-1);
+		this.gatingSequenceCache = -1;
+		this.overflow.clear();
+		this.hadException.set(null);
+		this.halt = false;
+
+		ExceptionHandler uncaughtExceptionHandler = new ExceptionHandler();
+		this.runnables = new ProcessEventsRunnable[numThreads];
+		this.threads = new Thread[numThreads];
+		for (int i = 0; i < numThreads; i++) {
+			this.runnables[i] = new ProcessEventsRunnable(this.eventsManagers[i]);
+			Thread thread = new Thread(this.runnables[i]);
+			thread.setDaemon(true);
+			thread.setUncaughtExceptionHandler(uncaughtExceptionHandler);
+			thread.setName("RingBufferEvents-" + i);
+			this.runnables[i].thread = thread;
+			this.threads[i] = thread;
+		}
+		for (Thread thread : this.threads) thread.start();
+
+		/*
+		 * Enable parallel mode while simulation is running. It is disabled after the simulation in case additional
+		 * events are created afterwards, e.g. money events by the road pricing contrib.
+		 */
+		this.parallelMode = true;
+	}
+
+	@Override
+	public void afterSimStep(double time) {
+		/*
+		 * If an exception occurred, at least one of the events processing threads
+		 * has crashed and would never catch up.
+		 */
+		if (!this.syncOnTimeSteps || this.hadException.get() != null) {
+			return;
+		}
+		waitUntilAllEventsProcessed();
+	}
+
+	/**
+	 * Event handlers might create additional events while we wait. Those have to be processed as well,
+	 * thus check again until no new events were added.
+	 *
+	 * @return <code>false</code> if the events processing crashed while waiting
+	 */
+	private boolean waitUntilAllEventsProcessed() {
+		long target;
+		do {
+			if (!drainOverflow()) return false;
+			target = this.claimSequence.get();
+			signalProcessingThreads();
+			if (!waitForProcessingThreads(target)) return false;
+		} while (target != this.claimSequence.get() || !this.overflow.isEmpty());
+		return true;
+	}
+
+	/*
+	 * In some cases Events are created after this method has been called. To ensure that they are processed in
+	 * real time, we process them not in the parallel threads but in the single threaded events manager.
+	 */
+	@Override
+	public synchronized void finishProcessing() {
+		/*
+		 * Events created by event handlers must be processed before the processing threads stop,
+		 * otherwise they would be lost.
+		 */
+		if (this.hadException.get() == null && waitUntilAllEventsProcessed()) {
+			publish(new LastEventOfIteration(Double.POSITIVE_INFINITY));
+			signalProcessingThreads();
+		} else {
+			this.halt = true;
+		}
+
+		try {
+			for (Thread thread : this.threads) thread.join();
+		} catch (InterruptedException e) {
+			this.hadException.compareAndSet(null, e);
+		}
+
+		for (EventsManager eventsManager : this.eventsManagers) eventsManager.finishProcessing();
+		this.singleThreadEventsManager.finishProcessing();
+
+		this.eventsManagers = null;
+		this.runnables = null;
+		this.threads = null;
+		this.ringBuffer = null;
+		this.publishedRounds = null;
+
+		/*
+		 * Disable parallel mode after the simulation has ended in case additional
+		 * events are created afterwards, e.g. money events by the road pricing contrib.
+		 */
+		this.parallelMode = false;
+		this.locked = false;
+
+		Throwable throwable = this.hadException.get();
+		if (throwable != null) {
+			throw new RuntimeException("Exception while processing events. Cannot guarantee that all events have been fully processed.", throwable);
+		}
+	}
+
+	/**
+	 * Waits until all processing threads have processed the event with the given sequence number.
+	 *
+	 * @return <code>false</code> if the events processing crashed while waiting
+	 */
+	private boolean waitForProcessingThreads(final long sequence) {
+		int tries = 0;
+		while (true) {
+			long minSequence = getMinimumSequence();
+			if (minSequence >= sequence) {
+				this.gatingSequenceCache = minSequence;
+				return true;
+			}
+			if (this.hadException.get() != null) return false;
+			tries = idle(tries, null);
+		}
+	}
+
+	private long getMinimumSequence() {
+		long minSequence = Long.MAX_VALUE;
+		for (ProcessEventsRunnable runnable : this.runnables) {
+			minSequence = Math.min(minSequence, runnable.sequence);
+		}
+		return minSequence;
+	}
+
+	private void signalProcessingThreads() {
+		if (this.waitStrategy != WaitStrategy.blocking) return;
+		for (ProcessEventsRunnable runnable : this.runnables) {
+			if (runnable.parked) LockSupport.unpark(runnable.thread);
+		}
+	}
+
+	/**
+	 * @param runnable the processing thread that waits, or <code>null</code> if a producer waits
+	 */
+	private int idle(int tries, ProcessEventsRunnable runnable) {
+		switch (this.waitStrategy) {
+			case busySpin:
+				// only give up the CPU once in a while, in case there are more threads than cores
+				if ((++tries & BUSY_SPIN_YIELD_MASK) == 0) Thread.yield();
+				return tries;
+			case yielding:
+				if (tries < SPIN_TRIES) return tries + 1;
+				Thread.yield();
+				return tries;
+			case blocking:
+				if (tries < SPIN_TRIES) return tries + 1;
+				if (runnable == null) {
+					this.waitingProducer = Thread.currentThread();
+					LockSupport.parkNanos(this, PARK_NANOS);
+					this.waitingProducer = null;
+				} else {
+					runnable.parked = true;
+					LockSupport.parkNanos(this, PARK_NANOS);
+					runnable.parked = false;
+				}
+				return tries;
+			default:
+				throw new RuntimeException("unknown wait strategy: " + this.waitStrategy);
+		}
+	}
+
+	private class ProcessEventsRunnable implements Runnable {
+
+		private final EventsManager eventsManager;
+		private Thread thread;
+		/** sequence number of the last event processed by this thread */
+		private volatile long sequence = -1;
+		private volatile boolean parked = false;
+
+		public ProcessEventsRunnable(EventsManager eventsManager) {
+			this.eventsManager = eventsManager;
+		}
+
+		@Override
+		public void run() {
+			long next = 0;
+			int tries = 0;
+			while (!halt) {
+				long available = getHighestPublishedSequence(next, claimSequence.get());
+				if (available < next) {
+					tries = idle(tries, this);
+					continue;
+				}
+				tries = 0;
+
+				for (long s = next; s <= available; s++) {
+					Event event = ringBuffer[(int) s & mask];
+					if (event instanceof LastEventOfIteration) {
+						this.sequence = s;
+						wakeWaitingProducer();
+						Gbl.printCurrentThreadCpuTime();
+						return;
+					}
+					this.eventsManager.processEvent(event);
+					// publish the progress after every event, so producers waiting for free slots can continue early
+					this.sequence = s;
+				}
+				next = available + 1;
+				wakeWaitingProducer();
+			}
+		}
+
+		private long getHighestPublishedSequence(long lowerBound, long claimed) {
+			for (long s = lowerBound; s <= claimed; s++) {
+				if (publishedRounds.get((int) s & mask) != (int) (s >>> indexShift)) return s - 1;
+			}
+			return claimed;
+		}
+
+		private void wakeWaitingProducer() {
+			Thread producer = waitingProducer;
+			if (producer != null) LockSupport.unpark(producer);
+		}
+	}	// ProcessEventsRunnable
+
+	private class ExceptionHandler implements UncaughtExceptionHandler {
+		@Override
+		public void uncaughtException(Thread t, Throwable e) {
+			hadException.compareAndSet(null, e);
+			log.error("Thread " + t.getName() + " died with exception while handling events.", e);
+
+			// stop the other processing threads, they cannot catch up anymore
+			halt = true;
+			signalProcessingThreads();
+		}
+	}
+}
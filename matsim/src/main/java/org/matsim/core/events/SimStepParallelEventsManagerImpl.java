@@ -52,6 +52,7 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 	private final static Logger log = Logger.getLogger(SimStepParallelEventsManagerImpl.class);
 	
 	private final int numOfThreads;
+	private final boolean synchronizeOnHandlers;
 	private CyclicBarrier simStepEndBarrier;
 	private CyclicBarrier iterationEndBarrier;
     private ProcessEventsRunnable[] runnables;
@@ -67,7 +68,8 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 
 	@Inject
 	SimStepParallelEventsManagerImpl(ParallelEventHandlingConfigGroup config) {
-		this(config.getNumberOfThreads() != null ? config.getNumberOfThreads() : 1);
+		this(config.getNumberOfThreads() != null ? config.getNumberOfThreads() : 1,
+				config.getSynchronizeOnHandlers() != null ? config.getSynchronizeOnHandlers() : true);
 	}
 
     public SimStepParallelEventsManagerImpl() {
@@ -75,7 +77,16 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 	}
 	
 	public SimStepParallelEventsManagerImpl(int numOfThreads) {
+		this(numOfThreads, true);
+	}
+
+	/**
+	 * @param synchronizeOnHandlers whether the events managers of the processing threads lock the event handlers, 
+	 * see {@link EventsManagerImpl#EventsManagerImpl(boolean)}
+	 */
+	public SimStepParallelEventsManagerImpl(int numOfThreads, boolean synchronizeOnHandlers) {
 		this.numOfThreads = numOfThreads;
+		this.synchronizeOnHandlers = synchronizeOnHandlers;
 		log.info("number of threads=" + numOfThreads );
 		init();
 	}
@@ -89,7 +100,7 @@ class SimStepParallelEventsManagerImpl implements EventsManager {
 		this.delegate = new EventsManagerImpl();
 
 		this.eventsManagers = new EventsManagerImpl[this.numOfThreads];
-		for (int i = 0; i < numOfThreads; i++) this.eventsManagers[i] = new EventsManagerImpl();
+		for (int i = 0; i < numOfThreads; i++) this.eventsManagers[i] = new EventsManagerImpl(this.synchronizeOnHandlers);
 	}
 
 	@Override
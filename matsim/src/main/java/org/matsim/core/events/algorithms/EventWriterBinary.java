@@ -0,0 +1,310 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventWriterBinary.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.algorithms;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.core.events.EventsReaderBinary;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.utils.io.UncheckedIOException;
+
+/**
+ * Writes events into the binary, columnar events format that can be read with {@link EventsReaderBinary}.
+ * <p></p>
+ * Events are collected into chunks of {@value #DEFAULT_CHUNK_SIZE} events. Within a chunk, the events are
+ * grouped by event type, and the attributes of each event type are stored as columns. Attribute values that
+ * are plain numbers are stored as doubles, all other values (mostly ids) are stored as indices into a string
+ * dictionary that is written once at the end of the file, together with an index over all chunks (time range
+ * and event types of each chunk). See {@link EventsReaderBinary} for the exact layout.
+ * <p></p>
+ * The file is not compressed, so that it can be memory-mapped by the reader. The dictionary needs to be kept
+ * in memory until the file is closed.
+ */
+public class EventWriterBinary implements EventWriter, BasicEventHandler {
+
+	public static final int DEFAULT_CHUNK_SIZE = 65536;
+
+	private final DataOutputStream out;
+	private final int chunkSize;
+	private long position = 0;
+
+	private final Map<String, Integer> dictionary = new HashMap<>();
+	private final List<String> dictionaryEntries = new ArrayList<>();
+	private final List<ChunkInfo> chunkInfos = new ArrayList<>();
+
+	private int eventCount = 0;
+	private int[] eventBlocks;
+	private double[] eventTimes;
+	private final Map<String, TypeBlock> typeBlocks = new LinkedHashMap<>();
+
+	public EventWriterBinary(final String outfilename) {
+		this(outfilename, DEFAULT_CHUNK_SIZE);
+	}
+
+	public EventWriterBinary(final String outfilename, final int chunkSize) {
+		this.chunkSize = chunkSize;
+		this.eventBlocks = new int[chunkSize];
+		this.eventTimes = new double[chunkSize];
+		try {
+			this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(outfilename), 1 << 16));
+			this.out.writeInt(EventsReaderBinary.MAGIC);
+			this.out.writeInt(EventsReaderBinary.VERSION);
+			this.position = 8;
+		} catch (FileNotFoundException e) {
+			throw new UncheckedIOException(e);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void reset(final int iter) {
+	}
+
+	@Override
+	public void handleEvent(final Event event) {
+		TypeBlock block = this.typeBlocks.get(event.getEventType());
+		if (block == null) {
+			block = new TypeBlock(this.typeBlocks.size(), event.getEventType());
+			this.typeBlocks.put(event.getEventType(), block);
+		}
+		this.eventBlocks[this.eventCount] = block.index;
+		this.eventTimes[this.eventCount] = event.getTime();
+		this.eventCount++;
+
+		for (Map.Entry<String, String> e : event.getAttributes().entrySet()) {
+			String key = e.getKey();
+			if (e.getValue() == null || Event.ATTRIBUTE_TIME.equals(key) || Event.ATTRIBUTE_TYPE.equals(key)) {
+				continue;
+			}
+			block.getColumn(key).set(block.rowCount, e.getValue());
+		}
+		block.rowCount++;
+
+		if (this.eventCount == this.chunkSize) {
+			writeChunk();
+		}
+	}
+
+	@Override
+	public void closeFile() {
+		try {
+			if (this.eventCount > 0) {
+				writeChunk();
+			}
+
+			long dictionaryOffset = this.position;
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream data = new DataOutputStream(bytes);
+			data.writeInt(this.dictionaryEntries.size());
+			for (String entry : this.dictionaryEntries) {
+				byte[] utf8 = entry.getBytes(StandardCharsets.UTF_8);
+				data.writeInt(utf8.length);
+				data.write(utf8);
+			}
+			long indexOffset = dictionaryOffset + bytes.size();
+			data.writeInt(this.chunkInfos.size());
+			for (ChunkInfo chunk : this.chunkInfos) {
+				data.writeLong(chunk.offset);
+				data.writeInt(chunk.eventCount);
+				data.writeDouble(chunk.minTime);
+				data.writeDouble(chunk.maxTime);
+				data.writeInt(chunk.types.length);
+				for (int type : chunk.types) {
+					data.writeInt(type);
+				}
+			}
+			data.writeLong(dictionaryOffset);
+			data.writeLong(indexOffset);
+			data.writeInt(EventsReaderBinary.MAGIC);
+			data.flush();
+			bytes.writeTo(this.out);
+			this.out.close();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private void writeChunk() {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(this.eventCount * 32);
+			DataOutputStream data = new DataOutputStream(bytes);
+
+			double minTime = Double.POSITIVE_INFINITY;
+			double maxTime = Double.NEGATIVE_INFINITY;
+			data.writeInt(this.eventCount);
+			data.writeInt(this.typeBlocks.size());
+			for (int i = 0; i < this.eventCount; i++) {
+				data.writeInt(this.eventBlocks[i]);
+			}
+			for (int i = 0; i < this.eventCount; i++) {
+				double time = this.eventTimes[i];
+				data.writeDouble(time);
+				minTime = Math.min(minTime, time);
+				maxTime = Math.max(maxTime, time);
+			}
+
+			int[] types = new int[this.typeBlocks.size()];
+			for (TypeBlock block : this.typeBlocks.values()) {
+				types[block.index] = getDictionaryIndex(block.type);
+				writeTypeBlock(data, types[block.index], block);
+			}
+			data.flush();
+
+			this.chunkInfos.add(new ChunkInfo(this.position, this.eventCount, minTime, maxTime, types));
+			bytes.writeTo(this.out);
+			this.position += bytes.size();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.eventCount = 0;
+		this.typeBlocks.clear();
+	}
+
+	private void writeTypeBlock(DataOutputStream data, int typeIndex, TypeBlock block) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream blockData = new DataOutputStream(bytes);
+		blockData.writeInt(block.rowCount);
+		blockData.writeInt(block.columns.size());
+		for (Column column : block.columns.values()) {
+			blockData.writeInt(getDictionaryIndex(column.key));
+			String[] values = column.values;
+			boolean numeric = true;
+			for (int row = 0; row < block.rowCount && numeric; row++) {
+				numeric = isCanonicalDouble(row < values.length ? values[row] : null);
+			}
+			if (numeric) {
+				blockData.writeByte(EventsReaderBinary.KIND_DOUBLE);
+				for (int row = 0; row < block.rowCount; row++) {
+					blockData.writeDouble(Double.parseDouble(values[row]));
+				}
+			} else {
+				blockData.writeByte(EventsReaderBinary.KIND_STRING);
+				for (int row = 0; row < block.rowCount; row++) {
+					String value = row < values.length ? values[row] : null;
+					blockData.writeInt(value == null ? -1 : getDictionaryIndex(value));
+				}
+			}
+		}
+		blockData.flush();
+		data.writeInt(typeIndex);
+		data.writeInt(bytes.size());
+		bytes.writeTo(data);
+	}
+
+	/**
+	 * Only values that are converted back to exactly the same string are stored as doubles, e.g.
+	 * <code>"12.5"</code>, but not <code>"12"</code> (which is typically an id).
+	 */
+	private static boolean isCanonicalDouble(String value) {
+		if (value == null || value.isEmpty()) {
+			return false;
+		}
+		char first = value.charAt(0);
+		if (first != '-' && (first < '0' || first > '9')) {
+			return false;
+		}
+		try {
+			double d = Double.parseDouble(value);
+			return !Double.isNaN(d) && Double.toString(d).equals(value);
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	private int getDictionaryIndex(String value) {
+		Integer index = this.dictionary.get(value);
+		if (index == null) {
+			index = this.dictionaryEntries.size();
+			this.dictionary.put(value, index);
+			this.dictionaryEntries.add(value);
+		}
+		return index;
+	}
+
+	private class TypeBlock {
+		final int index;
+		final String type;
+		final Map<String, Column> columns = new LinkedHashMap<>();
+		int rowCount = 0;
+
+		TypeBlock(int index, String type) {
+			this.index = index;
+			this.type = type;
+		}
+
+		Column getColumn(String key) {
+			Column column = this.columns.get(key);
+			if (column == null) {
+				column = new Column(key, Math.max(16, this.rowCount * 2));
+				this.columns.put(key, column);
+			}
+			return column;
+		}
+	}
+
+	private static class Column {
+		final String key;
+		String[] values;
+
+		Column(String key, int capacity) {
+			this.key = key;
+			this.values = new String[capacity];
+		}
+
+		void set(int row, String value) {
+			if (row >= this.values.length) {
+				this.values = Arrays.copyOf(this.values, Math.max(row + 1, this.values.length * 2));
+			}
+			this.values[row] = value;
+		}
+	}
+
+	private static class ChunkInfo {
+		final long offset;
+		final int eventCount;
+		final double minTime;
+		final double maxTime;
+		final int[] types;
+
+		ChunkInfo(long offset, int eventCount, double minTime, double maxTime, int[] types) {
+			this.offset = offset;
+			this.eventCount = eventCount;
+			this.minTime = minTime;
+			this.maxTime = maxTime;
+			this.types = types;
+		}
+	}
+
+}
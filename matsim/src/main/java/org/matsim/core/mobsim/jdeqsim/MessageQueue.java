@@ -80,6 +80,19 @@ public class MessageQueue {
 		return m;
 	}
 
+	/**
+	 * 
+	 * get the time stamp of the first message in the queue, without removing
+	 * it. As dead messages are not skipped, the next living message may arrive
+	 * later.
+	 *
+	 * @return the time stamp, or Double.POSITIVE_INFINITY if the queue is empty
+	 */
+	public double getNextMessageArrivalTime() {
+		Message m = queue1.peek();
+		return m == null ? Double.POSITIVE_INFINITY : m.getMessageArrivalTime();
+	}
+
 	public boolean isEmpty() {
 		return queue1.size() == 0;
 	}
@@ -28,6 +28,7 @@ import org.matsim.core.mobsim.framework.events.MobsimBeforeCleanupEvent;
 import org.matsim.core.mobsim.framework.events.MobsimBeforeSimStepEvent;
 import org.matsim.core.mobsim.framework.events.MobsimInitializedEvent;
 import org.matsim.core.mobsim.framework.listeners.*;
+import org.matsim.core.mobsim.qsim.interfaces.HasNextTimeOfInterest;
 import org.matsim.core.utils.misc.ClassUtils;
 
 import javax.swing.event.EventListenerList;
@@ -107,4 +108,19 @@ class MobsimListenerManager implements MatsimManager {
         }
 	}
 
+	/**
+	 * @return the earliest next time of interest of the before and after sim step listeners, or
+	 *         <code>Double.NEGATIVE_INFINITY</code> if one of them does not implement {@link HasNextTimeOfInterest}
+	 */
+	double getNextTimeOfInterest() {
+		double next = Double.POSITIVE_INFINITY;
+		for (MobsimBeforeSimStepListener listener : this.listenerList.getListeners(MobsimBeforeSimStepListener.class)) {
+			next = Math.min(next, QSim.getNextTimeOfInterest(listener));
+		}
+		for (MobsimAfterSimStepListener listener : this.listenerList.getListeners(MobsimAfterSimStepListener.class)) {
+			next = Math.min(next, QSim.getNextTimeOfInterest(listener));
+		}
+		return next;
+	}
+
 }
@@ -370,21 +370,15 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 		
 		// console printout:
 		this.printSimLog(now);
-		boolean doContinue =  (this.agentCounter.isLiving() && (this.stopTime > now));
+		boolean doContinue = isContinuing(now);
 		this.events.afterSimStep(now);
 		this.listenerManager.fireQueueSimulationAfterSimStepEvent(now);
 
-		final QSimConfigGroup qsimConfigGroup = this.scenario.getConfig().qsim();
-		if ( qsimConfigGroup.getSimEndtimeInterpretation()==EndtimeInterpretation.onlyUseEndtime ) {
-			if ( now > qsimConfigGroup.getEndTime() ) {
-				doContinue = false ;
-			} else {
-				doContinue = true ;
-			}
-		}
-
 		if (doContinue) {
 			this.simTimer.incrementTime();
+			if (this.scenario.getConfig().qsim().isUsingEventHorizon()) {
+				skipIdleTimeSteps();
+			}
 		}
 		
 		if (analyzeRunTimes) this.qSimInternalTime += System.nanoTime() - this.startTime;
@@ -392,6 +386,36 @@ public final class QSim extends Thread implements VisMobsim, Netsim, ActivityEnd
 		return doContinue;
 	}
 
+	private boolean isContinuing(final double now) {
+		final QSimConfigGroup qsimConfigGroup = this.scenario.getConfig().qsim();
+		if ( qsimConfigGroup.getSimEndtimeInterpretation()==EndtimeInterpretation.onlyUseEndtime ) {
+			return now <= qsimConfigGroup.getEndTime() ;
+		}
+		return this.agentCounter.isLiving() && (this.stopTime > now);
+	}
+
+	/*
+	 * Advances the timer over the time steps in which neither the engines nor the sim step listeners would do anything.
+	 * The timer stops at the first step in which the simulation would end, so that this step is executed as without
+	 * skipping. Incrementing the timer step by step (rather than setting it) keeps the times exactly the same as well.
+	 */
+	private void skipIdleTimeSteps() {
+		double next = this.listenerManager.getNextTimeOfInterest();
+		for (MobsimEngine mobsimEngine : this.mobsimEngines) {
+			next = Math.min(next, getNextTimeOfInterest(mobsimEngine));
+		}
+		while (this.simTimer.getTimeOfDay() < next && isContinuing(this.simTimer.getTimeOfDay())) {
+			this.simTimer.incrementTime();
+		}
+	}
+
+	/*package*/ static double getNextTimeOfInterest(final Object engineOrListener) {
+		if (engineOrListener instanceof HasNextTimeOfInterest) {
+			return ((HasNextTimeOfInterest) engineOrListener).getNextTimeOfInterest();
+		}
+		return Double.NEGATIVE_INFINITY;
+	}
+
 	public void insertAgentIntoMobsim(final MobsimAgent agent) {
 		if (this.agents.containsKey(agent.getId())) {
 			throw new RuntimeException("Agent with same Id (" + agent.getId().toString() + ") already in mobsim; aborting ... ") ;
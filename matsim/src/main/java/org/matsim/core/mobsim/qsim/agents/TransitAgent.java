@@ -177,6 +177,10 @@ public final class TransitAgent implements MobsimDriverPassengerAgent, PlanAgent
 	public final Id<TransitStopFacility> getDesiredDestinationStopId() {
 		return transitAgentDelegate.getDesiredDestinationStopId();
 	}
+	@Override
+	public final Id<TransitLine> getDesiredTransitLineId() {
+		return transitAgentDelegate.getDesiredTransitLineId();
+	}
 
 	@Override
 	public final PlanElement getPreviousPlanElement() {
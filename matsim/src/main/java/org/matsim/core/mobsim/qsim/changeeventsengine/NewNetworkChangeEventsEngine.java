@@ -6,6 +6,7 @@ import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.mobsim.jdeqsim.Message;
 import org.matsim.core.mobsim.jdeqsim.MessageQueue;
 import org.matsim.core.mobsim.qsim.InternalInterface;
+import org.matsim.core.mobsim.qsim.interfaces.HasNextTimeOfInterest;
 import org.matsim.core.mobsim.qsim.interfaces.NetsimLink;
 import org.matsim.core.mobsim.qsim.interfaces.TimeVariantLink;
 import org.matsim.core.network.NetworkChangeEvent;
@@ -14,7 +15,7 @@ import org.matsim.core.network.NetworkUtils;
 import javax.inject.Inject;
 import java.util.Queue;
 
-class NewNetworkChangeEventsEngine implements NetworkChangeEventsEngineI {
+class NewNetworkChangeEventsEngine implements NetworkChangeEventsEngineI, HasNextTimeOfInterest {
 	private static final Logger log = Logger.getLogger( NewNetworkChangeEventsEngine.class ) ;
 
 	private final MessageQueue messageQueue;
@@ -103,4 +104,10 @@ class NewNetworkChangeEventsEngine implements NetworkChangeEventsEngineI {
 	public void doSimStep(double time) {
 
 	}
+
+	@Override
+	public double getNextTimeOfInterest() {
+		// the change events are handled by the message queue, which knows its own time of interest
+		return Double.POSITIVE_INFINITY;
+	}
 }
@@ -0,0 +1,41 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * HasNextTimeOfInterest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.interfaces;
+
+/**
+ * Implemented by {@link MobsimEngine}s and sim step listeners that know when they will have something to do next.
+ * If all engines and sim step listeners of the QSim implement this interface, and
+ * {@link org.matsim.core.config.groups.QSimConfigGroup#isUsingEventHorizon()} is set, the QSim does not execute the
+ * time steps before the earliest of these times, as nothing would happen in them anyway.
+ */
+public interface HasNextTimeOfInterest {
+
+	/**
+	 * Called after a time step. The answer must not be later than the first time at which the engine or listener would
+	 * change anything if it was called in every time step, assuming that nobody else hands agents or vehicles to it
+	 * before (if somebody else does, that somebody has a time of interest itself).
+	 *
+	 * @return the earliest time at which something will happen, <code>Double.NEGATIVE_INFINITY</code> if the next time
+	 *         step is needed anyway, or <code>Double.POSITIVE_INFINITY</code> if nothing is scheduled.
+	 */
+	double getNextTimeOfInterest();
+
+}
@@ -41,6 +41,16 @@ public class SteppableScheduler extends Scheduler implements Steppable {
         finished = true; // queue has run dry.
     }
 
+    /**
+     * @return the earliest time at which a message may have to be handled in {@link #doSimStep(double)}
+     */
+    public double getNextMessageArrivalTime() {
+        if (lookahead != null) {
+            return lookahead.getMessageArrivalTime();
+        }
+        return queue.getNextMessageArrivalTime();
+    }
+
     public boolean isFinished() {
         return finished;
     }
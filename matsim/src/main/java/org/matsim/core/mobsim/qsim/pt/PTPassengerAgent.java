@@ -67,6 +67,17 @@ public interface PTPassengerAgent extends PassengerAgent {
 	
 	public Id<TransitStopFacility> getDesiredDestinationStopId();
 
+	/**
+	 * Asks a passenger which is departing on a transit leg about the line it wants to use. If a line is returned, the
+	 * passenger must not want to enter vehicles of any other line (see {@link #getEnterTransitRoute(TransitLine, TransitRoute, List, TransitVehicle)}),
+	 * so the {@link TransitStopAgentTracker} may only offer it vehicles of that line.
+	 *
+	 * @return The transit line id, or <code>null</code> if the passenger may enter any line.
+	 */
+	public default Id<TransitLine> getDesiredTransitLineId() {
+		return null;
+	}
+
 	/**
 	 * @return a statistical weight, how many "real" agents this agent represents, e.g. "5.0" if you simulate a 20%-sample.
 	 */
@@ -37,6 +37,7 @@ import org.matsim.core.mobsim.framework.MobsimAgent;
 import org.matsim.core.mobsim.qsim.InternalInterface;
 import org.matsim.core.mobsim.qsim.QSim;
 import org.matsim.core.mobsim.qsim.interfaces.DepartureHandler;
+import org.matsim.core.mobsim.qsim.interfaces.HasNextTimeOfInterest;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimEngine;
 import org.matsim.pt.ReconstructingUmlaufBuilder;
 import org.matsim.pt.Umlauf;
@@ -51,7 +52,7 @@ import javax.inject.Inject;
  * @author mrieser
  * @author mzilske
  */
-public class TransitQSimEngine implements  DepartureHandler, MobsimEngine, AgentSource {
+public class TransitQSimEngine implements  DepartureHandler, MobsimEngine, AgentSource, HasNextTimeOfInterest {
 
 
 	private Collection<MobsimAgent> ptDrivers;
@@ -90,7 +91,8 @@ public class TransitQSimEngine implements  DepartureHandler, MobsimEngine, Agent
 	public TransitQSimEngine(QSim queueSimulation) {
 		this.qSim = queueSimulation;
 		this.schedule = queueSimulation.getScenario().getTransitSchedule();
-		this.agentTracker = new TransitStopAgentTracker(this.qSim.getEventsManager());
+		this.agentTracker = new TransitStopAgentTracker(this.qSim.getEventsManager(),
+				queueSimulation.getScenario().getConfig().qsim().isIndexingWaitingPassengersByLine());
 	}
 
 	// For tests (which create an Engine, and externally create Agents as well).
@@ -211,6 +213,12 @@ public class TransitQSimEngine implements  DepartureHandler, MobsimEngine, Agent
 		// Nothing to do here.
 	}
 
+	@Override
+	public double getNextTimeOfInterest() {
+		// the transit drivers depart from the ActivityEngine, and the stops are handled by the QNetsimEngine
+		return Double.POSITIVE_INFINITY;
+	}
+
 	@Override
 	public void insertAgentsIntoMobsim() {
 		ptDrivers = createVehiclesAndDriversWithUmlaeufe();
@@ -21,9 +21,11 @@
 package org.matsim.core.mobsim.qsim.pt;
 
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.log4j.Logger;
@@ -32,9 +34,19 @@ import org.matsim.core.api.experimental.events.AgentWaitingForPtEvent;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.mobsim.qsim.AgentTracker;
 import org.matsim.facilities.Facility;
+import org.matsim.pt.transitSchedule.api.TransitLine;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 
 /**
+ * Keeps track of the agents waiting at transit stops. The stops are handled by the QNetsimEngine, possibly in several
+ * threads, while agents may start waiting at a stop from any thread, so changes to the agents at each stop are guarded
+ * by their own lock. The agents are kept in copy-on-write lists, so vehicles read them without locking or copying.
+ * <p></p>
+ * If <code>indexingByLine</code> is set, the agents at a stop are additionally grouped by the line they want to use
+ * (see {@link PTPassengerAgent#getDesiredTransitLineId()}), so a vehicle only asks the agents waiting for its own line
+ * instead of all agents at the stop. Agents without a desired line are asked by every vehicle, in the order in which
+ * all agents arrived at the stop.
+ *
  * @author mrieser
  */
 public class TransitStopAgentTracker implements AgentTracker {
@@ -42,22 +54,30 @@ public class TransitStopAgentTracker implements AgentTracker {
 	private final static Logger log = Logger.getLogger(TransitStopAgentTracker.class);
 	
 	private final EventsManager events;
-	private final Map<Id<TransitStopFacility>, List<PTPassengerAgent>> agentsAtStops = new ConcurrentHashMap<>();
+	private final boolean indexingByLine;
+	private final ConcurrentMap<Id<TransitStopFacility>, WaitingAgents> agentsAtStops = new ConcurrentHashMap<>();
+	private final Map<Id<TransitStopFacility>, List<PTPassengerAgent>> allAgentsAtStops = new ConcurrentHashMap<>();
 
 	public TransitStopAgentTracker(final EventsManager events) {
+		this(events, false);
+	}
+
+	public TransitStopAgentTracker(final EventsManager events, final boolean indexingByLine) {
 		this.events = events;
+		this.indexingByLine = indexingByLine;
 	}
 	
 	public void addAgentToStop(final double now, final PTPassengerAgent agent, final Id<TransitStopFacility> stopId) {
 		if (stopId == null) {
 			throw new NullPointerException("stop must not be null.");
 		}
-		List<PTPassengerAgent> agents = this.agentsAtStops.get(stopId);
-		if (agents == null) {
-			agents = new CopyOnWriteArrayList<>();// TODO check again. this might turn out to be slow, but we likely need something thread safe here. marcel/oct2014 
-			this.agentsAtStops.put(stopId, agents);
-		}
-		if ( !agents.add(agent) ) {
+		WaitingAgents agents = this.agentsAtStops.computeIfAbsent(stopId, id -> {
+			WaitingAgents waitingAgents = new WaitingAgents(this.indexingByLine);
+			this.allAgentsAtStops.put(id, waitingAgents.getAgents(null));
+			return waitingAgents;
+		});
+		Id<TransitLine> lineId = this.indexingByLine ? agent.getDesiredTransitLineId() : null;
+		if ( !agents.add(agent, lineId) ) {
 			log.error("did NOT add agent " + agent.getId() + " since it was already there.");
 		}
 		Id<TransitStopFacility> destinationStopId = agent.getDesiredDestinationStopId();
@@ -68,7 +88,7 @@ public class TransitStopAgentTracker implements AgentTracker {
 		if (stopId == null) {
 			throw new NullPointerException("stopId must not be null.");
 		}
-		List<PTPassengerAgent> agents = this.agentsAtStops.get(stopId);
+		WaitingAgents agents = this.agentsAtStops.get(stopId);
 		if (agents != null) {
 			if (!agents.remove(agent)) {
 				log.error("Agent " + agent.getId() + " could not be removed from waiting at stop " + stopId);
@@ -78,16 +98,100 @@ public class TransitStopAgentTracker implements AgentTracker {
 		}
 	}
 
+	/**
+	 * @return the agents waiting at the stop, in the order of their arrival
+	 */
 	@Override
 	public List<PTPassengerAgent> getAgentsAtFacility(final Id<? extends Facility> stopId) {
-		List<PTPassengerAgent> agents = this.agentsAtStops.get(stopId);
+		WaitingAgents agents = this.agentsAtStops.get(stopId);
+		if (agents == null) {
+			return Collections.emptyList();
+		}
+		return agents.getAgents(null);
+	}
+
+	/**
+	 * @return the agents waiting at the stop which may want to enter a vehicle of the line, in the order of their
+	 * arrival. Without the index by line, these are all agents at the stop.
+	 */
+	public List<PTPassengerAgent> getAgentsAtFacility(final Id<? extends Facility> stopId, final Id<TransitLine> lineId) {
+		WaitingAgents agents = this.agentsAtStops.get(stopId);
 		if (agents == null) {
 			return Collections.emptyList();
 		}
-		return Collections.unmodifiableList(agents);
+		return agents.getAgents(lineId);
 	}
 
 	public Map<Id<TransitStopFacility>, List<PTPassengerAgent>> getAgentsAtStop() {
-		return this.agentsAtStops;
+		return Collections.unmodifiableMap(this.allAgentsAtStops);
 	}
+
+	/**
+	 * The agents at a stop. With the index by line, agents without a desired line are also added to the list of every
+	 * line, so the list of a line holds all agents a vehicle of that line has to ask, in the order of their arrival.
+	 */
+	private static final class WaitingAgents {
+		private final boolean indexingByLine;
+		private final List<PTPassengerAgent> agents = new CopyOnWriteArrayList<>();
+		private final List<PTPassengerAgent> agentsWithoutLine = new CopyOnWriteArrayList<>();
+		private final Map<Id<TransitLine>, List<PTPassengerAgent>> agentsByLine = new ConcurrentHashMap<>();
+		// the line each agent waits for, or null
+		private final Map<PTPassengerAgent, Id<TransitLine>> lines = new HashMap<>();
+
+		WaitingAgents(final boolean indexingByLine) {
+			this.indexingByLine = indexingByLine;
+		}
+
+		synchronized boolean add(final PTPassengerAgent agent, final Id<TransitLine> lineId) {
+			if (this.lines.containsKey(agent)) {
+				return false;
+			}
+			this.lines.put(agent, lineId);
+			this.agents.add(agent);
+			if (!this.indexingByLine) {
+				return true;
+			}
+			if (lineId == null) {
+				this.agentsWithoutLine.add(agent);
+				for (List<PTPassengerAgent> agentsOfLine : this.agentsByLine.values()) {
+					agentsOfLine.add(agent);
+				}
+			} else {
+				this.agentsByLine.computeIfAbsent(lineId, id -> new CopyOnWriteArrayList<>(this.agentsWithoutLine)).add(agent);
+			}
+			return true;
+		}
+
+		synchronized boolean remove(final PTPassengerAgent agent) {
+			if (!this.lines.containsKey(agent)) {
+				return false;
+			}
+			Id<TransitLine> lineId = this.lines.remove(agent);
+			this.agents.remove(agent);
+			if (!this.indexingByLine) {
+				return true;
+			}
+			if (lineId == null) {
+				this.agentsWithoutLine.remove(agent);
+				for (List<PTPassengerAgent> agentsOfLine : this.agentsByLine.values()) {
+					agentsOfLine.remove(agent);
+				}
+			} else {
+				this.agentsByLine.get(lineId).remove(agent);
+			}
+			return true;
+		}
+
+		/**
+		 * @param lineId <code>null</code> for all agents
+		 * @return an unmodifiable view of the agents, without copying them
+		 */
+		List<PTPassengerAgent> getAgents(final Id<TransitLine> lineId) {
+			if (lineId == null || !this.indexingByLine) {
+				return Collections.unmodifiableList(this.agents);
+			}
+			return Collections.unmodifiableList(this.agentsByLine.getOrDefault(lineId, this.agentsWithoutLine));
+		}
+	}
+
 }
@@ -0,0 +1,92 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ActiveNetElementList.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The active nodes or links of one of the runners of the {@link QNetsimEngine}, in the order of their activation,
+ * stored in a plain array. In contrast to a LinkedList or ConcurrentLinkedQueue, activating an element does not
+ * allocate anything (once the array is large enough), and the elements are iterated without following pointers.
+ * <p></p>
+ * The runner processes the elements with {@link #get(int)}, keeps the ones that stay active with
+ * {@link #set(int, Object)} at the front, and then cuts off the rest with {@link #truncate(int)}. This keeps the
+ * order of the remaining elements. Elements must not be added while they are processed, which the runner ensures
+ * anyway.
+ */
+public final class ActiveNetElementList<T> {
+
+	private Object[] elements;
+	private final AtomicInteger size = new AtomicInteger(0);
+
+	public ActiveNetElementList(final int initialCapacity) {
+		this.elements = new Object[Math.max(initialCapacity, 1)];
+	}
+
+	/**
+	 * Adds an element, growing the array if needed. Must not be called concurrently.
+	 */
+	public void add(final T element) {
+		int index = this.size.get();
+		if (index == this.elements.length) {
+			this.elements = Arrays.copyOf(this.elements, this.elements.length * 2);
+		}
+		this.elements[index] = element;
+		this.size.set(index + 1);
+	}
+
+	/**
+	 * Adds an element. May be called concurrently from several threads, but never grows the array, so the capacity
+	 * must suffice for all elements that can be active at the same time.
+	 */
+	public void addConcurrently(final T element) {
+		int index = this.size.getAndIncrement();
+		if (index >= this.elements.length) {
+			this.size.decrementAndGet();
+			throw new IllegalStateException("More than " + this.elements.length + " active elements, which is the capacity of this list.");
+		}
+		this.elements[index] = element;
+	}
+
+	@SuppressWarnings("unchecked")
+	public T get(final int index) {
+		return (T) this.elements[index];
+	}
+
+	public void set(final int index, final T element) {
+		this.elements[index] = element;
+	}
+
+	/**
+	 * Removes all elements from the given index on.
+	 */
+	public void truncate(final int newSize) {
+		int oldSize = this.size.get();
+		Arrays.fill(this.elements, newSize, oldSize, null);
+		this.size.set(newSize);
+	}
+
+	public int size() {
+		return this.size.get();
+	}
+
+}
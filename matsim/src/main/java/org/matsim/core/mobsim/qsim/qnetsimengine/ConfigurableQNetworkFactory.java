@@ -49,6 +49,7 @@ public final class ConfigurableQNetworkFactory extends QNetworkFactory {
 	private NetsimInternalInterface netsimEngine ;
 	private LinkSpeedCalculator linkSpeedCalculator = new DefaultLinkSpeedCalculator() ;
 	private TurnAcceptanceLogic turnAcceptanceLogic = new DefaultTurnAcceptanceLogic() ;
+	private boolean usingCompactQueues = false ;
 
 	public ConfigurableQNetworkFactory( EventsManager events, Scenario scenario ) {
 		this.events = events;
@@ -71,6 +72,7 @@ public final class ConfigurableQNetworkFactory extends QNetworkFactory {
 	@Override
 	QLinkI createNetsimLink(final Link link, final QNodeI toQueueNode) {
 		QueueWithBuffer.Builder laneFactory = new QueueWithBuffer.Builder(context) ;
+		laneFactory.setUsingCompactQueues(usingCompactQueues);
 
 		QLinkImpl.Builder linkBuilder = new QLinkImpl.Builder(context, netsimEngine) ;
 		linkBuilder.setLaneFactory(laneFactory);
@@ -92,4 +94,12 @@ public final class ConfigurableQNetworkFactory extends QNetworkFactory {
 	public final void setTurnAcceptanceLogic( TurnAcceptanceLogic turnAcceptanceLogic ) {
 		this.turnAcceptanceLogic = turnAcceptanceLogic;
 	}
+	/**
+	 * If set, the lanes of the links keep their vehicle queues in primitive ring buffers of earliest link exit times and
+	 * vehicle indices (see {@link org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.CompactFIFOVehicleQ}), and their buffers
+	 * in array deques instead of in linked lists.  The traffic dynamics are the same.
+	 */
+	public final void setUsingCompactQueues( boolean usingCompactQueues ) {
+		this.usingCompactQueues = usingCompactQueues;
+	}
 }
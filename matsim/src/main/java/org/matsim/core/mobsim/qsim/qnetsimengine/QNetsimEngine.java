@@ -41,11 +41,13 @@ import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.PersonLeavesVehicleEvent;
 import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Node;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.config.groups.QSimConfigGroup.LinkDynamics;
+import org.matsim.core.config.groups.QSimConfigGroup.NodePartitioning;
 import org.matsim.core.config.groups.QSimConfigGroup.SnapshotStyle;
 import org.matsim.core.config.groups.QSimConfigGroup.StarttimeInterpretation;
 import org.matsim.core.config.groups.QSimConfigGroup.VehicleBehavior;
@@ -56,6 +58,7 @@ import org.matsim.core.mobsim.framework.MobsimTimer;
 import org.matsim.core.mobsim.qsim.InternalInterface;
 import org.matsim.core.mobsim.qsim.QSim;
 import org.matsim.core.mobsim.qsim.interfaces.AgentCounter;
+import org.matsim.core.mobsim.qsim.interfaces.HasNextTimeOfInterest;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimEngine;
 import org.matsim.core.mobsim.qsim.interfaces.MobsimVehicle;
 import org.matsim.core.mobsim.qsim.interfaces.NetsimNetwork;
@@ -70,7 +73,7 @@ import org.matsim.vis.snapshotwriters.SnapshotLinkWidthCalculator;
  * @author dgrether
  * @author dstrippgen
  */
-public class QNetsimEngine implements MobsimEngine, NetsimEngine {
+public class QNetsimEngine implements MobsimEngine, NetsimEngine, HasNextTimeOfInterest {
 
 	public interface NetsimInternalInterface {
 		QNetwork getNetsimNetwork();
@@ -120,6 +123,8 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 	private ExecutorService pool;
 
 	private final boolean usingThreadpool;
+
+	private final NodePartitioning nodePartitioning;
 	
 	// for detailed run time analysis - used in combination with QSim.analyzeRunTimes
 	public static int numObservedTimeSteps = 24*3600;
@@ -141,6 +146,7 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 		final Config config = sim.getScenario().getConfig();
 		final QSimConfigGroup qsimConfigGroup = config.qsim();
 		this.usingThreadpool = qsimConfigGroup.isUsingThreadpool();
+		this.nodePartitioning = qsimConfigGroup.getNodePartitioning();
 
 
 		// configuring the car departure hander (including the vehicle behavior)
@@ -241,6 +247,21 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 			engine.afterSim();
 		}
 
+		if (this.nodePartitioning == NodePartitioning.spaceFillingCurveWithObservedLoad && this.numOfRunners > 1) {
+			List<int[]> loads = new ArrayList<>();
+			StringBuilder sb = new StringBuilder();
+			for (QNetsimEngineRunner engine : this.engines) {
+				long sum = 0;
+				for (int load : engine.getObservedLoad()) {
+					sum += load;
+				}
+				sb.append(" ").append(sum);
+				loads.add(engine.getObservedLoad());
+			}
+			log.info("simulated node and link steps per QSimEngineRunner:" + sb);
+			QNetworkPartitioner.getOrCreate(this.qsim.getScenario()).setObservedLoad(loads);
+		}
+
 		if (this.usingThreadpool) {
 			this.pool.shutdown();
 		} else {
@@ -303,6 +324,7 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 		// myTime += 0.5 ;
 
 		// (b) Do deliberate domain decomposition rather than round robin (fewer runners to wait for at (*) and (**)).
+		// (Available as QSimConfigGroup.NodePartitioning; the runners are still synchronized by barriers, though.)
 
 		// (c) One thread that is much faster than all others is much more efficient than one thread that is much slower than all others. 
 		// So make sure that no thread sticks out in terms of slowness.  Difficult to achieve, though.  A decade back, we used a "typical" run
@@ -350,6 +372,18 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 		}
 	}
 
+	/**
+	 * As long as a link or node is active, every time step is needed. Inactive ones are only activated again by departing
+	 * vehicles, and the engines that let the agents depart have a time of interest themselves.
+	 */
+	@Override
+	public double getNextTimeOfInterest() {
+		if (getNumberOfSimulatedLinks() > 0 || getNumberOfSimulatedNodes() > 0) {
+			return Double.NEGATIVE_INFINITY;
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+
 	public int getNumberOfSimulatedLinks() {
 
 		int numLinks = 0;
@@ -470,9 +504,26 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 		int nodes[] = new int[numOfRunners];
 		int links[] = new int[numOfRunners];
 
+		int[] partition = null;
+		if (this.nodePartitioning != NodePartitioning.roundRobin && this.numOfRunners > 1) {
+			List<Node> networkNodes = new ArrayList<>(network.getNetsimNodes().size());
+			int maxNodeIndex = -1;
+			for (QNodeI node : network.getNetsimNodes().values()) {
+				networkNodes.add(node.getNode());
+				maxNodeIndex = Math.max(maxNodeIndex, node.getNode().getId().index());
+			}
+			boolean useObservedLoad = this.nodePartitioning == NodePartitioning.spaceFillingCurveWithObservedLoad;
+			partition = QNetworkPartitioner.getOrCreate(this.qsim.getScenario()).partition(networkNodes, this.numOfRunners, useObservedLoad);
+			if (useObservedLoad) {
+				for (QNetsimEngineRunner engine : this.engines) {
+					engine.observeLoad(maxNodeIndex);
+				}
+			}
+		}
+
 		int roundRobin = 0;
 		for (QNodeI node : network.getNetsimNodes().values()) {
-			int i = roundRobin % this.numOfRunners;
+			int i = partition == null ? roundRobin % this.numOfRunners : partition[roundRobin];
 			if ( node instanceof QNodeImpl ) {
 				((QNodeImpl) node).setNetElementActivationRegistry(this.engines.get(i));
 			}
@@ -502,6 +553,10 @@ public class QNetsimEngine implements MobsimEngine, NetsimEngine {
 			roundRobin++;
 		}
 
+		for (int i = 0; i < this.engines.size(); i++) {
+			this.engines.get(i).setNumberOfAssignedNodes(nodes[i]);
+		}
+
 		// print some statistics
 		for (int i = 0; i < this.engines.size(); i++) {
 			log.info("Assigned " + nodes[i] + " nodes and " + links[i] + " links to QSimEngineRunner #" + i);
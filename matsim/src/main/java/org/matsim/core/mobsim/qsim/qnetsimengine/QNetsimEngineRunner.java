@@ -23,9 +23,7 @@ package org.matsim.core.mobsim.qsim.qnetsimengine;
 import org.matsim.core.gbl.Gbl;
 import org.matsim.core.mobsim.qsim.QSim;
 
-import java.util.*;
 import java.util.concurrent.Callable;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Phaser;
 
 /**
@@ -51,8 +49,10 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 	 * Now, the implementation of the QNode was adapted in a way that this is not
 	 * possible anymore.
 	 * cdobler, sep'14
+	 * As a node is never activated twice, the list is created with the number of assigned
+	 * nodes as capacity and does not need to grow (see setNumberOfAssignedNodes).
 	 */
-	private final Queue<QNodeImpl> nodesQueue = new ConcurrentLinkedQueue<>();
+	private ActiveNetElementList<QNodeImpl> activeNodes = new ActiveNetElementList<>(16);
 
 	/*
 	 * Needs not to be thread-safe since links are only activated from nodes which
@@ -60,7 +60,7 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 	 * no concurrent add operation can occur.
 	 * cdobler, sep'14
 	 */
-	private final List<QLinkI> linksList = new LinkedList<>();
+	private final ActiveNetElementList<QLinkI> activeLinks = new ActiveNetElementList<>(16);
 
 	/*
 	 * Ensure that nodes and links are only activate during times where we expect it.
@@ -76,6 +76,12 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 
 	private boolean movingNodes;
 
+	/*
+	 * How often the nodes (indexed by the index of their id) and their out-links were simulated by this runner.
+	 * Only counted if the QNetworkPartitioner asks for observations.
+	 */
+	private int[] observedLoad = null;
+
 	/*package*/ long[] runTimes;
 	private long startTime = 0;
 	{	
@@ -165,29 +171,32 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 		}
 	}
 	private void moveNodes() {
-		boolean remainsActive;
 		this.lockNodes = true;
-		QNodeImpl node;
-		Iterator<QNodeImpl> simNodes = this.nodesQueue.iterator();
-		while (simNodes.hasNext()) {
-			node = simNodes.next();
-			remainsActive = node.doSimStep(time);
-			if (!remainsActive) simNodes.remove();
+		// the nodes that remain active are moved to the front, keeping their order
+		int size = this.activeNodes.size();
+		int remaining = 0;
+		for (int i = 0; i < size; i++) {
+			QNodeImpl node = this.activeNodes.get(i);
+			if (this.observedLoad != null) this.observedLoad[node.getNode().getId().index()]++;
+			if (node.doSimStep(time)) {
+				this.activeNodes.set(remaining++, node);
+			}
 		}
+		this.activeNodes.truncate(remaining);
 		this.lockNodes = false;
 	}
 	private void moveLinks() {
-		boolean remainsActive;
 		lockLinks = true;
-		QLinkI link;
-		ListIterator<QLinkI> simLinks = this.linksList.listIterator();
-		while (simLinks.hasNext()) {
-			link = simLinks.next();
-
-			remainsActive = link.doSimStep();
-
-			if (!remainsActive) simLinks.remove();
+		int size = this.activeLinks.size();
+		int remaining = 0;
+		for (int i = 0; i < size; i++) {
+			QLinkI link = this.activeLinks.get(i);
+			if (this.observedLoad != null) this.observedLoad[link.getLink().getFromNode().getId().index()]++;
+			if (link.doSimStep()) {
+				this.activeLinks.set(remaining++, link);
+			}
 		}
+		this.activeLinks.truncate(remaining);
 		lockLinks = false;
 	}
 
@@ -198,13 +207,13 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 	 */
 	@Override
 	protected void registerLinkAsActive(QLinkI link) {
-		if (!lockLinks) linksList.add(link);
+		if (!lockLinks) activeLinks.add(link);
 		else throw new RuntimeException("Tried to activate a QLink at a time where this was not allowed. Aborting!");
 	}
 
 	@Override
 	public int getNumberOfSimulatedLinks() {
-		return this.linksList.size();
+		return this.activeLinks.size();
 	}
 
 	/*
@@ -214,19 +223,28 @@ class QNetsimEngineRunner extends NetElementActivationRegistry implements Runnab
 	 */
 	@Override
 	protected void registerNodeAsActive(QNodeImpl node) {
-		if (!this.lockNodes) this.nodesQueue.add(node);
+		if (!this.lockNodes) this.activeNodes.addConcurrently(node);
 		else throw new RuntimeException("Tried to activate a QNode at a time where this was not allowed. Aborting!");
 	}
 
-	/*
-	 * Note that the size() method is O(n) for a ConcurrentLinkedQueue as used
-	 * for the nodesQueue. However, this method is only called once every simulated
-	 * hour for the log message. Therefore, it should be okay.
-	 * cdobler, sep'14
-	 */
 	@Override
 	public int getNumberOfSimulatedNodes() {
-		return this.nodesQueue.size();
+		return this.activeNodes.size();
+	}
+
+	/*package*/ void setNumberOfAssignedNodes(final int numberOfNodes) {
+		if (this.activeNodes.size() > 0) {
+			throw new IllegalStateException("Nodes are already active.");
+		}
+		this.activeNodes = new ActiveNetElementList<>(numberOfNodes);
+	}
+
+	/*package*/ void observeLoad(final int maxNodeIndex) {
+		this.observedLoad = new int[maxNodeIndex + 1];
+	}
+
+	/*package*/ int[] getObservedLoad() {
+		return this.observedLoad;
 	}
 
 	public void setMovingNodes(boolean movingNodes) {
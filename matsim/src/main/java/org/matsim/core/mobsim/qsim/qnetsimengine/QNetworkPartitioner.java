@@ -0,0 +1,172 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QNetworkPartitioner.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.groups.QSimConfigGroup.NodePartitioning;
+
+/**
+ * Assigns the nodes of the network to the runners of the {@link QNetsimEngine} such that neighbouring nodes end up
+ * on the same runner. The nodes are ordered along a Hilbert curve over their coordinates, and the curve is cut into
+ * as many pieces as there are runners, each with about the same expected load.
+ * <p></p>
+ * Without observations, the load of a node is one plus the number of its out-links (which are handled by the same
+ * runner). With {@link NodePartitioning#spaceFillingCurveWithObservedLoad}, the engine reports after each mobsim how
+ * often every node and its out-links were simulated, and the next partitioning uses these counts. As the counts only
+ * depend on the simulation, the partitioning (and thus the result) is deterministic for a given number of runners.
+ * <p></p>
+ * One instance is kept as scenario element, so the observations survive from one iteration to the next.
+ */
+final class QNetworkPartitioner {
+
+	static final String ELEMENT_NAME = "qNetworkPartitioner";
+
+	private static final int HILBERT_ORDER = 16;
+
+	private double[] observedLoad = null;
+
+	static QNetworkPartitioner getOrCreate(final Scenario scenario) {
+		QNetworkPartitioner partitioner = (QNetworkPartitioner) scenario.getScenarioElement(ELEMENT_NAME);
+		if (partitioner == null) {
+			partitioner = new QNetworkPartitioner();
+			scenario.addScenarioElement(ELEMENT_NAME, partitioner);
+		}
+		return partitioner;
+	}
+
+	/**
+	 * @return the runner of each node, in the order of the given list
+	 */
+	int[] partition(final List<Node> nodes, final int numOfRunners, final boolean useObservedLoad) {
+		final int n = nodes.size();
+		int[] runners = new int[n];
+		if (n == 0 || numOfRunners <= 1) {
+			return runners;
+		}
+
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (Node node : nodes) {
+			Coord coord = node.getCoord();
+			minX = Math.min(minX, coord.getX());
+			minY = Math.min(minY, coord.getY());
+			maxX = Math.max(maxX, coord.getX());
+			maxY = Math.max(maxY, coord.getY());
+		}
+		final int side = 1 << HILBERT_ORDER;
+		double scale = (side - 1) / Math.max(Math.max(maxX - minX, maxY - minY), 1e-9);
+
+		final long[] keys = new long[n];
+		final double[] loads = new double[n];
+		double totalLoad = 0.0;
+		Integer[] order = new Integer[n];
+		for (int i = 0; i < n; i++) {
+			Node node = nodes.get(i);
+			Coord coord = node.getCoord();
+			int x = (int) ((coord.getX() - minX) * scale);
+			int y = (int) ((coord.getY() - minY) * scale);
+			keys[i] = hilbertIndex(side, x, y);
+			loads[i] = getLoad(node, useObservedLoad);
+			totalLoad += loads[i];
+			order[i] = i;
+		}
+		// ties are broken by the position in the list, which keeps the order deterministic
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				int cmp = Long.compare(keys[o1], keys[o2]);
+				return cmp != 0 ? cmp : Integer.compare(o1, o2);
+			}
+		});
+
+		int runner = 0;
+		double cumulatedLoad = 0.0;
+		for (int i = 0; i < n; i++) {
+			int node = order[i];
+			// switch to the next runner as soon as this node is closer to the next boundary than to the current one
+			while (runner < numOfRunners - 1 && cumulatedLoad + loads[node] / 2 > totalLoad * (runner + 1) / numOfRunners) {
+				runner++;
+			}
+			runners[node] = runner;
+			cumulatedLoad += loads[node];
+		}
+		return runners;
+	}
+
+	private double getLoad(final Node node, final boolean useObservedLoad) {
+		if (useObservedLoad && this.observedLoad != null) {
+			int index = node.getId().index();
+			if (index < this.observedLoad.length) {
+				return 1.0 + this.observedLoad[index];
+			}
+		}
+		return 1.0 + node.getOutLinks().size();
+	}
+
+	/**
+	 * Replaces the observed load of the nodes (indexed by the index of the node id) by the given counts of the
+	 * runners, which are summed up.
+	 */
+	void setObservedLoad(final List<int[]> loadsOfRunners) {
+		int size = 0;
+		for (int[] load : loadsOfRunners) {
+			size = Math.max(size, load.length);
+		}
+		double[] sum = new double[size];
+		for (int[] load : loadsOfRunners) {
+			for (int i = 0; i < load.length; i++) {
+				sum[i] += load[i];
+			}
+		}
+		this.observedLoad = sum;
+	}
+
+	/**
+	 * The position of (x, y) along a Hilbert curve through a square of the given side length (a power of two).
+	 */
+	static long hilbertIndex(final int side, int x, int y) {
+		long d = 0;
+		for (int s = side / 2; s > 0; s /= 2) {
+			int rx = (x & s) > 0 ? 1 : 0;
+			int ry = (y & s) > 0 ? 1 : 0;
+			d += (long) s * s * ((3 * rx) ^ ry);
+			if (ry == 0) {
+				if (rx == 1) {
+					x = side - 1 - x;
+					y = side - 1 - y;
+				}
+				int t = x;
+				x = y;
+				y = t;
+			}
+		}
+		return d;
+	}
+
+}
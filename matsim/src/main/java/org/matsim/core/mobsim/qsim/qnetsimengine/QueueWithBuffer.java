@@ -41,6 +41,7 @@ import org.matsim.core.mobsim.qsim.qnetsimengine.AbstractQLink.HandleTransitStop
 import org.matsim.core.mobsim.qsim.qnetsimengine.QLinkImpl.LaneFactory;
 import org.matsim.core.mobsim.qsim.qnetsimengine.linkspeedcalculator.DefaultLinkSpeedCalculator;
 import org.matsim.core.mobsim.qsim.qnetsimengine.linkspeedcalculator.LinkSpeedCalculator;
+import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.CompactFIFOVehicleQ;
 import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.FIFOVehicleQ;
 import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.PassingVehicleQ;
 import org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq.VehicleQ;
@@ -78,6 +79,7 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 		private Double length = null ;
 		private Double effectiveNumberOfLanes = null ;
 		private Double flowCapacity_s = null ;
+		private boolean usingCompactQueues = false ;
  		private final NetsimEngineContext context;
 		Builder( final NetsimEngineContext context ) {
 			this.context = context ;
@@ -91,13 +93,25 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 		void setLength(Double length) { this.length = length; }
 		void setEffectiveNumberOfLanes(Double effectiveNumberOfLanes) { this.effectiveNumberOfLanes = effectiveNumberOfLanes; }
 		void setFlowCapacity_s(Double flowCapacity_s) { this.flowCapacity_s = flowCapacity_s; }
+		/**
+		 * If set, the vehicle queue (with FIFO link dynamics) is a {@link CompactFIFOVehicleQ}, which keeps the earliest link exit
+		 * times and vehicle indices in primitive ring buffers, and the buffer and the holes are kept in array deques instead of in
+		 * linked lists.  The traffic dynamics are the same.
+		 */
+		void setUsingCompactQueues(boolean usingCompactQueues) {
+			this.usingCompactQueues = usingCompactQueues;
+			if ( usingCompactQueues && this.vehicleQueue instanceof FIFOVehicleQ ) {
+				this.vehicleQueue = new CompactFIFOVehicleQ() ;
+			}
+		}
 		@Override public QueueWithBuffer createLane( AbstractQLink qLink ) {
 			// a number of things I cannot configure before I have the qlink:
 			if ( id==null ) { id = Id.create( qLink.getLink().getId() , Lane.class ) ; }
 			if ( length==null ) { length = qLink.getLink().getLength() ; }
 			if ( effectiveNumberOfLanes==null ) { effectiveNumberOfLanes = qLink.getLink().getNumberOfLanes() ; }
 			if ( flowCapacity_s==null ) { flowCapacity_s = ((Link)qLink.getLink()).getFlowCapacityPerSec() ; }
-			return new QueueWithBuffer( qLink.getInternalInterface(), vehicleQueue, id, length, effectiveNumberOfLanes, flowCapacity_s, context ) ;
+			return new QueueWithBuffer( qLink.getInternalInterface(), vehicleQueue, id, length, effectiveNumberOfLanes, flowCapacity_s, context,
+					usingCompactQueues ) ;
 		}
 	}
 	
@@ -143,7 +157,7 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 	private double flowCapacityPerTimeStep;
 	private double remainingHolesStorageCapacity = 0.0 ;
 
-	private final Queue<QueueWithBuffer.Hole> holes = new LinkedList<>();
+	private final Queue<QueueWithBuffer.Hole> holes;
 
 	/** the last time-step the front-most vehicle in the buffer was moved. Used for detecting dead-locks. */
 	private double bufferLastMovedTime = Time.getUndefinedTime() ;
@@ -158,7 +172,7 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 	/**
 	 * Holds all vehicles that are ready to cross the outgoing intersection
 	 */
-	private final Queue<QVehicle> buffer = new LinkedList<>() ;
+	private final Queue<QVehicle> buffer;
 	/**
 	 * null if the link is not signalized
 	 */
@@ -185,7 +199,8 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 	private double accumulatedInflowCap = 1. ;
 
 	private QueueWithBuffer(AbstractQLink.QLinkInternalInterface qlink, final VehicleQ<QVehicle> vehicleQueue, Id<Lane> laneId,
-							double length, double effectiveNumberOfLanes, double flowCapacity_s, final NetsimEngineContext context) {
+							double length, double effectiveNumberOfLanes, double flowCapacity_s, final NetsimEngineContext context,
+							final boolean usingCompactQueues) {
 		// the general idea is to give this object no longer access to "everything".  Objects get back pointers (here qlink), but they
 		// do not present the back pointer to the outside.  In consequence, this object can go up to qlink, but not any further. kai, mar'16
 		// Now I am even trying to get rid of the full qLink back pointer (since it allows, e.g., going back to Link). kai, feb'18
@@ -196,6 +211,13 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 		this.id = laneId ;
 		this.context = context ;
 		this.vehQueue = vehicleQueue ;
+		if ( usingCompactQueues ) {
+			this.buffer = new ArrayDeque<>() ;
+			this.holes = new ArrayDeque<>() ;
+		} else {
+			this.buffer = new LinkedList<>() ;
+			this.holes = new LinkedList<>() ;
+		}
 		this.length = length;
 		this.unscaledFlowCapacity_s = flowCapacity_s ;
 		this.effectiveNumberOfLanes = effectiveNumberOfLanes;
@@ -466,7 +488,8 @@ final class QueueWithBuffer implements QLaneI, SignalizeableItem {
 		double now = context.getSimTimer().getTimeOfDay() ;
 
 		QVehicle veh;
-		while((veh = peekFromVehQueue()) !=null){
+		// (the queue may know that the first vehicle cannot leave yet without looking at it, see CompactFIFOVehicleQ)
+		while(vehQueue.getEarliestLinkExitTimeOfFirst() <= now && (veh = peekFromVehQueue()) !=null){
 			//we have an original QueueLink behaviour
 			if (veh.getEarliestLinkExitTime() > now){
 				return;
@@ -0,0 +1,222 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactFIFOVehicleQ.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+package org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq;
+
+import java.util.AbstractQueue;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicle;
+
+/**
+ * Same as {@link FIFOVehicleQ}, but with a compact memory layout:
+ * <ul>
+ * <li> The queue entries are kept in primitive ring buffers: the earliest link exit time of the vehicle, as it was
+ * when the vehicle was added, and the index of the vehicle in the vehicle table.</li>
+ * <li> The vehicle table holds the vehicles in struct-of-arrays form, with a free list of unused indices.</li>
+ * </ul>
+ * The lane can thus check whether the first vehicle may leave the link by reading a double from the ring buffer,
+ * see {@link #getEarliestLinkExitTimeOfFirst()}, without touching the vehicle. Most links most of the time have no
+ * vehicle that may leave, so this saves following a reference per link and time step.
+ * <p></p>
+ * The exit time in the ring buffer is not updated if the exit time of the vehicle is increased later (as transit
+ * vehicles do at stops), so it is only a lower bound, and the lane must still check the vehicle itself.
+ */
+public final class CompactFIFOVehicleQ extends AbstractQueue<QVehicle> implements VehicleQ<QVehicle> {
+
+	private static final int INITIAL_CAPACITY = 8;
+
+	// the ring buffers; the entries are at head, head+1, ..., head+size-1 (mod capacity)
+	private double[] exitTimes = new double[INITIAL_CAPACITY];
+	private int[] vehicleIndices = new int[INITIAL_CAPACITY];
+	private int head = 0;
+	private int size = 0;
+
+	// the vehicle table; unused indices are chained through nextFree
+	private QVehicle[] vehicles = new QVehicle[INITIAL_CAPACITY];
+	private int[] nextFree = new int[INITIAL_CAPACITY];
+	private int firstFree;
+
+	private int modCount = 0;
+
+	public CompactFIFOVehicleQ() {
+		initFreeList(0);
+	}
+
+	@Override
+	public double getEarliestLinkExitTimeOfFirst() {
+		return this.size == 0 ? Double.POSITIVE_INFINITY : this.exitTimes[this.head];
+	}
+
+	@Override
+	public boolean offer(final QVehicle veh) {
+		ensureCapacity();
+		int i = (this.head + this.size) & (this.exitTimes.length - 1);
+		this.exitTimes[i] = veh.getEarliestLinkExitTime();
+		this.vehicleIndices[i] = addToTable(veh);
+		this.size++;
+		this.modCount++;
+		return true;
+	}
+
+	@Override
+	public void addFirst(final QVehicle veh) {
+		ensureCapacity();
+		this.head = (this.head - 1) & (this.exitTimes.length - 1);
+		this.exitTimes[this.head] = veh.getEarliestLinkExitTime();
+		this.vehicleIndices[this.head] = addToTable(veh);
+		this.size++;
+		this.modCount++;
+	}
+
+	@Override
+	public QVehicle peek() {
+		return this.size == 0 ? null : this.vehicles[this.vehicleIndices[this.head]];
+	}
+
+	@Override
+	public QVehicle poll() {
+		if (this.size == 0) {
+			return null;
+		}
+		QVehicle veh = removeFromTable(this.vehicleIndices[this.head]);
+		this.head = (this.head + 1) & (this.exitTimes.length - 1);
+		this.size--;
+		this.modCount++;
+		return veh;
+	}
+
+	@Override
+	public boolean remove(final Object o) {
+		int mask = this.exitTimes.length - 1;
+		for (int k = 0; k < this.size; k++) {
+			if (this.vehicles[this.vehicleIndices[(this.head + k) & mask]] == o) {
+				removeAt(k);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(this.vehicles, null);
+		initFreeList(0);
+		this.head = 0;
+		this.size = 0;
+		this.modCount++;
+	}
+
+	@Override
+	public Iterator<QVehicle> iterator() {
+		return new Iterator<QVehicle>() {
+			private final int expectedModCount = CompactFIFOVehicleQ.this.modCount;
+			private int k = 0;
+
+			@Override
+			public boolean hasNext() {
+				return this.k < CompactFIFOVehicleQ.this.size;
+			}
+
+			@Override
+			public QVehicle next() {
+				if (CompactFIFOVehicleQ.this.modCount != this.expectedModCount) {
+					throw new ConcurrentModificationException();
+				}
+				if (this.k >= CompactFIFOVehicleQ.this.size) {
+					throw new NoSuchElementException();
+				}
+				int i = (CompactFIFOVehicleQ.this.head + this.k++) & (CompactFIFOVehicleQ.this.exitTimes.length - 1);
+				return CompactFIFOVehicleQ.this.vehicles[CompactFIFOVehicleQ.this.vehicleIndices[i]];
+			}
+		};
+	}
+
+	/**
+	 * Removes the k-th entry, counted from the head, by moving the entries in front of it one position back.
+	 */
+	private void removeAt(final int k) {
+		int mask = this.exitTimes.length - 1;
+		removeFromTable(this.vehicleIndices[(this.head + k) & mask]);
+		for (int j = k; j > 0; j--) {
+			int to = (this.head + j) & mask;
+			int from = (this.head + j - 1) & mask;
+			this.exitTimes[to] = this.exitTimes[from];
+			this.vehicleIndices[to] = this.vehicleIndices[from];
+		}
+		this.head = (this.head + 1) & mask;
+		this.size--;
+		this.modCount++;
+	}
+
+	private void ensureCapacity() {
+		int capacity = this.exitTimes.length;
+		if (this.size < capacity) {
+			return;
+		}
+		// the ring buffers are full, and so is the vehicle table: double both, unrolling the ring buffers
+		double[] newExitTimes = new double[2 * capacity];
+		int[] newVehicleIndices = new int[2 * capacity];
+		for (int k = 0; k < this.size; k++) {
+			int i = (this.head + k) & (capacity - 1);
+			newExitTimes[k] = this.exitTimes[i];
+			newVehicleIndices[k] = this.vehicleIndices[i];
+		}
+		this.exitTimes = newExitTimes;
+		this.vehicleIndices = newVehicleIndices;
+		this.head = 0;
+		this.vehicles = Arrays.copyOf(this.vehicles, 2 * capacity);
+		this.nextFree = Arrays.copyOf(this.nextFree, 2 * capacity);
+		initFreeList(capacity);
+	}
+
+	/**
+	 * Chains the indices from the given one to the end of the table into the free list.
+	 */
+	private void initFreeList(final int from) {
+		for (int i = from; i < this.nextFree.length; i++) {
+			this.nextFree[i] = i + 1;
+		}
+		this.firstFree = from;
+	}
+
+	private int addToTable(final QVehicle veh) {
+		int index = this.firstFree;
+		this.firstFree = this.nextFree[index];
+		this.vehicles[index] = veh;
+		return index;
+	}
+
+	private QVehicle removeFromTable(final int index) {
+		QVehicle veh = this.vehicles[index];
+		this.vehicles[index] = null;
+		this.nextFree[index] = this.firstFree;
+		this.firstFree = index;
+		return veh;
+	}
+
+}
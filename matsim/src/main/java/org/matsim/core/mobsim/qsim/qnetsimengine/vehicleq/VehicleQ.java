@@ -9,4 +9,13 @@ public interface VehicleQ<E> extends Queue<E> {
 	// For transit, which inserts its vehicles "in front of" the queue.
 	void addFirst(E previous);
 
+	/**
+	 * @return a time before which the first vehicle will not leave the link, so that the lane does not need to look at
+	 * the vehicle before. The default, {@link Double#NEGATIVE_INFINITY}, means that the lane always has to look at the
+	 * vehicle; see {@link CompactFIFOVehicleQ} for a queue which knows it without looking at the vehicle.
+	 */
+	default double getEarliestLinkExitTimeOfFirst() {
+		return Double.NEGATIVE_INFINITY;
+	}
+
 }
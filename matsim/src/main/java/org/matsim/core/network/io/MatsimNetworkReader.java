@@ -68,6 +68,7 @@ public final class MatsimNetworkReader extends MatsimXmlParser {
 	public MatsimNetworkReader(CoordinateTransformation transformation, Network network) {
 		this.transformation = transformation;
 		this.network = network;
+		this.setPipelined(true);
 	}
 
 	@Override
@@ -0,0 +1,194 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactPlan.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+
+/**
+ * A plan which can hold its plan elements either as objects, or encoded by a {@link PlanCodec} into a byte array.
+ * Score, type and person are always available; everything else decodes the plan elements into objects again
+ * ("materializes" the plan).
+ * <p></p>
+ * The {@link PersonImpl} compacts its non-selected plans of this type whenever the selected plan changes, so that plan
+ * selection, which only looks at the scores, works on the compact representation, while the selected plan, which is
+ * used by the mobsim and modified by the replanning, is always materialized.  One should thus not hold on to plan
+ * elements of a non-selected plan while changing the selected plan.
+ * <p></p>
+ * Code which only reads all plans, such as {@link PopulationUtils#copyFromTo(Plan, Plan)}, uses {@link #getReadOnlyView()},
+ * which does not materialize the plan; the population writers re-compact the non-selected plans after writing a person.
+ * Materializing and compacting are synchronized, since plans may be read by several replanning threads at once.
+ */
+/* deliberately package */ final class CompactPlan implements Plan {
+
+	private final PlanCodec codec;
+
+	/**
+	 * null if the plan is compact
+	 */
+	private volatile Plan delegate = new PlanImpl();
+	private byte[] encoded = null;
+
+	private Double score = null;
+	private Person person = null;
+	private String type = null;
+	private boolean customized = false;
+
+	/* package */ CompactPlan(final PlanCodec codec) {
+		this.codec = codec;
+	}
+
+	/**
+	 * Encodes the plan elements, if possible.  Plans with attributes or custom attributes are not compacted.
+	 */
+	/* package */ synchronized void compact() {
+		if (this.delegate == null || this.customized) {
+			return;
+		}
+		byte[] data = this.codec.encode(this.delegate);
+		if (data != null) {
+			this.encoded = data;
+			this.delegate = null;
+		}
+	}
+
+	/* package */ boolean isCompact() {
+		return this.delegate == null;
+	}
+
+	/* package */ CompactPlan createEmptyPlan() {
+		return new CompactPlan(this.codec);
+	}
+
+	/**
+	 * @return the plan elements and attributes of this plan, decoded into a temporary plan if this plan is compact.
+	 * Changes to the returned plan are lost if this plan is compact.
+	 */
+	/* package */ Plan getReadOnlyView() {
+		Plan plan = this.delegate;
+		if (plan == null) {
+			synchronized (this) {
+				plan = this.delegate;
+				if (plan == null) {
+					plan = new PlanImpl();
+					this.codec.decode(this.encoded, plan);
+				}
+			}
+		}
+		return plan;
+	}
+
+	private Plan materialize() {
+		Plan plan = this.delegate;
+		if (plan == null) {
+			synchronized (this) {
+				plan = this.delegate;
+				if (plan == null) {
+					plan = new PlanImpl();
+					this.codec.decode(this.encoded, plan);
+					this.delegate = plan;
+					this.encoded = null;
+				}
+			}
+		}
+		return plan;
+	}
+
+	@Override
+	public final List<PlanElement> getPlanElements() {
+		return materialize().getPlanElements();
+	}
+
+	@Override
+	public final void addLeg(final Leg leg) {
+		materialize().addLeg(leg);
+	}
+
+	@Override
+	public final void addActivity(final Activity act) {
+		materialize().addActivity(act);
+	}
+
+	@Override
+	public final Attributes getAttributes() {
+		return materialize().getAttributes();
+	}
+
+	@Override
+	public final Map<String, Object> getCustomAttributes() {
+		this.customized = true;
+		return materialize().getCustomAttributes();
+	}
+
+	@Override
+	public final Person getPerson() {
+		return this.person;
+	}
+
+	@Override
+	public void setPerson(final Person person) {
+		this.person = person;
+	}
+
+	@Override
+	public final Double getScore() {
+		return this.score;
+	}
+
+	@Override
+	public void setScore(final Double score) {
+		this.score = score;
+	}
+
+	@Override
+	public String getType() {
+		return this.type;
+	}
+
+	@Override
+	public void setType(final String type) {
+		this.type = type;
+	}
+
+	@Override
+	public final String toString() {
+		String scoreString = "undefined";
+		if (this.getScore() != null) {
+			scoreString = this.getScore().toString();
+		}
+		String personIdString = "undefined" ;
+		if ( this.getPerson() != null ) {
+			personIdString = this.getPerson().getId().toString() ;
+		}
+		return "[score=" + scoreString + "]" +
+				"[nof_acts_legs=" + (isCompact() ? "compact" : getPlanElements().size()) + "]" +
+				"[type=" + this.type + "]" +
+				"[personId=" + personIdString + "]" ;
+	}
+
+}
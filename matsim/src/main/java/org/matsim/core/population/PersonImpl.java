@@ -72,6 +72,18 @@ import org.matsim.utils.objectattributes.attributable.Attributes;
 			throw new IllegalStateException("The plan to be set as selected is not null nor stored in the person's plans");
 		}
 		this.selectedPlan = selectedPlan;
+		compactNonSelectedPlans();
+	}
+
+	/**
+	 * Compacts all non-selected plans which are {@link CompactPlan}s (i.e. if the population is configured to do so).
+	 */
+	/* deliberately package */ void compactNonSelectedPlans() {
+		for ( Plan plan : this.plans ) {
+			if ( plan != this.selectedPlan && plan instanceof CompactPlan ) {
+				((CompactPlan) plan).compact();
+			}
+		}
 	}
 
 	@Override
@@ -80,7 +92,13 @@ import org.matsim.utils.objectattributes.attributable.Attributes;
 		if (oldPlan == null) {
 			return null;
 		}
-		Plan newPlan = PopulationUtils.createPlan(oldPlan.getPerson());
+		Plan newPlan;
+		if ( oldPlan instanceof CompactPlan ) {
+			newPlan = ((CompactPlan) oldPlan).createEmptyPlan();
+			newPlan.setPerson(oldPlan.getPerson());
+		} else {
+			newPlan = PopulationUtils.createPlan(oldPlan.getPerson());
+		}
 		PopulationUtils.copyFromTo(oldPlan, newPlan);
 		this.getPlans().add(newPlan);
 		this.setSelectedPlan(newPlan);
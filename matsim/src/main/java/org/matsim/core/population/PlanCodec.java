@@ -0,0 +1,226 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PlanCodec.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.population.io.BinaryPlanEncoding;
+import org.matsim.core.population.io.BinaryPlanEncoding.Input;
+import org.matsim.core.population.io.BinaryPlanEncoding.Output;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteFactories;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Encodes the plan elements of a plan into a compact byte array, and back.
+ * <ul>
+ * <li> Ids are written as variable-length integers of their {@link Id#index()}.</li>
+ * <li> Strings (activity types, modes, route types) are written as variable-length indices into a string table
+ * which is shared by all plans encoded by this codec.</li>
+ * </ul>
+ * Numbers and times are written as described in {@link BinaryPlanEncoding}, like in the binary population format.
+ * Only plan elements created by the {@link PopulationFactoryImpl} and without attributes can be encoded; routes are
+ * restored through the {@link RouteFactories}, like when reading them from a file.
+ * <p></p>
+ * The codec can be used by several threads at the same time.
+ */
+/* deliberately package */ final class PlanCodec {
+
+	private final RouteFactories routeFactories;
+
+	private final Map<String, Integer> stringIndices = new HashMap<>();
+	private final List<String> strings = new ArrayList<>();
+
+	PlanCodec(final RouteFactories routeFactories) {
+		this.routeFactories = routeFactories;
+	}
+
+	/**
+	 * @return the encoded plan elements, or null if the plan contains something which cannot be encoded
+	 */
+	byte[] encode(final Plan plan) {
+		if (!plan.getAttributes().isEmpty()) {
+			return null;
+		}
+		Output out = new Output(64);
+		List<PlanElement> planElements = plan.getPlanElements();
+		out.writeVarInt(planElements.size());
+		for (PlanElement pe : planElements) {
+			if (pe instanceof ActivityImpl && ((Activity) pe).getAttributes().isEmpty()) {
+				Activity act = (Activity) pe;
+				out.writeByte(BinaryPlanEncoding.ACTIVITY);
+				writeString(out, act.getType());
+				writeId(out, act.getLinkId());
+				writeId(out, act.getFacilityId());
+				out.writeCoord(act.getCoord());
+				out.writeTime(act.getStartTime());
+				out.writeTime(act.getEndTime());
+				out.writeTime(act.getMaximumDuration());
+			} else if (pe instanceof LegImpl && ((Leg) pe).getAttributes().isEmpty()) {
+				Leg leg = (Leg) pe;
+				out.writeByte(BinaryPlanEncoding.LEG);
+				writeString(out, leg.getMode());
+				out.writeTime(leg.getDepartureTime());
+				out.writeTime(leg.getTravelTime());
+				writeRoute(out, leg.getRoute());
+			} else {
+				return null;
+			}
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * Adds the encoded plan elements to the given plan.
+	 */
+	void decode(final byte[] data, final Plan plan) {
+		Input in = new Input(data);
+		int size = in.readVarInt();
+		for (int i = 0; i < size; i++) {
+			byte kind = in.readByte();
+			if (kind == BinaryPlanEncoding.ACTIVITY) {
+				Activity act = new ActivityImpl(readString(in));
+				act.setLinkId(readId(in, Link.class));
+				act.setFacilityId(readId(in, ActivityFacility.class));
+				act.setCoord(in.readCoord());
+				act.setStartTime(in.readTime());
+				act.setEndTime(in.readTime());
+				act.setMaximumDuration(in.readTime());
+				plan.addActivity(act);
+			} else {
+				Leg leg = new LegImpl(readString(in));
+				leg.setDepartureTime(in.readTime());
+				leg.setTravelTime(in.readTime());
+				leg.setRoute(readRoute(in));
+				plan.addLeg(leg);
+			}
+		}
+	}
+
+	private void writeRoute(final Output out, final Route route) {
+		if (route == null) {
+			out.writeVarInt(BinaryPlanEncoding.NO_ROUTE);
+		} else if (route instanceof NetworkRoute) {
+			NetworkRoute networkRoute = (NetworkRoute) route;
+			out.writeVarInt(BinaryPlanEncoding.NETWORK_ROUTE);
+			writeId(out, route.getStartLinkId());
+			writeId(out, route.getEndLinkId());
+			List<Id<Link>> linkIds = networkRoute.getLinkIds();
+			out.writeVarInt(linkIds.size());
+			for (Id<Link> linkId : linkIds) {
+				writeId(out, linkId);
+			}
+			out.writeDouble(route.getDistance());
+			out.writeTime(route.getTravelTime());
+			out.writeDouble(networkRoute.getTravelCost());
+			writeId(out, networkRoute.getVehicleId());
+		} else {
+			out.writeVarInt(BinaryPlanEncoding.OTHER_ROUTE);
+			writeString(out, route.getRouteType());
+			writeId(out, route.getStartLinkId());
+			writeId(out, route.getEndLinkId());
+			out.writeDouble(route.getDistance());
+			out.writeTime(route.getTravelTime());
+			writeString(out, route.getRouteDescription());
+		}
+	}
+
+	private Route readRoute(final Input in) {
+		int kind = in.readVarInt();
+		if (kind == BinaryPlanEncoding.NO_ROUTE) {
+			return null;
+		} else if (kind == BinaryPlanEncoding.NETWORK_ROUTE) {
+			Id<Link> startLinkId = readId(in, Link.class);
+			Id<Link> endLinkId = readId(in, Link.class);
+			int size = in.readVarInt();
+			List<Id<Link>> linkIds = new ArrayList<>(size);
+			for (int i = 0; i < size; i++) {
+				linkIds.add(readId(in, Link.class));
+			}
+			NetworkRoute route = this.routeFactories.createRoute(NetworkRoute.class, startLinkId, endLinkId);
+			route.setLinkIds(startLinkId, linkIds, endLinkId);
+			route.setDistance(in.readDouble());
+			route.setTravelTime(in.readTime());
+			route.setTravelCost(in.readDouble());
+			route.setVehicleId(readId(in, Vehicle.class));
+			return route;
+		} else {
+			Class<? extends Route> routeClass = this.routeFactories.getRouteClassForType(readString(in));
+			Id<Link> startLinkId = readId(in, Link.class);
+			Id<Link> endLinkId = readId(in, Link.class);
+			Route route = this.routeFactories.createRoute(routeClass, startLinkId, endLinkId);
+			route.setDistance(in.readDouble());
+			route.setTravelTime(in.readTime());
+			String description = readString(in);
+			if (description != null) {
+				route.setRouteDescription(description);
+			}
+			return route;
+		}
+	}
+
+	private void writeString(final Output out, final String string) {
+		if (string == null) {
+			out.writeVarInt(0);
+			return;
+		}
+		synchronized (this.strings) {
+			Integer index = this.stringIndices.get(string);
+			if (index == null) {
+				index = this.strings.size();
+				this.strings.add(string);
+				this.stringIndices.put(string, index);
+			}
+			out.writeVarInt(index + 1);
+		}
+	}
+
+	private String readString(final Input in) {
+		int index = in.readVarInt();
+		if (index == 0) {
+			return null;
+		}
+		synchronized (this.strings) {
+			return this.strings.get(index - 1);
+		}
+	}
+
+	private static void writeId(final Output out, final Id<?> id) {
+		out.writeVarInt(id == null ? 0 : id.index() + 1);
+	}
+
+	private static <T> Id<T> readId(final Input in, final Class<T> type) {
+		int index = in.readVarInt();
+		return index == 0 ? null : Id.get(index - 1, type);
+	}
+
+}
@@ -39,6 +39,7 @@ import org.matsim.core.population.routes.RouteFactory;
 /* deliberately package */ class PopulationFactoryImpl implements PopulationFactory {
 
 	private final RouteFactories routeFactory;
+	private PlanCodec planCodec = null;
 
     @Inject
 	PopulationFactoryImpl(RouteFactories routeFactory) {
@@ -52,9 +53,20 @@ import org.matsim.core.population.routes.RouteFactory;
 
 	@Override
 	public Plan createPlan(){
+		if ( this.planCodec != null ) {
+			return new CompactPlan( this.planCodec ) ;
+		}
 		return new PlanImpl() ;
 	}
 
+	/**
+	 * If set, the created plans are {@link CompactPlan}s, which keep their plan elements in a compact encoding while
+	 * they are not selected.
+	 */
+	/* package */ void setCompactingNonSelectedPlans(final boolean compacting) {
+		this.planCodec = compacting ? new PlanCodec(this.routeFactory) : null ;
+	}
+
 	@Override
 	public Activity createActivityFromCoord(final String actType, final Coord coord) {
         Activity act = new ActivityImpl(actType) ;
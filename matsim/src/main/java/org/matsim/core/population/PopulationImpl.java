@@ -58,6 +58,10 @@ import org.matsim.utils.objectattributes.attributable.Attributes;
 		if ( p instanceof Lockable ) {
 			((Lockable) p).setLocked();
 		}
+		if ( p instanceof PersonImpl ) {
+			// the person is complete now, e.g. when reading it from file:
+			((PersonImpl) p).compactNonSelectedPlans();
+		}
 
 		// show counter
 		this.counter++;
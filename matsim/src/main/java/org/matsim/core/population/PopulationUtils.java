@@ -120,7 +120,9 @@ public final class PopulationUtils {
 			throw new IllegalArgumentException("The type \"" + networkRouteType + "\" is not a supported type for network routes.");
 		}
 		routeFactory.setRouteFactory(NetworkRoute.class, factory);
-		return new PopulationImpl(new PopulationFactoryImpl(routeFactory));
+		PopulationFactoryImpl populationFactory = new PopulationFactoryImpl(routeFactory);
+		populationFactory.setCompactingNonSelectedPlans(plansConfigGroup.isCompactingNonSelectedPlans());
+		return new PopulationImpl(populationFactory);
 	}
 
 	//	public static Population createStreamingPopulation(PlansConfigGroup plansConfigGroup, Network network) {
@@ -785,10 +787,12 @@ public final class PopulationUtils {
 	 * @param out 
 	 **/
 	public static void copyFromTo(final Plan in, Plan out) {
+		// do not materialize compact plans just for reading them:
+		final Plan source = in instanceof CompactPlan ? ((CompactPlan) in).getReadOnlyView() : in;
 		out.getPlanElements().clear();
 		out.setScore(in.getScore());
 		out.setType(in.getType());
-		for (PlanElement pe : in.getPlanElements()) {
+		for (PlanElement pe : source.getPlanElements()) {
 			if (pe instanceof Activity) {
 				out.getPlanElements().add(createActivity((Activity) pe));
 			} else if (pe instanceof Leg) {
@@ -797,7 +801,17 @@ public final class PopulationUtils {
 				throw new IllegalArgumentException("unrecognized plan element type discovered");
 			}
 		}
-		AttributesUtils.copyAttributesFromTo(in, out );
+		AttributesUtils.copyAttributesFromTo(source, out );
+	}
+
+	/**
+	 * Compacts the non-selected plans of the person again after they were read, e.g. by a writer, if the population is
+	 * configured to keep them compact (see {@link PlansConfigGroup#isCompactingNonSelectedPlans()}).  Does nothing otherwise.
+	 */
+	public static void compactNonSelectedPlans(final Person person) {
+		if ( person instanceof PersonImpl ) {
+			((PersonImpl) person).compactNonSelectedPlans();
+		}
 	}
 
 	public static void copyFromTo(Leg in, Leg out) {
@@ -811,7 +825,9 @@ public final class PopulationUtils {
 	}
 
 	public static void copyFromTo(Activity act, Activity newAct) {
-		Coord coord = act.getCoord() == null ? null : new Coord(act.getCoord().getX(), act.getCoord().getY());
+		Coord coord = act.getCoord() == null ? null : act.getCoord().hasZ() ?
+				new Coord(act.getCoord().getX(), act.getCoord().getY(), act.getCoord().getZ()) :
+				new Coord(act.getCoord().getX(), act.getCoord().getY());
 		// (we don't want to copy the coord ref, but rather the contents!)
 		newAct.setCoord(coord);
 		newAct.setType( act.getType() );
@@ -0,0 +1,244 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinaryPlanEncoding.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.io;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.core.utils.misc.Time;
+
+/**
+ * The building blocks shared by the binary encodings of plans: the binary population format (see
+ * {@link BinaryPopulationWriter}) and the compact encoding of non-selected plans in memory.
+ * <ul>
+ * <li> Numbers are written as variable-length integers, 7 bits per byte; signed numbers are zigzag-encoded first, so
+ * that small negative numbers are short as well.</li>
+ * <li> Times are written as the difference to the previous time written to the same output, if they are full seconds,
+ * which is almost always the case.</li>
+ * <li> Doubles are written as their 8 raw bytes, little-endian.</li>
+ * </ul>
+ * This is not a general purpose api; it is only public because the two encodings live in different packages.
+ */
+public final class BinaryPlanEncoding {
+
+	public static final byte ACTIVITY = 0;
+	public static final byte LEG = 1;
+
+	public static final int NO_ROUTE = 0;
+	public static final int NETWORK_ROUTE = 1;
+	public static final int OTHER_ROUTE = 2;
+
+	private static final int TIME_UNDEFINED = 0;
+	private static final int TIME_RAW = 1;
+	private static final int TIME_DELTA = 2;
+
+	private static final byte NO_COORD = 0;
+	private static final byte COORD_XY = 1;
+	private static final byte COORD_XYZ = 2;
+
+	private BinaryPlanEncoding() {
+	}
+
+	public static final class Output {
+		private byte[] buffer;
+		private int size = 0;
+		private long lastTime = 0;
+
+		public Output(final int initialCapacity) {
+			this.buffer = new byte[initialCapacity];
+		}
+
+		private void ensureCapacity(final int additional) {
+			if (this.size + additional > this.buffer.length) {
+				this.buffer = Arrays.copyOf(this.buffer, Math.max(2 * this.buffer.length, this.size + additional));
+			}
+		}
+
+		public void writeByte(final byte b) {
+			ensureCapacity(1);
+			this.buffer[this.size++] = b;
+		}
+
+		public void writeBytes(final byte[] bytes, final int length) {
+			ensureCapacity(length);
+			System.arraycopy(bytes, 0, this.buffer, this.size, length);
+			this.size += length;
+		}
+
+		/**
+		 * Appends everything written to the other output.
+		 */
+		public void write(final Output other) {
+			writeBytes(other.buffer, other.size);
+		}
+
+		/**
+		 * Writes the length of the string in UTF-8, followed by its bytes.
+		 */
+		public void writeString(final String string) {
+			byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(utf8.length);
+			writeBytes(utf8, utf8.length);
+		}
+
+		public void writeVarInt(final int value) {
+			writeVarLong(value & 0xFFFFFFFFL);
+		}
+
+		public void writeSignedVarInt(final int value) {
+			writeVarLong(zigzag(value));
+		}
+
+		private void writeVarLong(long value) {
+			while ((value & ~0x7FL) != 0) {
+				writeByte((byte) ((value & 0x7F) | 0x80));
+				value >>>= 7;
+			}
+			writeByte((byte) value);
+		}
+
+		public void writeDouble(final double value) {
+			long bits = Double.doubleToRawLongBits(value);
+			ensureCapacity(8);
+			for (int i = 0; i < 8; i++) {
+				this.buffer[this.size++] = (byte) (bits >>> (8 * i));
+			}
+		}
+
+		public void writeTime(final double time) {
+			if (time == Time.UNDEFINED_TIME) {
+				writeVarLong(TIME_UNDEFINED);
+			} else if (time == Math.rint(time) && Math.abs(time) < 1e12) {
+				long seconds = (long) time;
+				writeVarLong(TIME_DELTA + zigzag(seconds - this.lastTime));
+				this.lastTime = seconds;
+			} else {
+				writeVarLong(TIME_RAW);
+				writeDouble(time);
+			}
+		}
+
+		public void writeCoord(final Coord coord) {
+			if (coord == null) {
+				writeByte(NO_COORD);
+			} else if (coord.hasZ()) {
+				writeByte(COORD_XYZ);
+				writeDouble(coord.getX());
+				writeDouble(coord.getY());
+				writeDouble(coord.getZ());
+			} else {
+				writeByte(COORD_XY);
+				writeDouble(coord.getX());
+				writeDouble(coord.getY());
+			}
+		}
+
+		public byte[] toByteArray() {
+			return Arrays.copyOf(this.buffer, this.size);
+		}
+	}
+
+	public static final class Input {
+		private final byte[] data;
+		private int position = 0;
+		private long lastTime = 0;
+
+		public Input(final byte[] data) {
+			this.data = data;
+		}
+
+		public byte readByte() {
+			return this.data[this.position++];
+		}
+
+		/**
+		 * Reads a string written by {@link Output#writeString(String)}.
+		 */
+		public String readString() {
+			int length = readVarInt();
+			String string = new String(this.data, this.position, length, StandardCharsets.UTF_8);
+			this.position += length;
+			return string;
+		}
+
+		public int readVarInt() {
+			return (int) readVarLong();
+		}
+
+		public int readSignedVarInt() {
+			return (int) unzigzag(readVarLong());
+		}
+
+		private long readVarLong() {
+			long value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = readByte();
+				value |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return value;
+		}
+
+		public double readDouble() {
+			long bits = 0;
+			for (int i = 0; i < 8; i++) {
+				bits |= (readByte() & 0xFFL) << (8 * i);
+			}
+			return Double.longBitsToDouble(bits);
+		}
+
+		public double readTime() {
+			long tag = readVarLong();
+			if (tag == TIME_UNDEFINED) {
+				return Time.UNDEFINED_TIME;
+			} else if (tag == TIME_RAW) {
+				return readDouble();
+			}
+			this.lastTime += unzigzag(tag - TIME_DELTA);
+			return this.lastTime;
+		}
+
+		/**
+		 * @return the coordinate, or <code>null</code> if none was written
+		 */
+		public Coord readCoord() {
+			byte kind = readByte();
+			if (kind == NO_COORD) {
+				return null;
+			} else if (kind == COORD_XYZ) {
+				return new Coord(readDouble(), readDouble(), readDouble());
+			}
+			return new Coord(readDouble(), readDouble());
+		}
+	}
+
+	private static long zigzag(final long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unzigzag(final long zigzag) {
+		return (zigzag >>> 1) ^ -(zigzag & 1);
+	}
+
+}
@@ -0,0 +1,439 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinaryPopulationFormat.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.population.io.BinaryPlanEncoding.Input;
+import org.matsim.core.population.io.BinaryPlanEncoding.Output;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteFactories;
+import org.matsim.core.utils.geometry.CoordinateTransformation;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.utils.objectattributes.ObjectAttributesConverter;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Encoding of the binary population format written by {@link BinaryPopulationWriter} and read by
+ * {@link BinaryPopulationReader}.
+ * <p></p>
+ * Layout of a file (all fixed-size numbers big-endian, as written by a {@link java.io.DataOutputStream}):
+ * <pre>
+ * int     MAGIC, int VERSION
+ * UTF     population name ("" if none)
+ * int     number of population attributes, followed by (UTF name, UTF class name, UTF value) for each
+ * chunks: int number of persons (0 marks the end of the file), int raw length, int compressed length,
+ *         byte[compressed length] deflate-compressed chunk
+ * </pre>
+ * Every chunk is self-contained, so that chunks can be encoded and decoded independently by several threads.  A
+ * chunk starts with a dictionary of all strings used in the chunk (ids, activity types, modes, attributes), followed
+ * by the persons, in which every string is written as (index + 1) into the dictionary, 0 standing for null.  Numbers
+ * and times are written as described in {@link BinaryPlanEncoding}.  The link ids of network routes are written as
+ * differences of their dictionary indices; as the dictionary is filled in the order in which the strings first appear,
+ * the links of a route mostly get consecutive indices and take a single byte each.
+ */
+/* deliberately package */ final class BinaryPopulationFormat {
+
+	static final int MAGIC = 0x4d504f42; // "MPOB"
+	static final int VERSION = 1;
+
+	private BinaryPopulationFormat() {
+	}
+
+	/**
+	 * @return true if the stream starts with the {@link #MAGIC} number; the stream is reset to where it was before.
+	 */
+	static boolean hasMagic(final InputStream stream) throws IOException {
+		stream.mark(4);
+		int magic = 0;
+		for (int i = 0; i < 4; i++) {
+			int b = stream.read();
+			if (b < 0) {
+				stream.reset();
+				return false;
+			}
+			magic = (magic << 8) | b;
+		}
+		stream.reset();
+		return magic == MAGIC;
+	}
+
+	static byte[] compress(final byte[] raw) {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		deflater.setInput(raw);
+		deflater.finish();
+		ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+		byte[] buffer = new byte[1 << 16];
+		while (!deflater.finished()) {
+			int n = deflater.deflate(buffer);
+			out.write(buffer, 0, n);
+		}
+		deflater.end();
+		return out.toByteArray();
+	}
+
+	static byte[] decompress(final byte[] compressed, final int rawLength) {
+		Inflater inflater = new Inflater();
+		inflater.setInput(compressed);
+		byte[] raw = new byte[rawLength];
+		try {
+			int n = 0;
+			while (n < rawLength && !inflater.finished()) {
+				n += inflater.inflate(raw, n, rawLength - n);
+			}
+			if (n != rawLength) {
+				throw new UncheckedIOException(new IOException("corrupt chunk: expected " + rawLength + " bytes, got " + n));
+			}
+		} catch (DataFormatException e) {
+			throw new UncheckedIOException(new IOException(e));
+		} finally {
+			inflater.end();
+		}
+		return raw;
+	}
+
+	/**
+	 * Encodes the persons of one chunk.  Not thread-safe; use one instance per chunk.
+	 */
+	static final class ChunkEncoder {
+		private final CoordinateTransformation coordinateTransformation;
+		private final ObjectAttributesConverter attributesConverter;
+		private final Map<String, Integer> dictionary = new HashMap<>();
+		private final List<String> strings = new ArrayList<>();
+		private final Output body = new Output(1024);
+
+		ChunkEncoder(final CoordinateTransformation coordinateTransformation, final ObjectAttributesConverter attributesConverter) {
+			this.coordinateTransformation = coordinateTransformation;
+			this.attributesConverter = attributesConverter;
+		}
+
+		/**
+		 * @return the raw (uncompressed) chunk: dictionary and persons
+		 */
+		byte[] encode(final List<Person> persons) {
+			for (Person person : persons) {
+				writePerson(person);
+			}
+			Output out = new Output(1024);
+			out.writeVarInt(this.strings.size());
+			for (String string : this.strings) {
+				out.writeString(string);
+			}
+			out.write(this.body);
+			return out.toByteArray();
+		}
+
+		private void writePerson(final Person person) {
+			Output out = this.body;
+			writeString(person.getId().toString());
+			writeAttributes(person.getAttributes());
+			List<? extends Plan> plans = person.getPlans();
+			out.writeVarInt(plans.size());
+			out.writeVarInt(plans.indexOf(person.getSelectedPlan()) + 1);
+			for (Plan plan : plans) {
+				if (plan.getScore() == null) {
+					out.writeByte((byte) 0);
+				} else {
+					out.writeByte((byte) 1);
+					out.writeDouble(plan.getScore());
+				}
+				writeString(plan.getType());
+				writeAttributes(plan.getAttributes());
+				List<PlanElement> planElements = plan.getPlanElements();
+				out.writeVarInt(planElements.size());
+				for (PlanElement pe : planElements) {
+					if (pe instanceof Activity) {
+						writeActivity((Activity) pe);
+					} else {
+						writeLeg((Leg) pe);
+					}
+				}
+			}
+		}
+
+		private void writeActivity(final Activity act) {
+			Output out = this.body;
+			out.writeByte(BinaryPlanEncoding.ACTIVITY);
+			writeString(act.getType());
+			writeId(act.getLinkId());
+			writeId(act.getFacilityId());
+			out.writeCoord(act.getCoord() == null ? null : this.coordinateTransformation.transform(act.getCoord()));
+			out.writeTime(act.getStartTime());
+			out.writeTime(act.getEndTime());
+			out.writeTime(act.getMaximumDuration());
+			writeAttributes(act.getAttributes());
+		}
+
+		private void writeLeg(final Leg leg) {
+			Output out = this.body;
+			out.writeByte(BinaryPlanEncoding.LEG);
+			writeString(leg.getMode());
+			out.writeTime(leg.getDepartureTime());
+			out.writeTime(leg.getTravelTime());
+			writeAttributes(leg.getAttributes());
+			Route route = leg.getRoute();
+			if (route == null) {
+				out.writeVarInt(BinaryPlanEncoding.NO_ROUTE);
+			} else if (route instanceof NetworkRoute) {
+				NetworkRoute networkRoute = (NetworkRoute) route;
+				out.writeVarInt(BinaryPlanEncoding.NETWORK_ROUTE);
+				writeId(route.getStartLinkId());
+				writeId(route.getEndLinkId());
+				List<Id<Link>> linkIds = networkRoute.getLinkIds();
+				out.writeVarInt(linkIds.size());
+				int previous = 0;
+				for (Id<Link> linkId : linkIds) {
+					int index = index(linkId.toString());
+					out.writeSignedVarInt(index - previous);
+					previous = index;
+				}
+				out.writeDouble(route.getDistance());
+				out.writeTime(route.getTravelTime());
+				out.writeDouble(networkRoute.getTravelCost());
+				writeId(networkRoute.getVehicleId());
+			} else {
+				out.writeVarInt(BinaryPlanEncoding.OTHER_ROUTE);
+				writeString(route.getRouteType());
+				writeId(route.getStartLinkId());
+				writeId(route.getEndLinkId());
+				out.writeDouble(route.getDistance());
+				out.writeTime(route.getTravelTime());
+				writeString(route.getRouteDescription());
+			}
+		}
+
+		private void writeAttributes(final Attributes attributes) {
+			List<String> entries = new ArrayList<>(3 * attributes.size());
+			for (Map.Entry<String, Object> e : attributes.getAsMap().entrySet()) {
+				String value = this.attributesConverter.convertToString(e.getValue());
+				if (value != null) {
+					entries.add(e.getKey());
+					entries.add(e.getValue().getClass().getCanonicalName());
+					entries.add(value);
+				}
+			}
+			this.body.writeVarInt(entries.size() / 3);
+			for (String entry : entries) {
+				writeString(entry);
+			}
+		}
+
+		private void writeId(final Id<?> id) {
+			writeString(id == null ? null : id.toString());
+		}
+
+		private void writeString(final String string) {
+			this.body.writeVarInt(string == null ? 0 : index(string) + 1);
+		}
+
+		private int index(final String string) {
+			Integer index = this.dictionary.get(string);
+			if (index == null) {
+				index = this.strings.size();
+				this.strings.add(string);
+				this.dictionary.put(string, index);
+			}
+			return index;
+		}
+	}
+
+	/**
+	 * Decodes the persons of one chunk.  Not thread-safe; use one instance per chunk.
+	 */
+	static final class ChunkDecoder {
+		private final PopulationFactory factory;
+		private final RouteFactories routeFactories;
+		private final CoordinateTransformation coordinateTransformation;
+		private final ObjectAttributesConverter attributesConverter;
+		private String[] strings;
+		private Id<Link>[] linkIds;
+		private Input in;
+
+		ChunkDecoder(final PopulationFactory factory, final CoordinateTransformation coordinateTransformation,
+				final ObjectAttributesConverter attributesConverter) {
+			this.factory = factory;
+			this.routeFactories = factory.getRouteFactories();
+			this.coordinateTransformation = coordinateTransformation;
+			this.attributesConverter = attributesConverter;
+		}
+
+		@SuppressWarnings("unchecked")
+		List<Person> decode(final byte[] raw, final int personCount) {
+			this.in = new Input(raw);
+			int size = this.in.readVarInt();
+			this.strings = new String[size];
+			for (int i = 0; i < size; i++) {
+				this.strings[i] = this.in.readString();
+			}
+			this.linkIds = new Id[size];
+			List<Person> persons = new ArrayList<>(personCount);
+			for (int i = 0; i < personCount; i++) {
+				persons.add(readPerson());
+			}
+			return persons;
+		}
+
+		private Person readPerson() {
+			Person person = this.factory.createPerson(Id.createPersonId(readString()));
+			readAttributes(person.getAttributes());
+			int nOfPlans = this.in.readVarInt();
+			int selected = this.in.readVarInt() - 1;
+			Plan selectedPlan = null;
+			for (int p = 0; p < nOfPlans; p++) {
+				Plan plan = this.factory.createPlan();
+				if (this.in.readByte() != 0) {
+					plan.setScore(this.in.readDouble());
+				}
+				plan.setType(readString());
+				readAttributes(plan.getAttributes());
+				int nOfElements = this.in.readVarInt();
+				for (int i = 0; i < nOfElements; i++) {
+					if (this.in.readByte() == BinaryPlanEncoding.ACTIVITY) {
+						plan.addActivity(readActivity());
+					} else {
+						plan.addLeg(readLeg());
+					}
+				}
+				person.addPlan(plan);
+				if (p == selected) {
+					selectedPlan = plan;
+				}
+			}
+			if (selectedPlan != null) {
+				person.setSelectedPlan(selectedPlan);
+			}
+			return person;
+		}
+
+		private Activity readActivity() {
+			Activity act = this.factory.createActivityFromLinkId(readString(), readLinkId());
+			String facilityId = readString();
+			if (facilityId != null) {
+				act.setFacilityId(Id.create(facilityId, ActivityFacility.class));
+			}
+			Coord coord = this.in.readCoord();
+			if (coord != null) {
+				act.setCoord(this.coordinateTransformation.transform(coord));
+			}
+			act.setStartTime(this.in.readTime());
+			act.setEndTime(this.in.readTime());
+			act.setMaximumDuration(this.in.readTime());
+			readAttributes(act.getAttributes());
+			return act;
+		}
+
+		private Leg readLeg() {
+			Leg leg = this.factory.createLeg(readString());
+			leg.setDepartureTime(this.in.readTime());
+			leg.setTravelTime(this.in.readTime());
+			readAttributes(leg.getAttributes());
+			int routeKind = this.in.readVarInt();
+			if (routeKind == BinaryPlanEncoding.NETWORK_ROUTE) {
+				Id<Link> startLinkId = readLinkId();
+				Id<Link> endLinkId = readLinkId();
+				int size = this.in.readVarInt();
+				List<Id<Link>> routeLinkIds = new ArrayList<>(size);
+				int index = 0;
+				for (int i = 0; i < size; i++) {
+					index += this.in.readSignedVarInt();
+					routeLinkIds.add(linkId(index));
+				}
+				NetworkRoute route = this.routeFactories.createRoute(NetworkRoute.class, startLinkId, endLinkId);
+				route.setLinkIds(startLinkId, routeLinkIds, endLinkId);
+				route.setDistance(this.in.readDouble());
+				route.setTravelTime(this.in.readTime());
+				route.setTravelCost(this.in.readDouble());
+				String vehicleId = readString();
+				if (vehicleId != null) {
+					route.setVehicleId(Id.create(vehicleId, Vehicle.class));
+				}
+				leg.setRoute(route);
+			} else if (routeKind == BinaryPlanEncoding.OTHER_ROUTE) {
+				Class<? extends Route> routeClass = this.routeFactories.getRouteClassForType(readString());
+				Id<Link> startLinkId = readLinkId();
+				Id<Link> endLinkId = readLinkId();
+				Route route = this.routeFactories.createRoute(routeClass, startLinkId, endLinkId);
+				route.setDistance(this.in.readDouble());
+				route.setTravelTime(this.in.readTime());
+				String description = readString();
+				if (description != null) {
+					route.setRouteDescription(description);
+				}
+				leg.setRoute(route);
+			}
+			return leg;
+		}
+
+		private void readAttributes(final Attributes attributes) {
+			int size = this.in.readVarInt();
+			for (int i = 0; i < size; i++) {
+				String name = readString();
+				String className = readString();
+				String value = readString();
+				Object object = this.attributesConverter.convert(className, value);
+				if (object != null) {
+					attributes.putAttribute(name, object);
+				}
+			}
+		}
+
+		private Id<Link> readLinkId() {
+			int index = this.in.readVarInt();
+			return index == 0 ? null : linkId(index - 1);
+		}
+
+		private Id<Link> linkId(final int index) {
+			Id<Link> id = this.linkIds[index];
+			if (id == null) {
+				id = Id.createLinkId(this.strings[index]);
+				this.linkIds[index] = id;
+			}
+			return id;
+		}
+
+		private String readString() {
+			int index = this.in.readVarInt();
+			return index == 0 ? null : this.strings[index - 1];
+		}
+	}
+
+}
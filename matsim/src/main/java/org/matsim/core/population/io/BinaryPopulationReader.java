@@ -0,0 +1,204 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinaryPopulationReader.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.io;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.api.internal.MatsimReader;
+import org.matsim.core.utils.geometry.CoordinateTransformation;
+import org.matsim.core.utils.geometry.transformations.IdentityTransformation;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.utils.objectattributes.AttributeConverter;
+import org.matsim.utils.objectattributes.ObjectAttributesConverter;
+
+/**
+ * Reads a population written by {@link BinaryPopulationWriter}.  The main thread reads the compressed chunks from the
+ * file, while several threads decompress and decode them in parallel; the decoded persons are added to the population
+ * in the order in which they were written.  The number of threads is taken from the global config group.
+ * <p></p>
+ * Usually, one does not need to use this class directly, as {@link PopulationReader} detects the format automatically.
+ */
+public final class BinaryPopulationReader implements MatsimReader {
+	private static final Logger log = Logger.getLogger(BinaryPopulationReader.class);
+
+	private final CoordinateTransformation coordinateTransformation;
+	private final Scenario scenario;
+	private final Map<Class<?>, AttributeConverter<?>> converters = new HashMap<>();
+	private int numberOfThreads;
+
+	public BinaryPopulationReader(final Scenario scenario) {
+		this(new IdentityTransformation(), scenario);
+	}
+
+	/**
+	 * @param coordinateTransformation transformation from the CRS of the file to the internal CRS
+	 */
+	public BinaryPopulationReader(final CoordinateTransformation coordinateTransformation, final Scenario scenario) {
+		this.coordinateTransformation = coordinateTransformation;
+		this.scenario = scenario;
+		this.numberOfThreads = Math.max(1, scenario.getConfig().global().getNumberOfThreads());
+	}
+
+	public void putAttributeConverters(final Map<Class<?>, AttributeConverter<?>> converters) {
+		this.converters.putAll(converters);
+	}
+
+	public void setNumberOfThreads(final int numberOfThreads) {
+		this.numberOfThreads = Math.max(1, numberOfThreads);
+	}
+
+	/**
+	 * @return true if the file is in the binary population format
+	 */
+	public static boolean isBinaryPopulationFile(final String filename) {
+		try (InputStream stream = IOUtils.getInputStream(filename)) {
+			return BinaryPopulationFormat.hasMagic(stream);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void readFile(final String filename) {
+		log.info("starting to read binary population from file " + filename + " ...");
+		try (InputStream stream = IOUtils.getInputStream(filename)) {
+			parse(stream);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Reads the population from the stream.  The stream is not closed.
+	 */
+	public void parse(final InputStream stream) {
+		Population population = this.scenario.getPopulation();
+		ExecutorService executor = Executors.newFixedThreadPool(this.numberOfThreads);
+		try {
+			DataInputStream in = new DataInputStream(stream instanceof BufferedInputStream ? stream : new BufferedInputStream(stream, 1 << 16));
+			if (in.readInt() != BinaryPopulationFormat.MAGIC) {
+				throw new UncheckedIOException(new IOException("not a binary population file"));
+			}
+			int version = in.readInt();
+			if (version != BinaryPopulationFormat.VERSION) {
+				throw new UncheckedIOException(new IOException("unsupported version " + version + " of the binary population format"));
+			}
+			String name = in.readUTF();
+			if (!name.isEmpty()) {
+				population.setName(name);
+			}
+			ObjectAttributesConverter converter = new ObjectAttributesConverter(this.converters);
+			int nOfAttributes = in.readInt();
+			for (int i = 0; i < nOfAttributes; i++) {
+				String attribute = in.readUTF();
+				String className = in.readUTF();
+				Object value = converter.convert(className, in.readUTF());
+				if (value != null) {
+					population.getAttributes().putAttribute(attribute, value);
+				}
+			}
+
+			Deque<Future<List<Person>>> pending = new ArrayDeque<>();
+			long nOfPersons = 0;
+			while (true) {
+				int nOfChunkPersons = in.readInt();
+				if (nOfChunkPersons == 0) {
+					break;
+				}
+				int rawLength = in.readInt();
+				byte[] data = new byte[in.readInt()];
+				in.readFully(data);
+				pending.add(executor.submit(new DecodeTask(population.getFactory(), data, rawLength, nOfChunkPersons)));
+				while (pending.size() > 2 * this.numberOfThreads) {
+					nOfPersons += addPersons(population, pending.poll());
+				}
+			}
+			while (!pending.isEmpty()) {
+				nOfPersons += addPersons(population, pending.poll());
+			}
+			log.info("read " + nOfPersons + " persons.");
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static int addPersons(final Population population, final Future<List<Person>> future) {
+		List<Person> persons;
+		try {
+			persons = future.get();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+		for (Person person : persons) {
+			population.addPerson(person);
+		}
+		return persons.size();
+	}
+
+	private final class DecodeTask implements Callable<List<Person>> {
+		private final PopulationFactory factory;
+		private final byte[] data;
+		private final int rawLength;
+		private final int nOfPersons;
+
+		private DecodeTask(final PopulationFactory factory, final byte[] data, final int rawLength, final int nOfPersons) {
+			this.factory = factory;
+			this.data = data;
+			this.rawLength = rawLength;
+			this.nOfPersons = nOfPersons;
+		}
+
+		@Override
+		public List<Person> call() {
+			BinaryPopulationFormat.ChunkDecoder decoder = new BinaryPopulationFormat.ChunkDecoder(this.factory,
+					BinaryPopulationReader.this.coordinateTransformation,
+					new ObjectAttributesConverter(BinaryPopulationReader.this.converters));
+			return decoder.decode(BinaryPopulationFormat.decompress(this.data, this.rawLength), this.nOfPersons);
+		}
+	}
+
+}
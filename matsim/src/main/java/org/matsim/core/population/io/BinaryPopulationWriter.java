@@ -0,0 +1,266 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinaryPopulationWriter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.api.internal.MatsimWriter;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.algorithms.PersonAlgorithm;
+import org.matsim.core.utils.geometry.CoordinateTransformation;
+import org.matsim.core.utils.geometry.transformations.IdentityTransformation;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.utils.objectattributes.AttributeConverter;
+import org.matsim.utils.objectattributes.ObjectAttributesConverter;
+
+/**
+ * Writes a population in a compact binary format, which can be read by {@link BinaryPopulationReader} or by
+ * {@link PopulationReader}, which detects the format automatically.  The persons are written in chunks; encoding
+ * and compressing the chunks is done by several threads in parallel, while the main thread writes the finished chunks
+ * to the file in their original order.  See {@link BinaryPopulationFormat} for the layout of the file.
+ * <p></p>
+ * Like the {@link StreamingPopulationWriter}, the writer can also be used as a {@link PersonAlgorithm}, which writes the
+ * persons passed to it between {@link #startStreaming(String)} and {@link #closeStreaming()}, instead of the persons of
+ * the population.  The name and the attributes of the population are written in both cases.
+ */
+public final class BinaryPopulationWriter implements MatsimWriter, PersonAlgorithm {
+	private static final Logger log = Logger.getLogger(BinaryPopulationWriter.class);
+
+	public static final int DEFAULT_CHUNK_SIZE = 1000;
+
+	private final CoordinateTransformation coordinateTransformation;
+	private final Population population;
+	private final Map<Class<?>, AttributeConverter<?>> converters = new HashMap<>();
+	private int numberOfThreads = 1;
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+
+	private String filename = null;
+	private ExecutorService executor = null;
+	private DataOutputStream out = null;
+	private Deque<Future<Chunk>> pending = null;
+	private List<Person> persons = null;
+	private long nOfPersons = 0;
+
+	public BinaryPopulationWriter(final Population population) {
+		this(new IdentityTransformation(), population);
+	}
+
+	/**
+	 * @param coordinateTransformation transformation from the internal CRS to the CRS in which the file should be written
+	 */
+	public BinaryPopulationWriter(final CoordinateTransformation coordinateTransformation, final Population population) {
+		this.coordinateTransformation = coordinateTransformation;
+		this.population = population;
+	}
+
+	public void putAttributeConverters(final Map<Class<?>, AttributeConverter<?>> converters) {
+		this.converters.putAll(converters);
+	}
+
+	public void setNumberOfThreads(final int numberOfThreads) {
+		this.numberOfThreads = Math.max(1, numberOfThreads);
+	}
+
+	public void setChunkSize(final int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("chunk size must be at least 1, but is " + chunkSize);
+		}
+		this.chunkSize = chunkSize;
+	}
+
+	@Override
+	public void write(final String filename) {
+		startStreaming(filename);
+		try {
+			for (Person person : PopulationUtils.getSortedPersons(this.population).values()) {
+				run(person);
+			}
+		} finally {
+			closeStreaming();
+		}
+	}
+
+	public void startStreaming(final String filename) {
+		if (this.out != null) {
+			throw new IllegalStateException("already writing to " + this.filename);
+		}
+		this.filename = filename;
+		this.executor = Executors.newFixedThreadPool(this.numberOfThreads);
+		this.pending = new ArrayDeque<>();
+		this.persons = new ArrayList<>(this.chunkSize);
+		this.nOfPersons = 0;
+		try {
+			this.out = new DataOutputStream(new BufferedOutputStream(IOUtils.getOutputStream(filename), 1 << 16));
+			this.out.writeInt(BinaryPopulationFormat.MAGIC);
+			this.out.writeInt(BinaryPopulationFormat.VERSION);
+			this.out.writeUTF(this.population.getName() == null ? "" : this.population.getName());
+			writePopulationAttributes(this.out);
+		} catch (IOException e) {
+			abort();
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public void run(final Person person) {
+		this.persons.add(person);
+		if (this.persons.size() == this.chunkSize) {
+			this.pending.add(this.executor.submit(new EncodeTask(this.persons)));
+			this.persons = new ArrayList<>(this.chunkSize);
+			try {
+				while (this.pending.size() > 2 * this.numberOfThreads) {
+					this.nOfPersons += writeChunk(this.out, this.pending.poll());
+				}
+			} catch (IOException e) {
+				abort();
+				throw new UncheckedIOException(e);
+			} catch (RuntimeException e) {
+				abort();
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * Writes the remaining persons and closes the file.  Must also be called if writing a person failed, to release
+	 * the file and the threads.
+	 */
+	public void closeStreaming() {
+		if (this.out == null) {
+			return;
+		}
+		try {
+			if (!this.persons.isEmpty()) {
+				this.pending.add(this.executor.submit(new EncodeTask(this.persons)));
+			}
+			while (!this.pending.isEmpty()) {
+				this.nOfPersons += writeChunk(this.out, this.pending.poll());
+			}
+			this.out.writeInt(0);
+			this.out.close();
+			log.info("Population with " + this.nOfPersons + " persons written to: " + this.filename);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			abort();
+		}
+	}
+
+	private void abort() {
+		if (this.executor != null) {
+			this.executor.shutdownNow();
+		}
+		if (this.out != null) {
+			try {
+				this.out.close();
+			} catch (IOException e) {
+				log.warn("could not close " + this.filename, e);
+			}
+		}
+		this.executor = null;
+		this.out = null;
+		this.pending = null;
+		this.persons = null;
+	}
+
+	private void writePopulationAttributes(final DataOutputStream out) throws IOException {
+		ObjectAttributesConverter converter = new ObjectAttributesConverter(this.converters);
+		List<String> entries = new ArrayList<>();
+		for (Map.Entry<String, Object> e : this.population.getAttributes().getAsMap().entrySet()) {
+			String value = converter.convertToString(e.getValue());
+			if (value != null) {
+				entries.add(e.getKey());
+				entries.add(e.getValue().getClass().getCanonicalName());
+				entries.add(value);
+			}
+		}
+		out.writeInt(entries.size() / 3);
+		for (String entry : entries) {
+			out.writeUTF(entry);
+		}
+	}
+
+	private static int writeChunk(final DataOutputStream out, final Future<Chunk> future) throws IOException {
+		Chunk chunk;
+		try {
+			chunk = future.get();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		out.writeInt(chunk.nOfPersons);
+		out.writeInt(chunk.rawLength);
+		out.writeInt(chunk.data.length);
+		out.write(chunk.data);
+		return chunk.nOfPersons;
+	}
+
+	private static final class Chunk {
+		private final int nOfPersons;
+		private final int rawLength;
+		private final byte[] data;
+
+		private Chunk(final int nOfPersons, final int rawLength, final byte[] data) {
+			this.nOfPersons = nOfPersons;
+			this.rawLength = rawLength;
+			this.data = data;
+		}
+	}
+
+	private final class EncodeTask implements Callable<Chunk> {
+		private final List<Person> persons;
+
+		private EncodeTask(final List<Person> persons) {
+			this.persons = persons;
+		}
+
+		@Override
+		public Chunk call() {
+			BinaryPopulationFormat.ChunkEncoder encoder = new BinaryPopulationFormat.ChunkEncoder(
+					BinaryPopulationWriter.this.coordinateTransformation,
+					new ObjectAttributesConverter(BinaryPopulationWriter.this.converters));
+			byte[] raw = encoder.encode(this.persons);
+			for (Person person : this.persons) {
+				PopulationUtils.compactNonSelectedPlans(person);
+			}
+			return new Chunk(this.persons.size(), raw.length, BinaryPopulationFormat.compress(raw));
+		}
+	}
+
+}
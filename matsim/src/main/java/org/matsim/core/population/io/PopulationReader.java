@@ -20,26 +20,36 @@
 
 package org.matsim.core.population.io;
 
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Stack;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.api.internal.MatsimReader;
 import org.matsim.core.population.io.StreamingPopulationReader.StreamingPopulation;
 import org.matsim.core.utils.geometry.CoordinateTransformation;
 import org.matsim.core.utils.geometry.transformations.IdentityTransformation;
+import org.matsim.core.utils.io.IOUtils;
 import org.matsim.core.utils.io.MatsimXmlParser;
+import org.matsim.core.utils.io.UncheckedIOException;
 import org.matsim.utils.objectattributes.AttributeConverter;
 import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
 
 /**
  * A population reader that reads the MATSim format. This reader recognizes the format of the plans-file and uses
- * the correct reader for the specific plans-version, without manual setting.
+ * the correct reader for the specific plans-version, without manual setting.  Files in the binary format written by
+ * {@link BinaryPopulationWriter} are recognized as well: the format is detected before the input is handed to the
+ * xml parser.
  *
  * @author mrieser
  */
-public final class PopulationReader extends MatsimXmlParser {
+public final class PopulationReader implements MatsimReader {
 
 	private final static String PLANS    = "plans.dtd"; // a special, inofficial case, handle it like plans_v0
 	private final static String PLANS_V0 = "plans_v0.dtd";
@@ -50,8 +60,8 @@ public final class PopulationReader extends MatsimXmlParser {
 
 	private final CoordinateTransformation coordinateTransformation;
 
-	private MatsimXmlParser delegate = null;
 	private final Scenario scenario;
+	private final XmlPopulationReader xmlReader = new XmlPopulationReader();
 
 	private Map<Class<?>, AttributeConverter<?>> attributeConverters = new HashMap<>();
 
@@ -87,59 +97,116 @@ public final class PopulationReader extends MatsimXmlParser {
 	}
 
 	@Override
-	public void startTag(final String name, final Attributes atts, final Stack<String> context) {
-		this.delegate.startTag(name, atts, context);
+	public void readFile(final String filename) throws UncheckedIOException {
+		if (BinaryPopulationReader.isBinaryPopulationFile(filename)) {
+			createBinaryReader().readFile(filename);
+		} else {
+			this.xmlReader.readFile(filename);
+		}
 	}
 
-	@Override
-	public void endTag(final String name, final String content, final Stack<String> context) {
-		this.delegate.endTag(name, content, context);
+	public void parse(final URL url) throws UncheckedIOException {
+		try (InputStream stream = new BufferedInputStream(IOUtils.getInputStream(url))) {
+			if (BinaryPopulationFormat.hasMagic(stream)) {
+				log.info("reading binary population from url " + url + " ...");
+				createBinaryReader().parse(stream);
+			} else {
+				log.info("starting to parse xml from url " + url + " ...");
+				// the system id lets the parser resolve relative references and report the url in errors:
+				InputSource source = new InputSource(stream);
+				source.setSystemId(url.toExternalForm());
+				this.xmlReader.parse(source);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
 	}
 
-	@Override
-	protected void setDoctype(final String doctype) {
-		super.setDoctype(doctype);
-		switch ( doctype ) {
-			case POPULATION_V6:
-				this.delegate =
-						new PopulationReaderMatsimV6(
-								coordinateTransformation,
-								this.scenario);
-				((PopulationReaderMatsimV6) delegate).putAttributeConverters( attributeConverters );
-				log.info("using population_v6-reader.");
-				break;
-			case POPULATION_V5:
-				this.delegate =
-						new PopulationReaderMatsimV5(
-								coordinateTransformation,
-								this.scenario);
-				log.info("using population_v5-reader.");
-				break;
-			case PLANS_V4:
-				// Replaced non-parallel reader with parallel implementation. cdobler, mar'12.
-				this.delegate =
-						new ParallelPopulationReaderMatsimV4(
-								coordinateTransformation,
-								this.scenario);
-				log.info("using plans_v4-reader.");
-				break;
-			case PLANS_V1:
-				this.delegate =
-						new PopulationReaderMatsimV1(
-								coordinateTransformation,
-								this.scenario);
-				log.info("using plans_v1-reader.");
-				break;
-			case PLANS_V0:
-			case PLANS:
-				this.delegate =
-						new PopulationReaderMatsimV0(
-								coordinateTransformation,
-								this.scenario);
-				log.info("using plans_v0-reader.");
-				break;
-			default:
-				throw new IllegalArgumentException("No population reader available for doctype \"" + doctype + "\".");
+	public void parse(final InputStream stream) throws UncheckedIOException {
+		InputStream buffered = stream.markSupported() ? stream : new BufferedInputStream(stream);
+		try {
+			if (BinaryPopulationFormat.hasMagic(buffered)) {
+				createBinaryReader().parse(buffered);
+				return;
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.xmlReader.parse(buffered);
+	}
+
+	private BinaryPopulationReader createBinaryReader() {
+		BinaryPopulationReader reader = new BinaryPopulationReader(this.coordinateTransformation, this.scenario);
+		reader.putAttributeConverters(this.attributeConverters);
+		return reader;
+	}
+
+	/**
+	 * Reads the xml format by delegating to the reader for the plans-version given by the doctype.
+	 */
+	private final class XmlPopulationReader extends MatsimXmlParser {
+
+		private MatsimXmlParser delegate = null;
+
+		XmlPopulationReader() {
+			this.setPipelined(true);
+		}
+
+		@Override
+		public void startTag(final String name, final Attributes atts, final Stack<String> context) {
+			this.delegate.startTag(name, atts, context);
+		}
+
+		@Override
+		public void endTag(final String name, final String content, final Stack<String> context) {
+			this.delegate.endTag(name, content, context);
+		}
+
+		@Override
+		protected void setDoctype(final String doctype) {
+			super.setDoctype(doctype);
+			switch ( doctype ) {
+				case POPULATION_V6:
+					this.delegate =
+							new PopulationReaderMatsimV6(
+									coordinateTransformation,
+									scenario);
+					((PopulationReaderMatsimV6) delegate).putAttributeConverters( attributeConverters );
+					log.info("using population_v6-reader.");
+					break;
+				case POPULATION_V5:
+					this.delegate =
+							new PopulationReaderMatsimV5(
+									coordinateTransformation,
+									scenario);
+					log.info("using population_v5-reader.");
+					break;
+				case PLANS_V4:
+					// Replaced non-parallel reader with parallel implementation. cdobler, mar'12.
+					this.delegate =
+							new ParallelPopulationReaderMatsimV4(
+									coordinateTransformation,
+									scenario);
+					log.info("using plans_v4-reader.");
+					break;
+				case PLANS_V1:
+					this.delegate =
+							new PopulationReaderMatsimV1(
+									coordinateTransformation,
+									scenario);
+					log.info("using plans_v1-reader.");
+					break;
+				case PLANS_V0:
+				case PLANS:
+					this.delegate =
+							new PopulationReaderMatsimV0(
+									coordinateTransformation,
+									scenario);
+					log.info("using plans_v0-reader.");
+					break;
+				default:
+					throw new IllegalArgumentException("No population reader available for doctype \"" + doctype + "\".");
+			}
 		}
 	}
 
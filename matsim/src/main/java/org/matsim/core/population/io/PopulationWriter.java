@@ -180,6 +180,7 @@ public final class PopulationWriter extends AbstractMatsimWriter implements Mats
 				return;
 			}
 			this.handler.writePerson(person, this.writer);
+			PopulationUtils.compactNonSelectedPlans(person);
 			counter.incCounter();
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
@@ -30,12 +30,14 @@ import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.api.core.v01.population.PopulationFactory;
 import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.algorithms.PersonAlgorithm;
 import org.matsim.core.utils.geometry.CoordinateTransformation;
 import org.matsim.core.utils.geometry.transformations.IdentityTransformation;
 import org.matsim.core.utils.io.AbstractMatsimWriter;
 import org.matsim.core.utils.io.UncheckedIOException;
 import org.matsim.core.utils.misc.Counter;
+import org.matsim.utils.objectattributes.AttributeConverter;
 import org.matsim.utils.objectattributes.ObjectAttributes;
 import org.matsim.utils.objectattributes.attributable.Attributes;
 
@@ -92,6 +94,15 @@ public final class StreamingPopulationWriter implements PersonAlgorithm {
 
 
 
+	/**
+	 * Has no effect if another writer handler than the default one was set.
+	 */
+	public void putAttributeConverters( final Map<Class<?>, AttributeConverter<?>> converters ) {
+		if ( this.handler instanceof PopulationWriterHandlerImplV6 ) {
+			((PopulationWriterHandlerImplV6) this.handler).putAttributeConverters( converters );
+		}
+	}
+
 	// implementation of PersonAlgorithm
 	// this is primarily to use the PlansWriter with filters and other algorithms.
 	public final void startStreaming(final String filename) {
@@ -181,6 +192,7 @@ public final class StreamingPopulationWriter implements PersonAlgorithm {
 				return;
 			}
 			this.handler.writePerson(person, matsimWriter.getWriter());
+			PopulationUtils.compactNonSelectedPlans(person);
 			counter.incCounter();
 		} catch (IOException e) {
 			throw new UncheckedIOException(e);
@@ -0,0 +1,241 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * StreamingReplanning.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.replanning;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.core.population.PopulationUtils;
+import org.matsim.core.population.algorithms.PersonAlgorithm;
+import org.matsim.core.population.io.StreamingPopulationReader;
+import org.matsim.core.population.io.StreamingPopulationWriter;
+import org.matsim.core.scenario.MutableScenario;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.utils.objectattributes.ObjectAttributes;
+
+/**
+ * Runs the {@link StrategyManager} over a population which is kept in a plans file instead of in memory.  The persons
+ * are read in chunks of a configurable size; each chunk is replanned (by the multi-threaded strategy modules, as usual)
+ * and then written to the output plans file, while the next chunk is already being read by a separate thread.  In
+ * consequence, at most about three chunks are in memory at the same time, independent of the size of the population.
+ * <p></p>
+ * The scores of the plans need to be in the input file, or need to be set by a preparatory {@link PersonAlgorithm}
+ * (see {@link #addPreparatoryAlgorithm(PersonAlgorithm)}), which is run on every person before the replanning.
+ * <p></p>
+ * Strategies that need to see the whole population at the same time (e.g. in
+ * {@link StrategyManager#beforePopulationRunHook}) see only one chunk at a time.
+ * <p></p>
+ * Is used by the controler if {@link org.matsim.core.config.groups.StrategyConfigGroup#getStreamingReplanningChunkSize()}
+ * is set.
+ */
+public final class StreamingReplanning {
+	private static final Logger log = Logger.getLogger(StreamingReplanning.class);
+
+	private final Scenario scenario;
+	private final StrategyManager strategyManager;
+	private final int chunkSize;
+	private final List<PersonAlgorithm> preparatoryAlgorithms = new ArrayList<>();
+	private final List<PersonAlgorithm> finishingAlgorithms = new ArrayList<>();
+
+	/**
+	 * @param scenario provides the config, the network, and the person attributes (e.g. the subpopulations); its
+	 *                 population is not used.
+	 */
+	public StreamingReplanning(final Scenario scenario, final StrategyManager strategyManager, final int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("chunk size must be at least 1, but is " + chunkSize);
+		}
+		this.scenario = scenario;
+		this.strategyManager = strategyManager;
+		this.chunkSize = chunkSize;
+	}
+
+	public void addPreparatoryAlgorithm(final PersonAlgorithm algorithm) {
+		this.preparatoryAlgorithms.add(algorithm);
+	}
+
+	/**
+	 * Adds an algorithm which is run on every person after the replanning, before the person is written.
+	 */
+	public void addFinishingAlgorithm(final PersonAlgorithm algorithm) {
+		this.finishingAlgorithms.add(algorithm);
+	}
+
+	/**
+	 * Reads the persons from the input plans file, replans them, and writes them to the output plans file.
+	 */
+	public void run(final String inputPlansFile, final String outputPlansFile, final ReplanningContext replanningContext) {
+		final BlockingQueue<List<Person>> chunks = new ArrayBlockingQueue<>(1);
+		final List<Person> endOfInput = new ArrayList<>();
+		final Throwable[] readerException = new Throwable[1];
+
+		MutableScenario readerScenario = ScenarioUtils.createMutableScenario(this.scenario.getConfig());
+		readerScenario.setNetwork(this.scenario.getNetwork());
+		final StreamingPopulationReader reader = new StreamingPopulationReader(readerScenario);
+		final Chunker chunker = new Chunker(chunks, this.chunkSize);
+		reader.addAlgorithm(chunker);
+
+		Thread readerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try (InputStream stream = IOUtils.getInputStream(inputPlansFile)) {
+					reader.parse(stream);
+					chunker.flush();
+				} catch (Throwable e) {
+					readerException[0] = e;
+				} finally {
+					try {
+						chunks.put(endOfInput);
+					} catch (InterruptedException e) {
+						// the replanning has given up, so nobody waits for the end of the input
+					}
+				}
+			}
+		}, "StreamingReplanningReader");
+		readerThread.setDaemon(true);
+		readerThread.start();
+
+		try {
+			StreamingPopulationWriter writer = new StreamingPopulationWriter();
+			writer.startStreaming(outputPlansFile);
+			try {
+				replanChunks(chunks, endOfInput, writer, replanningContext);
+			} finally {
+				writer.closeStreaming();
+			}
+		} finally {
+			// stops the reader if the replanning failed, so that it does not block forever on a full queue:
+			readerThread.interrupt();
+			try {
+				readerThread.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		if (readerException[0] != null) {
+			throw new RuntimeException("reading " + inputPlansFile + " failed", readerException[0]);
+		}
+	}
+
+	private void replanChunks(final BlockingQueue<List<Person>> chunks, final List<Person> endOfInput,
+			final StreamingPopulationWriter writer, final ReplanningContext replanningContext) {
+		int nOfChunks = 0;
+		long nOfPersons = 0;
+		while (true) {
+			List<Person> chunk = take(chunks);
+			if (chunk == endOfInput) {
+				break;
+			}
+			Population population = createChunkPopulation(chunk);
+			if (nOfChunks == 0) {
+				this.strategyManager.run(population, replanningContext.getIteration(), replanningContext);
+			} else {
+				// the change requests for this iteration were already handled with the first chunk
+				this.strategyManager.run(population, replanningContext);
+			}
+			for (Person person : chunk) {
+				for (PersonAlgorithm algorithm : this.finishingAlgorithms) {
+					algorithm.run(person);
+				}
+				writer.run(person);
+			}
+			nOfChunks++;
+			nOfPersons += chunk.size();
+		}
+		log.info("replanned " + nOfPersons + " persons in " + nOfChunks + " chunks.");
+	}
+
+	private Population createChunkPopulation(final List<Person> chunk) {
+		Population population = PopulationUtils.createPopulation(this.scenario.getConfig(), this.scenario.getNetwork());
+		String subpopulationAttribute = this.scenario.getConfig().plans().getSubpopulationAttributeName();
+		ObjectAttributes personAttributes = this.scenario.getPopulation() == null ? null : this.scenario.getPopulation().getPersonAttributes();
+		for (Person person : chunk) {
+			for (PersonAlgorithm algorithm : this.preparatoryAlgorithms) {
+				algorithm.run(person);
+			}
+			population.addPerson(person);
+			if (personAttributes != null) {
+				Object subpopulation = personAttributes.getAttribute(person.getId().toString(), subpopulationAttribute);
+				if (subpopulation != null) {
+					population.getPersonAttributes().putAttribute(person.getId().toString(), subpopulationAttribute, subpopulation);
+				}
+			}
+		}
+		return population;
+	}
+
+	/**
+	 * Collects the persons coming from the reader into chunks and hands them over to the replanning.
+	 */
+	private static final class Chunker implements PersonAlgorithm {
+		private final BlockingQueue<List<Person>> chunks;
+		private final int chunkSize;
+		private List<Person> chunk;
+
+		private Chunker(final BlockingQueue<List<Person>> chunks, final int chunkSize) {
+			this.chunks = chunks;
+			this.chunkSize = chunkSize;
+			this.chunk = new ArrayList<>(chunkSize);
+		}
+
+		@Override
+		public void run(final Person person) {
+			this.chunk.add(person);
+			if (this.chunk.size() == this.chunkSize) {
+				flush();
+			}
+		}
+
+		private void flush() {
+			if (!this.chunk.isEmpty()) {
+				put(this.chunks, this.chunk);
+				this.chunk = new ArrayList<>(this.chunkSize);
+			}
+		}
+	}
+
+	private static void put(final BlockingQueue<List<Person>> queue, final List<Person> chunk) {
+		try {
+			queue.put(chunk);
+		} catch (InterruptedException e) {
+			// keep the interrupt, so that the reader thread does not block again when signaling the end of the input:
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		}
+	}
+
+	private static List<Person> take(final BlockingQueue<List<Person>> queue) {
+		try {
+			return queue.take();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+}
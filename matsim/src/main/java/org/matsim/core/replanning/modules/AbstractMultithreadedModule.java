@@ -24,13 +24,16 @@ import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.replanning.PlanStrategyModule;
 import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.config.groups.GlobalConfigGroup.ReplanningScheduling;
 import org.matsim.core.population.algorithms.PlanAlgorithm;
 import org.matsim.core.replanning.ReplanningContext;
 import org.matsim.core.utils.misc.Counter;
 
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 /**
@@ -50,6 +53,13 @@ import java.util.concurrent.atomic.AtomicReference;
  * "fast threads"), it helps building reproducible runs.  Additionally, as the threads are only
  * started after all to-be-handled plans are added, we can use unsynchronized data structures.
  * <p></p>
+ * With {@link ReplanningScheduling#dynamic}, <code>handlePlan(Plan)</code> only collects the plans,
+ * and the threads take chunks of them while running, until no plans are left.  The chunks get smaller
+ * towards the end, so all threads are busy until the last plans are handled, also if the plans
+ * take very different times (e.g. pt-heavy agents next to car agents).  Every thread still has its own
+ * instance of the plan algorithm (and thus e.g. its own TripRouter) for all its chunks, but the assignment
+ * of plans to threads, and thus to the random number generators of the algorithms, depends on the timing.
+ * <p></p>
  * Design comments/questions:<ul>
  * <li> As a consequence of the design, the instances that getPlanAlgoInstance() returns, need to be thread-safe.  kai, dec'12
  * For an example with discussions, see {@link tutorial.programming.multiThreadedPlanStrategy.RunWithMultithreadedModule}
@@ -58,9 +68,15 @@ import java.util.concurrent.atomic.AtomicReference;
  * @author mrieser
  */
 abstract public class AbstractMultithreadedModule implements PlanStrategyModule {
+	private final static int MIN_CHUNK_SIZE = 4;
+	private final static int CHUNKS_PER_THREAD = 4;
+
 	private final int numOfThreads;
+	private final ReplanningScheduling scheduling;
 
 	private PlanAlgoThread[] algothreads = null;
+	private DynamicPlanAlgoThread[] dynamicAlgothreads = null;
+	private final List<Plan> plans = new ArrayList<>();
 	private Thread[] threads = null;
 	private PlanAlgorithm directAlgo = null;
 	private String name = null;
@@ -83,11 +99,16 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 	abstract public PlanAlgorithm getPlanAlgoInstance();
 
 	public AbstractMultithreadedModule(GlobalConfigGroup globalConfigGroup) {
-		this.numOfThreads = globalConfigGroup.getNumberOfThreads();
+		this(globalConfigGroup.getNumberOfThreads(), globalConfigGroup.getReplanningScheduling());
 	}
 
 	public AbstractMultithreadedModule(final int numOfThreads) {
+		this(numOfThreads, ReplanningScheduling.roundRobin);
+	}
+
+	public AbstractMultithreadedModule(final int numOfThreads, final ReplanningScheduling scheduling) {
 		this.numOfThreads = numOfThreads;
+		this.scheduling = scheduling;
 	}
 	
 	protected void beforePrepareReplanningHook(@SuppressWarnings("unused") ReplanningContext replanningContextTmp) {
@@ -118,7 +139,11 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 	@Override
 	public final void handlePlan(final Plan plan) {
 		if (this.directAlgo == null) {
-			this.algothreads[this.count % this.numOfThreads].addPlanToThread(plan);
+			if (this.dynamicAlgothreads != null) {
+				this.plans.add(plan);
+			} else {
+				this.algothreads[this.count % this.numOfThreads].addPlanToThread(plan);
+			}
 			this.count++;
 		} else {
 			this.directAlgo.run(plan);
@@ -139,6 +164,7 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 		if (this.directAlgo == null) {
 			// only try to start threads if we did not directly work on all the plans
 			log.info("[" + this.name + "] starting " + this.threads.length + " threads, handling " + this.count + " plans");
+			long start = System.nanoTime();
 
 			// start threads
 			for (Thread thread : this.threads) {
@@ -154,6 +180,7 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 				throw new RuntimeException(e);
 			}
 			log.info("[" + this.name + "] all " + this.threads.length + " threads finished.");
+			logThroughput(System.nanoTime() - start);
 			Throwable throwable = this.hadException.get();
 			if (throwable != null) {
 				throw new RuntimeException("Some threads crashed, thus not all plans may have been handled.", throwable);
@@ -161,6 +188,8 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 		}
 		// reset
 		this.algothreads = null;
+		this.dynamicAlgothreads = null;
+		this.plans.clear();
 		this.threads = null;
 		this.replanningContext = null;
 		this.count = 0;
@@ -175,7 +204,13 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 
 		this.hadException.set(null);
 		this.threads = new Thread[this.numOfThreads];
-		this.algothreads = new PlanAlgoThread[this.numOfThreads];
+		boolean dynamic = this.scheduling == ReplanningScheduling.dynamic;
+		if (dynamic) {
+			this.dynamicAlgothreads = new DynamicPlanAlgoThread[this.numOfThreads];
+		} else {
+			this.algothreads = new PlanAlgoThread[this.numOfThreads];
+		}
+		AtomicInteger nextPlan = new AtomicInteger(0);
 
 		Counter counter = null;
 		// setup threads
@@ -185,14 +220,37 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 				this.name = algo.getClass().getSimpleName();
 				counter = new Counter("[" + this.name + "] handled plan # ");
 			}
-			PlanAlgoThread algothread = new PlanAlgoThread(algo, counter);
-			Thread thread = new Thread(algothread, this.name + "." + i);
+			Runnable runnable;
+			if (dynamic) {
+				DynamicPlanAlgoThread algothread = new DynamicPlanAlgoThread(algo, counter, this.plans, nextPlan, this.numOfThreads);
+				this.dynamicAlgothreads[i] = algothread;
+				runnable = algothread;
+			} else {
+				PlanAlgoThread algothread = new PlanAlgoThread(algo, counter);
+				this.algothreads[i] = algothread;
+				runnable = algothread;
+			}
+			Thread thread = new Thread(runnable, this.name + "." + i);
 			thread.setUncaughtExceptionHandler(this.exceptionHandler);
 			this.threads[i] = thread;
-			this.algothreads[i] = algothread;
 		}
 	}
 
+	private void logThroughput(final long nanos) {
+		double seconds = nanos / 1e9;
+		StringBuilder str = new StringBuilder();
+		str.append("[").append(this.name).append("] handled ").append(this.count).append(" plans in ")
+				.append(String.format("%.1f", seconds)).append(" s (")
+				.append(String.format("%.1f", seconds > 0 ? this.count / seconds : 0.0)).append(" plans/s)");
+		if (this.dynamicAlgothreads != null) {
+			str.append(", plans per thread:");
+			for (DynamicPlanAlgoThread algothread : this.dynamicAlgothreads) {
+				str.append(" ").append(algothread.handledPlans);
+			}
+		}
+		log.info(str.toString());
+	}
+
 	/* package (for a test) */ final int getNumOfThreads() {
 		return numOfThreads;
 	}
@@ -213,6 +271,51 @@ abstract public class AbstractMultithreadedModule implements PlanStrategyModule
 
 	}
 
+	/**
+	 * Takes chunks of plans from the shared list until no plans are left.  The chunks are a fraction of the remaining
+	 * plans, so they are large at the beginning (few synchronizations) and small at the end (no thread runs long
+	 * after the others).
+	 */
+	private final static class DynamicPlanAlgoThread implements Runnable {
+
+		private final PlanAlgorithm planAlgo;
+		private final Counter counter;
+		private final List<Plan> plans;
+		private final AtomicInteger nextPlan;
+		private final int numOfThreads;
+		/*package*/ int handledPlans = 0;
+
+		public DynamicPlanAlgoThread(final PlanAlgorithm algo, final Counter counter, final List<Plan> plans, final AtomicInteger nextPlan,
+				final int numOfThreads) {
+			this.planAlgo = algo;
+			this.counter = counter;
+			this.plans = plans;
+			this.nextPlan = nextPlan;
+			this.numOfThreads = numOfThreads;
+		}
+
+		@Override
+		public void run() {
+			int size = this.plans.size();
+			while (true) {
+				int start = this.nextPlan.get();
+				if (start >= size) {
+					return;
+				}
+				int chunkSize = Math.max(MIN_CHUNK_SIZE, (size - start) / (CHUNKS_PER_THREAD * this.numOfThreads));
+				int end = Math.min(size, start + chunkSize);
+				if (!this.nextPlan.compareAndSet(start, end)) {
+					continue;
+				}
+				for (int i = start; i < end; i++) {
+					this.planAlgo.run(this.plans.get(i));
+					this.handledPlans++;
+					this.counter.incCounter();
+				}
+			}
+		}
+	}
+
 	private final static class PlanAlgoThread implements Runnable {
 
 		private final PlanAlgorithm planAlgo;
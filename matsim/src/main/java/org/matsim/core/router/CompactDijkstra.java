@@ -0,0 +1,231 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactDijkstra.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Dijkstra's algorithm on a {@link CompactRoutingGraph}. The graph (and the view of the network) can be shared by
+ * any number of instances; the search state of an instance is kept in a few flat arrays indexed by the nodes of the
+ * graph, together with a binary heap of node indices. Only the entries of the nodes visited by a query are reset
+ * after the query, so the time for a query does not depend on the size of the network.
+ * <p></p>
+ * As the other routers, instances are not thread-safe; each thread needs its own instance.
+ */
+final class CompactDijkstra implements LeastCostPathCalculator {
+
+	private final static Logger log = Logger.getLogger(CompactDijkstra.class);
+
+	/*package*/ final CompactRoutingGraph graph;
+	private final CompactRoutingGraph.View view;
+	private final TravelDisutility travelCosts;
+	private final TravelTime travelTimes;
+
+	// search state, indexed by node
+	private final double[] cost;
+	private final double[] time;
+	private final int[] comingFrom;
+	private final int[] heapPosition;
+	private final int[] visited;
+	private int visitedCount = 0;
+
+	// binary min-heap of node indices, ordered by cost
+	private final int[] heap;
+	private int heapSize = 0;
+
+	CompactDijkstra(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		this(new CompactRoutingGraph(network).createView(network), travelCosts, travelTimes);
+	}
+
+	CompactDijkstra(final CompactRoutingGraph.View view, final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		this.graph = view.getGraph();
+		this.view = view;
+		this.travelCosts = travelCosts;
+		this.travelTimes = travelTimes;
+		int nodeCount = this.graph.getNodeCount();
+		this.cost = new double[nodeCount];
+		this.time = new double[nodeCount];
+		this.comingFrom = new int[nodeCount];
+		this.heapPosition = new int[nodeCount];
+		this.visited = new int[nodeCount];
+		this.heap = new int[nodeCount];
+		Arrays.fill(this.cost, Double.POSITIVE_INFINITY);
+		Arrays.fill(this.heapPosition, CompactRoutingGraph.NO_INDEX);
+	}
+
+	@Override
+	public Path calcLeastCostPath(final Node fromNode, final Node toNode, final double starttime, final Person person, final Vehicle vehicle) {
+		int from = getNodeIndex(fromNode);
+		int to = getNodeIndex(toNode);
+
+		visit(from, 0.0, starttime, CompactRoutingGraph.NO_INDEX);
+		boolean found = false;
+		while (this.heapSize > 0) {
+			int v = poll();
+			if (v == to) {
+				found = true;
+				break;
+			}
+			relax(v, person, vehicle);
+		}
+
+		Path path = null;
+		if (found) {
+			path = createPath(from, to, starttime);
+		} else {
+			log.warn("No route was found from node " + fromNode.getId() + " to node " + toNode.getId() + ". Returning null.");
+		}
+		reset();
+		return path;
+	}
+
+	private int getNodeIndex(final Node node) {
+		int v = this.view.getNodeIndex(node);
+		if (v == CompactRoutingGraph.NO_INDEX) {
+			throw new IllegalArgumentException("The nodes passed as parameters are not part of the network stored by "
+					+ getClass().getSimpleName() + ": the validity of the results cannot be guaranteed. Aborting!");
+		}
+		return v;
+	}
+
+	private void relax(final int v, final Person person, final Vehicle vehicle) {
+		final double currCost = this.cost[v];
+		final double currTime = this.time[v];
+		final Link[] links = this.view.links;
+		final int[] linkToNode = this.graph.linkToNode;
+		for (int l = this.graph.firstLink[v], end = this.graph.firstLink[v + 1]; l < end; l++) {
+			Link link = links[l];
+			if (link == null) {
+				continue; // not part of the network of the view
+			}
+			int w = linkToNode[l];
+			double newCost = currCost + this.travelCosts.getLinkTravelDisutility(link, currTime, person, vehicle);
+			if (newCost < this.cost[w]) {
+				visit(w, newCost, currTime + this.travelTimes.getLinkTravelTime(link, currTime, person, vehicle), l);
+			}
+		}
+	}
+
+	private void visit(final int v, final double newCost, final double newTime, final int link) {
+		if (this.cost[v] == Double.POSITIVE_INFINITY) {
+			this.visited[this.visitedCount++] = v;
+		}
+		this.cost[v] = newCost;
+		this.time[v] = newTime;
+		this.comingFrom[v] = link;
+		if (this.heapPosition[v] == CompactRoutingGraph.NO_INDEX) {
+			this.heapPosition[v] = this.heapSize;
+			this.heap[this.heapSize++] = v;
+		}
+		siftUp(this.heapPosition[v]);
+	}
+
+	private Path createPath(final int from, final int to, final double starttime) {
+		List<Node> nodes = new ArrayList<>();
+		List<Link> links = new ArrayList<>();
+		nodes.add(this.view.nodes[to]);
+		for (int v = to; v != from; ) {
+			int l = this.comingFrom[v];
+			links.add(this.view.links[l]);
+			v = this.graph.linkFromNode[l];
+			nodes.add(this.view.nodes[v]);
+		}
+		Collections.reverse(nodes);
+		Collections.reverse(links);
+		return new Path(nodes, links, this.time[to] - starttime, this.cost[to]);
+	}
+
+	private void reset() {
+		for (int i = 0; i < this.visitedCount; i++) {
+			int v = this.visited[i];
+			this.cost[v] = Double.POSITIVE_INFINITY;
+			this.heapPosition[v] = CompactRoutingGraph.NO_INDEX;
+		}
+		this.visitedCount = 0;
+		this.heapSize = 0;
+	}
+
+	private int poll() {
+		int min = this.heap[0];
+		this.heapPosition[min] = CompactRoutingGraph.NO_INDEX;
+		this.heapSize--;
+		if (this.heapSize > 0) {
+			int last = this.heap[this.heapSize];
+			this.heap[0] = last;
+			this.heapPosition[last] = 0;
+			siftDown(0);
+		}
+		return min;
+	}
+
+	private void siftUp(int pos) {
+		final int v = this.heap[pos];
+		final double c = this.cost[v];
+		while (pos > 0) {
+			int parentPos = (pos - 1) >> 1;
+			int parent = this.heap[parentPos];
+			if (this.cost[parent] <= c) {
+				break;
+			}
+			this.heap[pos] = parent;
+			this.heapPosition[parent] = pos;
+			pos = parentPos;
+		}
+		this.heap[pos] = v;
+		this.heapPosition[v] = pos;
+	}
+
+	private void siftDown(int pos) {
+		final int v = this.heap[pos];
+		final double c = this.cost[v];
+		while (true) {
+			int child = 2 * pos + 1;
+			if (child >= this.heapSize) {
+				break;
+			}
+			if (child + 1 < this.heapSize && this.cost[this.heap[child + 1]] < this.cost[this.heap[child]]) {
+				child++;
+			}
+			if (this.cost[this.heap[child]] >= c) {
+				break;
+			}
+			this.heap[pos] = this.heap[child];
+			this.heapPosition[this.heap[pos]] = pos;
+			pos = child;
+		}
+		this.heap[pos] = v;
+		this.heapPosition[v] = pos;
+	}
+
+}
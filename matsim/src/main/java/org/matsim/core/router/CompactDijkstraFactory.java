@@ -0,0 +1,89 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactDijkstraFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Creates {@link CompactDijkstra} least cost path calculators. All calculators share one read-only
+ * {@link CompactRoutingGraph} per network; each calculator only allocates its own search state.
+ * <p></p>
+ * Networks which are a part of a network for which a graph exists, e.g. the single mode networks of the
+ * {@link NetworkRoutingProvider}, share the graph of the larger network. When created by injection, the graph of
+ * the scenario network is used for all of its subnetworks, so there is only one graph for all modes.
+ */
+@Singleton
+public class CompactDijkstraFactory implements LeastCostPathCalculatorFactory {
+
+	private final Network scenarioNetwork;
+	private final List<CompactRoutingGraph> graphs = new ArrayList<>();
+	private final Map<Network, CompactRoutingGraph.View> views = new HashMap<>();
+
+	public CompactDijkstraFactory() {
+		this.scenarioNetwork = null;
+	}
+
+	@Inject
+	CompactDijkstraFactory(final Network scenarioNetwork) {
+		this.scenarioNetwork = scenarioNetwork;
+	}
+
+	@Override
+	public LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		return new CompactDijkstra(getView(network), travelCosts, travelTimes);
+	}
+
+	private synchronized CompactRoutingGraph.View getView(final Network network) {
+		CompactRoutingGraph.View view = this.views.get(network);
+		if (view != null) {
+			return view;
+		}
+		if (this.graphs.isEmpty() && this.scenarioNetwork != null) {
+			this.graphs.add(new CompactRoutingGraph(this.scenarioNetwork));
+		}
+		for (CompactRoutingGraph graph : this.graphs) {
+			view = graph.createView(network);
+			if (view != null) {
+				break;
+			}
+		}
+		if (view == null) {
+			CompactRoutingGraph graph = new CompactRoutingGraph(network);
+			this.graphs.add(graph);
+			view = graph.createView(network);
+		}
+		this.views.put(network, view);
+		return view;
+	}
+
+}
@@ -0,0 +1,185 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactRoutingGraph.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+
+/**
+ * The topology of a network in compressed sparse row format: the links are sorted by their from-node, so the
+ * outgoing links of node <code>v</code> are the links <code>firstLink[v]</code> to <code>firstLink[v + 1] - 1</code>.
+ * Besides the arrays of the {@link Node} and {@link Link} objects, which are needed to ask for travel times and
+ * costs and to build the paths, the graph only consists of a few primitive arrays, which makes it much smaller
+ * than an {@link org.matsim.core.router.util.ArrayRoutingNetwork} with one object per node and link.
+ * <p></p>
+ * Instances are immutable after construction and can be shared among threads. The search state is kept by each
+ * router, see {@link CompactDijkstra}.
+ * <p></p>
+ * Networks that contain only some of the links of the network of the graph, e.g. the single mode networks created
+ * by the {@link NetworkRoutingProvider}, do not need a graph of their own: a {@link View} maps the indices of the
+ * graph to their nodes and links, and hides all other links.
+ */
+final class CompactRoutingGraph {
+
+	private final static Logger log = Logger.getLogger(CompactRoutingGraph.class);
+
+	/*package*/ static final int NO_INDEX = -1;
+
+	/*package*/ final Node[] nodes;
+	/*package*/ final Link[] links;
+	private final int[] nodeIndexById;
+	private final int[] linkIndexById;
+
+	/*package*/ final int[] firstLink;
+	/*package*/ final int[] linkFromNode;
+	/*package*/ final int[] linkToNode;
+
+	private final View fullView;
+
+	CompactRoutingGraph(final Network network) {
+		int nodeCount = network.getNodes().size();
+		int linkCount = network.getLinks().size();
+		this.nodes = network.getNodes().values().toArray(new Node[nodeCount]);
+		int maxNodeIndex = -1;
+		for (Node node : this.nodes) {
+			maxNodeIndex = Math.max(maxNodeIndex, node.getId().index());
+		}
+		this.nodeIndexById = createIndex(maxNodeIndex);
+		for (int i = 0; i < nodeCount; i++) {
+			this.nodeIndexById[this.nodes[i].getId().index()] = i;
+		}
+
+		// counting sort of the links by their from-node
+		this.firstLink = new int[nodeCount + 1];
+		int maxLinkIndex = -1;
+		for (Link link : network.getLinks().values()) {
+			int from = getIndex(this.nodeIndexById, link.getFromNode().getId().index());
+			int to = getIndex(this.nodeIndexById, link.getToNode().getId().index());
+			if (from == NO_INDEX || to == NO_INDEX) {
+				throw new IllegalArgumentException("the nodes of link " + link.getId() + " are not part of the network.");
+			}
+			this.firstLink[from + 1]++;
+			maxLinkIndex = Math.max(maxLinkIndex, link.getId().index());
+		}
+		for (int v = 0; v < nodeCount; v++) {
+			this.firstLink[v + 1] += this.firstLink[v];
+		}
+		int[] next = Arrays.copyOf(this.firstLink, nodeCount);
+		this.links = new Link[linkCount];
+		this.linkFromNode = new int[linkCount];
+		this.linkToNode = new int[linkCount];
+		for (Link link : network.getLinks().values()) {
+			int from = getIndex(this.nodeIndexById, link.getFromNode().getId().index());
+			int l = next[from]++;
+			this.links[l] = link;
+			this.linkFromNode[l] = from;
+			this.linkToNode[l] = getIndex(this.nodeIndexById, link.getToNode().getId().index());
+		}
+		this.linkIndexById = createIndex(maxLinkIndex);
+		for (int l = 0; l < linkCount; l++) {
+			this.linkIndexById[this.links[l].getId().index()] = l;
+		}
+		this.fullView = new View(network, this.nodes, this.links);
+		log.info("compact routing graph: " + nodeCount + " nodes, " + linkCount + " links.");
+	}
+
+	/*package*/ int getNodeCount() {
+		return this.nodes.length;
+	}
+
+	/**
+	 * @return a view on this graph that contains exactly the nodes and links of the given network, or
+	 * <code>null</code> if the network is not a part of the network of this graph (i.e. if it contains nodes or
+	 * links that are not in this graph, or links that connect other nodes than the links of this graph with the
+	 * same id).
+	 */
+	/*package*/ View createView(final Network network) {
+		if (network == this.fullView.network) {
+			return this.fullView;
+		}
+		Node[] viewNodes = new Node[this.nodes.length];
+		for (Node node : network.getNodes().values()) {
+			int v = getIndex(this.nodeIndexById, node.getId().index());
+			if (v == NO_INDEX) {
+				return null;
+			}
+			viewNodes[v] = node;
+		}
+		Link[] viewLinks = new Link[this.links.length];
+		for (Link link : network.getLinks().values()) {
+			int l = getIndex(this.linkIndexById, link.getId().index());
+			if (l == NO_INDEX
+					|| this.nodes[this.linkFromNode[l]].getId() != link.getFromNode().getId()
+					|| this.nodes[this.linkToNode[l]].getId() != link.getToNode().getId()) {
+				return null;
+			}
+			viewLinks[l] = link;
+		}
+		return new View(network, viewNodes, viewLinks);
+	}
+
+	private static int[] createIndex(final int maxIdIndex) {
+		int[] index = new int[maxIdIndex + 1];
+		Arrays.fill(index, NO_INDEX);
+		return index;
+	}
+
+	private static int getIndex(final int[] indexById, final int idIndex) {
+		return idIndex < indexById.length ? indexById[idIndex] : NO_INDEX;
+	}
+
+	/**
+	 * The nodes and links of one network, stored at the indices of the graph; nodes and links which are not part of
+	 * the network are <code>null</code>. Like the graph, views are immutable and can be shared among threads.
+	 */
+	/*package*/ final class View {
+		/*package*/ final Network network;
+		/*package*/ final Node[] nodes;
+		/*package*/ final Link[] links;
+
+		private View(final Network network, final Node[] nodes, final Link[] links) {
+			this.network = network;
+			this.nodes = nodes;
+			this.links = links;
+		}
+
+		/*package*/ CompactRoutingGraph getGraph() {
+			return CompactRoutingGraph.this;
+		}
+
+		/**
+		 * @return the index of the node in the graph, or {@link CompactRoutingGraph#NO_INDEX} if the node is not part of
+		 * the network of this view
+		 */
+		/*package*/ int getNodeIndex(final Node node) {
+			int v = getIndex(CompactRoutingGraph.this.nodeIndexById, node.getId().index());
+			if (v == NO_INDEX || this.nodes[v] != node) {
+				return NO_INDEX;
+			}
+			return v;
+		}
+	}
+
+}
@@ -0,0 +1,277 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchies.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.ContractionHierarchiesGraph.Metric;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Least cost path calculator based on (customizable) contraction hierarchies.
+ * <p></p>
+ * The contraction hierarchy is computed once per network, see {@link ContractionHierarchiesGraph}, and is then
+ * customized with the link costs. A query only visits the ancestors of the start and the end node in the
+ * elimination tree of the hierarchy and does not need a priority queue, so it takes a few microseconds even on
+ * large networks, compared to milliseconds for {@link Dijkstra}.
+ * <p></p>
+ * Time-dependent travel costs are supported by customizing the hierarchy per time bin (e.g. the time bins of the
+ * {@link org.matsim.core.trafficmonitoring.TravelTimeCalculator}). A query uses the link costs of the time bin of
+ * its start time for all links of the path, instead of the costs at the time the link is entered. This is exact
+ * for static costs, and a good approximation for time bins that are not much shorter than typical trips. The
+ * travel time and cost of the returned path are computed time-dependently along the path, as in the other
+ * routers. The time bins are customized lazily when they are first needed. Instances created by the
+ * {@link ContractionHierarchiesFactory} share the customized time bins, which the factory customizes anew in every
+ * iteration.
+ * <p></p>
+ * As in the preprocessing of {@link AStarLandmarks}, the customization evaluates the travel disutility without
+ * person and vehicle, so person-specific costs are not taken into account for finding the path.
+ * <p></p>
+ * Instances are not thread-safe, but the underlying hierarchy and the customized metrics can be shared among instances.
+ */
+public class ContractionHierarchies implements LeastCostPathCalculator {
+
+	private final static Logger log = Logger.getLogger(ContractionHierarchies.class);
+
+	private final ContractionHierarchiesGraph graph;
+	private final TravelDisutility travelCosts;
+	private final TravelTime travelTimes;
+	private final TimeBinMetrics<Metric> metrics;
+
+	private final double[] forwardCost;
+	private final double[] backwardCost;
+	private final int[] forwardArc;
+	private final int[] backwardArc;
+	private int[] stack = new int[64];
+
+	/**
+	 * Creates a least cost path calculator for time-independent costs, which are taken at time 0.
+	 */
+	public ContractionHierarchies(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		this(new ContractionHierarchiesGraph(network), travelCosts, travelTimes);
+	}
+
+	private ContractionHierarchies(final ContractionHierarchiesGraph graph, final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		this(graph, createMetrics(graph, Double.POSITIVE_INFINITY, 1), travelCosts, travelTimes);
+	}
+
+	/*package*/ ContractionHierarchies(final ContractionHierarchiesGraph graph, final TimeBinMetrics<Metric> metrics,
+			final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		this.graph = graph;
+		this.travelCosts = travelCosts;
+		this.travelTimes = travelTimes;
+		this.metrics = metrics;
+
+		int nodeCount = graph.nodes.length;
+		this.forwardCost = new double[nodeCount];
+		this.backwardCost = new double[nodeCount];
+		Arrays.fill(this.forwardCost, Double.POSITIVE_INFINITY);
+		Arrays.fill(this.backwardCost, Double.POSITIVE_INFINITY);
+		this.forwardArc = new int[nodeCount];
+		this.backwardArc = new int[nodeCount];
+	}
+
+	/*package*/ static TimeBinMetrics<Metric> createMetrics(final ContractionHierarchiesGraph graph, final double timeBinSize,
+			final int numberOfTimeBins) {
+		return new TimeBinMetrics<>(graph::customize, timeBinSize, numberOfTimeBins);
+	}
+
+	private int getNodeIndex(final Node node) {
+		int index = this.graph.getNodeIndex(node);
+		if (index == ContractionHierarchiesGraph.NO_NODE) {
+			throw new IllegalArgumentException("The nodes passed as parameters are not part of the network stored by "+
+					getClass().getSimpleName() + ": the validity of the results cannot be guaranteed. Aborting!");
+		}
+		return index;
+	}
+
+	@Override
+	public Path calcLeastCostPath(final Node fromNode, final Node toNode, final double starttime, final Person person, final Vehicle vehicle) {
+		int from = getNodeIndex(fromNode);
+		int to = getNodeIndex(toNode);
+		Metric metric = this.metrics.get(starttime, this.travelCosts);
+		int[] parent = this.graph.parent;
+		int[] rank = this.graph.rank;
+
+		// walk up both paths in the elimination tree in the order of the ranks, until they meet
+		this.forwardCost[from] = 0;
+		this.backwardCost[to] = 0;
+		int x = from;
+		int y = to;
+		while (x != y) {
+			if (y == ContractionHierarchiesGraph.NO_NODE || (x != ContractionHierarchiesGraph.NO_NODE && rank[x] < rank[y])) {
+				relaxUp(x, metric);
+				x = parent[x];
+			} else {
+				relaxDown(y, metric);
+				y = parent[y];
+			}
+		}
+
+		// on the common ancestors, the searches meet; nodes that are already more expensive than the best path are not relaxed
+		double bestCost = Double.POSITIVE_INFINITY;
+		int meetingNode = ContractionHierarchiesGraph.NO_NODE;
+		for (int z = x; z != ContractionHierarchiesGraph.NO_NODE; z = parent[z]) {
+			double total = this.forwardCost[z] + this.backwardCost[z];
+			if (total < bestCost) {
+				bestCost = total;
+				meetingNode = z;
+			}
+			if (this.forwardCost[z] < bestCost) {
+				relaxUp(z, metric);
+			}
+			if (this.backwardCost[z] < bestCost) {
+				relaxDown(z, metric);
+			}
+		}
+
+		List<Link> links = null;
+		if (meetingNode != ContractionHierarchiesGraph.NO_NODE) {
+			links = new ArrayList<>();
+			unpackForward(from, meetingNode, metric, links);
+			unpackBackward(meetingNode, to, metric, links);
+		}
+
+		for (int v = from; v != ContractionHierarchiesGraph.NO_NODE; v = parent[v]) {
+			this.forwardCost[v] = Double.POSITIVE_INFINITY;
+		}
+		for (int v = to; v != ContractionHierarchiesGraph.NO_NODE; v = parent[v]) {
+			this.backwardCost[v] = Double.POSITIVE_INFINITY;
+		}
+
+		if (links == null) {
+			log.warn("No route was found from node " + fromNode.getId() + " to node " + toNode.getId() + ". Returning null.");
+			return null;
+		}
+		return createPath(fromNode, links, starttime, person, vehicle);
+	}
+
+	private void relaxUp(final int x, final Metric metric) {
+		double cost = this.forwardCost[x];
+		if (cost == Double.POSITIVE_INFINITY) {
+			return;
+		}
+		int[] head = metric.upHead;
+		double[] weight = metric.upWeight;
+		for (int i = metric.upFirst[x], end = metric.upFirst[x + 1]; i < end; i++) {
+			int y = head[i];
+			double c = cost + weight[i];
+			if (c < this.forwardCost[y]) {
+				this.forwardCost[y] = c;
+				this.forwardArc[y] = metric.upArc[i];
+			}
+		}
+	}
+
+	private void relaxDown(final int x, final Metric metric) {
+		double cost = this.backwardCost[x];
+		if (cost == Double.POSITIVE_INFINITY) {
+			return;
+		}
+		int[] head = metric.downHead;
+		double[] weight = metric.downWeight;
+		for (int i = metric.downFirst[x], end = metric.downFirst[x + 1]; i < end; i++) {
+			int y = head[i];
+			double c = cost + weight[i];
+			if (c < this.backwardCost[y]) {
+				this.backwardCost[y] = c;
+				this.backwardArc[y] = metric.downArc[i];
+			}
+		}
+	}
+
+	private void unpackForward(final int from, final int meetingNode, final Metric metric, final List<Link> links) {
+		// collect the upward arcs from the meeting node back to the start node, then unpack them in reverse order
+		int count = 0;
+		int[] arcs = new int[16];
+		for (int x = meetingNode; x != from; ) {
+			int d = this.forwardArc[x];
+			if (count == arcs.length) {
+				arcs = Arrays.copyOf(arcs, count * 2);
+			}
+			arcs[count++] = d;
+			x = this.graph.arcTail[d >> 1];
+		}
+		for (int i = count - 1; i >= 0; i--) {
+			unpackArc(arcs[i], metric, links);
+		}
+	}
+
+	private void unpackBackward(final int meetingNode, final int to, final Metric metric, final List<Link> links) {
+		for (int x = meetingNode; x != to; ) {
+			int d = this.backwardArc[x];
+			unpackArc(d, metric, links);
+			x = this.graph.arcTail[d >> 1];
+		}
+	}
+
+	/**
+	 * Replaces the directed arc with the links it represents. Shortcuts are unpacked with an explicit stack,
+	 * their depth is only bounded by the depth of the elimination tree.
+	 */
+	private void unpackArc(final int directedArc, final Metric metric, final List<Link> links) {
+		int size = 0;
+		this.stack[size++] = directedArc;
+		while (size > 0) {
+			int d = this.stack[--size];
+			int value = metric.unpack[d];
+			if (value < ContractionHierarchiesGraph.UNREACHABLE) {
+				links.add(this.graph.links[Metric.decodeLink(value)]);
+				continue;
+			}
+			int a = d >> 1;
+			boolean upward = (d & 1) == 0;
+			int fromNode = upward ? this.graph.arcTail[a] : this.graph.arcHead[a];
+			int toNode = upward ? this.graph.arcHead[a] : this.graph.arcTail[a];
+			if (size + 2 > this.stack.length) {
+				this.stack = Arrays.copyOf(this.stack, this.stack.length * 2);
+			}
+			// push the second half first, so the first half is unpacked first
+			this.stack[size++] = this.graph.findDirectedArc(value, toNode);
+			this.stack[size++] = this.graph.findDirectedArc(fromNode, value);
+		}
+	}
+
+	private Path createPath(final Node fromNode, final List<Link> links, final double starttime, final Person person, final Vehicle vehicle) {
+		List<Node> nodes = new ArrayList<>(links.size() + 1);
+		nodes.add(fromNode);
+		double time = starttime;
+		double cost = 0;
+		for (Link link : links) {
+			double travelTime = this.travelTimes.getLinkTravelTime(link, time, person, vehicle);
+			cost += this.travelCosts.getLinkTravelDisutility(link, time, person, vehicle);
+			time += travelTime;
+			nodes.add(link.getToNode());
+		}
+		return new Path(nodes, links, time - starttime, cost);
+	}
+
+}
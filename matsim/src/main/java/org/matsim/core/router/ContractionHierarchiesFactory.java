@@ -0,0 +1,124 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchiesFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.listener.IterationStartsListener;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.router.ContractionHierarchiesGraph.Metric;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Creates {@link ContractionHierarchies} least cost path calculators. The contraction hierarchy of each network
+ * is computed once and shared among all calculators. The customized metrics are shared as well: the calculators of
+ * all replanning threads use the same read-only metrics, which are customized once per iteration. The factory is
+ * registered as {@link IterationStartsListener} and drops the metrics when an iteration starts, so the calculators
+ * then use the new travel times. Outside of the controler, the metrics are kept as long as the same travel time
+ * object is passed to the factory.
+ * <p></p>
+ * When used with time bins, the hierarchy is customized separately for each time bin, which makes it a time-dependent
+ * variant (as in time-dependent contraction hierarchies, but with one static metric per time bin).
+ * The time bins are customized lazily, so only the time bins that are actually queried cost
+ * customization time and memory.
+ */
+@Singleton
+public class ContractionHierarchiesFactory implements LeastCostPathCalculatorFactory, IterationStartsListener {
+
+	private final Map<Network, ContractionHierarchiesGraph> graphs = new HashMap<>();
+	private final Map<MetricsKey, TimeBinMetrics<Metric>> metrics = new HashMap<>();
+	private final double timeBinSize;
+	private final int numberOfTimeBins;
+
+	/**
+	 * Creates a factory for time-independent travel costs.
+	 */
+	public ContractionHierarchiesFactory() {
+		this.timeBinSize = Double.POSITIVE_INFINITY;
+		this.numberOfTimeBins = 1;
+	}
+
+	/**
+	 * Creates a factory that customizes the contraction hierarchy for each time bin, e.g. with the time bins of the
+	 * {@link org.matsim.core.trafficmonitoring.TravelTimeCalculator}. Queries starting after <code>maxTime</code> use
+	 * the last time bin.
+	 */
+	public ContractionHierarchiesFactory(final int timeBinSize, final int maxTime) {
+		this.timeBinSize = timeBinSize;
+		this.numberOfTimeBins = maxTime / timeBinSize + 1;
+	}
+
+	@Inject
+	ContractionHierarchiesFactory(final TravelTimeCalculatorConfigGroup config) {
+		this(config.getTraveltimeBinSize(), config.getMaxTime());
+	}
+
+	@Override
+	public LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		ContractionHierarchiesGraph graph = getGraph(network);
+		return new ContractionHierarchies(graph, getMetrics(graph, network, travelCosts, travelTimes), travelCosts, travelTimes);
+	}
+
+	/**
+	 * The travel times change from one iteration to the next, so the time bins are customized anew.
+	 */
+	@Override
+	public synchronized void notifyIterationStarts(final IterationStartsEvent event) {
+		this.metrics.clear();
+	}
+
+	/**
+	 * The calculators of all threads get their own instance of the travel disutility, but usually share the travel
+	 * time and the (mode-specific) network. Calculators for the same network, travel time and an equivalent travel
+	 * disutility (see {@link MetricsKey}) therefore share the customized time bins until the next iteration starts.
+	 */
+	private TimeBinMetrics<Metric> getMetrics(final ContractionHierarchiesGraph graph, final Network network,
+			final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		MetricsKey key = new MetricsKey(network, travelCosts, travelTimes);
+		synchronized (this) {
+			TimeBinMetrics<Metric> metrics = this.metrics.get(key);
+			if (metrics == null) {
+				metrics = ContractionHierarchies.createMetrics(graph, this.timeBinSize, this.numberOfTimeBins);
+				this.metrics.put(key, metrics);
+			}
+			return metrics;
+		}
+	}
+
+	private synchronized ContractionHierarchiesGraph getGraph(final Network network) {
+		ContractionHierarchiesGraph graph = this.graphs.get(network);
+		if (graph == null) {
+			graph = new ContractionHierarchiesGraph(network);
+			this.graphs.put(network, graph);
+		}
+		return graph;
+	}
+
+}
@@ -0,0 +1,526 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchiesGraph.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Arrays;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.util.TravelDisutility;
+
+/**
+ * The metric-independent part of a (customizable) contraction hierarchy of a network.
+ * <p></p>
+ * The nodes are ordered by nested dissection, using recursive bisections along the node coordinates.
+ * The nodes of the separators get the highest ranks. Contracting the nodes in this order, without
+ * witness searches, results in the shortcut topology, which is valid for any link costs. For concrete
+ * link costs, the weights of all arcs are computed by {@link #customize(TravelDisutility, double)},
+ * which takes time linear in the number of triangles of the contracted graph, but does not change the
+ * topology. This makes it cheap to re-customize the hierarchy whenever the travel times change
+ * (see Dibbelt, Strasser, Wagner: Customizable Contraction Hierarchies, 2014).
+ * <p></p>
+ * Each arc connects a node with a higher ranked node and has a weight for both directions. The
+ * upward neighbors of a node are exactly the nodes on its path to the root in the elimination tree,
+ * which allows queries without priority queue, see {@link ContractionHierarchies}.
+ * <p></p>
+ * Instances are immutable after construction and can be shared among threads.
+ */
+final class ContractionHierarchiesGraph {
+
+	private final static Logger log = Logger.getLogger(ContractionHierarchiesGraph.class);
+
+	private static final int LEAF_SIZE = 8;
+
+	/*package*/ static final int NO_NODE = -1;
+	/*package*/ static final int UNREACHABLE = -1;
+
+	/*package*/ final Network network;
+	/*package*/ final Node[] nodes;
+	/*package*/ final Link[] links;
+	private final int[] nodeIndexById;
+
+	/*package*/ final int[] rank;
+	/*package*/ final int[] order;
+	/*package*/ final int[] parent;
+
+	/*package*/ final int[] firstArc;
+	/*package*/ final int[] arcTail;
+	/*package*/ final int[] arcHead;
+
+	// temporary data while ordering the nodes
+	private int[] neighborStart;
+	private int[] neighbors;
+	private int[] stamp;
+	private int stampCounter = 0;
+	private int nextRank;
+
+	ContractionHierarchiesGraph(final Network network) {
+		long start = System.currentTimeMillis();
+		this.network = network;
+		int nodeCount = network.getNodes().size();
+		this.nodes = network.getNodes().values().toArray(new Node[nodeCount]);
+		this.links = network.getLinks().values().toArray(new Link[network.getLinks().size()]);
+
+		int maxIndex = -1;
+		for (Node node : this.nodes) {
+			maxIndex = Math.max(maxIndex, node.getId().index());
+		}
+		this.nodeIndexById = new int[maxIndex + 1];
+		Arrays.fill(this.nodeIndexById, NO_NODE);
+		for (int i = 0; i < nodeCount; i++) {
+			this.nodeIndexById[this.nodes[i].getId().index()] = i;
+		}
+
+		buildNeighbors();
+		this.rank = new int[nodeCount];
+		this.order = new int[nodeCount];
+		this.stamp = new int[nodeCount];
+		this.nextRank = nodeCount - 1;
+		int[] all = new int[nodeCount];
+		for (int i = 0; i < nodeCount; i++) {
+			all[i] = i;
+		}
+		dissect(all);
+		this.stamp = null;
+
+		this.parent = new int[nodeCount];
+		int[][] up = contract();
+		this.neighbors = null;
+		this.neighborStart = null;
+
+		this.firstArc = new int[nodeCount + 1];
+		int arcCount = 0;
+		for (int v = 0; v < nodeCount; v++) {
+			this.firstArc[v] = arcCount;
+			arcCount += up[v].length;
+		}
+		this.firstArc[nodeCount] = arcCount;
+		this.arcTail = new int[arcCount];
+		this.arcHead = new int[arcCount];
+		for (int v = 0; v < nodeCount; v++) {
+			int a = this.firstArc[v];
+			for (int u : up[v]) {
+				this.arcTail[a] = v;
+				this.arcHead[a] = u;
+				a++;
+			}
+			up[v] = null;
+		}
+
+		int maxDepth = 0;
+		for (int v = 0; v < nodeCount; v++) {
+			int depth = 0;
+			for (int x = v; x != NO_NODE; x = this.parent[x]) {
+				depth++;
+			}
+			maxDepth = Math.max(maxDepth, depth);
+		}
+		log.info("contraction hierarchy: " + nodeCount + " nodes, " + this.links.length + " links, " + arcCount
+				+ " arcs, elimination tree depth " + maxDepth + ". Done in " + (System.currentTimeMillis() - start) + " ms");
+	}
+
+	/*package*/ int getNodeIndex(final Node node) {
+		int index = node.getId().index();
+		if (index >= this.nodeIndexById.length || this.nodeIndexById[index] == NO_NODE || this.nodes[this.nodeIndexById[index]] != node) {
+			return NO_NODE;
+		}
+		return this.nodeIndexById[index];
+	}
+
+	/**
+	 * @return the arc between the two nodes, <code>lower</code> must have the lower rank.
+	 */
+	/*package*/ int findArc(final int lower, final int higher) {
+		int a = Arrays.binarySearch(this.arcHead, this.firstArc[lower], this.firstArc[lower + 1], higher);
+		if (a < 0) {
+			throw new IllegalStateException("missing arc between nodes " + this.nodes[lower].getId() + " and " + this.nodes[higher].getId());
+		}
+		return a;
+	}
+
+	/**
+	 * @return the index of the directed arc from <code>from</code> to <code>to</code> in the arrays of a {@link Metric}.
+	 */
+	/*package*/ int findDirectedArc(final int from, final int to) {
+		if (this.rank[from] < this.rank[to]) {
+			return 2 * findArc(from, to);
+		}
+		return 2 * findArc(to, from) + 1;
+	}
+
+	private void buildNeighbors() {
+		int nodeCount = this.nodes.length;
+		this.neighborStart = new int[nodeCount + 1];
+		for (Link link : this.links) {
+			int from = getNodeIndex(link.getFromNode());
+			int to = getNodeIndex(link.getToNode());
+			if (from != to) {
+				this.neighborStart[from + 1]++;
+				this.neighborStart[to + 1]++;
+			}
+		}
+		for (int v = 0; v < nodeCount; v++) {
+			this.neighborStart[v + 1] += this.neighborStart[v];
+		}
+		this.neighbors = new int[this.neighborStart[nodeCount]];
+		int[] fill = Arrays.copyOf(this.neighborStart, nodeCount);
+		for (Link link : this.links) {
+			int from = getNodeIndex(link.getFromNode());
+			int to = getNodeIndex(link.getToNode());
+			if (from != to) {
+				this.neighbors[fill[from]++] = to;
+				this.neighbors[fill[to]++] = from;
+			}
+		}
+	}
+
+	private void assignRank(final int v) {
+		this.rank[v] = this.nextRank;
+		this.order[this.nextRank] = v;
+		this.nextRank--;
+	}
+
+	/**
+	 * Splits the nodes at the median of their coordinates along the wider extent. The nodes on the smaller
+	 * side of the cut that are adjacent to the other side form the separator and get the highest ranks, the
+	 * two remaining halves are ordered recursively.
+	 */
+	private void dissect(final int[] part) {
+		if (part.length <= LEAF_SIZE) {
+			for (int v : part) {
+				assignRank(v);
+			}
+			return;
+		}
+
+		double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (int v : part) {
+			Coord coord = this.nodes[v].getCoord();
+			minX = Math.min(minX, coord.getX());
+			maxX = Math.max(maxX, coord.getX());
+			minY = Math.min(minY, coord.getY());
+			maxY = Math.max(maxY, coord.getY());
+		}
+		boolean splitX = (maxX - minX) >= (maxY - minY);
+		double[] values = new double[part.length];
+		for (int i = 0; i < part.length; i++) {
+			Coord coord = this.nodes[part[i]].getCoord();
+			values[i] = splitX ? coord.getX() : coord.getY();
+		}
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		double median = sorted[part.length / 2];
+
+		int leftStamp = ++this.stampCounter;
+		int rightStamp = ++this.stampCounter;
+		int leftCount = 0;
+		boolean alternate = false;
+		for (int i = 0; i < part.length; i++) {
+			boolean left;
+			if (values[i] == median) {
+				// distribute nodes with identical coordinates evenly, so the recursion always terminates
+				left = alternate;
+				alternate = !alternate;
+			} else {
+				left = values[i] < median;
+			}
+			this.stamp[part[i]] = left ? leftStamp : rightStamp;
+			if (left) {
+				leftCount++;
+			}
+		}
+		if (leftCount == 0 || leftCount == part.length) {
+			for (int i = 0; i < part.length; i++) {
+				this.stamp[part[i]] = i < part.length / 2 ? leftStamp : rightStamp;
+			}
+			leftCount = part.length / 2;
+		}
+
+		int leftBoundary = 0;
+		int rightBoundary = 0;
+		boolean[] boundary = new boolean[part.length];
+		for (int i = 0; i < part.length; i++) {
+			int v = part[i];
+			int otherStamp = this.stamp[v] == leftStamp ? rightStamp : leftStamp;
+			for (int n = this.neighborStart[v]; n < this.neighborStart[v + 1]; n++) {
+				if (this.stamp[this.neighbors[n]] == otherStamp) {
+					boundary[i] = true;
+					if (this.stamp[v] == leftStamp) {
+						leftBoundary++;
+					} else {
+						rightBoundary++;
+					}
+					break;
+				}
+			}
+		}
+		int separatorStamp = leftBoundary <= rightBoundary ? leftStamp : rightStamp;
+
+		int[] left = new int[part.length];
+		int[] right = new int[part.length];
+		int leftSize = 0;
+		int rightSize = 0;
+		for (int i = 0; i < part.length; i++) {
+			int v = part[i];
+			if (boundary[i] && this.stamp[v] == separatorStamp) {
+				assignRank(v);
+			} else if (this.stamp[v] == leftStamp) {
+				left[leftSize++] = v;
+			} else {
+				right[rightSize++] = v;
+			}
+		}
+		dissect(Arrays.copyOf(left, leftSize));
+		dissect(Arrays.copyOf(right, rightSize));
+	}
+
+	/**
+	 * Contracts the nodes in the order of their rank. The upward neighbors of a contracted node become a clique,
+	 * it is sufficient to connect them with the lowest ranked one of them (the parent in the elimination tree),
+	 * the remaining edges of the clique are then added when the parent is contracted.
+	 *
+	 * @return the upward neighbors of each node, sorted by node index
+	 */
+	private int[][] contract() {
+		int nodeCount = this.nodes.length;
+		int[][] up = new int[nodeCount][];
+		int[] upSize = new int[nodeCount];
+		for (int v = 0; v < nodeCount; v++) {
+			up[v] = new int[Math.max(1, this.neighborStart[v + 1] - this.neighborStart[v])];
+			for (int n = this.neighborStart[v]; n < this.neighborStart[v + 1]; n++) {
+				int u = this.neighbors[n];
+				if (this.rank[u] > this.rank[v]) {
+					up[v][upSize[v]++] = u;
+				}
+			}
+		}
+
+		for (int r = 0; r < nodeCount; r++) {
+			int v = this.order[r];
+			int[] list = up[v];
+			int size = upSize[v];
+			Arrays.sort(list, 0, size);
+			int unique = 0;
+			for (int i = 0; i < size; i++) {
+				if (unique == 0 || list[i] != list[unique - 1]) {
+					list[unique++] = list[i];
+				}
+			}
+			up[v] = Arrays.copyOf(list, unique);
+
+			int p = NO_NODE;
+			for (int u : up[v]) {
+				if (p == NO_NODE || this.rank[u] < this.rank[p]) {
+					p = u;
+				}
+			}
+			this.parent[v] = p;
+			if (p != NO_NODE) {
+				for (int u : up[v]) {
+					if (u != p) {
+						if (upSize[p] == up[p].length) {
+							up[p] = Arrays.copyOf(up[p], up[p].length * 2);
+						}
+						up[p][upSize[p]++] = u;
+					}
+				}
+			}
+		}
+		return up;
+	}
+
+	/**
+	 * Computes the weights of all arcs for the given travel disutility at the given time. As in the preprocessing
+	 * of the other routers, the travel disutility is evaluated without person and vehicle.
+	 * <p></p>
+	 * The basic customization processes the lower triangles of all arcs, which results in weights that are valid for
+	 * queries and that can be unpacked into links. The following perfect customization processes the intermediate and
+	 * upper triangles, and removes all arcs that are not on any shortest path, which makes the queries much faster.
+	 */
+	/*package*/ Metric customize(final TravelDisutility travelCosts, final double time) {
+		int nodeCount = this.nodes.length;
+		int arcCount = this.arcHead.length;
+		double[] weights = new double[2 * arcCount];
+		int[] unpack = new int[2 * arcCount];
+		Arrays.fill(weights, Double.POSITIVE_INFINITY);
+		Arrays.fill(unpack, UNREACHABLE);
+
+		for (int l = 0; l < this.links.length; l++) {
+			Link link = this.links[l];
+			int from = getNodeIndex(link.getFromNode());
+			int to = getNodeIndex(link.getToNode());
+			if (from == to) {
+				continue;
+			}
+			int d = findDirectedArc(from, to);
+			double cost = travelCosts.getLinkTravelDisutility(link, time, null, null);
+			if (cost < weights[d]) {
+				weights[d] = cost;
+				unpack[d] = Metric.encodeLink(l);
+			}
+		}
+
+		// the arc from the currently processed node to each of its upward neighbors
+		int[] arcTo = new int[nodeCount];
+		Arrays.fill(arcTo, NO_NODE);
+
+		// lower triangles {v, u, w}, v lowest, u below w: when v is processed, the weights of its upward arcs are final
+		for (int r = 0; r < nodeCount; r++) {
+			int v = this.order[r];
+			for (int a = this.firstArc[v]; a < this.firstArc[v + 1]; a++) {
+				arcTo[this.arcHead[a]] = a;
+			}
+			for (int vu = this.firstArc[v]; vu < this.firstArc[v + 1]; vu++) {
+				int u = this.arcHead[vu];
+				double uToV = weights[2 * vu + 1];
+				double vToU = weights[2 * vu];
+				for (int uw = this.firstArc[u]; uw < this.firstArc[u + 1]; uw++) {
+					int vw = arcTo[this.arcHead[uw]];
+					if (vw == NO_NODE) {
+						continue;
+					}
+					double viaV = uToV + weights[2 * vw];
+					if (viaV < weights[2 * uw]) {
+						weights[2 * uw] = viaV;
+						unpack[2 * uw] = v;
+					}
+					viaV = weights[2 * vw + 1] + vToU;
+					if (viaV < weights[2 * uw + 1]) {
+						weights[2 * uw + 1] = viaV;
+						unpack[2 * uw + 1] = v;
+					}
+				}
+			}
+			for (int a = this.firstArc[v]; a < this.firstArc[v + 1]; a++) {
+				arcTo[this.arcHead[a]] = NO_NODE;
+			}
+		}
+
+		// upper and intermediate triangles {x, y, z}, x lowest, y below z: arcs between y and z are already final
+		double[] basicWeights = weights.clone();
+		for (int r = nodeCount - 1; r >= 0; r--) {
+			int x = this.order[r];
+			for (int a = this.firstArc[x]; a < this.firstArc[x + 1]; a++) {
+				arcTo[this.arcHead[a]] = a;
+			}
+			for (int xy = this.firstArc[x]; xy < this.firstArc[x + 1]; xy++) {
+				int y = this.arcHead[xy];
+				for (int yz = this.firstArc[y]; yz < this.firstArc[y + 1]; yz++) {
+					int xz = arcTo[this.arcHead[yz]];
+					if (xz == NO_NODE) {
+						continue;
+					}
+					// upper triangle of arc x-y
+					weights[2 * xy] = Math.min(weights[2 * xy], weights[2 * xz] + weights[2 * yz + 1]);
+					weights[2 * xy + 1] = Math.min(weights[2 * xy + 1], weights[2 * yz] + weights[2 * xz + 1]);
+					// intermediate triangle of arc x-z
+					weights[2 * xz] = Math.min(weights[2 * xz], weights[2 * xy] + weights[2 * yz]);
+					weights[2 * xz + 1] = Math.min(weights[2 * xz + 1], weights[2 * yz + 1] + weights[2 * xy + 1]);
+				}
+			}
+			for (int a = this.firstArc[x]; a < this.firstArc[x + 1]; a++) {
+				arcTo[this.arcHead[a]] = NO_NODE;
+			}
+		}
+
+		// keep only the arcs whose weight could not be improved, they are the only ones needed for queries
+		Metric metric = new Metric(unpack, nodeCount);
+		for (int direction = 0; direction < 2; direction++) {
+			int[] first = direction == 0 ? metric.upFirst : metric.downFirst;
+			int count = 0;
+			for (int v = 0; v < nodeCount; v++) {
+				first[v] = count;
+				for (int a = this.firstArc[v]; a < this.firstArc[v + 1]; a++) {
+					int d = 2 * a + direction;
+					if (weights[d] < Double.POSITIVE_INFINITY && weights[d] == basicWeights[d]) {
+						count++;
+					}
+				}
+			}
+			first[nodeCount] = count;
+			int[] head = new int[count];
+			int[] arcs = new int[count];
+			double[] arcWeights = new double[count];
+			int i = 0;
+			for (int a = 0; a < arcCount; a++) {
+				int d = 2 * a + direction;
+				if (weights[d] < Double.POSITIVE_INFINITY && weights[d] == basicWeights[d]) {
+					head[i] = this.arcHead[a];
+					arcs[i] = d;
+					arcWeights[i] = weights[d];
+					i++;
+				}
+			}
+			if (direction == 0) {
+				metric.upHead = head;
+				metric.upArc = arcs;
+				metric.upWeight = arcWeights;
+			} else {
+				metric.downHead = head;
+				metric.downArc = arcs;
+				metric.downWeight = arcWeights;
+			}
+		}
+		return metric;
+	}
+
+	/**
+	 * The result of one customization. The arcs are stored as directed arcs: for arc <code>a</code>, index
+	 * <code>2a</code> is the direction from the lower to the higher ranked node, <code>2a+1</code> the opposite
+	 * direction. For queries, only the arcs needed for shortest paths are stored, separately for the upward
+	 * direction (used by the forward search) and the downward direction (used by the backward search).
+	 */
+	/*package*/ static final class Metric {
+		/**
+		 * The middle node of a shortcut, or an encoded link index for arcs that represent a link.
+		 */
+		/*package*/ final int[] unpack;
+
+		/*package*/ final int[] upFirst;
+		/*package*/ int[] upHead;
+		/*package*/ int[] upArc;
+		/*package*/ double[] upWeight;
+
+		/*package*/ final int[] downFirst;
+		/*package*/ int[] downHead;
+		/*package*/ int[] downArc;
+		/*package*/ double[] downWeight;
+
+		private Metric(final int[] unpack, final int nodeCount) {
+			this.unpack = unpack;
+			this.upFirst = new int[nodeCount + 1];
+			this.downFirst = new int[nodeCount + 1];
+		}
+
+		/*package*/ static int encodeLink(final int linkIndex) {
+			return -linkIndex - 2;
+		}
+
+		/*package*/ static int decodeLink(final int value) {
+			return -value - 2;
+		}
+	}
+
+}
@@ -0,0 +1,244 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CustomizableRoutePlanning.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.CustomizableRoutePlanningGraph.Metric;
+import org.matsim.core.router.CustomizableRoutePlanningGraph.SearchSpace;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * Least cost path calculator based on customizable route planning.
+ * <p></p>
+ * The multi-level overlay is computed once per network, see {@link CustomizableRoutePlanningGraph}, and is then
+ * customized with the link costs. The customization only computes the clique weights of the cells and runs in
+ * parallel over the cells, so it is cheap enough to be repeated whenever the travel times change. A query is a
+ * Dijkstra on the overlay: around the start and the end node it uses the links of the network, further away the
+ * clique arcs of ever larger cells, so it settles far fewer nodes than {@link Dijkstra}. The clique arcs of the
+ * resulting path are unpacked into links by local searches within their cells.
+ * <p></p>
+ * Time-dependent travel costs are supported by customizing the overlay per time bin (e.g. the time bins of the
+ * {@link org.matsim.core.trafficmonitoring.TravelTimeCalculator}), in the same way as {@link ContractionHierarchies}:
+ * a query uses the link costs of the time bin of its start time, while the travel time and cost of the returned path
+ * are computed time-dependently along the path. The time bins are customized lazily when they are first needed.
+ * Instances created by the {@link CustomizableRoutePlanningFactory} share the customized time bins, which the factory
+ * customizes anew in every iteration.
+ * <p></p>
+ * Instances are not thread-safe, but the overlay and the customized metrics can be shared among instances.
+ */
+public class CustomizableRoutePlanning implements LeastCostPathCalculator {
+
+	private final static Logger log = Logger.getLogger(CustomizableRoutePlanning.class);
+
+	private static final int NONE = CustomizableRoutePlanningGraph.NONE;
+
+	private final CustomizableRoutePlanningGraph graph;
+	private final TravelDisutility travelCosts;
+	private final TravelTime travelTimes;
+	private final TimeBinMetrics<Metric> metrics;
+	private final SearchSpace space;
+
+	/**
+	 * Creates a least cost path calculator for time-independent costs, which are taken at time 0.
+	 */
+	public CustomizableRoutePlanning(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		this(new CustomizableRoutePlanningGraph(network), travelCosts, travelTimes);
+	}
+
+	private CustomizableRoutePlanning(final CustomizableRoutePlanningGraph graph, final TravelDisutility travelCosts,
+			final TravelTime travelTimes) {
+		this(graph, createMetrics(graph, Double.POSITIVE_INFINITY, 1, 1), travelCosts, travelTimes);
+	}
+
+	/*package*/ CustomizableRoutePlanning(final CustomizableRoutePlanningGraph graph, final TimeBinMetrics<Metric> metrics,
+			final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		this.graph = graph;
+		this.travelCosts = travelCosts;
+		this.travelTimes = travelTimes;
+		this.metrics = metrics;
+		this.space = new SearchSpace(graph.nodes.length);
+	}
+
+	/*package*/ static TimeBinMetrics<Metric> createMetrics(final CustomizableRoutePlanningGraph graph, final double timeBinSize,
+			final int numberOfTimeBins, final int numberOfThreads) {
+		return new TimeBinMetrics<>((travelCosts, time) -> graph.customize(travelCosts, time, numberOfThreads),
+				timeBinSize, numberOfTimeBins);
+	}
+
+	private int getNodeIndex(final Node node) {
+		int index = this.graph.getNodeIndex(node);
+		if (index == NONE) {
+			throw new IllegalArgumentException("The nodes passed as parameters are not part of the network stored by "+
+					getClass().getSimpleName() + ": the validity of the results cannot be guaranteed. Aborting!");
+		}
+		return index;
+	}
+
+	@Override
+	public Path calcLeastCostPath(final Node fromNode, final Node toNode, final double starttime, final Person person, final Vehicle vehicle) {
+		int from = getNodeIndex(fromNode);
+		int to = getNodeIndex(toNode);
+		Metric metric = this.metrics.get(starttime, this.travelCosts);
+
+		boolean found = false;
+		this.space.start(from);
+		for (int v = this.space.poll(); v != NONE; v = this.space.poll()) {
+			if (v == to) {
+				found = true;
+				break;
+			}
+			relax(v, getQueryLevel(v, from, to), metric);
+		}
+
+		List<Link> links = null;
+		if (found) {
+			links = new ArrayList<>();
+			// the path consists of links and clique arcs, it is collected before the search space is reused for unpacking
+			Segments segments = new Segments(this.space, from, to);
+			this.space.reset();
+			segments.unpack(this, metric, links);
+		} else {
+			this.space.reset();
+		}
+
+		if (links == null) {
+			log.warn("No route was found from node " + fromNode.getId() + " to node " + toNode.getId() + ". Returning null.");
+			return null;
+		}
+		return createPath(fromNode, links, starttime, person, vehicle);
+	}
+
+	/**
+	 * The query level of a node is the highest level on which its cell contains neither the start nor the end node.
+	 */
+	private int getQueryLevel(final int v, final int from, final int to) {
+		for (int level = this.graph.levelCount; level >= 1; level--) {
+			int[] cells = this.graph.cell[level];
+			int c = cells[v];
+			if (c != cells[from] && c != cells[to]) {
+				return level;
+			}
+		}
+		return 0;
+	}
+
+	private void relax(final int v, final int level, final Metric metric) {
+		CustomizableRoutePlanningGraph g = this.graph;
+		double cost = this.space.cost[v];
+		if (level == 0) {
+			for (int i = g.outFirst[v]; i < g.outFirst[v + 1]; i++) {
+				int l = g.outLinks[i];
+				this.space.relax(g.linkTo[l], cost + metric.linkCosts[l], v, l, 0);
+			}
+			return;
+		}
+		g.relaxClique(metric, level, v, cost, this.space);
+		if (g.exitIndex[level][v] != NONE) {
+			int[] cells = g.cell[level];
+			int c = cells[v];
+			for (int i = g.outFirst[v]; i < g.outFirst[v + 1]; i++) {
+				int l = g.outLinks[i];
+				int w = g.linkTo[l];
+				if (cells[w] != c) {
+					this.space.relax(w, cost + metric.linkCosts[l], v, l, 0);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Replaces the clique arc from <code>entry</code> to <code>exit</code> on the given level with the links it
+	 * represents, by searching the shortest path within the cell, and unpacking recursively the clique arcs of the
+	 * level below on this path.
+	 */
+	private void unpackClique(final int level, final int entry, final int exit, final Metric metric, final List<Link> links) {
+		this.graph.searchCell(metric, level, this.graph.cell[level][entry], entry, exit, this.space);
+		Segments segments = new Segments(this.space, entry, exit);
+		this.space.reset();
+		segments.unpack(this, metric, links);
+	}
+
+	private Path createPath(final Node fromNode, final List<Link> links, final double starttime, final Person person, final Vehicle vehicle) {
+		List<Node> nodes = new ArrayList<>(links.size() + 1);
+		nodes.add(fromNode);
+		double time = starttime;
+		double cost = 0;
+		for (Link link : links) {
+			double travelTime = this.travelTimes.getLinkTravelTime(link, time, person, vehicle);
+			cost += this.travelCosts.getLinkTravelDisutility(link, time, person, vehicle);
+			time += travelTime;
+			nodes.add(link.getToNode());
+		}
+		return new Path(nodes, links, time - starttime, cost);
+	}
+
+	/**
+	 * The links and clique arcs of a path found in the search space, in the order from the start to the end node.
+	 */
+	private static final class Segments {
+		private final int size;
+		private final int[] fromNode;
+		private final int[] toNode;
+		private final int[] link;
+		private final int[] level;
+
+		Segments(final SearchSpace space, final int from, final int to) {
+			int count = 0;
+			for (int v = to; v != from; v = space.predNode[v]) {
+				count++;
+			}
+			this.size = count;
+			this.fromNode = new int[count];
+			this.toNode = new int[count];
+			this.link = new int[count];
+			this.level = new int[count];
+			int i = count;
+			for (int v = to; v != from; v = space.predNode[v]) {
+				i--;
+				this.fromNode[i] = space.predNode[v];
+				this.toNode[i] = v;
+				this.link[i] = space.predLink[v];
+				this.level[i] = space.predLevel[v];
+			}
+		}
+
+		void unpack(final CustomizableRoutePlanning router, final Metric metric, final List<Link> links) {
+			for (int i = 0; i < this.size; i++) {
+				if (this.level[i] == 0) {
+					links.add(router.graph.links[this.link[i]]);
+				} else {
+					router.unpackClique(this.level[i], this.fromNode[i], this.toNode[i], metric, links);
+				}
+			}
+		}
+	}
+
+}
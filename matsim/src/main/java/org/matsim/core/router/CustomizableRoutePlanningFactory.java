@@ -0,0 +1,125 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CustomizableRoutePlanningFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.controler.events.IterationStartsEvent;
+import org.matsim.core.controler.listener.IterationStartsListener;
+import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.router.CustomizableRoutePlanningGraph.Metric;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Creates {@link CustomizableRoutePlanning} least cost path calculators. The metric-independent overlay of each
+ * network is computed once and shared among all calculators. The customized metrics are shared among all calculators
+ * and are customized anew once per iteration, as in {@link ContractionHierarchiesFactory}, so in a new iteration only
+ * the customization runs again, with the new travel times. A customization uses the number of threads configured in
+ * the global config group, and only one customization runs at a time.
+ * <p></p>
+ * When used with time bins, the overlay is customized separately and lazily for each time bin, as in
+ * {@link ContractionHierarchiesFactory}.
+ */
+@Singleton
+public class CustomizableRoutePlanningFactory implements LeastCostPathCalculatorFactory, IterationStartsListener {
+
+	private final Map<Network, CustomizableRoutePlanningGraph> graphs = new HashMap<>();
+	private final Map<MetricsKey, TimeBinMetrics<Metric>> metrics = new HashMap<>();
+	private final double timeBinSize;
+	private final int numberOfTimeBins;
+	private final int numberOfThreads;
+
+	/**
+	 * Creates a factory for time-independent travel costs.
+	 */
+	public CustomizableRoutePlanningFactory() {
+		this.timeBinSize = Double.POSITIVE_INFINITY;
+		this.numberOfTimeBins = 1;
+		this.numberOfThreads = 1;
+	}
+
+	/**
+	 * Creates a factory that customizes the overlay for each time bin, e.g. with the time bins of the
+	 * {@link org.matsim.core.trafficmonitoring.TravelTimeCalculator}. Queries starting after <code>maxTime</code> use
+	 * the last time bin.
+	 */
+	public CustomizableRoutePlanningFactory(final int timeBinSize, final int maxTime, final int numberOfThreads) {
+		this.timeBinSize = timeBinSize;
+		this.numberOfTimeBins = maxTime / timeBinSize + 1;
+		this.numberOfThreads = numberOfThreads;
+	}
+
+	@Inject
+	CustomizableRoutePlanningFactory(final TravelTimeCalculatorConfigGroup config, final GlobalConfigGroup globalConfig) {
+		this(config.getTraveltimeBinSize(), config.getMaxTime(), globalConfig.getNumberOfThreads());
+	}
+
+	@Override
+	public LeastCostPathCalculator createPathCalculator(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		CustomizableRoutePlanningGraph graph = getGraph(network);
+		return new CustomizableRoutePlanning(graph, getMetrics(graph, network, travelCosts, travelTimes), travelCosts, travelTimes);
+	}
+
+	/**
+	 * The travel times change from one iteration to the next, so the time bins are customized anew.
+	 */
+	@Override
+	public synchronized void notifyIterationStarts(final IterationStartsEvent event) {
+		this.metrics.clear();
+	}
+
+	/**
+	 * The calculators of all threads get their own instance of the travel disutility, but usually share the travel
+	 * time and the (mode-specific) network. Calculators for the same network, travel time and an equivalent travel
+	 * disutility (see {@link MetricsKey}) therefore share the customized time bins until the next iteration starts.
+	 */
+	private TimeBinMetrics<Metric> getMetrics(final CustomizableRoutePlanningGraph graph, final Network network,
+			final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		MetricsKey key = new MetricsKey(network, travelCosts, travelTimes);
+		synchronized (this) {
+			TimeBinMetrics<Metric> metrics = this.metrics.get(key);
+			if (metrics == null) {
+				metrics = CustomizableRoutePlanning.createMetrics(graph, this.timeBinSize, this.numberOfTimeBins, this.numberOfThreads);
+				this.metrics.put(key, metrics);
+			}
+			return metrics;
+		}
+	}
+
+	private synchronized CustomizableRoutePlanningGraph getGraph(final Network network) {
+		CustomizableRoutePlanningGraph graph = this.graphs.get(network);
+		if (graph == null) {
+			graph = new CustomizableRoutePlanningGraph(network);
+			this.graphs.put(network, graph);
+		}
+		return graph;
+	}
+
+}
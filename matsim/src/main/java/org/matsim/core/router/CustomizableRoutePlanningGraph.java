@@ -0,0 +1,519 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CustomizableRoutePlanningGraph.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.router.priorityqueue.BinaryMinHeap;
+import org.matsim.core.router.priorityqueue.HasIndex;
+import org.matsim.core.router.util.TravelDisutility;
+
+/**
+ * The metric-independent part of the multi-level overlay graph used for customizable route planning
+ * (see Delling, Goldberg, Pajor, Werneck: Customizable Route Planning, 2011).
+ * <p></p>
+ * The nodes are partitioned into nested cells on several levels, using recursive bisections along the node
+ * coordinates. The cells of level 1 contain at most {@value #LEVEL1_CELL_SIZE} nodes, each further level
+ * {@value #LEVEL_FACTOR} times as many. A node is an entry (exit) of its cell on a level if it has an incoming
+ * (outgoing) link from (to) another cell of this level. For each cell, the overlay contains a clique of arcs from
+ * all its entries to all its exits.
+ * <p></p>
+ * The weights of the clique arcs are computed by {@link #customize(TravelDisutility, double, int)}, level by level,
+ * running a Dijkstra within each cell on the overlay of the level below. The cells of a level are independent of
+ * each other, so this can run in parallel.
+ * <p></p>
+ * Instances are immutable after construction and can be shared among threads.
+ */
+final class CustomizableRoutePlanningGraph {
+
+	private final static Logger log = Logger.getLogger(CustomizableRoutePlanningGraph.class);
+
+	/*package*/ static final int LEVEL1_CELL_SIZE = 256;
+	/*package*/ static final int LEVEL_FACTOR = 8;
+
+	/*package*/ static final int NONE = -1;
+
+	/*package*/ final Network network;
+	/*package*/ final Node[] nodes;
+	/*package*/ final Link[] links;
+	private final int[] nodeIndexById;
+
+	/*package*/ final int[] linkTo;
+	/*package*/ final int[] outFirst;
+	/*package*/ final int[] outLinks;
+
+	/**
+	 * The number of levels, level 0 is the network itself.
+	 */
+	/*package*/ final int levelCount;
+	/*package*/ final int[][] cell;
+	/*package*/ final int[] cellCount;
+	/*package*/ final int[][] entryFirst;
+	/*package*/ final int[][] entries;
+	/*package*/ final int[][] exitFirst;
+	/*package*/ final int[][] exits;
+	/*package*/ final int[][] entryIndex;
+	/*package*/ final int[][] exitIndex;
+	/*package*/ final int[][] cliqueOffset;
+
+	private final int[] maxCellSize;
+
+	CustomizableRoutePlanningGraph(final Network network) {
+		long start = System.currentTimeMillis();
+		this.network = network;
+		int nodeCount = network.getNodes().size();
+		this.nodes = network.getNodes().values().toArray(new Node[nodeCount]);
+		this.links = network.getLinks().values().toArray(new Link[network.getLinks().size()]);
+
+		int maxIndex = -1;
+		for (Node node : this.nodes) {
+			maxIndex = Math.max(maxIndex, node.getId().index());
+		}
+		this.nodeIndexById = new int[maxIndex + 1];
+		Arrays.fill(this.nodeIndexById, NONE);
+		for (int i = 0; i < nodeCount; i++) {
+			this.nodeIndexById[this.nodes[i].getId().index()] = i;
+		}
+
+		int linkCount = this.links.length;
+		int[] linkFrom = new int[linkCount];
+		this.linkTo = new int[linkCount];
+		this.outFirst = new int[nodeCount + 1];
+		for (int l = 0; l < linkCount; l++) {
+			linkFrom[l] = getNodeIndex(this.links[l].getFromNode());
+			this.linkTo[l] = getNodeIndex(this.links[l].getToNode());
+			this.outFirst[linkFrom[l] + 1]++;
+		}
+		for (int v = 0; v < nodeCount; v++) {
+			this.outFirst[v + 1] += this.outFirst[v];
+		}
+		this.outLinks = new int[linkCount];
+		int[] fill = Arrays.copyOf(this.outFirst, nodeCount);
+		for (int l = 0; l < linkCount; l++) {
+			this.outLinks[fill[linkFrom[l]]++] = l;
+		}
+
+		List<Integer> sizes = new ArrayList<>();
+		for (long size = LEVEL1_CELL_SIZE; size < nodeCount; size *= LEVEL_FACTOR) {
+			sizes.add((int) size);
+		}
+		this.levelCount = sizes.size();
+		this.maxCellSize = new int[this.levelCount + 1];
+		for (int level = 1; level <= this.levelCount; level++) {
+			this.maxCellSize[level] = sizes.get(level - 1);
+		}
+
+		this.cell = new int[this.levelCount + 1][];
+		this.cellCount = new int[this.levelCount + 1];
+		for (int level = 1; level <= this.levelCount; level++) {
+			this.cell[level] = new int[nodeCount];
+		}
+		int[] all = new int[nodeCount];
+		for (int i = 0; i < nodeCount; i++) {
+			all[i] = i;
+		}
+		partition(all, this.levelCount);
+
+		this.entryFirst = new int[this.levelCount + 1][];
+		this.entries = new int[this.levelCount + 1][];
+		this.exitFirst = new int[this.levelCount + 1][];
+		this.exits = new int[this.levelCount + 1][];
+		this.entryIndex = new int[this.levelCount + 1][];
+		this.exitIndex = new int[this.levelCount + 1][];
+		this.cliqueOffset = new int[this.levelCount + 1][];
+		StringBuilder stats = new StringBuilder();
+		for (int level = 1; level <= this.levelCount; level++) {
+			int[] cells = this.cell[level];
+			this.entryIndex[level] = new int[nodeCount];
+			this.exitIndex[level] = new int[nodeCount];
+			Arrays.fill(this.entryIndex[level], NONE);
+			Arrays.fill(this.exitIndex[level], NONE);
+			for (int l = 0; l < linkCount; l++) {
+				if (cells[linkFrom[l]] != cells[this.linkTo[l]]) {
+					this.exitIndex[level][linkFrom[l]] = 0;
+					this.entryIndex[level][this.linkTo[l]] = 0;
+				}
+			}
+			this.entryFirst[level] = new int[this.cellCount[level] + 1];
+			this.entries[level] = collectBoundary(cells, this.cellCount[level], this.entryIndex[level], this.entryFirst[level]);
+			this.exitFirst[level] = new int[this.cellCount[level] + 1];
+			this.exits[level] = collectBoundary(cells, this.cellCount[level], this.exitIndex[level], this.exitFirst[level]);
+
+			this.cliqueOffset[level] = new int[this.cellCount[level] + 1];
+			for (int c = 0; c < this.cellCount[level]; c++) {
+				int entryCount = this.entryFirst[level][c + 1] - this.entryFirst[level][c];
+				int exitCount = this.exitFirst[level][c + 1] - this.exitFirst[level][c];
+				this.cliqueOffset[level][c + 1] = this.cliqueOffset[level][c] + entryCount * exitCount;
+			}
+			stats.append(" level ").append(level).append(": ").append(this.cellCount[level]).append(" cells, ")
+					.append(this.entries[level].length).append(" entries, ").append(this.exits[level].length).append(" exits;");
+		}
+		log.info("customizable route planning overlay: " + nodeCount + " nodes, " + linkCount + " links;" + stats
+				+ " done in " + (System.currentTimeMillis() - start) + " ms");
+	}
+
+	/*package*/ int getNodeIndex(final Node node) {
+		int index = node.getId().index();
+		if (index >= this.nodeIndexById.length || this.nodeIndexById[index] == NONE || this.nodes[this.nodeIndexById[index]] != node) {
+			return NONE;
+		}
+		return this.nodeIndexById[index];
+	}
+
+	/**
+	 * Assigns the nodes of <code>part</code> to a new cell on all levels (starting at <code>level</code> downwards)
+	 * whose maximum cell size is not exceeded, and splits the part for the remaining levels.
+	 */
+	private void partition(final int[] part, final int level) {
+		int l = level;
+		while (l >= 1 && part.length <= this.maxCellSize[l]) {
+			int c = this.cellCount[l]++;
+			for (int v : part) {
+				this.cell[l][v] = c;
+			}
+			l--;
+		}
+		if (l >= 1) {
+			int[][] halves = bisect(part);
+			partition(halves[0], l);
+			partition(halves[1], l);
+		}
+	}
+
+	/**
+	 * Splits the nodes at the median of their coordinates along the wider extent.
+	 */
+	private int[][] bisect(final int[] part) {
+		double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+		for (int v : part) {
+			Coord coord = this.nodes[v].getCoord();
+			minX = Math.min(minX, coord.getX());
+			maxX = Math.max(maxX, coord.getX());
+			minY = Math.min(minY, coord.getY());
+			maxY = Math.max(maxY, coord.getY());
+		}
+		boolean splitX = (maxX - minX) >= (maxY - minY);
+		double[] values = new double[part.length];
+		for (int i = 0; i < part.length; i++) {
+			Coord coord = this.nodes[part[i]].getCoord();
+			values[i] = splitX ? coord.getX() : coord.getY();
+		}
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+		double median = sorted[part.length / 2];
+
+		int[] left = new int[part.length];
+		int[] right = new int[part.length];
+		int leftSize = 0;
+		int rightSize = 0;
+		boolean alternate = false;
+		for (int i = 0; i < part.length; i++) {
+			boolean toLeft;
+			if (values[i] == median) {
+				// distribute nodes with identical coordinates evenly, so the recursion always terminates
+				toLeft = alternate;
+				alternate = !alternate;
+			} else {
+				toLeft = values[i] < median;
+			}
+			if (toLeft) {
+				left[leftSize++] = part[i];
+			} else {
+				right[rightSize++] = part[i];
+			}
+		}
+		if (leftSize == 0 || rightSize == 0) {
+			int half = part.length / 2;
+			return new int[][] { Arrays.copyOfRange(part, 0, half), Arrays.copyOfRange(part, half, part.length) };
+		}
+		return new int[][] { Arrays.copyOf(left, leftSize), Arrays.copyOf(right, rightSize) };
+	}
+
+	/**
+	 * Collects the marked nodes per cell, and replaces the marks with the index of the node within its cell.
+	 */
+	private static int[] collectBoundary(final int[] cells, final int cellCount, final int[] index, final int[] first) {
+		for (int v = 0; v < index.length; v++) {
+			if (index[v] != NONE) {
+				first[cells[v] + 1]++;
+			}
+		}
+		for (int c = 0; c < cellCount; c++) {
+			first[c + 1] += first[c];
+		}
+		int[] boundary = new int[first[cellCount]];
+		int[] fill = Arrays.copyOf(first, cellCount);
+		for (int v = 0; v < index.length; v++) {
+			if (index[v] != NONE) {
+				int c = cells[v];
+				index[v] = fill[c] - first[c];
+				boundary[fill[c]++] = v;
+			}
+		}
+		return boundary;
+	}
+
+	/**
+	 * Computes the weights of all clique arcs for the given travel disutility at the given time. As in the
+	 * preprocessing of the other routers, the travel disutility is evaluated without person and vehicle.
+	 */
+	/*package*/ Metric customize(final TravelDisutility travelCosts, final double time, final int numberOfThreads) {
+		final Metric metric = new Metric(this.links.length, this.levelCount);
+		// the travel disutility is not necessarily thread-safe
+		for (int l = 0; l < this.links.length; l++) {
+			metric.linkCosts[l] = travelCosts.getLinkTravelDisutility(this.links[l], time, null, null);
+		}
+
+		int threads = Math.max(1, numberOfThreads);
+		ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+		try {
+			final SearchSpace[] spaces = new SearchSpace[threads];
+			for (int t = 0; t < threads; t++) {
+				spaces[t] = new SearchSpace(this.nodes.length);
+			}
+			for (int level = 1; level <= this.levelCount; level++) {
+				final int currentLevel = level;
+				metric.cliques[level] = new double[this.cliqueOffset[level][this.cellCount[level]]];
+				final AtomicInteger nextCell = new AtomicInteger(0);
+				if (executor == null) {
+					customizeCells(metric, currentLevel, nextCell, spaces[0]);
+					continue;
+				}
+				List<Callable<Void>> tasks = new ArrayList<>();
+				for (int t = 0; t < threads; t++) {
+					final SearchSpace space = spaces[t];
+					tasks.add(new Callable<Void>() {
+						@Override
+						public Void call() {
+							customizeCells(metric, currentLevel, nextCell, space);
+							return null;
+						}
+					});
+				}
+				for (Future<Void> future : executor.invokeAll(tasks)) {
+					future.get();
+				}
+			}
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			if (executor != null) {
+				executor.shutdown();
+			}
+		}
+		return metric;
+	}
+
+	private void customizeCells(final Metric metric, final int level, final AtomicInteger nextCell, final SearchSpace space) {
+		for (int c = nextCell.getAndIncrement(); c < this.cellCount[level]; c = nextCell.getAndIncrement()) {
+			int entryStart = this.entryFirst[level][c];
+			int entryCount = this.entryFirst[level][c + 1] - entryStart;
+			int exitStart = this.exitFirst[level][c];
+			int exitCount = this.exitFirst[level][c + 1] - exitStart;
+			int offset = this.cliqueOffset[level][c];
+			double[] clique = metric.cliques[level];
+			for (int i = 0; i < entryCount; i++) {
+				searchCell(metric, level, c, this.entries[level][entryStart + i], NONE, space);
+				for (int j = 0; j < exitCount; j++) {
+					clique[offset + i * exitCount + j] = space.cost[this.exits[level][exitStart + j]];
+				}
+				space.reset();
+			}
+		}
+	}
+
+	/**
+	 * Runs a Dijkstra from <code>source</code> within the given cell, on the overlay of the level below. Stops when
+	 * <code>target</code> is reached or, if no target is given, when all exits of the cell are reached. The search
+	 * space needs to be reset afterwards.
+	 */
+	/*package*/ void searchCell(final Metric metric, final int level, final int c, final int source, final int target, final SearchSpace space) {
+		int remainingExits = this.exitFirst[level][c + 1] - this.exitFirst[level][c];
+		int[] cells = this.cell[level];
+		space.start(source);
+		for (int v = space.poll(); v != NONE; v = space.poll()) {
+			if (v == target) {
+				return;
+			}
+			if (target == NONE && this.exitIndex[level][v] != NONE) {
+				remainingExits--;
+				if (remainingExits == 0) {
+					return;
+				}
+			}
+			double cost = space.cost[v];
+			if (level == 1) {
+				for (int i = this.outFirst[v]; i < this.outFirst[v + 1]; i++) {
+					int l = this.outLinks[i];
+					int w = this.linkTo[l];
+					if (cells[w] == c) {
+						space.relax(w, cost + metric.linkCosts[l], v, l, 0);
+					}
+				}
+			} else {
+				int subLevel = level - 1;
+				int sub = this.cell[subLevel][v];
+				relaxClique(metric, subLevel, v, cost, space);
+				if (this.exitIndex[subLevel][v] != NONE) {
+					for (int i = this.outFirst[v]; i < this.outFirst[v + 1]; i++) {
+						int l = this.outLinks[i];
+						int w = this.linkTo[l];
+						if (cells[w] == c && this.cell[subLevel][w] != sub) {
+							space.relax(w, cost + metric.linkCosts[l], v, l, 0);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * If <code>v</code> is an entry of its cell on the given level, relaxes the clique arcs to all exits of the cell.
+	 */
+	/*package*/ void relaxClique(final Metric metric, final int level, final int v, final double cost, final SearchSpace space) {
+		int i = this.entryIndex[level][v];
+		if (i == NONE) {
+			return;
+		}
+		int c = this.cell[level][v];
+		int exitStart = this.exitFirst[level][c];
+		int exitCount = this.exitFirst[level][c + 1] - exitStart;
+		double[] clique = metric.cliques[level];
+		int offset = this.cliqueOffset[level][c] + i * exitCount;
+		for (int j = 0; j < exitCount; j++) {
+			int x = this.exits[level][exitStart + j];
+			if (x != v) {
+				space.relax(x, cost + clique[offset + j], v, NONE, level);
+			}
+		}
+	}
+
+	/**
+	 * The link costs and the weights of the clique arcs of one customization.
+	 */
+	/*package*/ static final class Metric {
+		/*package*/ final double[] linkCosts;
+		/*package*/ final double[][] cliques;
+
+		private Metric(final int linkCount, final int levelCount) {
+			this.linkCosts = new double[linkCount];
+			this.cliques = new double[levelCount + 1][];
+		}
+	}
+
+	/**
+	 * The data of a Dijkstra search on the overlay graph. For every reached node, the predecessor node is stored,
+	 * together with either the link or the level of the clique arc used to reach the node.
+	 */
+	/*package*/ static final class SearchSpace {
+		/*package*/ final double[] cost;
+		/*package*/ final int[] predNode;
+		/*package*/ final int[] predLink;
+		/*package*/ final int[] predLevel;
+		private final BinaryMinHeap<Vertex> heap;
+		private final Vertex[] vertices;
+		private int[] touched = new int[256];
+		private int touchedCount = 0;
+
+		/*package*/ SearchSpace(final int nodeCount) {
+			this.cost = new double[nodeCount];
+			Arrays.fill(this.cost, Double.POSITIVE_INFINITY);
+			this.predNode = new int[nodeCount];
+			this.predLink = new int[nodeCount];
+			this.predLevel = new int[nodeCount];
+			this.heap = new BinaryMinHeap<>(nodeCount);
+			this.vertices = new Vertex[nodeCount];
+			for (int v = 0; v < nodeCount; v++) {
+				this.vertices[v] = new Vertex(v);
+			}
+		}
+
+		/*package*/ void start(final int source) {
+			touch(source);
+			this.cost[source] = 0;
+			this.predNode[source] = NONE;
+			this.heap.add(this.vertices[source], 0);
+		}
+
+		/*package*/ int poll() {
+			Vertex vertex = this.heap.poll();
+			return vertex == null ? NONE : vertex.index;
+		}
+
+		/*package*/ void relax(final int w, final double c, final int from, final int link, final int level) {
+			if (c < this.cost[w]) {
+				if (this.cost[w] == Double.POSITIVE_INFINITY) {
+					touch(w);
+				}
+				this.cost[w] = c;
+				this.predNode[w] = from;
+				this.predLink[w] = link;
+				this.predLevel[w] = level;
+				this.heap.decreaseKey(this.vertices[w], c);
+			}
+		}
+
+		private void touch(final int v) {
+			if (this.touchedCount == this.touched.length) {
+				this.touched = Arrays.copyOf(this.touched, this.touchedCount * 2);
+			}
+			this.touched[this.touchedCount++] = v;
+		}
+
+		/*package*/ void reset() {
+			for (int i = 0; i < this.touchedCount; i++) {
+				this.cost[this.touched[i]] = Double.POSITIVE_INFINITY;
+			}
+			this.touchedCount = 0;
+			this.heap.reset();
+		}
+	}
+
+	private static final class Vertex implements HasIndex {
+		private final int index;
+
+		Vertex(final int index) {
+			this.index = index;
+		}
+
+		@Override
+		public int getArrayIndex() {
+			return this.index;
+		}
+	}
+
+}
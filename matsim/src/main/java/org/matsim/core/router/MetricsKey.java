@@ -0,0 +1,76 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * MetricsKey.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Arrays;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+
+/**
+ * Identifies the customized metrics that calculators of {@link ContractionHierarchiesFactory} and
+ * {@link CustomizableRoutePlanningFactory} may share. The calculators of all replanning threads get their own instance
+ * of the travel disutility, so the instance itself cannot be used. Instead, two travel disutilities are considered
+ * the same if they are of the same type and return the same cost for every link at time 0. Travel disutilities of
+ * the same type with other parameters, e.g. for another mode or subpopulation, thus get their own metrics.
+ * <p></p>
+ * Travel disutilities which only differ at other times of the day, e.g. by a toll that is not charged at midnight,
+ * cannot be told apart and must not be used with the same factory, network and travel time.
+ */
+/*package*/ final class MetricsKey {
+
+	private final Network network;
+	private final TravelTime travelTimes;
+	private final Class<?> travelCostsType;
+	private final double[] linkCosts;
+	private final int hashCode;
+
+	/*package*/ MetricsKey(final Network network, final TravelDisutility travelCosts, final TravelTime travelTimes) {
+		this.network = network;
+		this.travelTimes = travelTimes;
+		this.travelCostsType = travelCosts.getClass();
+		this.linkCosts = new double[network.getLinks().size()];
+		int i = 0;
+		for (Link link : network.getLinks().values()) {
+			this.linkCosts[i++] = travelCosts.getLinkTravelDisutility(link, 0.0, null, null);
+		}
+		this.hashCode = (System.identityHashCode(network) * 31 + System.identityHashCode(travelTimes)) * 31
+				+ Arrays.hashCode(this.linkCosts);
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (!(obj instanceof MetricsKey)) {
+			return false;
+		}
+		MetricsKey other = (MetricsKey) obj;
+		return this.network == other.network && this.travelTimes == other.travelTimes
+				&& this.travelCostsType == other.travelCostsType && Arrays.equals(this.linkCosts, other.linkCosts);
+	}
+
+	@Override
+	public int hashCode() {
+		return this.hashCode;
+	}
+
+}
@@ -0,0 +1,73 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TimeBinMetrics.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.matsim.core.router.util.TravelDisutility;
+
+/**
+ * The customized metrics of a routing graph, one per time bin, for use by {@link ContractionHierarchies} and
+ * {@link CustomizableRoutePlanning}. The metrics are customized lazily when a time bin is first queried, and are
+ * then shared read-only by all calculators using this instance, e.g. by all replanning threads of an iteration.
+ * Only one time bin is customized at a time.
+ *
+ * @param <M> the type of the customized metric
+ */
+/*package*/ final class TimeBinMetrics<M> {
+
+	/*package*/ interface Customizer<M> {
+		M customize(TravelDisutility travelCosts, double time);
+	}
+
+	private final Customizer<M> customizer;
+	private final double timeBinSize;
+	private final AtomicReferenceArray<M> metrics;
+
+	/*package*/ TimeBinMetrics(final Customizer<M> customizer, final double timeBinSize, final int numberOfTimeBins) {
+		this.customizer = customizer;
+		this.timeBinSize = timeBinSize;
+		this.metrics = new AtomicReferenceArray<>(numberOfTimeBins);
+	}
+
+	/**
+	 * @param travelCosts the travel disutility of the calling calculator, used if the time bin is not yet customized.
+	 * Travel disutilities are not necessarily thread-safe, so each calculator passes its own.
+	 */
+	/*package*/ M get(final double time, final TravelDisutility travelCosts) {
+		int bin = 0;
+		if (time > 0) {
+			bin = (int) Math.min(this.metrics.length() - 1, time / this.timeBinSize);
+		}
+		M metric = this.metrics.get(bin);
+		if (metric == null) {
+			synchronized (this) {
+				metric = this.metrics.get(bin);
+				if (metric == null) {
+					metric = this.customizer.customize(travelCosts, bin == 0 ? 0.0 : bin * this.timeBinSize);
+					this.metrics.set(bin, metric);
+				}
+			}
+		}
+		return metric;
+	}
+
+}
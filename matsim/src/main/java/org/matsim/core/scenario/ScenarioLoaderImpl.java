@@ -45,6 +45,7 @@ import org.matsim.core.utils.io.UncheckedIOException;
 import org.matsim.facilities.MatsimFacilitiesReader;
 import org.matsim.households.HouseholdsReaderV10;
 import org.matsim.lanes.data.LanesReader;
+import org.matsim.pt.transitSchedule.TransitScheduleSnapshot;
 import org.matsim.pt.transitSchedule.api.TransitScheduleReader;
 import org.matsim.utils.objectattributes.AttributeConverter;
 import org.matsim.utils.objectattributes.ObjectAttributesXmlReader;
@@ -265,8 +266,21 @@ class ScenarioLoaderImpl {
 			URL transitScheduleFile = this.config.transit().getTransitScheduleFileURL(this.config.getContext());
 			final String inputCRS = config.transit().getInputScheduleCRS();
 			final String internalCRS = config.global().getCoordinateSystem();
+			final String snapshotFile = this.config.transit().getTransitScheduleSnapshotFile();
+
+			long checksum = 0;
+			boolean fromSnapshot = false;
+			if ( snapshotFile != null ) {
+				// the coordinate systems change the content of the schedule, so they are part of the checksum
+				checksum = TransitScheduleSnapshot.calcChecksum(transitScheduleFile, inputCRS + "|" + internalCRS);
+				fromSnapshot = TransitScheduleSnapshot.read(snapshotFile, checksum, this.scenario.getTransitSchedule(),
+						this.scenario.getPopulation().getFactory().getRouteFactories());
+			}
 
-			if ( inputCRS == null ) {
+			if ( fromSnapshot ) {
+				log.info( "transit schedule read from snapshot " + snapshotFile );
+			}
+			else if ( inputCRS == null ) {
 				new TransitScheduleReader(this.scenario).readURL(this.config.transit().getTransitScheduleFileURL(this.config.getContext()));
 			}
 			else {
@@ -279,6 +293,14 @@ class ScenarioLoaderImpl {
 
 				new TransitScheduleReader( transformation , this.scenario).readURL(transitScheduleFile);
 			}
+
+			if ( snapshotFile != null && !fromSnapshot ) {
+				try {
+					TransitScheduleSnapshot.write(this.scenario.getTransitSchedule(), checksum, snapshotFile);
+				} catch (IllegalArgumentException e) {
+					log.warn( "could not write transit schedule snapshot: " + e.getMessage() );
+				}
+			}
 		}
 		else {
 			log.info("no transit schedule file set in config, not loading any transit schedule");
@@ -0,0 +1,244 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * PartitionedScoringEventHandler.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.scoring;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.api.internal.HasPersonId;
+import org.matsim.core.events.EventsManagerImpl;
+import org.matsim.core.events.algorithms.Vehicle2DriverEventHandler;
+import org.matsim.core.events.handler.BasicEventHandler;
+
+/**
+ * Scores the population on several threads. The persons are partitioned by the index of their id, and each
+ * partition has its own thread with its own {@link EventsToActivities} and {@link EventsToLegs}. This handler
+ * routes the events to the partitions: person events to the partition of the person, link enter events to the
+ * partition of the vehicle's driver, and all other events (e.g. of transit vehicles, which are needed by the
+ * passengers of every partition) to all partitions. As every person is handled by exactly one thread, no locks
+ * are needed while scoring, and the scoring runs concurrently to the mobsim.
+ * <p></p>
+ * The events are handed to the threads in batches. {@link #finish()} hands over the remaining events and waits
+ * until all of them are scored.
+ */
+final class PartitionedScoringEventHandler implements BasicEventHandler {
+
+	private static final int BATCH_SIZE = 1024;
+	private static final int QUEUE_CAPACITY = 64;
+	private static final List<Event> END = new ArrayList<>(0);
+
+	private final ScoringFunctionsForPopulation scoringFunctions;
+	private final AtomicReference<Throwable> exception;
+	private final Partition[] partitions;
+	private final Vehicle2DriverEventHandler vehicles2Drivers = new Vehicle2DriverEventHandler();
+	private boolean running = false;
+
+	PartitionedScoringEventHandler(final ScoringFunctionsForPopulation scoringFunctions, final Scenario scenario, final int numberOfThreads,
+			final AtomicReference<Throwable> exception) {
+		this.scoringFunctions = scoringFunctions;
+		this.exception = exception;
+		this.partitions = new Partition[numberOfThreads];
+		for (int i = 0; i < numberOfThreads; i++) {
+			this.partitions[i] = new Partition(scenario);
+		}
+	}
+
+	/**
+	 * Starts the threads for a new iteration.
+	 */
+	synchronized void start(final int iteration) {
+		if (this.running) {
+			finish();
+		}
+		this.vehicles2Drivers.reset(iteration);
+		for (int i = 0; i < this.partitions.length; i++) {
+			this.partitions[i].start(i, iteration);
+		}
+		this.running = true;
+	}
+
+	/**
+	 * Hands over the remaining events, waits until all events are scored, and passes the activities that are not
+	 * yet finished to the scoring functions.
+	 */
+	synchronized void finish() {
+		if (!this.running) {
+			return;
+		}
+		for (Partition partition : this.partitions) {
+			partition.flush();
+			partition.put(END);
+		}
+		for (Partition partition : this.partitions) {
+			try {
+				partition.thread.join();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+		for (Partition partition : this.partitions) {
+			partition.eventsToActivities.finish();
+		}
+		this.running = false;
+	}
+
+	@Override
+	public void reset(final int iteration) {
+	}
+
+	@Override
+	public synchronized void handleEvent(final Event event) {
+		if (!this.running) {
+			return;
+		}
+		if (event instanceof HasPersonId) {
+			if (event instanceof VehicleEntersTrafficEvent) {
+				this.vehicles2Drivers.handleEvent((VehicleEntersTrafficEvent) event);
+			} else if (event instanceof VehicleLeavesTrafficEvent) {
+				this.vehicles2Drivers.handleEvent((VehicleLeavesTrafficEvent) event);
+			}
+			getPartition(((HasPersonId) event).getPersonId()).add(event);
+		} else if (event instanceof LinkEnterEvent) {
+			Id<Person> driverId = this.vehicles2Drivers.getDriverOfVehicle(((LinkEnterEvent) event).getVehicleId());
+			if (driverId != null) {
+				getPartition(driverId).add(event);
+			}
+		} else if (!(event instanceof LinkLeaveEvent)) {
+			// link leave events are neither needed for the legs nor for the scoring functions
+			for (Partition partition : this.partitions) {
+				partition.add(event);
+			}
+		}
+	}
+
+	private Partition getPartition(final Id<Person> personId) {
+		return this.partitions[personId.index() % this.partitions.length];
+	}
+
+	private final class Partition implements Runnable {
+
+		private final EventsManagerImpl events = new EventsManagerImpl();
+		private final EventsToActivities eventsToActivities = new EventsToActivities();
+		private final Vehicle2DriverEventHandler vehicles2Drivers = new Vehicle2DriverEventHandler();
+		private final BlockingQueue<List<Event>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+		private List<Event> batch = new ArrayList<>(BATCH_SIZE);
+		private Thread thread;
+
+		Partition(final Scenario scenario) {
+			EventsToLegs eventsToLegs = new EventsToLegs(scenario);
+			this.eventsToActivities.addActivityHandler(new EventsToActivities.ActivityHandler() {
+				@Override
+				public void handleActivity(PersonExperiencedActivity activity) {
+					scoringFunctions.scoreActivity(activity);
+				}
+			});
+			eventsToLegs.addLegHandler(new EventsToLegs.LegHandler() {
+				@Override
+				public void handleLeg(PersonExperiencedLeg leg) {
+					scoringFunctions.scoreLeg(leg);
+				}
+			});
+			this.events.addHandler(this.eventsToActivities);
+			this.events.addHandler(eventsToLegs);
+			this.events.addHandler(new BasicEventHandler() {
+				@Override
+				public void handleEvent(Event event) {
+					scoringFunctions.handleEvent(event, Partition.this.vehicles2Drivers);
+				}
+
+				@Override
+				public void reset(int iteration) {
+				}
+			});
+		}
+
+		void start(final int index, final int iteration) {
+			this.events.resetHandlers(iteration);
+			this.vehicles2Drivers.reset(iteration);
+			this.thread = new Thread(this, "ScoringThread." + index);
+			this.thread.setDaemon(true);
+			this.thread.start();
+		}
+
+		void add(final Event event) {
+			this.batch.add(event);
+			if (this.batch.size() == BATCH_SIZE) {
+				flush();
+			}
+		}
+
+		void flush() {
+			if (!this.batch.isEmpty()) {
+				put(this.batch);
+				this.batch = new ArrayList<>(BATCH_SIZE);
+			}
+		}
+
+		void put(final List<Event> events) {
+			try {
+				this.queue.put(events);
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			}
+		}
+
+		@Override
+		public void run() {
+			boolean failed = false;
+			while (true) {
+				List<Event> events;
+				try {
+					events = this.queue.take();
+				} catch (InterruptedException e) {
+					exception.compareAndSet(null, e);
+					return;
+				}
+				if (events == END) {
+					return;
+				}
+				if (failed) {
+					// keep on taking the events, otherwise the events handling thread would block
+					continue;
+				}
+				try {
+					for (Event event : events) {
+						this.events.processEvent(event);
+					}
+				} catch (Throwable e) {
+					exception.compareAndSet(null, e);
+					failed = true;
+				}
+			}
+		}
+	}
+
+}
@@ -22,7 +22,6 @@ package org.matsim.core.scoring;
 
 import java.io.BufferedWriter;
 import java.io.IOException;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -30,6 +29,8 @@ import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.IdMap;
+import org.matsim.api.core.v01.Scenario;
 import org.matsim.api.core.v01.events.Event;
 import org.matsim.api.core.v01.events.LinkEnterEvent;
 import org.matsim.api.core.v01.events.PersonMoneyEvent;
@@ -84,7 +85,7 @@ import gnu.trove.list.array.TDoubleArrayList;
 	 *
 	 * cdobler, nov'15
 	 */
-	private final Map<Id<Person>, ScoringFunction> agentScorers = new HashMap<>();
+	private final Map<Id<Person>, ScoringFunction> agentScorers = new IdMap<>(Person.class);
 	private final Map<Id<Person>, TDoubleCollection> partialScores = new LinkedHashMap<>();
 	private final AtomicReference<Throwable> exception = new AtomicReference<>();
 	
@@ -96,17 +97,40 @@ import gnu.trove.list.array.TDoubleArrayList;
 	
 	private Vehicle2DriverEventHandler vehicles2Drivers = new Vehicle2DriverEventHandler();
 
+	/**
+	 * Only set if the scoring runs on several threads, then it receives the events instead of this class.
+	 */
+	private final PartitionedScoringEventHandler partitionedHandler;
+
 	@Inject
+	ScoringFunctionsForPopulation(ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
+								  Scenario scenario, ScoringFunctionFactory scoringFunctionFactory) {
+		this(controlerListenerManager, eventsManager, eventsToActivities, eventsToLegs, scenario.getPopulation(), scoringFunctionFactory,
+				scenario, scenario.getConfig().planCalcScore().getNumberOfScoringThreads());
+	}
+
 	ScoringFunctionsForPopulation(ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
 								  Population population, ScoringFunctionFactory scoringFunctionFactory) {
+		this(controlerListenerManager, eventsManager, eventsToActivities, eventsToLegs, population, scoringFunctionFactory, null, 1);
+	}
+
+	private ScoringFunctionsForPopulation(ControlerListenerManager controlerListenerManager, EventsManager eventsManager, EventsToActivities eventsToActivities, EventsToLegs eventsToLegs,
+								  Population population, ScoringFunctionFactory scoringFunctionFactory, Scenario scenario, int numberOfThreads) {
 		controlerListenerManager.addControlerListener(new IterationStartsListener() {
 			@Override
 			public void notifyIterationStarts(IterationStartsEvent event) {
-				init();
+				init(event.getIteration());
 			}
 		});
 		this.population = population;
 		this.scoringFunctionFactory = scoringFunctionFactory;
+		if (numberOfThreads > 1) {
+			// the partitions have their own EventsToActivities and EventsToLegs
+			this.partitionedHandler = new PartitionedScoringEventHandler(this, scenario, numberOfThreads, this.exception);
+			eventsManager.addHandler(this.partitionedHandler);
+			return;
+		}
+		this.partitionedHandler = null;
 		eventsManager.addHandler(this);
 		eventsToActivities.addActivityHandler(this);
 		eventsToLegs.addLegHandler(this);
@@ -115,16 +139,27 @@ import gnu.trove.list.array.TDoubleArrayList;
 //		}
 	}
 
-	private void init() {
+	private void init(int iteration) {
 		for (Person person : population.getPersons().values()) {
 			ScoringFunction data = scoringFunctionFactory.createNewScoringFunction(person);
 			this.agentScorers.put(person.getId(), data);
 			this.partialScores.put(person.getId(), new TDoubleArrayList());
 		}
+		if (this.partitionedHandler != null) {
+			this.partitionedHandler.start(iteration);
+		}
 	}
 
 	@Override
 	synchronized public void handleEvent(Event o) {
+		handleEvent(o, this.vehicles2Drivers);
+	}
+
+	/**
+	 * Not synchronized, so it can be called concurrently for the events of different persons, each with the
+	 * vehicles of these persons.
+	 */
+	/*package*/ void handleEvent(Event o, Vehicle2DriverEventHandler vehicles2Drivers) {
 		// this is for the stuff that is directly based on events.
 		// note that this passes on _all_ person events, even those which are aggregated into legs and activities.
 		// for the time being, not all PersonEvents may "implement HasPersonId".
@@ -176,6 +211,10 @@ import gnu.trove.list.array.TDoubleArrayList;
 
 	@Override
 	synchronized public void handleLeg(PersonExperiencedLeg o) {
+		scoreLeg(o);
+	}
+
+	/*package*/ void scoreLeg(PersonExperiencedLeg o) {
 		Id<Person> agentId = o.getAgentId();
 		Leg leg = o.getLeg();
 		ScoringFunction scoringFunction = ScoringFunctionsForPopulation.this.getScoringFunctionForAgent(agentId);
@@ -188,6 +227,10 @@ import gnu.trove.list.array.TDoubleArrayList;
 
 	@Override
 	synchronized public void handleActivity(PersonExperiencedActivity o) {
+		scoreActivity(o);
+	}
+
+	/*package*/ void scoreActivity(PersonExperiencedActivity o) {
 		Id<Person> agentId = o.getAgentId();
 		Activity activity = o.getActivity();
 		ScoringFunction scoringFunction = ScoringFunctionsForPopulation.this.getScoringFunctionForAgent(agentId);
@@ -213,6 +256,9 @@ import gnu.trove.list.array.TDoubleArrayList;
 	}
 
 	public void finishScoringFunctions() {
+		if (this.partitionedHandler != null) {
+			this.partitionedHandler.finish();
+		}
 		// Rethrow an exception in a scoring function (user code) if there was one.
 		Throwable throwable = exception.get();
 		if (throwable != null) {
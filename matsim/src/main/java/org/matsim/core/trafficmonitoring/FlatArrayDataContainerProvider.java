@@ -0,0 +1,74 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * FlatArrayDataContainerProvider.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.trafficmonitoring;
+
+import java.util.Map;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.trafficmonitoring.TravelTimeCalculator.DataContainer;
+
+/**
+ * Creates the DataContainer objects of all links of the network up front, with data from a
+ * {@link TravelTimeDataFlatArrayFactory}, and looks them up by the index of the link id, so no map lookups or
+ * container creation happen while the events are handled.
+ * <p></p>
+ * Links that are not part of the network are forwarded to a {@link MapBasedDataContainerProvider}.
+ */
+public class FlatArrayDataContainerProvider implements DataContainerProvider {
+
+	private final DataContainer[] dataByIndex;
+	private final DataContainerProvider delegate;
+
+	public FlatArrayDataContainerProvider(final Map<Id<Link>, DataContainer> linkData, final TravelTimeDataFlatArrayFactory ttDataFactory,
+			final Network network) {
+		int maxIndex = -1;
+		for (Id<Link> linkId : network.getLinks().keySet()) {
+			maxIndex = Math.max(maxIndex, linkId.index());
+		}
+		this.dataByIndex = new DataContainer[maxIndex + 1];
+		for (Id<Link> linkId : network.getLinks().keySet()) {
+			DataContainer data = new DataContainer(ttDataFactory.createTravelTimeData(linkId));
+			this.dataByIndex[linkId.index()] = data;
+			linkData.put(linkId, data);
+		}
+		this.delegate = new MapBasedDataContainerProvider(linkData, ttDataFactory);
+	}
+
+	@Override
+	public DataContainer getTravelTimeData(final Id<Link> linkId, final boolean createIfMissing) {
+		int index = linkId.index();
+		if (index < this.dataByIndex.length) {
+			DataContainer data = this.dataByIndex[index];
+			if (data != null) {
+				return data;
+			}
+		}
+		return this.delegate.getTravelTimeData(linkId, createIfMissing);
+	}
+
+	@Override
+	public DataContainer getTravelTimeData(final Link link, final boolean createIfMissing) {
+		return getTravelTimeData(link.getId(), createIfMissing);
+	}
+
+}
@@ -0,0 +1,70 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * SnapshotLinkTravelTimes.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.trafficmonitoring;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.controler.events.AfterMobsimEvent;
+import org.matsim.core.controler.listener.AfterMobsimListener;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * The link travel times the {@link TravelTimeCalculatorModule} binds for the routers if the travel time calculator
+ * type is {@link org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType#TravelTimeCalculatorFlatArray}.
+ * <p></p>
+ * The routers get their travel time once and keep it, so this object does not hold a snapshot itself, but returns the
+ * travel times of the current {@link TravelTimeCalculator#getLinkTravelTimesSnapshot() snapshot} of the calculator.
+ * The snapshot is taken at the first query after a mobsim, i.e. usually by the first replanning thread, and is then
+ * shared by all routers without any locking. Queries during the mobsim thus return the travel times of the previous
+ * mobsim (or of the time of the first query), not the ones measured so far.
+ */
+final class SnapshotLinkTravelTimes implements TravelTime, AfterMobsimListener {
+
+	private final TravelTimeCalculator calculator;
+	private volatile TravelTime snapshot = null;
+
+	SnapshotLinkTravelTimes(final TravelTimeCalculator calculator) {
+		this.calculator = calculator;
+	}
+
+	@Override
+	public double getLinkTravelTime(final Link link, final double time, final Person person, final Vehicle vehicle) {
+		TravelTime travelTimes = this.snapshot;
+		if (travelTimes == null) {
+			travelTimes = takeSnapshot();
+		}
+		return travelTimes.getLinkTravelTime(link, time, person, vehicle);
+	}
+
+	private synchronized TravelTime takeSnapshot() {
+		if (this.snapshot == null) {
+			this.snapshot = this.calculator.getLinkTravelTimesSnapshot();
+		}
+		return this.snapshot;
+	}
+
+	@Override
+	public void notifyAfterMobsim(final AfterMobsimEvent event) {
+		this.snapshot = null;
+	}
+
+}
@@ -19,13 +19,14 @@
  * *********************************************************************** */
 package org.matsim.core.trafficmonitoring;
 
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.Logger;
 import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.IdSet;
 import org.matsim.api.core.v01.events.LinkEnterEvent;
 import org.matsim.api.core.v01.events.LinkLeaveEvent;
 import org.matsim.api.core.v01.events.VehicleAbortsEvent;
@@ -44,6 +45,7 @@ import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
 import org.matsim.core.api.experimental.events.handler.VehicleArrivesAtFacilityEventHandler;
 import org.matsim.core.config.groups.QSimConfigGroup;
 import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType;
 import org.matsim.core.router.util.LinkToLinkTravelTime;
 import org.matsim.core.router.util.TravelTime;
 import org.matsim.core.utils.collections.CollectionUtils;
@@ -84,7 +86,9 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 
 	private Map<Tuple<Id<Link>, Id<Link>>, DataContainer> linkToLinkData;
 
-	private final DataContainerProvider dataContainerProvider;
+	private DataContainerProvider dataContainerProvider;
+
+	private final Network network;
 	
 	private final Map<Id<Vehicle>, LinkEnterEvent> linkEnterEvents;
 
@@ -116,6 +120,9 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 			case TravelTimeCalculatorHashMap:
 				calculator.setTravelTimeDataFactory(new TravelTimeDataHashMapFactory(network));
 				break;
+			case TravelTimeCalculatorFlatArray:
+				calculator.setTravelTimeDataFactory(new TravelTimeDataFlatArrayFactory(network, calculator.numSlots));
+				break;
 			default:
 				throw new RuntimeException(config.getTravelTimeCalculatorType() + " is unknown!");
 		}
@@ -166,6 +173,7 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 
 	TravelTimeCalculator(final Network network, final int timeslice, final int maxTime,
 								boolean calculateLinkTravelTimes, boolean calculateLinkToLinkTravelTimes, boolean filterModes, Set<String> analyzedModes) {
+		this.network = network;
 		this.calculateLinkTravelTimes = calculateLinkTravelTimes;
 		this.calculateLinkToLinkTravelTimes = calculateLinkToLinkTravelTimes;
 		this.filterAnalyzedModes = filterModes;
@@ -198,7 +206,7 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 
 		// if we just look at one mode, we need to ignore all vehicles with a different mode. However, the info re the mode is only in
 		// the vehicleEntersTraffic event.  So we need to memorize the ignored vehicles from there ...
-		this.vehiclesToIgnore = new HashSet<>();
+		this.vehiclesToIgnore = new IdSet<>(Vehicle.class);
 
 
 		this.reset(0);
@@ -370,6 +378,10 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 
 	public void setTravelTimeDataFactory(final TravelTimeDataFactory factory) {
 		this.ttDataFactory = factory;
+		if (this.calculateLinkTravelTimes && factory instanceof TravelTimeDataFlatArrayFactory) {
+			this.linkData.clear();
+			this.dataContainerProvider = new FlatArrayDataContainerProvider(this.linkData, (TravelTimeDataFlatArrayFactory) factory, this.network);
+		}
 	}
 
 	public void setTravelTimeAggregator(final AbstractTravelTimeAggregator aggregator) {
@@ -461,6 +473,49 @@ public class TravelTimeCalculator implements LinkEnterEventHandler, LinkLeaveEve
 
 	}
 
+	/**
+	 * Returns a copy of the current link travel times of all links of the network. In contrast to
+	 * {@link #getLinkTravelTimes()}, the copy does not change when further events are handled, and looking up travel
+	 * times does not modify any state, so it can be shared among concurrent router threads without synchronization.
+	 * Time bins without travel times return the free speed travel time at the time of the query, as the live travel
+	 * times do.
+	 * <p></p>
+	 * Only available with {@link TravelTimeCalculatorType#TravelTimeCalculatorFlatArray}, which tells which time bins
+	 * contain travel times. The {@link TravelTimeCalculatorModule} binds these snapshots for the routers when this type
+	 * is configured, see {@link SnapshotLinkTravelTimes}.
+	 */
+	public TravelTime getLinkTravelTimesSnapshot() {
+		if (!this.calculateLinkTravelTimes) {
+			throw new IllegalStateException("No link travel time is available " +
+					"if calculation is switched off by config option!");
+		}
+		if (!(this.ttDataFactory instanceof TravelTimeDataFlatArrayFactory)) {
+			throw new IllegalStateException("Travel time snapshots are only available with the travel time calculator type "
+					+ TravelTimeCalculatorType.TravelTimeCalculatorFlatArray + ".");
+		}
+		int maxIndex = -1;
+		for (Id<Link> linkId : this.network.getLinks().keySet()) {
+			maxIndex = Math.max(maxIndex, linkId.index());
+		}
+		int[] offsetByIndex = new int[maxIndex + 1];
+		Arrays.fill(offsetByIndex, -1);
+		double[] travelTimes = new double[this.network.getLinks().size() * this.numSlots];
+		int offset = 0;
+		for (Link link : this.network.getLinks().values()) {
+			DataContainer data = this.dataContainerProvider.getTravelTimeData(link, true);
+			if (data.needsConsolidation) {
+				consolidateData(data);
+			}
+			TravelTimeDataFlatArray ttData = (TravelTimeDataFlatArray) data.ttData;
+			for (int i = 0; i < this.numSlots; i++) {
+				travelTimes[offset + i] = ttData.hasTravelTime(i) ? ttData.getTravelTime(i, i * this.timeSlice) : Double.NaN;
+			}
+			offsetByIndex[link.getId().index()] = offset;
+			offset += this.numSlots;
+		}
+		return new TravelTimeSnapshot(this.aggregator, this.network, travelTimes, offsetByIndex);
+	}
+
 	public LinkToLinkTravelTime getLinkToLinkTravelTimes() {
 		return new LinkToLinkTravelTime() {
 
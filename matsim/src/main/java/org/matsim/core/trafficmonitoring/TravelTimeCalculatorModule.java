@@ -30,6 +30,7 @@ import com.google.inject.name.Names;
 import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType;
 import org.matsim.core.controler.AbstractModule;
 import org.matsim.core.router.util.LinkToLinkTravelTime;
 import org.matsim.core.router.util.TravelTime;
@@ -50,6 +51,8 @@ public class TravelTimeCalculatorModule extends AbstractModule {
 
 	@Override
 	public void install() {
+		// with flat arrays, the routers share immutable snapshots of the travel times:
+		final boolean snapshots = getConfig().travelTimeCalculator().getTravelTimeCalculatorType() == TravelTimeCalculatorType.TravelTimeCalculatorFlatArray;
 		if (getConfig().travelTimeCalculator().getSeparateModes()) {
 			if (getConfig().travelTimeCalculator().isCalculateLinkToLinkTravelTimes()) {
 				throw new RuntimeException("separate modes together with link2link routing currently not implemented. doesn't look difficult, "
@@ -62,12 +65,24 @@ public class TravelTimeCalculatorModule extends AbstractModule {
 				bind(TravelTimeCalculator.class).annotatedWith(Names.named(mode)).toProvider(new SingleModeTravelTimeCalculatorProvider(mode)).in(Singleton.class);
 
 				// bind the observer to travel time provider (for router):
-				addTravelTimeBinding(mode).toProvider(new Provider<TravelTime>() {
-					@Inject Injector injector;
-					@Override public TravelTime get() {
-						return injector.getInstance(Key.get(TravelTimeCalculator.class, Names.named(mode))).getLinkTravelTimes();
-					}
-				});
+				if (snapshots) {
+					Key<SnapshotLinkTravelTimes> key = Key.get(SnapshotLinkTravelTimes.class, Names.named(mode));
+					bind(key).toProvider(new Provider<SnapshotLinkTravelTimes>() {
+						@Inject Injector injector;
+						@Override public SnapshotLinkTravelTimes get() {
+							return new SnapshotLinkTravelTimes(injector.getInstance(Key.get(TravelTimeCalculator.class, Names.named(mode))));
+						}
+					}).in(Singleton.class);
+					addControlerListenerBinding().to(key);
+					addTravelTimeBinding(mode).to(key);
+				} else {
+					addTravelTimeBinding(mode).toProvider(new Provider<TravelTime>() {
+						@Inject Injector injector;
+						@Override public TravelTime get() {
+							return injector.getInstance(Key.get(TravelTimeCalculator.class, Names.named(mode))).getLinkTravelTimes();
+						}
+					});
+				}
 			}
 		} else {
 			// (all analyzed modes are measured together, and the same result is returned to each mode)
@@ -77,8 +92,21 @@ public class TravelTimeCalculatorModule extends AbstractModule {
 			
 			// bind the TravelTime objects.  In this case, this just passes on the same information from TravelTimeCalculator to each individual mode:
 			if (getConfig().travelTimeCalculator().isCalculateLinkTravelTimes()) {
+				if (snapshots) {
+					bind(SnapshotLinkTravelTimes.class).toProvider(new Provider<SnapshotLinkTravelTimes>() {
+						@Inject TravelTimeCalculator travelTimeCalculator;
+						@Override public SnapshotLinkTravelTimes get() {
+							return new SnapshotLinkTravelTimes(travelTimeCalculator);
+						}
+					}).in(Singleton.class);
+					addControlerListenerBinding().to(SnapshotLinkTravelTimes.class);
+				}
 				for (String mode : CollectionUtils.stringToSet(getConfig().travelTimeCalculator().getAnalyzedModes())) {
-					addTravelTimeBinding(mode).toProvider(ObservedLinkTravelTimes.class);
+					if (snapshots) {
+						addTravelTimeBinding(mode).to(SnapshotLinkTravelTimes.class);
+					} else {
+						addTravelTimeBinding(mode).toProvider(ObservedLinkTravelTimes.class);
+					}
 				}
 			}
 			if (getConfig().travelTimeCalculator().isCalculateLinkToLinkTravelTimes()) {
@@ -0,0 +1,87 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TravelTimeDataFlatArrayFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.trafficmonitoring;
+
+import java.util.Arrays;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+
+/**
+ * Stores the travel time data of all links of the network in flat arrays, indexed by [link × time slot], instead of
+ * separate arrays per link. The {@link TravelTimeData} objects created by this factory are views on a range of these
+ * arrays. As with the other data types, the travel times are added by the single thread handling the events.
+ * <p></p>
+ * The first data object created for a link uses the flat arrays; further ones (as for the link-to-link travel times,
+ * which are created per from-link) get their own {@link TravelTimeDataArray}.
+ */
+public class TravelTimeDataFlatArrayFactory implements TravelTimeDataFactory {
+
+	private final Network network;
+	private final int numSlots;
+	private final int[] positionByIndex;
+	private final boolean[] created;
+
+	/*package*/ final double[] timeSum;
+	/*package*/ final int[] timeCnt;
+	/*package*/ final double[] travelTimes;
+
+	public TravelTimeDataFlatArrayFactory(final Network network, final int numSlots) {
+		this.network = network;
+		this.numSlots = numSlots;
+
+		int maxIndex = -1;
+		for (Id<Link> linkId : network.getLinks().keySet()) {
+			maxIndex = Math.max(maxIndex, linkId.index());
+		}
+		this.positionByIndex = new int[maxIndex + 1];
+		Arrays.fill(this.positionByIndex, -1);
+		int position = 0;
+		for (Id<Link> linkId : network.getLinks().keySet()) {
+			this.positionByIndex[linkId.index()] = position++;
+		}
+		this.created = new boolean[position];
+
+		long size = (long) position * numSlots;
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("The network has too many links (" + position + ") for " + numSlots
+					+ " time bins to be stored in one array. Use a larger time bin size or another travel time calculator type.");
+		}
+		this.timeSum = new double[(int) size];
+		this.timeCnt = new int[(int) size];
+		this.travelTimes = new double[(int) size];
+		Arrays.fill(this.travelTimes, -1.0);
+	}
+
+	@Override
+	public TravelTimeData createTravelTimeData(final Id<Link> linkId) {
+		Link link = this.network.getLinks().get(linkId);
+		int index = linkId.index();
+		int position = index < this.positionByIndex.length ? this.positionByIndex[index] : -1;
+		if (position < 0 || this.created[position]) {
+			return new TravelTimeDataArray(link, this.numSlots);
+		}
+		this.created[position] = true;
+		return new TravelTimeDataFlatArray(this, link, position * this.numSlots, this.numSlots);
+	}
+
+}
@@ -0,0 +1,97 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TravelTimeSnapshot.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.trafficmonitoring;
+
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * An immutable copy of the consolidated link travel times of a {@link TravelTimeCalculator}, stored in one array
+ * indexed by [link × time slot]. Lookups do not write anything, so the snapshot can be used by any number of router
+ * threads, also while the calculator collects new travel times. Time slots without travel times are stored as NaN
+ * and return the free speed travel time at the time of the query.
+ */
+final class TravelTimeSnapshot implements TravelTime {
+
+	private final AbstractTravelTimeAggregator aggregator;
+	private final SnapshotData[] dataByIndex;
+
+	TravelTimeSnapshot(final AbstractTravelTimeAggregator aggregator, final Network network, final double[] travelTimes,
+			final int[] offsetByIndex) {
+		this.aggregator = aggregator;
+		this.dataByIndex = new SnapshotData[offsetByIndex.length];
+		for (Link link : network.getLinks().values()) {
+			int index = link.getId().index();
+			if (index < offsetByIndex.length && offsetByIndex[index] >= 0) {
+				this.dataByIndex[index] = new SnapshotData(link, travelTimes, offsetByIndex[index]);
+			}
+		}
+	}
+
+	@Override
+	public double getLinkTravelTime(final Link link, final double time, final Person person, final Vehicle vehicle) {
+		int index = link.getId().index();
+		if (index >= this.dataByIndex.length || this.dataByIndex[index] == null) {
+			throw new IllegalArgumentException("Link " + link.getId() + " is not part of the travel time snapshot.");
+		}
+		return this.aggregator.getTravelTime(this.dataByIndex[index], time);
+	}
+
+	private static final class SnapshotData implements TravelTimeData {
+		private final Link link;
+		private final double[] travelTimes;
+		private final int offset;
+
+		SnapshotData(final Link link, final double[] travelTimes, final int offset) {
+			this.link = link;
+			this.travelTimes = travelTimes;
+			this.offset = offset;
+		}
+
+		@Override
+		public double getTravelTime(final int timeSlot, final double now) {
+			double ttime = this.travelTimes[this.offset + timeSlot];
+			if (Double.isNaN(ttime)) {
+				return this.link.getLength() / this.link.getFreespeed(now);
+			}
+			return ttime;
+		}
+
+		@Override
+		public void resetTravelTimes() {
+			throw new UnsupportedOperationException("travel time snapshots are read-only");
+		}
+
+		@Override
+		public void addTravelTime(final int timeSlot, final double traveltime) {
+			throw new UnsupportedOperationException("travel time snapshots are read-only");
+		}
+
+		@Override
+		public void setTravelTime(final int timeSlot, final double traveltime) {
+			throw new UnsupportedOperationException("travel time snapshots are read-only");
+		}
+	}
+
+}
@@ -24,6 +24,7 @@ import org.apache.log4j.Logger;
 import org.matsim.core.api.internal.MatsimReader;
 import org.matsim.core.gbl.Gbl;
 import org.xml.sax.*;
+import org.xml.sax.helpers.AttributesImpl;
 import org.xml.sax.helpers.DefaultHandler;
 
 import javax.xml.parsers.ParserConfigurationException;
@@ -32,9 +33,15 @@ import javax.xml.parsers.SAXParserFactory;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.Reader;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.Arrays;
 import java.util.Stack;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPInputStream;
 
 /**
@@ -45,6 +52,8 @@ import java.util.zip.GZIPInputStream;
  * <p></p>
  * Notes:<ul>
  * <li> If implementing classes want to override the final methods, the will have to resort to delegation.   
+ * <li> In the pipelined mode (see {@link #setPipelined(boolean)}), {@link #characters}, {@link #isReadingContent} and
+ * {@link #setDoctype} are called from another thread than {@link #startTag} and {@link #endTag}.
  * </ul>
  *
  * @author mrieser
@@ -58,6 +67,8 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 
 	private boolean isValidating = true;
 	private boolean isNamespaceAware = true;
+	private boolean isPipelined = false;
+	private Pipeline pipeline = null;
 
 	private String localDtdBase = null;
 	// yy this is NOT working for me with "dtd", but it IS working with null. 
@@ -123,6 +134,21 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 		this.isNamespaceAware = awareness;
 	}
 
+	/**
+	 * Enables or disables the pipelined parsing mode. In the pipelined mode, reading (and decompressing) the input,
+	 * tokenizing the xml and handling the tags run on three different threads, which are connected by bounded queues.
+	 * {@link #startTag} and {@link #endTag} are still called in document order from the thread that called one of the
+	 * <code>parse</code> or <code>readFile</code> methods, so the data model does not need to be thread-safe.
+	 * However, {@link #characters}, {@link #isReadingContent} and {@link #setDoctype} are called from the tokenizing
+	 * thread and must thus not depend on state changed in <code>startTag</code> or <code>endTag</code>.
+	 * By default, the pipelined mode is disabled.
+	 *
+	 * @param pipelined
+	 */
+	public final void setPipelined(final boolean pipelined) {
+		this.isPipelined = pipelined;
+	}
+
 	/**
 	 * Sets the directory where to look for DTD and XSD files if they are not found
 	 * at the location specified in the XML.
@@ -171,6 +197,14 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 	}
 
 	public final void parse(final InputSource input) throws UncheckedIOException {
+		if (this.isPipelined) {
+			parsePipelined(input);
+		} else {
+			parseDirectly(input);
+		}
+	}
+
+	private void parseDirectly(final InputSource input) throws UncheckedIOException {
 		try {
 			SAXParserFactory factory = SAXParserFactory.newInstance();
 			factory.setValidating(this.isValidating);
@@ -195,6 +229,72 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 		}
 	}
 
+	private void parsePipelined(final InputSource input) throws UncheckedIOException {
+		final Pipeline pipeline = new Pipeline();
+		if (input.getCharacterStream() != null) {
+			input.setCharacterStream(new PrefetchingReader(input.getCharacterStream(), pipeline));
+		} else if (input.getByteStream() != null) {
+			input.setByteStream(new PrefetchingInputStream(input.getByteStream(), pipeline));
+		}
+
+		Thread tokenizer = new Thread(() -> {
+			try {
+				this.pipeline = pipeline;
+				parseDirectly(input);
+			} catch (Throwable e) {
+				pipeline.failure = e;
+			} finally {
+				this.pipeline = null;
+				pipeline.finish();
+				try {
+					if (input.getCharacterStream() != null) input.getCharacterStream().close();
+					if (input.getByteStream() != null) input.getByteStream().close();
+				} catch (IOException e) {
+					log.warn("could not close input.", e);
+				}
+			}
+		}, "MatsimXmlParser-tokenizer");
+		tokenizer.setDaemon(true);
+		tokenizer.start();
+
+		Stack<String> context = new Stack<>();
+		try {
+			while (true) {
+				Tag[] batch = pipeline.tags.take();
+				if (batch == Pipeline.END) {
+					break;
+				}
+				for (Tag tag : batch) {
+					if (tag == null) {
+						break;
+					}
+					if (tag.isStart) {
+						this.startTag(tag.name, tag.atts, context);
+						context.push(tag.name);
+					} else {
+						context.pop();
+						this.endTag(tag.name, tag.content, context);
+					}
+				}
+			}
+		} catch (InterruptedException e) {
+			pipeline.aborted = true;
+			throw new UncheckedIOException(e);
+		} catch (RuntimeException | Error e) {
+			pipeline.aborted = true;
+			throw e;
+		}
+
+		Throwable failure = pipeline.failure;
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		} else if (failure instanceof Error) {
+			throw (Error) failure;
+		} else if (failure != null) {
+			throw new UncheckedIOException(failure);
+		}
+	}
+
 	// the following may be useful.  But it is nowhere used, so I am not sure if we fully understand its longterm maintenance implications, 
 	// so I rather comment it out. If it is needed somewhere, just comment it back in (and probably (**) above) 
 	// and leave a comment.  kai, jul'16
@@ -320,6 +420,17 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 		return null;
 	}
 
+	/**
+	 * Tells the parser whether the character content of the given tag is needed in {@link #endTag}. If not,
+	 * the content is not collected and an empty string is passed to <code>endTag</code>. By default, the content
+	 * of all tags is collected.
+	 *
+	 * @param name the name of the xml-tag
+	 */
+	protected boolean isReadingContent(final String name) {
+		return true;
+	}
+
 	/* implement ContentHandler */
 
 	@Override
@@ -337,8 +448,13 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 		// I have not good intuition if making this one non-final might be ok.  kai, jul'16
 
 		String tag = (uri.length() == 0) ? qName : localName;
-		this.buffers.push(new StringBuffer());
-		this.startTag(tag, atts, this.theContext);
+		this.buffers.push(isReadingContent(tag) ? new StringBuffer() : null);
+		if (this.pipeline != null) {
+			// the attributes object is reused by the sax parser, thus copy it
+			this.pipeline.add(new Tag(true, tag, new AttributesImpl(atts), null));
+		} else {
+			this.startTag(tag, atts, this.theContext);
+		}
 		this.theContext.push(tag);
 	}
 
@@ -349,7 +465,12 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 		String tag = (uri.length() == 0) ? qName : localName;
 		this.theContext.pop();
 		StringBuffer buffer = this.buffers.pop();
-		this.endTag(tag, buffer.toString(), this.theContext);
+		String content = buffer == null ? "" : buffer.toString();
+		if (this.pipeline != null) {
+			this.pipeline.add(new Tag(false, tag, null, content));
+		} else {
+			this.endTag(tag, content, this.theContext);
+		}
 	}
 
 	/* implement ErrorHandler */
@@ -393,4 +514,238 @@ public abstract class MatsimXmlParser extends DefaultHandler implements MatsimRe
 		return this.theSource;
 	}
 
+	/* pipelined parsing */
+
+	private static final class Tag {
+		final boolean isStart;
+		final String name;
+		final Attributes atts;
+		final String content;
+
+		Tag(final boolean isStart, final String name, final Attributes atts, final String content) {
+			this.isStart = isStart;
+			this.name = name;
+			this.atts = atts;
+			this.content = content;
+		}
+	}
+
+	/**
+	 * Connects the threads of the pipelined mode. Tags are handed over in batches to keep the synchronization
+	 * overhead low.
+	 */
+	private static final class Pipeline {
+		static final int BATCH_SIZE = 1024;
+		static final int QUEUE_CAPACITY = 64;
+		static final Tag[] END = new Tag[0];
+
+		final BlockingQueue<Tag[]> tags = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+		private Tag[] batch = new Tag[BATCH_SIZE];
+		private int batchSize = 0;
+		volatile Throwable failure = null;
+		volatile boolean aborted = false;
+
+		void add(final Tag tag) throws SAXException {
+			this.batch[this.batchSize++] = tag;
+			if (this.batchSize == BATCH_SIZE) {
+				if (!put(this.tags, this.batch, this)) {
+					throw new SAXException("parsing was aborted.");
+				}
+				this.batch = new Tag[BATCH_SIZE];
+				this.batchSize = 0;
+			}
+		}
+
+		void finish() {
+			if (this.batchSize > 0) {
+				put(this.tags, this.batch, this);
+			}
+			put(this.tags, END, this);
+		}
+
+		/**
+		 * Blocks until the element could be added to the queue, or returns <code>false</code> if the pipeline was aborted.
+		 */
+		private static boolean put(final BlockingQueue<Tag[]> queue, final Tag[] element, final Pipeline pipeline) {
+			try {
+				while (!queue.offer(element, 100, TimeUnit.MILLISECONDS)) {
+					if (pipeline.aborted) {
+						return false;
+					}
+				}
+				return true;
+			} catch (InterruptedException e) {
+				pipeline.aborted = true;
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * Reads (and decompresses, decodes) the input on a separate thread, in chunks.
+	 */
+	private static final class PrefetchingReader extends Reader {
+		private static final char[] EOF = new char[0];
+		private final BlockingQueue<char[]> chunks = new ArrayBlockingQueue<>(16);
+		private final Pipeline pipeline;
+		private volatile IOException failure = null;
+		private volatile boolean closed = false;
+		private char[] chunk = null;
+		private int position = 0;
+
+		PrefetchingReader(final Reader in, final Pipeline pipeline) {
+			this.pipeline = pipeline;
+			Thread thread = new Thread(() -> {
+				try (Reader reader = in) {
+					while (!this.closed && !pipeline.aborted) {
+						char[] buffer = new char[65536];
+						int length = reader.read(buffer);
+						if (length < 0) {
+							break;
+						}
+						if (length > 0 && !put(length == buffer.length ? buffer : Arrays.copyOf(buffer, length))) {
+							return;
+						}
+					}
+				} catch (IOException e) {
+					this.failure = e;
+				}
+				put(EOF);
+			}, "MatsimXmlParser-reader");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		@Override
+		public int read(final char[] cbuf, final int off, final int len) throws IOException {
+			if (this.chunk == null || this.position == this.chunk.length) {
+				if (this.chunk == EOF) {
+					return -1;
+				}
+				try {
+					this.chunk = this.chunks.take();
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+				this.position = 0;
+				if (this.chunk == EOF) {
+					if (this.failure != null) {
+						throw this.failure;
+					}
+					return -1;
+				}
+			}
+			int n = Math.min(len, this.chunk.length - this.position);
+			System.arraycopy(this.chunk, this.position, cbuf, off, n);
+			this.position += n;
+			return n;
+		}
+
+		private boolean put(final char[] element) {
+			try {
+				while (!this.chunks.offer(element, 100, TimeUnit.MILLISECONDS)) {
+					if (this.closed || this.pipeline.aborted) {
+						return false;
+					}
+				}
+				return true;
+			} catch (InterruptedException e) {
+				return false;
+			}
+		}
+
+		@Override
+		public void close() {
+			// stops the reading thread
+			this.closed = true;
+		}
+	}
+
+	/**
+	 * Reads (and decompresses) the input on a separate thread, in chunks.
+	 */
+	private static final class PrefetchingInputStream extends InputStream {
+		private static final byte[] EOF = new byte[0];
+		private final BlockingQueue<byte[]> chunks = new ArrayBlockingQueue<>(16);
+		private final Pipeline pipeline;
+		private volatile IOException failure = null;
+		private volatile boolean closed = false;
+		private byte[] chunk = null;
+		private int position = 0;
+
+		PrefetchingInputStream(final InputStream in, final Pipeline pipeline) {
+			this.pipeline = pipeline;
+			Thread thread = new Thread(() -> {
+				try (InputStream stream = in) {
+					while (!this.closed && !pipeline.aborted) {
+						byte[] buffer = new byte[65536];
+						int length = stream.read(buffer);
+						if (length < 0) {
+							break;
+						}
+						if (length > 0 && !put(length == buffer.length ? buffer : Arrays.copyOf(buffer, length))) {
+							return;
+						}
+					}
+				} catch (IOException e) {
+					this.failure = e;
+				}
+				put(EOF);
+			}, "MatsimXmlParser-reader");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			int n = read(b, 0, 1);
+			return n < 0 ? -1 : (b[0] & 0xff);
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) throws IOException {
+			if (this.chunk == null || this.position == this.chunk.length) {
+				if (this.chunk == EOF) {
+					return -1;
+				}
+				try {
+					this.chunk = this.chunks.take();
+				} catch (InterruptedException e) {
+					throw new InterruptedIOException();
+				}
+				this.position = 0;
+				if (this.chunk == EOF) {
+					if (this.failure != null) {
+						throw this.failure;
+					}
+					return -1;
+				}
+			}
+			int n = Math.min(len, this.chunk.length - this.position);
+			System.arraycopy(this.chunk, this.position, b, off, n);
+			this.position += n;
+			return n;
+		}
+
+		private boolean put(final byte[] element) {
+			try {
+				while (!this.chunks.offer(element, 100, TimeUnit.MILLISECONDS)) {
+					if (this.closed || this.pipeline.aborted) {
+						return false;
+					}
+				}
+				return true;
+			} catch (InterruptedException e) {
+				return false;
+			}
+		}
+
+		@Override
+		public void close() {
+			// stops the reading thread
+			this.closed = true;
+		}
+	}
+
 }
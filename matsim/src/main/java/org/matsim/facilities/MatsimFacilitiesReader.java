@@ -89,6 +89,7 @@ public class MatsimFacilitiesReader extends MatsimXmlParser {
         this.coordinateTransformation = coordinateTransformation;
         this.scenario = scenario;
         this.attributeConverters = new HashMap();
+        this.setPipelined(true);
     }
 
     public void putAttributeConverter(Class<?> clazz, AttributeConverter<?> converter) {
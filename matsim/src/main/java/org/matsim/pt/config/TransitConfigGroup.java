@@ -47,12 +47,14 @@ public class TransitConfigGroup extends ReflectiveConfigGroup {
 	/*package*/ static final String VEHICLES_FILE = "vehiclesFile";
 	/*package*/ static final String TRANSIT_MODES = "transitModes";
 	private static final String SCHEDULE_CRS = "inputScheduleCRS";
+	private static final String SCHEDULE_SNAPSHOT_FILE = "transitScheduleSnapshotFile";
 
 	private String transitScheduleFile = null;
 	private String vehiclesFile = null;
 	private String transitLinesAttributesFile = null;
 	private String transitStopsAttributesFile = null;
 	private String inputScheduleCRS = null;
+	private String transitScheduleSnapshotFile = null;
 
 	private Set<String> transitModes;
 	
@@ -101,6 +103,9 @@ public class TransitConfigGroup extends ReflectiveConfigGroup {
 		comments.put( SCHEDULE_CRS , "The Coordinates Reference System in which the coordinates are expressed in the input file." +
 				" At import, the coordinates will be converted to the coordinate system defined in \"global\", and will" +
 				"be converted back at export. If not specified, no conversion happens." );
+		comments.put(SCHEDULE_SNAPSHOT_FILE, "Optional file in which a binary copy of the transit schedule is kept. If the file was written for the same" +
+				" schedule file and coordinate systems, the schedule is read from it, which is much faster than reading the xml file;" +
+				" otherwise the xml file is read and the file is (re-)written. Other than the input files, this is a path in the file system.");
 		return comments;
 	}
 
@@ -184,4 +189,14 @@ public class TransitConfigGroup extends ReflectiveConfigGroup {
 	public void setInputScheduleCRS(String inputScheduleCRS) {
 		this.inputScheduleCRS = inputScheduleCRS;
 	}
+
+	@StringGetter( SCHEDULE_SNAPSHOT_FILE )
+	public String getTransitScheduleSnapshotFile() {
+		return this.transitScheduleSnapshotFile;
+	}
+
+	@StringSetter( SCHEDULE_SNAPSHOT_FILE )
+	public void setTransitScheduleSnapshotFile(final String transitScheduleSnapshotFile) {
+		this.transitScheduleSnapshotFile = transitScheduleSnapshotFile;
+	}
 }
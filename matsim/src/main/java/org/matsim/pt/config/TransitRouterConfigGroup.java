@@ -27,15 +27,29 @@ public class TransitRouterConfigGroup extends ReflectiveConfigGroup {
 
 	public static final String GROUP_NAME = "transitRouter";
 
+	public enum RoutingAlgorithmType {Dijkstra, Raptor}
+
+	public enum TransferDistanceType {Beeline, Network}
+
 	/*package*/ static final String SEARCH_RADIUS = "searchRadius";
 	/*package*/ static final String EXTENSION_RADIUS = "extensionRadius";
 	/*package*/ static final String MAX_BEELINE_WALK_CONNECTION_DISTANCE = "maxBeelineWalkConnectionDistance";
 	/*package*/ static final String ADDITIONAL_TRANSFER_TIME = "additionalTransferTime";
+	/*package*/ static final String ROUTING_ALGORITHM_TYPE = "routingAlgorithmType";
+	/*package*/ static final String TRANSFER_DISTANCE_TYPE = "transferDistanceType";
+	/*package*/ static final String TRANSFER_GRAPH_FILE = "transferGraphFile";
+	/*package*/ static final String RAPTOR_PROFILE_TIME_GRID = "raptorProfileTimeGrid";
+	/*package*/ static final String RAPTOR_ROUTING_FROM_PROFILES = "raptorRoutingFromProfiles";
 
 	private double searchRadius = 1000.0;
 	private double extensionRadius = 200.0;
 	private double maxBeelineWalkConnectionDistance = 100.0;
 	private double additionalTransferTime = 0.0;
+	private RoutingAlgorithmType routingAlgorithmType = RoutingAlgorithmType.Dijkstra;
+	private TransferDistanceType transferDistanceType = TransferDistanceType.Beeline;
+	private String transferGraphFile = null;
+	private double raptorProfileTimeGrid = 900.0;
+	private boolean raptorRoutingFromProfiles = false;
 
 	private double directWalkFactor = 1. ;
 
@@ -54,6 +68,18 @@ public class TransitRouterConfigGroup extends ReflectiveConfigGroup {
 		comments.put(MAX_BEELINE_WALK_CONNECTION_DISTANCE, "maximum beeline distance between stops that agents could transfer to by walking");
 		comments.put(ADDITIONAL_TRANSFER_TIME, "additional time the router allocates when a line switch happens. Can be interpreted as a 'safety' time that agents need to safely transfer from one line to another");
 		comments.put(DIRECT_WALK_FACTOR, DIRECT_WALK_FACTOR_CMT);
+		comments.put(ROUTING_ALGORITHM_TYPE, "The algorithm used to find transit routes, may have the values: " + RoutingAlgorithmType.Dijkstra
+				+ " (on the transit router network) or " + RoutingAlgorithmType.Raptor + " (round-based, on arrays of the schedule shared by all routers)");
+		comments.put(TRANSFER_DISTANCE_TYPE, "How the walk distances of the transfers between stops are computed, may have the values: " + TransferDistanceType.Beeline
+				+ " or " + TransferDistanceType.Network + " (along the links of the network, divided by the beeline distance factor of walk so that it is comparable to "
+				+ MAX_BEELINE_WALK_CONNECTION_DISTANCE + ")");
+		comments.put(TRANSFER_GRAPH_FILE, "Optional file in which the transfers between stops are kept across runs. If the file exists and matches the schedule "
+				+ "and the transfer settings, the transfers are read from it, otherwise they are computed and written to it.");
+		comments.put(RAPTOR_PROFILE_TIME_GRID, "Only for " + RoutingAlgorithmType.Raptor + ": the windows of the profile queries are widened to multiples "
+				+ "of this many seconds, so that queries for similar windows share one cached profile.");
+		comments.put(RAPTOR_ROUTING_FROM_PROFILES, "Only for " + RoutingAlgorithmType.Raptor + ": if true, routes are taken from the cached profiles "
+				+ "between the access and egress stops, for the window of " + RAPTOR_PROFILE_TIME_GRID + " seconds around the departure. "
+				+ "Rerouting after a departure time shift, e.g. by the TimeAllocationMutator, then mostly reuses cached profiles.");
 		return comments;
 	}
 
@@ -101,6 +127,64 @@ public class TransitRouterConfigGroup extends ReflectiveConfigGroup {
 		return this.additionalTransferTime;
 	}
 
+	@StringSetter( ROUTING_ALGORITHM_TYPE )
+	public void setRoutingAlgorithmType(final RoutingAlgorithmType routingAlgorithmType) {
+		testForLocked() ;
+		this.routingAlgorithmType = routingAlgorithmType;
+	}
+
+	@StringGetter( ROUTING_ALGORITHM_TYPE )
+	public RoutingAlgorithmType getRoutingAlgorithmType() {
+		return this.routingAlgorithmType;
+	}
+
+	@StringSetter( TRANSFER_DISTANCE_TYPE )
+	public void setTransferDistanceType(final TransferDistanceType transferDistanceType) {
+		testForLocked() ;
+		this.transferDistanceType = transferDistanceType;
+	}
+
+	@StringGetter( TRANSFER_DISTANCE_TYPE )
+	public TransferDistanceType getTransferDistanceType() {
+		return this.transferDistanceType;
+	}
+
+	@StringSetter( TRANSFER_GRAPH_FILE )
+	public void setTransferGraphFile(final String transferGraphFile) {
+		testForLocked() ;
+		this.transferGraphFile = transferGraphFile;
+	}
+
+	@StringGetter( TRANSFER_GRAPH_FILE )
+	public String getTransferGraphFile() {
+		return this.transferGraphFile;
+	}
+
+	@StringSetter( RAPTOR_PROFILE_TIME_GRID )
+	public void setRaptorProfileTimeGrid(final double raptorProfileTimeGrid) {
+		testForLocked() ;
+		if ( raptorProfileTimeGrid <= 0.0 ) {
+			throw new IllegalArgumentException( RAPTOR_PROFILE_TIME_GRID + " must be positive, but is " + raptorProfileTimeGrid ) ;
+		}
+		this.raptorProfileTimeGrid = raptorProfileTimeGrid;
+	}
+
+	@StringGetter( RAPTOR_PROFILE_TIME_GRID )
+	public double getRaptorProfileTimeGrid() {
+		return this.raptorProfileTimeGrid;
+	}
+
+	@StringSetter( RAPTOR_ROUTING_FROM_PROFILES )
+	public void setRaptorRoutingFromProfiles(final boolean raptorRoutingFromProfiles) {
+		testForLocked() ;
+		this.raptorRoutingFromProfiles = raptorRoutingFromProfiles;
+	}
+
+	@StringGetter( RAPTOR_ROUTING_FROM_PROFILES )
+	public boolean isRaptorRoutingFromProfiles() {
+		return this.raptorRoutingFromProfiles;
+	}
+
 	/**
 	 * {@value #DIRECT_WALK_FACTOR_CMT}
 	 */
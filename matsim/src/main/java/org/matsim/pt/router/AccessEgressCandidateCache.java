@@ -0,0 +1,99 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * AccessEgressCandidateCache.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import org.matsim.api.core.v01.Coord;
+
+/**
+ * Remembers the access and egress candidates (stops or transit router network nodes) found around a coordinate, so
+ * the growing radius search of a transit router runs only once per facility location and not once per trip and
+ * iteration. As the schedule does not change during a run, the candidates are never outdated.
+ * <p></p>
+ * At most the given number of coordinates is kept; when it is exceeded, the least recently used one is dropped, so
+ * that the cache does not grow with the number of distinct trip origins and destinations of a large population.
+ * <p></p>
+ * The cache is thread-safe and is shared by all routers created by one factory, as they use the same search radii.
+ * The search runs outside of the lock; if two threads search around the same coordinate at the same time, only the
+ * first result is kept.
+ *
+ * @param <T> the type of the candidates
+ */
+public final class AccessEgressCandidateCache<T> {
+
+	public static final int DEFAULT_MAX_SIZE = 100000;
+
+	private final Map<Coord, List<T>> candidates;
+
+	public AccessEgressCandidateCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	public AccessEgressCandidateCache(final int maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("the maximum size must be positive, but is " + maxSize);
+		}
+		this.candidates = new LinkedHashMap<Coord, List<T>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Coord, List<T>> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * @param search finds the candidates around a coordinate if they are not cached yet
+	 * @return the cached candidates, unmodifiable
+	 */
+	public List<T> getCandidates(final Coord coord, final Function<Coord, ? extends Collection<T>> search) {
+		List<T> cached;
+		synchronized (this) {
+			cached = this.candidates.get(coord);
+		}
+		if (cached == null) {
+			cached = Collections.unmodifiableList(new ArrayList<>(search.apply(coord)));
+			synchronized (this) {
+				List<T> existing = this.candidates.putIfAbsent(coord, cached);
+				if (existing != null) {
+					cached = existing;
+				}
+			}
+		}
+		return cached;
+	}
+
+	public synchronized int size() {
+		return this.candidates.size();
+	}
+
+	public synchronized void clear() {
+		this.candidates.clear();
+	}
+
+}
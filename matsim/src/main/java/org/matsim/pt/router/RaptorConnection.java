@@ -0,0 +1,90 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RaptorConnection.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.matsim.core.utils.misc.Time;
+
+/**
+ * One connection of the Pareto set found by a {@link RaptorTransitRouter}: no other connection of the set departs
+ * later, arrives earlier and needs fewer transfers at the same time.
+ * <p></p>
+ * The route segments are in the same form as the ones of a {@link TransitPassengerRoute}; a segment without a
+ * transit route is a transfer. The times include the walks from the origin and to the destination, the travel cost
+ * is computed with the same cost model as the one of the {@link TransitRouterImpl}.
+ */
+public final class RaptorConnection {
+
+	private final double departureTime;
+	private final double arrivalTime;
+	private final int numberOfTransfers;
+	private final double travelCost;
+	private final List<RouteSegment> segments;
+
+	RaptorConnection(final double departureTime, final double arrivalTime, final int numberOfTransfers, final double travelCost,
+			final List<RouteSegment> segments) {
+		this.departureTime = departureTime;
+		this.arrivalTime = arrivalTime;
+		this.numberOfTransfers = numberOfTransfers;
+		this.travelCost = travelCost;
+		this.segments = Collections.unmodifiableList(segments);
+	}
+
+	/**
+	 * @return the time at which the origin has to be left
+	 */
+	public double getDepartureTime() {
+		return this.departureTime;
+	}
+
+	/**
+	 * @return the time at which the destination is reached
+	 */
+	public double getArrivalTime() {
+		return this.arrivalTime;
+	}
+
+	public int getNumberOfTransfers() {
+		return this.numberOfTransfers;
+	}
+
+	public double getTravelCost() {
+		return this.travelCost;
+	}
+
+	public List<RouteSegment> getRouteSegments() {
+		return this.segments;
+	}
+
+	/*package*/ boolean dominates(final RaptorConnection other) {
+		return this.departureTime >= other.departureTime && this.arrivalTime <= other.arrivalTime
+				&& this.numberOfTransfers <= other.numberOfTransfers;
+	}
+
+	@Override
+	public String toString() {
+		return Time.writeTime(this.departureTime) + " - " + Time.writeTime(this.arrivalTime) + ", " + this.numberOfTransfers
+				+ " transfers, cost: " + this.travelCost + " via " + this.segments;
+	}
+
+}
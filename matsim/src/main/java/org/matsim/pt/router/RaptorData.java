@@ -0,0 +1,313 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RaptorData.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.core.utils.collections.QuadTree;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * The transit schedule in the form needed by {@link RaptorSearch}: all routes, their stops and their departures, the
+ * routes serving each stop, and the walk transfers between stops are stored in flat primitive arrays. Lists of
+ * variable length are stored in compressed sparse row format, e.g. the stops of route <code>r</code> are the route
+ * stops <code>routeFirstStop[r]</code> to <code>routeFirstStop[r + 1] - 1</code>.
+ * <p></p>
+ * The departures of each route are sorted, the departure and arrival times at a stop are the departure time at the
+ * terminus plus the offsets of the route stop. Only stops served by at least one route are contained.
+ * <p></p>
+ * Instances are immutable after construction and can be shared among threads; the search state is kept by each
+ * {@link RaptorSearch}.
+ */
+final class RaptorData {
+
+	private final static Logger log = Logger.getLogger(RaptorData.class);
+
+	/*package*/ static final int NO_INDEX = -1;
+
+	/*package*/ final TransitSchedule schedule;
+	/** thread-safe, so it is shared by the travel disutilities of all routers */
+	/*package*/ final PreparedTransitSchedule preparedSchedule;
+
+	// stops
+	/*package*/ final TransitStopFacility[] stops;
+	private final int[] stopIndexById;
+	/*package*/ final QuadTree<TransitStopFacility> stopsQT;
+	/*package*/ final int[] stopFirstRouteStop;
+	/*package*/ final int[] stopRouteStops;
+	/*package*/ final int[] stopFirstTransfer;
+	/*package*/ final int[] transferToStop;
+	/*package*/ final double[] transferDistance;
+
+	// routes
+	/*package*/ final TransitLine[] routeLines;
+	/*package*/ final TransitRoute[] routes;
+	/*package*/ final int[] routeFirstStop;
+	/*package*/ final int[] routeFirstDeparture;
+	/*package*/ final double[] departures;
+
+	// route stops
+	/*package*/ final int[] routeStopRoute;
+	/*package*/ final int[] routeStopStop;
+	/*package*/ final double[] routeStopArrivalOffset;
+	/*package*/ final double[] routeStopDepartureOffset;
+	/*package*/ final double[] routeStopDistance;
+
+	RaptorData(final TransitSchedule schedule, final double maxBeelineWalkConnectionDistance) {
+		this(schedule, TransitStopTransfers.createBeeline(schedule, maxBeelineWalkConnectionDistance));
+	}
+
+	RaptorData(final TransitSchedule schedule, final TransitStopTransfers transfers) {
+		this.schedule = schedule;
+		this.preparedSchedule = new PreparedTransitSchedule(schedule);
+
+		// routes, only those with departures can be used
+		List<TransitLine> lines = new ArrayList<>();
+		List<TransitRoute> routeList = new ArrayList<>();
+		int routeStopCount = 0;
+		int departureCount = 0;
+		int maxStopIndex = -1;
+		for (TransitLine line : schedule.getTransitLines().values()) {
+			for (TransitRoute route : line.getRoutes().values()) {
+				if (route.getDepartures().isEmpty() || route.getStops().isEmpty()) {
+					continue;
+				}
+				lines.add(line);
+				routeList.add(route);
+				routeStopCount += route.getStops().size();
+				departureCount += route.getDepartures().size();
+				for (TransitRouteStop stop : route.getStops()) {
+					maxStopIndex = Math.max(maxStopIndex, stop.getStopFacility().getId().index());
+				}
+			}
+		}
+		int routeCount = routeList.size();
+		this.routeLines = lines.toArray(new TransitLine[routeCount]);
+		this.routes = routeList.toArray(new TransitRoute[routeCount]);
+
+		// stops
+		this.stopIndexById = new int[maxStopIndex + 1];
+		Arrays.fill(this.stopIndexById, NO_INDEX);
+		List<TransitStopFacility> stopList = new ArrayList<>();
+		for (TransitRoute route : this.routes) {
+			for (TransitRouteStop stop : route.getStops()) {
+				int idIndex = stop.getStopFacility().getId().index();
+				if (this.stopIndexById[idIndex] == NO_INDEX) {
+					this.stopIndexById[idIndex] = stopList.size();
+					stopList.add(stop.getStopFacility());
+				}
+			}
+		}
+		int stopCount = stopList.size();
+		this.stops = stopList.toArray(new TransitStopFacility[stopCount]);
+
+		// route stops and departures
+		this.routeFirstStop = new int[routeCount + 1];
+		this.routeFirstDeparture = new int[routeCount + 1];
+		this.departures = new double[departureCount];
+		this.routeStopRoute = new int[routeStopCount];
+		this.routeStopStop = new int[routeStopCount];
+		this.routeStopArrivalOffset = new double[routeStopCount];
+		this.routeStopDepartureOffset = new double[routeStopCount];
+		this.routeStopDistance = new double[routeStopCount];
+		int rs = 0;
+		int d = 0;
+		for (int r = 0; r < routeCount; r++) {
+			this.routeFirstStop[r] = rs;
+			Coord prevCoord = null;
+			double distance = 0.0;
+			for (TransitRouteStop stop : this.routes[r].getStops()) {
+				Coord coord = stop.getStopFacility().getCoord();
+				if (prevCoord != null) {
+					distance += CoordUtils.calcEuclideanDistance(prevCoord, coord);
+				}
+				prevCoord = coord;
+				double arrivalOffset = stop.getArrivalOffset();
+				double departureOffset = stop.getDepartureOffset();
+				this.routeStopRoute[rs] = r;
+				this.routeStopStop[rs] = getStopIndex(stop.getStopFacility());
+				this.routeStopArrivalOffset[rs] = arrivalOffset != Time.UNDEFINED_TIME ? arrivalOffset : departureOffset;
+				this.routeStopDepartureOffset[rs] = departureOffset != Time.UNDEFINED_TIME ? departureOffset : arrivalOffset;
+				this.routeStopDistance[rs] = distance;
+				rs++;
+			}
+			this.routeFirstDeparture[r] = d;
+			for (Departure departure : this.routes[r].getDepartures().values()) {
+				this.departures[d++] = departure.getDepartureTime();
+			}
+			Arrays.sort(this.departures, this.routeFirstDeparture[r], d);
+		}
+		this.routeFirstStop[routeCount] = rs;
+		this.routeFirstDeparture[routeCount] = d;
+
+		// route stops at stops, counting sort by stop
+		this.stopFirstRouteStop = new int[stopCount + 1];
+		for (int i = 0; i < routeStopCount; i++) {
+			this.stopFirstRouteStop[this.routeStopStop[i] + 1]++;
+		}
+		for (int s = 0; s < stopCount; s++) {
+			this.stopFirstRouteStop[s + 1] += this.stopFirstRouteStop[s];
+		}
+		this.stopRouteStops = new int[routeStopCount];
+		int[] next = Arrays.copyOf(this.stopFirstRouteStop, stopCount);
+		for (int i = 0; i < routeStopCount; i++) {
+			this.stopRouteStops[next[this.routeStopStop[i]]++] = i;
+		}
+
+		// spatial index
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (TransitStopFacility stop : this.stops) {
+			Coord c = stop.getCoord();
+			minX = Math.min(minX, c.getX());
+			minY = Math.min(minY, c.getY());
+			maxX = Math.max(maxX, c.getX());
+			maxY = Math.max(maxY, c.getY());
+		}
+		if (stopCount == 0) {
+			minX = minY = maxX = maxY = 0.0;
+		}
+		this.stopsQT = new QuadTree<>(minX, minY, maxX, maxY);
+		for (TransitStopFacility stop : this.stops) {
+			this.stopsQT.put(stop.getCoord().getX(), stop.getCoord().getY(), stop);
+		}
+
+		// walk transfers between the stops served by routes
+		this.stopFirstTransfer = new int[stopCount + 1];
+		int[][] transferStops = new int[stopCount][];
+		double[][] transferDistances = new double[stopCount][];
+		int transferCount = 0;
+		for (int s = 0; s < stopCount; s++) {
+			TransitStopFacility stop = this.stops[s];
+			int first = transfers.containsStop(stop) ? transfers.getFirstTransfer(stop) : 0;
+			int end = transfers.containsStop(stop) ? transfers.getEndTransfer(stop) : 0;
+			transferStops[s] = new int[end - first];
+			transferDistances[s] = new double[end - first];
+			int n = 0;
+			for (int i = first; i < end; i++) {
+				int t = getStopIndex(transfers.getToStop(i));
+				if (t != NO_INDEX) {
+					transferStops[s][n] = t;
+					transferDistances[s][n] = transfers.getDistance(i);
+					n++;
+				}
+			}
+			transferCount += n;
+			this.stopFirstTransfer[s + 1] = transferCount;
+		}
+		this.transferToStop = new int[transferCount];
+		this.transferDistance = new double[transferCount];
+		for (int s = 0; s < stopCount; s++) {
+			int n = this.stopFirstTransfer[s + 1] - this.stopFirstTransfer[s];
+			System.arraycopy(transferStops[s], 0, this.transferToStop, this.stopFirstTransfer[s], n);
+			System.arraycopy(transferDistances[s], 0, this.transferDistance, this.stopFirstTransfer[s], n);
+		}
+
+		log.info("raptor data: " + stopCount + " stops, " + routeCount + " routes, " + routeStopCount + " route stops, "
+				+ departureCount + " departures, " + transferCount + " transfers.");
+	}
+
+	/**
+	 * @return the walk distance of the transfer between the two stops, 0 if they are the same
+	 */
+	/*package*/ double getTransferDistance(final int fromStop, final int toStop) {
+		if (fromStop == toStop) {
+			return 0.0;
+		}
+		for (int t = this.stopFirstTransfer[fromStop]; t < this.stopFirstTransfer[fromStop + 1]; t++) {
+			if (this.transferToStop[t] == toStop) {
+				return this.transferDistance[t];
+			}
+		}
+		throw new IllegalArgumentException("no transfer between stops " + this.stops[fromStop].getId() + " and " + this.stops[toStop].getId());
+	}
+
+	/**
+	 * @return the index of the stop, or {@link #NO_INDEX} if the stop is not served by any route
+	 */
+	/*package*/ int getStopIndex(final TransitStopFacility stop) {
+		int idIndex = stop.getId().index();
+		if (idIndex >= this.stopIndexById.length || this.stopIndexById[idIndex] == NO_INDEX
+				|| this.stops[this.stopIndexById[idIndex]] != stop) {
+			return NO_INDEX;
+		}
+		return this.stopIndexById[idIndex];
+	}
+
+	/*package*/ int getStopCount() {
+		return this.stops.length;
+	}
+
+	/*package*/ int getRouteCount() {
+		return this.routes.length;
+	}
+
+	/**
+	 * Same as {@link PreparedTransitSchedule#getNextDepartureTime(TransitRoute, TransitRouteStop, double)}, including
+	 * the wrap around midnight, but returns the departure time of the trip at the terminus.
+	 *
+	 * @return the departure time at the terminus of the first trip of the route of the given route stop that departs
+	 * from the route stop not before <code>time</code>, or {@link Double#POSITIVE_INFINITY} if the route has no
+	 * departures
+	 */
+	/*package*/ double getNextTripDepartureTime(final int routeStop, final double time) {
+		int route = this.routeStopRoute[routeStop];
+		int first = this.routeFirstDeparture[route];
+		int end = this.routeFirstDeparture[route + 1];
+		if (first == end) {
+			return Double.POSITIVE_INFINITY;
+		}
+		double offset = this.routeStopDepartureOffset[routeStop];
+		double earliestDepartureTimeAtTerminus = time - offset;
+		if (earliestDepartureTimeAtTerminus >= TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT) {
+			earliestDepartureTimeAtTerminus = earliestDepartureTimeAtTerminus % TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT;
+		}
+		if (earliestDepartureTimeAtTerminus < 0) {
+			earliestDepartureTimeAtTerminus += TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT;
+		}
+		int pos = Arrays.binarySearch(this.departures, first, end, earliestDepartureTimeAtTerminus);
+		if (pos < 0) {
+			pos = -(pos + 1);
+		}
+		if (pos >= end) {
+			pos = first; // there is no later departure time, take the first in the morning
+		}
+		double departureTime = this.departures[pos] + offset;
+		while (departureTime < time) {
+			departureTime += TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT;
+		}
+		return departureTime - offset;
+	}
+
+}
@@ -0,0 +1,105 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RaptorProfile.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.matsim.core.utils.misc.Time;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * The result of a profile query of a {@link RaptorTransitRouter}: all Pareto optimal connections between two stops
+ * which depart within a window of departure times, found in one range search. Each connection departs with its
+ * first vehicle, so the profile answers the question "when do I arrive if I am at the stop at time t" for any
+ * time within the window without routing again, see {@link #getConnection(double)}.
+ * <p></p>
+ * Profiles are immutable and can be shared between threads, see {@link RaptorProfileCache}.
+ */
+public final class RaptorProfile {
+
+	private final TransitStopFacility fromStop;
+	private final TransitStopFacility toStop;
+	private final double earliestDepartureTime;
+	private final double latestDepartureTime;
+	private final List<RaptorConnection> connections;
+
+	RaptorProfile(final TransitStopFacility fromStop, final TransitStopFacility toStop, final double earliestDepartureTime,
+			final double latestDepartureTime, final List<RaptorConnection> connections) {
+		this.fromStop = fromStop;
+		this.toStop = toStop;
+		this.earliestDepartureTime = earliestDepartureTime;
+		this.latestDepartureTime = latestDepartureTime;
+		this.connections = Collections.unmodifiableList(connections);
+	}
+
+	public TransitStopFacility getFromStop() {
+		return this.fromStop;
+	}
+
+	public TransitStopFacility getToStop() {
+		return this.toStop;
+	}
+
+	public double getEarliestDepartureTime() {
+		return this.earliestDepartureTime;
+	}
+
+	public double getLatestDepartureTime() {
+		return this.latestDepartureTime;
+	}
+
+	/**
+	 * @return the connections, sorted by departure time and number of transfers
+	 */
+	public List<RaptorConnection> getConnections() {
+		return this.connections;
+	}
+
+	/**
+	 * Returns the connection with the earliest arrival for someone being at the origin stop at the given time, and
+	 * among those the one with the fewest transfers. Connections departing after the end of the window are not
+	 * known, so the result is only the same as the one of a new query if the time is within the window.
+	 *
+	 * @return the connection, or <code>null</code> if no connection departs at or after the given time
+	 */
+	public RaptorConnection getConnection(final double time) {
+		RaptorConnection best = null;
+		for (RaptorConnection connection : this.connections) {
+			if (connection.getDepartureTime() < time) {
+				continue;
+			}
+			if (best == null || connection.getArrivalTime() < best.getArrivalTime()
+					|| (connection.getArrivalTime() == best.getArrivalTime() && connection.getNumberOfTransfers() < best.getNumberOfTransfers())) {
+				best = connection;
+			}
+		}
+		return best;
+	}
+
+	@Override
+	public String toString() {
+		return "[from=" + this.fromStop.getId() + "][to=" + this.toStop.getId() + "][window="
+				+ Time.writeTime(this.earliestDepartureTime) + "-" + Time.writeTime(this.latestDepartureTime)
+				+ "][connections=" + this.connections.size() + "]";
+	}
+
+}
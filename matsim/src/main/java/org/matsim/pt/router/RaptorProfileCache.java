@@ -0,0 +1,126 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RaptorProfileCache.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.matsim.api.core.v01.Id;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * Keeps the {@link RaptorProfile}s computed by the routers of one {@link RaptorTransitRouterFactory}, keyed by
+ * origin stop, destination stop and window of departure times. The routers align the windows to a grid, see
+ * {@link TransitRouterConfig#getRaptorProfileTimeGrid()}, so that the number of keys is bounded. The cache is
+ * thread-safe, so the routers of all replanning threads can share it. If two threads ask for the same profile at
+ * the same time, both may compute it, but only the first one is kept.
+ * <p></p>
+ * At most the given number of profiles is kept; when it is exceeded, the least recently used profile is dropped.
+ * As the schedule does not change during a run, the profiles are never outdated; {@link #clear()} only frees the
+ * memory.
+ */
+public final class RaptorProfileCache {
+
+	public static final int DEFAULT_MAX_SIZE = 10000;
+
+	private final Map<Key, RaptorProfile> profiles;
+
+	public RaptorProfileCache() {
+		this(DEFAULT_MAX_SIZE);
+	}
+
+	public RaptorProfileCache(final int maxSize) {
+		if (maxSize <= 0) {
+			throw new IllegalArgumentException("the maximum size must be positive, but is " + maxSize);
+		}
+		this.profiles = new LinkedHashMap<Key, RaptorProfile>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Key, RaptorProfile> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * @return the cached profile, or <code>null</code> if it was not computed yet
+	 */
+	public synchronized RaptorProfile getProfile(final Id<TransitStopFacility> fromStopId, final Id<TransitStopFacility> toStopId,
+			final double earliestDepartureTime, final double latestDepartureTime) {
+		return this.profiles.get(new Key(fromStopId, toStopId, earliestDepartureTime, latestDepartureTime));
+	}
+
+	/**
+	 * Adds the profile unless one for the same stops and window exists already.
+	 *
+	 * @return the profile in the cache
+	 */
+	public synchronized RaptorProfile addProfile(final RaptorProfile profile) {
+		Key key = new Key(profile.getFromStop().getId(), profile.getToStop().getId(), profile.getEarliestDepartureTime(),
+				profile.getLatestDepartureTime());
+		RaptorProfile existing = this.profiles.putIfAbsent(key, profile);
+		return existing == null ? profile : existing;
+	}
+
+	public synchronized int size() {
+		return this.profiles.size();
+	}
+
+	public synchronized void clear() {
+		this.profiles.clear();
+	}
+
+	private static final class Key {
+		private final Id<TransitStopFacility> fromStopId;
+		private final Id<TransitStopFacility> toStopId;
+		private final double earliestDepartureTime;
+		private final double latestDepartureTime;
+
+		Key(final Id<TransitStopFacility> fromStopId, final Id<TransitStopFacility> toStopId, final double earliestDepartureTime,
+				final double latestDepartureTime) {
+			this.fromStopId = fromStopId;
+			this.toStopId = toStopId;
+			this.earliestDepartureTime = earliestDepartureTime;
+			this.latestDepartureTime = latestDepartureTime;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return this.fromStopId.equals(other.fromStopId) && this.toStopId.equals(other.toStopId)
+					&& this.earliestDepartureTime == other.earliestDepartureTime
+					&& this.latestDepartureTime == other.latestDepartureTime;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = this.fromStopId.hashCode();
+			hash = 31 * hash + this.toStopId.hashCode();
+			hash = 31 * hash + Double.hashCode(this.earliestDepartureTime);
+			hash = 31 * hash + Double.hashCode(this.latestDepartureTime);
+			return hash;
+		}
+	}
+
+}
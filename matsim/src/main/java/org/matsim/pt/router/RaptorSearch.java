@@ -0,0 +1,667 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RaptorSearch.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+
+/**
+ * The round-based public transit routing algorithm (RAPTOR) of Delling, Pajor and Werneck on the arrays of a
+ * {@link RaptorData}. Round <code>k</code> computes for every stop the earliest arrival with <code>k</code> transit
+ * vehicles, by scanning each route serving a stop improved in the previous round once, followed by the walk
+ * transfers from the improved stops. Like the transfer links of the {@link TransitRouterNetwork}, every transfer,
+ * also between two vehicles at the same stop, takes the additional transfer time, and several transfer walks may
+ * follow each other.
+ * <p></p>
+ * The result is the Pareto set of connections with respect to arrival time and number of transfers. For a range of
+ * departure times (rRAPTOR), the search is repeated for every departure time at an access stop within the range,
+ * latest first, keeping the labels of the later departure times; the result is then also Pareto optimal with respect
+ * to the departure time. A range search can also find the connections from one stop to several stops at once, see
+ * {@link #calcProfiles(int, int[], double, double)}.
+ * <p></p>
+ * The search state is kept in flat arrays per round and reset after each query by only visiting the stops reached,
+ * so one instance should be reused for many queries. Instances are not thread-safe.
+ */
+final class RaptorSearch {
+
+	private static final int ACCESS = -1;
+
+	private static final Comparator<RaptorConnection> BY_DEPARTURE_AND_TRANSFERS = new Comparator<RaptorConnection>() {
+		@Override
+		public int compare(final RaptorConnection c1, final RaptorConnection c2) {
+			int cmp = Double.compare(c1.getDepartureTime(), c2.getDepartureTime());
+			if (cmp == 0) {
+				cmp = Integer.compare(c1.getNumberOfTransfers(), c2.getNumberOfTransfers());
+			}
+			return cmp;
+		}
+	};
+
+	private final RaptorData data;
+	private final TransitRouterConfig config;
+	private final List<Round> rounds = new ArrayList<>();
+	private int roundsUsed = 0;
+
+	// walks from the origin and to the destination, indexed by stop
+	private final double[] accessTime;
+	private final double[] accessCost;
+	private final double[] egressTime;
+	private final double[] egressCost;
+	// if set, the arrivals at the egress stops do not bound the search, as the connections to each of them are needed
+	private boolean severalTargets = false;
+
+	// routes to scan in the current round
+	private final int[] routeScanStart;
+	private final int[] routesToScan;
+	private int routesToScanCount = 0;
+
+	// binary min-heap of stops for the transfer walks, ordered by the ready time of the current round
+	private final int[] heap;
+	private final int[] heapPosition;
+	private int heapSize = 0;
+	private double[] heapKeys = null;
+
+	RaptorSearch(final RaptorData data, final TransitRouterConfig config) {
+		this.data = data;
+		this.config = config;
+		int stopCount = data.getStopCount();
+		this.accessTime = createArray(stopCount);
+		this.accessCost = new double[stopCount];
+		this.egressTime = createArray(stopCount);
+		this.egressCost = new double[stopCount];
+		this.routeScanStart = new int[data.getRouteCount()];
+		Arrays.fill(this.routeScanStart, RaptorData.NO_INDEX);
+		this.routesToScan = new int[data.getRouteCount()];
+		this.heap = new int[stopCount];
+		this.heapPosition = new int[stopCount];
+		Arrays.fill(this.heapPosition, RaptorData.NO_INDEX);
+	}
+
+	/**
+	 * @param accessStops the stops that can be reached from the origin, with the time and cost of the walk to each
+	 * @param egressStops the stops from which the destination can be reached, with the time and cost of the walk
+	 * @param earliestDepartureTime the earliest time at which the origin can be left
+	 * @param latestDepartureTime the latest time at which the origin can be left; if it is the same as the earliest
+	 * departure time, the costs of the connections include the waiting time at the first stop
+	 * @return the Pareto set of connections, sorted by departure time and number of transfers
+	 */
+	List<RaptorConnection> calcConnections(final int[] accessStops, final double[] accessTimes, final double[] accessCosts,
+			final int[] egressStops, final double[] egressTimes, final double[] egressCosts,
+			final double earliestDepartureTime, final double latestDepartureTime) {
+		for (int i = 0; i < accessStops.length; i++) {
+			this.accessTime[accessStops[i]] = accessTimes[i];
+			this.accessCost[accessStops[i]] = accessCosts[i];
+		}
+		for (int i = 0; i < egressStops.length; i++) {
+			this.egressTime[egressStops[i]] = egressTimes[i];
+			this.egressCost[egressStops[i]] = egressCosts[i];
+		}
+
+		List<RaptorConnection> connections = new ArrayList<>();
+		double[] departureTimes = earliestDepartureTime == latestDepartureTime ? new double[] { earliestDepartureTime }
+				: getDepartureTimes(accessStops, earliestDepartureTime, latestDepartureTime);
+		for (double departureTime : departureTimes) {
+			run(accessStops, departureTime);
+			collectConnections(connections, latestDepartureTime);
+		}
+
+		reset(accessStops, egressStops);
+		return filterPareto(connections);
+	}
+
+	/**
+	 * Finds the Pareto optimal connections from one stop to each of the given stops which depart within the given
+	 * range, in one range search. The connections start with the first vehicle at the origin stop and end with the
+	 * arrival at the destination stop. As the search cannot stop at the first stop reached, it costs about as much as
+	 * a search to the farthest of the stops.
+	 *
+	 * @return the connections to each of the given stops, in the same order, each sorted by departure time and number
+	 * of transfers
+	 */
+	List<List<RaptorConnection>> calcProfiles(final int fromStop, final int[] toStops, final double earliestDepartureTime,
+			final double latestDepartureTime) {
+		final int[] accessStops = new int[] { fromStop };
+		this.accessTime[fromStop] = 0.0;
+		this.accessCost[fromStop] = 0.0;
+		for (int s : toStops) {
+			this.egressTime[s] = 0.0;
+			this.egressCost[s] = 0.0;
+		}
+		this.severalTargets = true;
+
+		List<List<RaptorConnection>> connections = new ArrayList<>(toStops.length);
+		for (int i = 0; i < toStops.length; i++) {
+			connections.add(new ArrayList<RaptorConnection>());
+		}
+		try {
+			double[] departureTimes = earliestDepartureTime == latestDepartureTime ? new double[] { earliestDepartureTime }
+					: getDepartureTimes(accessStops, earliestDepartureTime, latestDepartureTime);
+			for (double departureTime : departureTimes) {
+				run(accessStops, departureTime);
+				for (int i = 0; i < toStops.length; i++) {
+					collectConnections(connections.get(i), toStops[i], latestDepartureTime);
+				}
+			}
+		} finally {
+			this.severalTargets = false;
+			reset(accessStops, toStops);
+		}
+		for (int i = 0; i < toStops.length; i++) {
+			connections.set(i, filterPareto(connections.get(i)));
+		}
+		return connections;
+	}
+
+	/**
+	 * @return all times within the range at which one can leave the origin to catch a departure at one of the access
+	 * stops without waiting, and the end of the range, so that a later departure is found for the whole range; latest
+	 * first
+	 */
+	private double[] getDepartureTimes(final int[] accessStops, final double earliestDepartureTime, final double latestDepartureTime) {
+		final double midnight = TransitRouterNetworkTravelTimeAndDisutility.MIDNIGHT;
+		double[] times = new double[16];
+		int count = 0;
+		for (int s : accessStops) {
+			for (int i = this.data.stopFirstRouteStop[s]; i < this.data.stopFirstRouteStop[s + 1]; i++) {
+				int routeStop = this.data.stopRouteStops[i];
+				int route = this.data.routeStopRoute[routeStop];
+				if (routeStop + 1 == this.data.routeFirstStop[route + 1]) {
+					continue; // one cannot board at the last stop
+				}
+				double offset = this.data.routeStopDepartureOffset[routeStop] - this.accessTime[s];
+				for (int d = this.data.routeFirstDeparture[route]; d < this.data.routeFirstDeparture[route + 1]; d++) {
+					double time = this.data.departures[d] + offset;
+					time += Math.ceil((earliestDepartureTime - time) / midnight) * midnight;
+					for (; time <= latestDepartureTime; time += midnight) {
+						if (count == times.length) {
+							times = Arrays.copyOf(times, 2 * count);
+						}
+						times[count++] = time;
+					}
+				}
+			}
+		}
+		Arrays.sort(times, 0, count);
+		double[] result = new double[count + 1];
+		int n = 0;
+		result[n++] = latestDepartureTime;
+		for (int i = count - 1; i >= 0; i--) {
+			if (n == 0 || times[i] != result[n - 1]) {
+				result[n++] = times[i];
+			}
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+	private void run(final int[] accessStops, final double departureTime) {
+		for (int k = 0; k < this.roundsUsed; k++) {
+			this.rounds.get(k).clearImprovements();
+		}
+		Round first = getRound(0);
+		for (int s : accessStops) {
+			double time = departureTime + this.accessTime[s];
+			if (time < first.ready[s]) {
+				setReady(first, s, time, ACCESS, false);
+			}
+		}
+		for (int k = 1; getRound(k - 1).improvedReadyCount > 0; k++) {
+			getRound(k);
+			scanRoutes(k);
+			walkTransfers(k);
+		}
+	}
+
+	private void scanRoutes(final int k) {
+		final RaptorData d = this.data;
+		final Round previous = this.rounds.get(k - 1);
+		final Round round = this.rounds.get(k);
+
+		for (int i = 0; i < previous.improvedReadyCount; i++) {
+			int s = previous.improvedReady[i];
+			for (int j = d.stopFirstRouteStop[s]; j < d.stopFirstRouteStop[s + 1]; j++) {
+				int routeStop = d.stopRouteStops[j];
+				int route = d.routeStopRoute[routeStop];
+				if (this.routeScanStart[route] == RaptorData.NO_INDEX) {
+					this.routeScanStart[route] = routeStop;
+					this.routesToScan[this.routesToScanCount++] = route;
+				} else if (routeStop < this.routeScanStart[route]) {
+					this.routeScanStart[route] = routeStop;
+				}
+			}
+		}
+
+		double bound = getTargetBound(k - 1);
+		for (int i = 0; i < this.routesToScanCount; i++) {
+			int route = this.routesToScan[i];
+			int end = d.routeFirstStop[route + 1];
+			double tripDeparture = Double.POSITIVE_INFINITY;
+			int boardRouteStop = RaptorData.NO_INDEX;
+			for (int routeStop = this.routeScanStart[route]; routeStop < end; routeStop++) {
+				int s = d.routeStopStop[routeStop];
+				if (boardRouteStop != RaptorData.NO_INDEX) {
+					double arrival = tripDeparture + d.routeStopArrivalOffset[routeStop];
+					if (arrival < round.arrival[s] && arrival < Math.min(bound, round.targetArrival) && !isArrivalDominated(s, arrival, k)) {
+						setArrival(round, s, arrival, boardRouteStop, routeStop, tripDeparture);
+					}
+				}
+				double ready = previous.ready[s];
+				if (routeStop + 1 < end && ready < tripDeparture + d.routeStopDepartureOffset[routeStop]) {
+					double departure = d.getNextTripDepartureTime(routeStop, ready);
+					if (departure < tripDeparture) {
+						tripDeparture = departure;
+						boardRouteStop = routeStop;
+					}
+				}
+			}
+			this.routeScanStart[route] = RaptorData.NO_INDEX;
+		}
+		this.routesToScanCount = 0;
+	}
+
+	private void walkTransfers(final int k) {
+		final RaptorData d = this.data;
+		final Round round = this.rounds.get(k);
+		final double walkSpeed = this.config.getBeelineWalkSpeed();
+		final double additionalTransferTime = this.config.getAdditionalTransferTime();
+		this.heapKeys = round.ready;
+
+		for (int i = 0; i < round.improvedArrivalCount; i++) {
+			int s = round.improvedArrival[i];
+			double arrival = round.arrival[s];
+			relaxReady(k, s, arrival + additionalTransferTime, s, true);
+			for (int t = d.stopFirstTransfer[s]; t < d.stopFirstTransfer[s + 1]; t++) {
+				relaxReady(k, d.transferToStop[t], arrival + d.transferDistance[t] / walkSpeed + additionalTransferTime, s, true);
+			}
+		}
+		while (this.heapSize > 0) {
+			int s = poll();
+			double ready = round.ready[s];
+			for (int t = d.stopFirstTransfer[s]; t < d.stopFirstTransfer[s + 1]; t++) {
+				relaxReady(k, d.transferToStop[t], ready + d.transferDistance[t] / walkSpeed + additionalTransferTime, s, false);
+			}
+		}
+		this.heapKeys = null;
+	}
+
+	private void relaxReady(final int k, final int s, final double time, final int previousStop, final boolean byVehicle) {
+		Round round = this.rounds.get(k);
+		if (time < round.ready[s] && time < getTargetBound(k) && !isReadyDominated(s, time, k)) {
+			setReady(round, s, time, previousStop, byVehicle);
+			if (this.heapPosition[s] == RaptorData.NO_INDEX) {
+				this.heapPosition[s] = this.heapSize;
+				this.heap[this.heapSize++] = s;
+			}
+			siftUp(this.heapPosition[s]);
+		}
+	}
+
+	/**
+	 * A label is dominated if the stop was reached as early with fewer vehicles, be it by the same or by a later
+	 * departure from the origin.
+	 */
+	private boolean isReadyDominated(final int s, final double time, final int k) {
+		for (int j = 0; j < k; j++) {
+			if (this.rounds.get(j).ready[s] <= time) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private boolean isArrivalDominated(final int s, final double time, final int k) {
+		for (int j = 1; j < k; j++) {
+			if (this.rounds.get(j).arrival[s] <= time) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the earliest arrival at the destination with at most <code>k</code> vehicles
+	 */
+	private double getTargetBound(final int k) {
+		double bound = Double.POSITIVE_INFINITY;
+		for (int j = 1; j <= k; j++) {
+			bound = Math.min(bound, this.rounds.get(j).targetArrival);
+		}
+		return bound;
+	}
+
+	private void setReady(final Round round, final int s, final double time, final int previousStop, final boolean byVehicle) {
+		round.touch(s);
+		round.ready[s] = time;
+		round.readyPrevious[s] = previousStop;
+		round.readyByVehicle[s] = byVehicle;
+		if (!round.readyImproved[s]) {
+			round.readyImproved[s] = true;
+			round.improvedReady[round.improvedReadyCount++] = s;
+		}
+	}
+
+	private void setArrival(final Round round, final int s, final double time, final int boardRouteStop, final int alightRouteStop, final double tripDeparture) {
+		round.touch(s);
+		round.arrival[s] = time;
+		round.boardRouteStop[s] = boardRouteStop;
+		round.alightRouteStop[s] = alightRouteStop;
+		round.tripDeparture[s] = tripDeparture;
+		if (!round.arrivalImproved[s]) {
+			round.arrivalImproved[s] = true;
+			round.improvedArrival[round.improvedArrivalCount++] = s;
+		}
+		double targetArrival = time + this.egressTime[s];
+		if (targetArrival < round.targetArrival && !this.severalTargets) {
+			round.targetArrival = targetArrival;
+			round.targetStop = s;
+			round.targetImproved = true;
+		}
+	}
+
+	private void collectConnections(final List<RaptorConnection> connections, final double latestDepartureTime) {
+		double bound = Double.POSITIVE_INFINITY;
+		for (int k = 1; k < this.roundsUsed; k++) {
+			Round round = this.rounds.get(k);
+			if (round.targetImproved && round.targetArrival < bound) {
+				connections.add(createConnection(k, round.targetStop, latestDepartureTime));
+			}
+			bound = Math.min(bound, round.targetArrival);
+		}
+	}
+
+	/**
+	 * Collects the connections to one of several egress stops, which were improved by the current departure time.
+	 */
+	private void collectConnections(final List<RaptorConnection> connections, final int egressStop, final double latestDepartureTime) {
+		double bound = Double.POSITIVE_INFINITY;
+		for (int k = 1; k < this.roundsUsed; k++) {
+			Round round = this.rounds.get(k);
+			if (round.arrivalImproved[egressStop] && round.arrival[egressStop] < bound) {
+				connections.add(createConnection(k, egressStop, latestDepartureTime));
+			}
+			bound = Math.min(bound, round.arrival[egressStop]);
+		}
+	}
+
+	/**
+	 * Follows the labels back from the destination and computes the times and costs of the connection forward from
+	 * the origin. The costs are the same as the ones of the {@link TransitRouterNetworkTravelTimeAndDisutility}.
+	 */
+	private RaptorConnection createConnection(final int targetRound, final int egressStop, final double latestDepartureTime) {
+		final RaptorData d = this.data;
+		final TransitRouterConfig c = this.config;
+
+		// collect the trips taken and the stops walked along between them, backwards
+		int[] boardRouteStops = new int[targetRound + 1];
+		int[] alightRouteStops = new int[targetRound + 1];
+		double[] tripDepartures = new double[targetRound + 1];
+		int[][] transferStops = new int[targetRound + 1][];
+		int s = egressStop;
+		for (int k = targetRound; k >= 1; k--) {
+			Round round = this.rounds.get(k);
+			boardRouteStops[k] = round.boardRouteStop[s];
+			alightRouteStops[k] = round.alightRouteStop[s];
+			tripDepartures[k] = round.tripDeparture[s];
+			s = d.routeStopStop[boardRouteStops[k]];
+			if (k > 1) {
+				Round previous = this.rounds.get(k - 1);
+				int[] stops = new int[4];
+				int n = 0;
+				stops[n++] = s;
+				boolean byVehicle;
+				do {
+					byVehicle = previous.readyByVehicle[s];
+					s = previous.readyPrevious[s];
+					if (n == stops.length) {
+						stops = Arrays.copyOf(stops, 2 * n);
+					}
+					stops[n++] = s;
+				} while (!byVehicle);
+				transferStops[k - 1] = reverse(stops, n);
+			}
+		}
+		int accessStop = s;
+
+		// go forward
+		double firstDeparture = tripDepartures[1] + d.routeStopDepartureOffset[boardRouteStops[1]];
+		double departureTime = Math.min(firstDeparture - this.accessTime[accessStop], latestDepartureTime);
+		double time = departureTime + this.accessTime[accessStop];
+		double cost = this.accessCost[accessStop];
+		List<RouteSegment> segments = new ArrayList<>(2 * targetRound - 1);
+		for (int k = 1; k <= targetRound; k++) {
+			int board = boardRouteStops[k];
+			int alight = alightRouteStops[k];
+			int route = d.routeStopRoute[board];
+			double vehicleArrival = tripDepartures[k] + d.routeStopArrivalOffset[board];
+			double arrival = tripDepartures[k] + d.routeStopArrivalOffset[alight];
+			double offVehicleWaitTime = Math.max(0.0, vehicleArrival - time);
+			double inVehicleTime = arrival - time - offVehicleWaitTime;
+			cost += - inVehicleTime * c.getMarginalUtilityOfTravelTimePt_utl_s()
+					- offVehicleWaitTime * c.getMarginalUtilityOfWaitingPt_utl_s()
+					- (d.routeStopDistance[alight] - d.routeStopDistance[board]) * c.getMarginalUtilityOfTravelDistancePt_utl_m();
+			segments.add(new RouteSegment(d.stops[d.routeStopStop[board]], d.stops[d.routeStopStop[alight]], arrival - time,
+					d.routeLines[route].getId(), d.routes[route].getId()));
+			time = arrival;
+
+			int[] stops = transferStops[k];
+			if (stops != null) {
+				double transferTime = 0.0;
+				for (int i = 1; i < stops.length; i++) {
+					double distance = d.getTransferDistance(stops[i - 1], stops[i]);
+					double walkTime = distance / c.getBeelineWalkSpeed();
+					transferTime += walkTime + c.getAdditionalTransferTime();
+					cost += - walkTime * c.getMarginalUtilityOfTravelTimeWalk_utl_s()
+							- distance * c.getMarginalUtilityOfTravelDistanceWalk_utl_m()
+							- c.getAdditionalTransferTime() * c.getMarginalUtilityOfWaitingPt_utl_s()
+							- c.getUtilityOfLineSwitch_utl();
+				}
+				segments.add(new RouteSegment(d.stops[stops[0]], d.stops[stops[stops.length - 1]], transferTime, null, null));
+				time += transferTime;
+			}
+		}
+		double arrivalTime = time + this.egressTime[egressStop];
+		cost += this.egressCost[egressStop];
+		return new RaptorConnection(departureTime, arrivalTime, targetRound - 1, cost, segments);
+	}
+
+	private static int[] reverse(final int[] values, final int n) {
+		int[] reversed = new int[n];
+		for (int i = 0; i < n; i++) {
+			reversed[i] = values[n - 1 - i];
+		}
+		return reversed;
+	}
+
+	private static List<RaptorConnection> filterPareto(final List<RaptorConnection> connections) {
+		Collections.sort(connections, BY_DEPARTURE_AND_TRANSFERS);
+		List<RaptorConnection> pareto = new ArrayList<>(connections.size());
+		for (int i = 0; i < connections.size(); i++) {
+			RaptorConnection connection = connections.get(i);
+			boolean dominated = false;
+			for (int j = 0; j < connections.size() && !dominated; j++) {
+				RaptorConnection other = connections.get(j);
+				// of two connections with the same times and transfers, only the first one is kept
+				dominated = j != i && other.dominates(connection) && (j < i || !connection.dominates(other));
+			}
+			if (!dominated) {
+				pareto.add(connection);
+			}
+		}
+		return pareto;
+	}
+
+	private Round getRound(final int k) {
+		while (this.rounds.size() <= k) {
+			this.rounds.add(new Round(this.data.getStopCount()));
+		}
+		this.roundsUsed = Math.max(this.roundsUsed, k + 1);
+		return this.rounds.get(k);
+	}
+
+	private void reset(final int[] accessStops, final int[] egressStops) {
+		for (int k = 0; k < this.roundsUsed; k++) {
+			this.rounds.get(k).reset();
+		}
+		this.roundsUsed = 0;
+		for (int s : accessStops) {
+			this.accessTime[s] = Double.POSITIVE_INFINITY;
+		}
+		for (int s : egressStops) {
+			this.egressTime[s] = Double.POSITIVE_INFINITY;
+		}
+	}
+
+	private int poll() {
+		int min = this.heap[0];
+		this.heapPosition[min] = RaptorData.NO_INDEX;
+		this.heapSize--;
+		if (this.heapSize > 0) {
+			int last = this.heap[this.heapSize];
+			this.heap[0] = last;
+			this.heapPosition[last] = 0;
+			siftDown(0);
+		}
+		return min;
+	}
+
+	private void siftUp(int pos) {
+		final int s = this.heap[pos];
+		final double key = this.heapKeys[s];
+		while (pos > 0) {
+			int parentPos = (pos - 1) >> 1;
+			int parent = this.heap[parentPos];
+			if (this.heapKeys[parent] <= key) {
+				break;
+			}
+			this.heap[pos] = parent;
+			this.heapPosition[parent] = pos;
+			pos = parentPos;
+		}
+		this.heap[pos] = s;
+		this.heapPosition[s] = pos;
+	}
+
+	private void siftDown(int pos) {
+		final int s = this.heap[pos];
+		final double key = this.heapKeys[s];
+		while (true) {
+			int child = 2 * pos + 1;
+			if (child >= this.heapSize) {
+				break;
+			}
+			if (child + 1 < this.heapSize && this.heapKeys[this.heap[child + 1]] < this.heapKeys[this.heap[child]]) {
+				child++;
+			}
+			if (this.heapKeys[this.heap[child]] >= key) {
+				break;
+			}
+			this.heap[pos] = this.heap[child];
+			this.heapPosition[this.heap[pos]] = pos;
+			pos = child;
+		}
+		this.heap[pos] = s;
+		this.heapPosition[s] = pos;
+	}
+
+	private static double[] createArray(final int size) {
+		double[] array = new double[size];
+		Arrays.fill(array, Double.POSITIVE_INFINITY);
+		return array;
+	}
+
+	/**
+	 * The labels of all stops after <code>k</code> vehicles: the arrival with the k-th vehicle, and the time at which
+	 * the next vehicle can be boarded after the transfer walks (or after the walk from the origin in round 0).
+	 */
+	private static final class Round {
+		final double[] ready;
+		final int[] readyPrevious;
+		final boolean[] readyByVehicle;
+		final double[] arrival;
+		final int[] boardRouteStop;
+		final int[] alightRouteStop;
+		final double[] tripDeparture;
+
+		final int[] touched;
+		int touchedCount = 0;
+
+		// the stops improved by the departure time of the current run
+		final int[] improvedReady;
+		final boolean[] readyImproved;
+		int improvedReadyCount = 0;
+		final int[] improvedArrival;
+		final boolean[] arrivalImproved;
+		int improvedArrivalCount = 0;
+
+		double targetArrival = Double.POSITIVE_INFINITY;
+		int targetStop = RaptorData.NO_INDEX;
+		boolean targetImproved = false;
+
+		Round(final int stopCount) {
+			this.ready = createArray(stopCount);
+			this.readyPrevious = new int[stopCount];
+			this.readyByVehicle = new boolean[stopCount];
+			this.arrival = createArray(stopCount);
+			this.boardRouteStop = new int[stopCount];
+			this.alightRouteStop = new int[stopCount];
+			this.tripDeparture = new double[stopCount];
+			this.touched = new int[stopCount];
+			this.improvedReady = new int[stopCount];
+			this.readyImproved = new boolean[stopCount];
+			this.improvedArrival = new int[stopCount];
+			this.arrivalImproved = new boolean[stopCount];
+		}
+
+		void touch(final int s) {
+			if (this.ready[s] == Double.POSITIVE_INFINITY && this.arrival[s] == Double.POSITIVE_INFINITY) {
+				this.touched[this.touchedCount++] = s;
+			}
+		}
+
+		void clearImprovements() {
+			for (int i = 0; i < this.improvedReadyCount; i++) {
+				this.readyImproved[this.improvedReady[i]] = false;
+			}
+			this.improvedReadyCount = 0;
+			for (int i = 0; i < this.improvedArrivalCount; i++) {
+				this.arrivalImproved[this.improvedArrival[i]] = false;
+			}
+			this.improvedArrivalCount = 0;
+			this.targetImproved = false;
+		}
+
+		void reset() {
+			clearImprovements();
+			for (int i = 0; i < this.touchedCount; i++) {
+				int s = this.touched[i];
+				this.ready[s] = Double.POSITIVE_INFINITY;
+				this.arrival[s] = Double.POSITIVE_INFINITY;
+			}
+			this.touchedCount = 0;
+			this.targetArrival = Double.POSITIVE_INFINITY;
+			this.targetStop = RaptorData.NO_INDEX;
+		}
+	}
+
+}
@@ -0,0 +1,273 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RaptorTransitRouter.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.facilities.Facility;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * A transit router using {@link RaptorSearch} instead of a Dijkstra on the {@link TransitRouterNetwork}. The access
+ * and egress stops are searched in the same way as by the {@link TransitRouterImpl}, and of the Pareto set of
+ * connections (with respect to arrival time and number of transfers) the one with the least cost is returned,
+ * unless walking directly is cheaper. The costs are those of the {@link TransitRouterNetworkTravelTimeAndDisutility};
+ * the default transfer links of the {@link TransitRouterNetwork} correspond to the transfers of the RAPTOR. As only
+ * the Pareto set is costed, a cheaper connection which arrives later with the same number of transfers (e.g. waiting
+ * at a stop instead of riding a detour) is not found, and a custom {@link TransitTravelDisutility} is not used.
+ * <p></p>
+ * Besides single departure times, the router answers queries for a range of departure times, see
+ * {@link #calcConnections(Facility, Facility, double, double, Person)}, and profile queries between two stops, see
+ * {@link #calcProfile(TransitStopFacility, TransitStopFacility, double, double)}. If
+ * {@link TransitRouterConfig#isRaptorRoutingFromProfiles()} is set, {@link #calcRoute} is answered from the profiles.
+ * <p></p>
+ * The schedule data can be shared by all routers, see {@link RaptorTransitRouterFactory}; as the other transit
+ * routers, a router is not thread-safe. Does not expect the TransitSchedule to change once constructed.
+ */
+public class RaptorTransitRouter extends AbstractTransitRouter implements TransitRouter {
+
+	private final RaptorData data;
+	private final RaptorSearch search;
+	private final RaptorProfileCache profileCache;
+	private final AccessEgressCandidateCache<TransitStopFacility> candidateCache;
+
+	public RaptorTransitRouter(final TransitRouterConfig trConfig, final TransitSchedule schedule) {
+		this(trConfig, new RaptorData(schedule, trConfig.getBeelineWalkConnectionDistance()), new RaptorProfileCache(),
+				new AccessEgressCandidateCache<TransitStopFacility>());
+	}
+
+	RaptorTransitRouter(final TransitRouterConfig trConfig, final RaptorData data, final RaptorProfileCache profileCache,
+			final AccessEgressCandidateCache<TransitStopFacility> candidateCache) {
+		super(trConfig, new TransitRouterNetworkTravelTimeAndDisutility(trConfig, data.preparedSchedule));
+		this.data = data;
+		this.search = new RaptorSearch(data, trConfig);
+		this.profileCache = profileCache;
+		this.candidateCache = candidateCache;
+	}
+
+	@Override
+	public List<Leg> calcRoute(final Facility<?> fromFacility, final Facility<?> toFacility, final double departureTime, final Person person) {
+		RaptorConnection best = null;
+		if (getConfig().isRaptorRoutingFromProfiles()) {
+			best = calcConnectionFromProfiles(fromFacility, toFacility, departureTime, person);
+		} else {
+			List<RaptorConnection> connections = calcConnections(fromFacility, toFacility, departureTime, departureTime, person);
+			for (RaptorConnection connection : connections) {
+				if (best == null || connection.getTravelCost() < best.getTravelCost()) {
+					best = connection;
+				}
+			}
+		}
+		if (best == null) {
+			return this.createDirectWalkLegList(null, fromFacility.getCoord(), toFacility.getCoord());
+		}
+		double directWalkCost = getWalkDisutility(person, fromFacility.getCoord(), toFacility.getCoord());
+		if (directWalkCost * getConfig().getDirectWalkFactor() < best.getTravelCost()) {
+			return this.createDirectWalkLegList(null, fromFacility.getCoord(), toFacility.getCoord());
+		}
+		return getLegs(best, fromFacility, toFacility, person);
+	}
+
+	/**
+	 * Finds the Pareto set of connections leaving the origin within the given range of departure times, with respect
+	 * to departure time, arrival time and number of transfers. Walking directly is not part of the result.
+	 * <p></p>
+	 * If the earliest and the latest departure time are the same, all connections depart at that time and their
+	 * costs include the waiting times at the first stop. Otherwise, each connection departs as late as possible.
+	 *
+	 * @return the connections, sorted by departure time and number of transfers
+	 */
+	public List<RaptorConnection> calcConnections(final Facility<?> fromFacility, final Facility<?> toFacility,
+			final double earliestDepartureTime, final double latestDepartureTime, final Person person) {
+		if (latestDepartureTime < earliestDepartureTime) {
+			throw new IllegalArgumentException("the latest departure time must not be before the earliest departure time.");
+		}
+		List<TransitStopFacility> fromStops = locateNearestStops(fromFacility.getCoord());
+		List<TransitStopFacility> toStops = locateNearestStops(toFacility.getCoord());
+		int[] accessStops = new int[fromStops.size()];
+		double[] accessTimes = new double[fromStops.size()];
+		double[] accessCosts = new double[fromStops.size()];
+		for (int i = 0; i < accessStops.length; i++) {
+			TransitStopFacility stop = fromStops.get(i);
+			accessStops[i] = this.data.getStopIndex(stop);
+			accessTimes[i] = getWalkTime(person, fromFacility.getCoord(), stop.getCoord());
+			accessCosts[i] = getWalkDisutility(person, fromFacility.getCoord(), stop.getCoord());
+		}
+		int[] egressStops = new int[toStops.size()];
+		double[] egressTimes = new double[toStops.size()];
+		double[] egressCosts = new double[toStops.size()];
+		for (int i = 0; i < egressStops.length; i++) {
+			TransitStopFacility stop = toStops.get(i);
+			egressStops[i] = this.data.getStopIndex(stop);
+			egressTimes[i] = getWalkTime(person, stop.getCoord(), toFacility.getCoord());
+			egressCosts[i] = getWalkDisutility(person, stop.getCoord(), toFacility.getCoord());
+		}
+		return this.search.calcConnections(accessStops, accessTimes, accessCosts, egressStops, egressTimes, egressCosts,
+				earliestDepartureTime, latestDepartureTime);
+	}
+
+	/**
+	 * Finds the cheapest connection in the profiles between all pairs of access and egress stops. Each profile covers
+	 * the window of the time grid in which the access stop is reached, so trips departing at similar times share
+	 * the profiles; the profiles from one access stop to all egress stops are found in one range search. The costs
+	 * are the same as the ones of a single query, except that the time the vehicle stands at the first stop counts as
+	 * riding instead of waiting.
+	 * <p></p>
+	 * As a range search also runs from the end of the window, the profiles have a connection for every time in the
+	 * window if any vehicle departs later, even if the headway is longer than the window. If none of them has a
+	 * connection nevertheless, the connection is searched with a single query.
+	 */
+	private RaptorConnection calcConnectionFromProfiles(final Facility<?> fromFacility, final Facility<?> toFacility,
+			final double departureTime, final Person person) {
+		final double grid = getConfig().getRaptorProfileTimeGrid();
+		List<TransitStopFacility> fromStops = locateNearestStops(fromFacility.getCoord());
+		List<TransitStopFacility> toStops = locateNearestStops(toFacility.getCoord());
+		RaptorConnection best = null;
+		for (TransitStopFacility fromStop : fromStops) {
+			double accessCost = getWalkDisutility(person, fromFacility.getCoord(), fromStop.getCoord());
+			double time = departureTime + getWalkTime(person, fromFacility.getCoord(), fromStop.getCoord());
+			double windowStart = Math.floor(time / grid) * grid;
+			List<TransitStopFacility> egressStops = new ArrayList<>(toStops);
+			egressStops.remove(fromStop);
+			for (RaptorProfile profile : calcProfiles(fromStop, egressStops, windowStart, windowStart + grid)) {
+				TransitStopFacility toStop = profile.getToStop();
+				RaptorConnection connection = profile.getConnection(time);
+				if (connection == null) {
+					continue;
+				}
+				double waitTime = connection.getDepartureTime() - time;
+				double cost = accessCost - waitTime * getConfig().getMarginalUtilityOfWaitingPt_utl_s() + connection.getTravelCost()
+						+ getWalkDisutility(person, toStop.getCoord(), toFacility.getCoord());
+				if (best == null || cost < best.getTravelCost()) {
+					// the first segment includes the waiting, as in the connections of a single query
+					List<RouteSegment> segments = new ArrayList<>(connection.getRouteSegments());
+					RouteSegment first = segments.get(0);
+					segments.set(0, new RouteSegment(first.fromStop, first.toStop, first.travelTime + waitTime, first.lineTaken, first.routeTaken));
+					double arrivalTime = connection.getArrivalTime() + getWalkTime(person, toStop.getCoord(), toFacility.getCoord());
+					best = new RaptorConnection(departureTime, arrivalTime, connection.getNumberOfTransfers(), cost, segments);
+				}
+			}
+		}
+		if (best == null) {
+			for (RaptorConnection connection : calcConnections(fromFacility, toFacility, departureTime, departureTime, person)) {
+				if (best == null || connection.getTravelCost() < best.getTravelCost()) {
+					best = connection;
+				}
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Finds all Pareto optimal connections from one stop to another which depart within the given window, in one
+	 * range search. The window is widened to multiples of {@link TransitRouterConfig#getRaptorProfileTimeGrid()}, so
+	 * the returned profile may cover more than the requested window. The profile is taken from the cache shared with
+	 * the other routers of the same factory if it was computed before.
+	 * <p></p>
+	 * The connections start with the first vehicle at the origin stop and end with the arrival at the destination
+	 * stop, so their departure and arrival times do not depend on where the trip actually starts and ends.
+	 */
+	public RaptorProfile calcProfile(final TransitStopFacility fromStop, final TransitStopFacility toStop,
+			final double earliestDepartureTime, final double latestDepartureTime) {
+		return calcProfiles(fromStop, Collections.singletonList(toStop), earliestDepartureTime, latestDepartureTime).get(0);
+	}
+
+	/**
+	 * Like {@link #calcProfile(TransitStopFacility, TransitStopFacility, double, double)}, for several destination
+	 * stops. The profiles not in the cache yet are all found in one range search.
+	 *
+	 * @return the profiles, in the order of the destination stops
+	 */
+	public List<RaptorProfile> calcProfiles(final TransitStopFacility fromStop, final List<TransitStopFacility> toStops,
+			final double earliestDepartureTime, final double latestDepartureTime) {
+		if (latestDepartureTime < earliestDepartureTime) {
+			throw new IllegalArgumentException("the latest departure time must not be before the earliest departure time.");
+		}
+		final double grid = getConfig().getRaptorProfileTimeGrid();
+		final double windowStart = Math.floor(earliestDepartureTime / grid) * grid;
+		final double windowEnd = Math.ceil(latestDepartureTime / grid) * grid;
+		List<RaptorProfile> profiles = new ArrayList<>(toStops.size());
+		List<Integer> missing = new ArrayList<>();
+		for (TransitStopFacility toStop : toStops) {
+			RaptorProfile profile = this.profileCache.getProfile(fromStop.getId(), toStop.getId(), windowStart, windowEnd);
+			if (profile == null) {
+				missing.add(profiles.size());
+			}
+			profiles.add(profile);
+		}
+		if (!missing.isEmpty()) {
+			int[] toStopIndices = new int[missing.size()];
+			for (int i = 0; i < toStopIndices.length; i++) {
+				toStopIndices[i] = getStopIndex(toStops.get(missing.get(i)));
+			}
+			List<List<RaptorConnection>> connections = this.search.calcProfiles(getStopIndex(fromStop), toStopIndices,
+					windowStart, windowEnd);
+			for (int i = 0; i < toStopIndices.length; i++) {
+				int j = missing.get(i);
+				profiles.set(j, this.profileCache.addProfile(new RaptorProfile(fromStop, toStops.get(j), windowStart, windowEnd,
+						connections.get(i))));
+			}
+		}
+		return profiles;
+	}
+
+	/**
+	 * Converts a connection into legs, in the same way as the routes of the {@link TransitRouterImpl}.
+	 */
+	public List<Leg> getLegs(final RaptorConnection connection, final Facility<?> fromFacility, final Facility<?> toFacility, final Person person) {
+		TransitPassengerRoute route = new TransitPassengerRoute(connection.getTravelCost(), new ArrayList<>(connection.getRouteSegments()));
+		return convertPassengerRouteToLegList(connection.getDepartureTime(), route, fromFacility.getCoord(), toFacility.getCoord(), person);
+	}
+
+	private int getStopIndex(final TransitStopFacility stop) {
+		int index = this.data.getStopIndex(stop);
+		if (index == RaptorData.NO_INDEX) {
+			throw new IllegalArgumentException("stop " + stop.getId() + " is not part of the transit schedule.");
+		}
+		return index;
+	}
+
+	private List<TransitStopFacility> locateNearestStops(final Coord coord) {
+		return this.candidateCache.getCandidates(coord, this::searchNearestStops);
+	}
+
+	private Collection<TransitStopFacility> searchNearestStops(final Coord coord) {
+		Collection<TransitStopFacility> stops = this.data.stopsQT.getDisk(coord.getX(), coord.getY(), getConfig().getSearchRadius());
+		if (stops.size() < 2) {
+			// also enlarge search area if only one stop found, maybe a second one is near the border of the search area
+			TransitStopFacility nearestStop = this.data.stopsQT.getClosest(coord.getX(), coord.getY());
+			if (nearestStop != null) { // transit schedule might be completely empty!
+				double distance = CoordUtils.calcEuclideanDistance(coord, nearestStop.getCoord());
+				stops = this.data.stopsQT.getDisk(coord.getX(), coord.getY(), distance + getConfig().getExtensionRadius());
+			}
+		}
+		return stops;
+	}
+
+}
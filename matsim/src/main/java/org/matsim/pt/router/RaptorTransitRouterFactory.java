@@ -0,0 +1,78 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RaptorTransitRouterFactory.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.core.config.Config;
+import org.matsim.pt.config.TransitRouterConfigGroup;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * Creates {@link RaptorTransitRouter}s which all share the same arrays and {@link PreparedTransitSchedule} of the
+ * schedule and the same {@link RaptorProfileCache} and {@link AccessEgressCandidateCache}; each router only allocates
+ * its own search state and the travel time caches of its {@link TransitRouterNetworkTravelTimeAndDisutility}.
+ */
+@Singleton
+public class RaptorTransitRouterFactory implements Provider<TransitRouter> {
+
+	private final TransitRouterConfig config;
+	private final RaptorData data;
+	private final RaptorProfileCache profileCache = new RaptorProfileCache();
+	private final AccessEgressCandidateCache<TransitStopFacility> candidateCache = new AccessEgressCandidateCache<>();
+
+	@Inject
+	RaptorTransitRouterFactory(final TransitSchedule schedule, final Network network, final Config config) {
+		this(schedule, new TransitRouterConfig(
+				config.planCalcScore(),
+				config.plansCalcRoute(),
+				config.transitRouter(),
+				config.vspExperimental()), network, config.transitRouter());
+	}
+
+	private RaptorTransitRouterFactory(final TransitSchedule schedule, final TransitRouterConfig config, final Network network,
+			final TransitRouterConfigGroup configGroup) {
+		this(schedule, config, TransitStopTransfers.loadOrCreate(schedule, network, configGroup, config.getBeelineDistanceFactor()));
+	}
+
+	public RaptorTransitRouterFactory(final TransitSchedule schedule, final TransitRouterConfig config) {
+		this(schedule, config, TransitStopTransfers.createBeeline(schedule, config.getBeelineWalkConnectionDistance()));
+	}
+
+	public RaptorTransitRouterFactory(final TransitSchedule schedule, final TransitRouterConfig config, final TransitStopTransfers transfers) {
+		this.config = config;
+		this.data = new RaptorData(schedule, transfers);
+	}
+
+	@Override
+	public TransitRouter get() {
+		return new RaptorTransitRouter(this.config, this.data, this.profileCache, this.candidateCache);
+	}
+
+	public RaptorProfileCache getProfileCache() {
+		return this.profileCache;
+	}
+
+}
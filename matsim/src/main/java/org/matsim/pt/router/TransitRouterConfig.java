@@ -96,6 +96,10 @@ public class TransitRouterConfig implements MatsimParameters {
 
 	private final double directWalkFactor ;
 
+	private double raptorProfileTimeGrid = 900.0;
+
+	private boolean raptorRoutingFromProfiles = false;
+
 	public TransitRouterConfig(final Config config) {
 		this(config.planCalcScore(), config.plansCalcRoute(), config.transitRouter(), config.vspExperimental());
 	}
@@ -140,6 +144,8 @@ public class TransitRouterConfig implements MatsimParameters {
 		this.setBeelineWalkConnectionDistance(trConfig.getMaxBeelineWalkConnectionDistance());
 		this.setAdditionalTransferTime(trConfig.getAdditionalTransferTime());
 		this.directWalkFactor = trConfig.getDirectWalkFactor() ;
+		this.setRaptorProfileTimeGrid(trConfig.getRaptorProfileTimeGrid());
+		this.setRaptorRoutingFromProfiles(trConfig.isRaptorRoutingFromProfiles());
 	}
 
 	public void setUtilityOfLineSwitch_utl(final double utilityOfLineSwitch_utl_sec) {
@@ -253,5 +259,21 @@ public class TransitRouterConfig implements MatsimParameters {
 		return this.directWalkFactor ;
 	}
 
+	public double getRaptorProfileTimeGrid() {
+		return this.raptorProfileTimeGrid;
+	}
+
+	public void setRaptorProfileTimeGrid(final double raptorProfileTimeGrid) {
+		this.raptorProfileTimeGrid = raptorProfileTimeGrid;
+	}
+
+	public boolean isRaptorRoutingFromProfiles() {
+		return this.raptorRoutingFromProfiles;
+	}
+
+	public void setRaptorRoutingFromProfiles(final boolean raptorRoutingFromProfiles) {
+		this.raptorRoutingFromProfiles = raptorRoutingFromProfiles;
+	}
+
 
 }
@@ -46,6 +46,7 @@ public class TransitRouterImpl extends AbstractTransitRouter implements TransitR
     private final TravelTime travelTime;
     private final TransitTravelDisutility travelDisutility;
     private final PreparedTransitSchedule preparedTransitSchedule;
+    private final AccessEgressCandidateCache<TransitRouterNetwork.TransitRouterNetworkNode> candidateCache;
 
     public TransitRouterImpl(final TransitRouterConfig trConfig, final TransitSchedule schedule) {
         super(trConfig);
@@ -58,6 +59,7 @@ public class TransitRouterImpl extends AbstractTransitRouter implements TransitR
         this.travelDisutility = transitRouterNetworkTravelTimeAndDisutility;
         this.travelTime = transitRouterNetworkTravelTimeAndDisutility;
         setTransitTravelDisutility(this.travelDisutility);
+        this.candidateCache = new AccessEgressCandidateCache<>();
     }
 
     public TransitRouterImpl(
@@ -66,6 +68,20 @@ public class TransitRouterImpl extends AbstractTransitRouter implements TransitR
             final TransitRouterNetwork routerNetwork,
             final TravelTime travelTime,
             final TransitTravelDisutility travelDisutility) {
+        this(trConfig, preparedTransitSchedule, routerNetwork, travelTime, travelDisutility, new AccessEgressCandidateCache<>());
+    }
+
+    /**
+     * @param candidateCache the access and egress nodes found around a coordinate, to be shared by all routers
+     * using the same router network and search radii
+     */
+    public TransitRouterImpl(
+            final TransitRouterConfig trConfig,
+            final PreparedTransitSchedule preparedTransitSchedule,
+            final TransitRouterNetwork routerNetwork,
+            final TravelTime travelTime,
+            final TransitTravelDisutility travelDisutility,
+            final AccessEgressCandidateCache<TransitRouterNetwork.TransitRouterNetworkNode> candidateCache) {
 
         super(trConfig, travelDisutility);
 
@@ -73,9 +89,22 @@ public class TransitRouterImpl extends AbstractTransitRouter implements TransitR
         this.preparedTransitSchedule = preparedTransitSchedule;
         this.travelDisutility = travelDisutility;
         this.travelTime = travelTime;
+        this.candidateCache = candidateCache;
     }
 
     private Map<Node, InitialNode> locateWrappedNearestTransitNodes(Person person, Coord coord, double departureTime) {
+        List<TransitRouterNetwork.TransitRouterNetworkNode> nearestNodes = this.candidateCache.getCandidates(coord, this::locateNearestTransitNodes);
+        Map<Node, InitialNode> wrappedNearestNodes = new LinkedHashMap<>();
+        for (TransitRouterNetwork.TransitRouterNetworkNode node : nearestNodes) {
+            Coord toCoord = node.stop.getStopFacility().getCoord();
+            double initialTime = getWalkTime(person, coord, toCoord);
+            double initialCost = getWalkDisutility(person, coord, toCoord);
+            wrappedNearestNodes.put(node, new InitialNode(initialCost, initialTime + departureTime));
+        }
+        return wrappedNearestNodes;
+    }
+
+    private Collection<TransitRouterNetwork.TransitRouterNetworkNode> locateNearestTransitNodes(Coord coord) {
         Collection<TransitRouterNetwork.TransitRouterNetworkNode> nearestNodes = getTransitRouterNetwork().getNearestNodes(
                 coord,
                 this.getConfig().getSearchRadius());
@@ -90,14 +119,7 @@ public class TransitRouterImpl extends AbstractTransitRouter implements TransitR
                                    .getNearestNodes(coord, distance + this.getConfig().getExtensionRadius());
             }
         }
-        Map<Node, InitialNode> wrappedNearestNodes = new LinkedHashMap<>();
-        for (TransitRouterNetwork.TransitRouterNetworkNode node : nearestNodes) {
-            Coord toCoord = node.stop.getStopFacility().getCoord();
-            double initialTime = getWalkTime(person, coord, toCoord);
-            double initialCost = getWalkDisutility(person, coord, toCoord);
-            wrappedNearestNodes.put(node, new InitialNode(initialCost, initialTime + departureTime));
-        }
-        return wrappedNearestNodes;
+        return nearestNodes;
     }
 
     @Override
@@ -20,7 +20,9 @@
 
 package org.matsim.pt.router;
 
+import org.matsim.api.core.v01.network.Network;
 import org.matsim.core.config.Config;
+import org.matsim.pt.config.TransitRouterConfigGroup;
 import org.matsim.pt.transitSchedule.api.TransitSchedule;
 
 import javax.inject.Inject;
@@ -36,26 +38,36 @@ public class TransitRouterImplFactory implements Provider<TransitRouter> {
 	private final TransitRouterConfig config;
 	private final TransitRouterNetwork routerNetwork;
 	private final PreparedTransitSchedule preparedTransitSchedule;
+	private final AccessEgressCandidateCache<TransitRouterNetwork.TransitRouterNetworkNode> candidateCache = new AccessEgressCandidateCache<>();
 
 	@Inject
-	TransitRouterImplFactory(final TransitSchedule schedule, final Config config) {
+	TransitRouterImplFactory(final TransitSchedule schedule, final Network network, final Config config) {
 		this(schedule, new TransitRouterConfig(
 				config.planCalcScore(),
 				config.plansCalcRoute(),
 				config.transitRouter(),
-				config.vspExperimental()));
+				config.vspExperimental()), network, config.transitRouter());
+	}
+
+	private TransitRouterImplFactory(final TransitSchedule schedule, final TransitRouterConfig config, final Network network,
+			final TransitRouterConfigGroup configGroup) {
+		this(schedule, config, TransitStopTransfers.loadOrCreate(schedule, network, configGroup, config.getBeelineDistanceFactor()));
 	}
 
 	public TransitRouterImplFactory(final TransitSchedule schedule, final TransitRouterConfig config) {
+		this(schedule, config, TransitStopTransfers.createBeeline(schedule, config.getBeelineWalkConnectionDistance()));
+	}
+
+	public TransitRouterImplFactory(final TransitSchedule schedule, final TransitRouterConfig config, final TransitStopTransfers transfers) {
 		this.config = config;
-		this.routerNetwork = TransitRouterNetwork.createFromSchedule(schedule, this.config.getBeelineWalkConnectionDistance());
+		this.routerNetwork = TransitRouterNetwork.createFromSchedule(schedule, transfers);
 		this.preparedTransitSchedule = new PreparedTransitSchedule(schedule);
 	}
 
 	@Override
 	public TransitRouter get() {
 		TransitRouterNetworkTravelTimeAndDisutility ttCalculator = new TransitRouterNetworkTravelTimeAndDisutility(this.config, this.preparedTransitSchedule);
-		return new TransitRouterImpl(this.config, this.preparedTransitSchedule, this.routerNetwork, ttCalculator, ttCalculator);
+		return new TransitRouterImpl(this.config, this.preparedTransitSchedule, this.routerNetwork, ttCalculator, ttCalculator, this.candidateCache);
 	}
 	
 }
@@ -20,7 +20,9 @@
 
 package org.matsim.pt.router;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -44,6 +46,7 @@ import org.matsim.pt.transitSchedule.api.TransitLine;
 import org.matsim.pt.transitSchedule.api.TransitRoute;
 import org.matsim.pt.transitSchedule.api.TransitRouteStop;
 import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 import org.matsim.utils.objectattributes.attributable.Attributes;
 
 /**
@@ -313,7 +316,11 @@ public final class TransitRouterNetwork implements Network {
 	}
 
 	public TransitRouterNetworkLink createLink(final TransitRouterNetworkNode fromNode, final TransitRouterNetworkNode toNode, final TransitRoute route, final TransitLine line) {
-		final TransitRouterNetworkLink link = new TransitRouterNetworkLink(Id.create(this.nextLinkId++, Link.class), fromNode, toNode, route, line);
+		return createLink(fromNode, toNode, route, line, CoordUtils.calcEuclideanDistance(toNode.stop.getStopFacility().getCoord(), fromNode.stop.getStopFacility().getCoord()));
+	}
+
+	public TransitRouterNetworkLink createLink(final TransitRouterNetworkNode fromNode, final TransitRouterNetworkNode toNode, final TransitRoute route, final TransitLine line, final double length) {
+		final TransitRouterNetworkLink link = new TransitRouterNetworkLink(Id.create(this.nextLinkId++, Link.class), fromNode, toNode, route, line, length);
 		this.links.put(link.getId(), link);
 		fromNode.outgoingLinks.put(link.getId(), link);
 		toNode.ingoingLinks.put(link.getId(), link);
@@ -404,6 +411,15 @@ public final class TransitRouterNetwork implements Network {
 	}
 
 	public static TransitRouterNetwork createFromSchedule(final TransitSchedule schedule, final double maxBeelineWalkConnectionDistance) {
+		return createFromSchedule(schedule, TransitStopTransfers.createBeeline(schedule, maxBeelineWalkConnectionDistance));
+	}
+
+	/**
+	 * Creates the network with transfer links between the nodes of the stops connected by the given transfers, and
+	 * between the nodes of different lines at the same stop. The lengths of the transfer links are the distances of
+	 * the transfers.
+	 */
+	public static TransitRouterNetwork createFromSchedule(final TransitSchedule schedule, final TransitStopTransfers transfers) {
 		log.info("start creating transit network");
 		final TransitRouterNetwork network = new TransitRouterNetwork();
 		final Counter linkCounter = new Counter(" link #");
@@ -432,23 +448,52 @@ public final class TransitRouterNetwork implements Network {
 		// links come in. mrieser, dec'10
 		log.info("add transfer links");
 
+		// the transfers are known per stop, the links are needed between the nodes of the stops
+		Map<TransitStopFacility, List<TransitRouterNetworkNode>> stopNodes = new IdentityHashMap<TransitStopFacility, List<TransitRouterNetworkNode>>();
+		for (TransitRouterNetworkNode node : network.getNodes().values()) {
+			if (node.getOutLinks().size() > 0) { // only add links to other nodes when agents can depart there
+				List<TransitRouterNetworkNode> nodes = stopNodes.get(node.stop.getStopFacility());
+				if (nodes == null) {
+					nodes = new ArrayList<TransitRouterNetworkNode>();
+					stopNodes.put(node.stop.getStopFacility(), nodes);
+				}
+				nodes.add(node);
+			}
+		}
+
 		List<Tuple<TransitRouterNetworkNode, TransitRouterNetworkNode>> toBeAdded = new LinkedList<Tuple<TransitRouterNetworkNode, TransitRouterNetworkNode>>();
-		// connect all stops with walking links if they're located less than beelineWalkConnectionDistance from each other
+		List<Double> lengths = new ArrayList<Double>();
+		// connect all stops with walking links if there is a transfer between them
 		for (TransitRouterNetworkNode node : network.getNodes().values()) {
 			if (node.getInLinks().size() > 0) { // only add links from this node to other nodes if agents actually can arrive here
-				for (TransitRouterNetworkNode node2 : network.getNearestNodes(node.stop.getStopFacility().getCoord(), maxBeelineWalkConnectionDistance)) {
-					if ((node != node2) && (node2.getOutLinks().size() > 0)) { // only add links to other nodes when agents can depart there
-						if ((node.line != node2.line) || (node.stop.getStopFacility() != node2.stop.getStopFacility())) {
+				TransitStopFacility stop = node.stop.getStopFacility();
+				List<TransitRouterNetworkNode> nodesAtStop = stopNodes.get(stop);
+				if (nodesAtStop != null) {
+					for (TransitRouterNetworkNode node2 : nodesAtStop) {
+						if ((node != node2) && (node.line != node2.line)) {
 							// do not yet add them to the network, as this would change in/out-links
 							toBeAdded.add(new Tuple<TransitRouterNetworkNode, TransitRouterNetworkNode>(node, node2));
+							lengths.add(0.0);
+						}
+					}
+				}
+				if (transfers.containsStop(stop)) {
+					for (int t = transfers.getFirstTransfer(stop); t < transfers.getEndTransfer(stop); t++) {
+						List<TransitRouterNetworkNode> nodesAtOtherStop = stopNodes.get(transfers.getToStop(t));
+						if (nodesAtOtherStop != null) {
+							for (TransitRouterNetworkNode node2 : nodesAtOtherStop) {
+								toBeAdded.add(new Tuple<TransitRouterNetworkNode, TransitRouterNetworkNode>(node, node2));
+								lengths.add(transfers.getDistance(t));
+							}
 						}
 					}
 				}
 			}
 		}
 		log.info(toBeAdded.size() + " transfer links to be added.");
+		int i = 0;
 		for (Tuple<TransitRouterNetworkNode, TransitRouterNetworkNode> tuple : toBeAdded) {
-			network.createLink(tuple.getFirst(), tuple.getSecond(), null, null);
+			network.createLink(tuple.getFirst(), tuple.getSecond(), null, null, lengths.get(i++));
 			linkCounter.incCounter();
 		}
 
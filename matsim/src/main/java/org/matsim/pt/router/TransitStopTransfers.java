@@ -0,0 +1,525 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TransitStopTransfers.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.utils.collections.QuadTree;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.pt.config.TransitRouterConfigGroup;
+import org.matsim.pt.config.TransitRouterConfigGroup.TransferDistanceType;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+
+/**
+ * The walk transfers between the stop facilities of a schedule (including the ones only referenced by routes), computed once per stop instead of once per route
+ * stop, and stored in compressed sparse row format: the transfers of stop <code>s</code> are the entries
+ * <code>firstTransfer[s]</code> to <code>firstTransfer[s + 1] - 1</code>. A stop has no transfer to itself.
+ * <p></p>
+ * The distances are either beeline distances, or walk distances along a network. In the latter case they are
+ * divided by the beeline distance factor, so that the transit routers can use them like beeline distances with
+ * their beeline walk speed.
+ * <p></p>
+ * The transfers can be written to a file and read again in later runs, see {@link #write(String)},
+ * {@link #read(String, TransitSchedule)} and {@link #loadOrCreate(TransitSchedule, Network, TransitRouterConfigGroup, double)}.
+ * The file contains checksums of the stops (ids and coordinates) and, for network distances, of the network and the
+ * beeline distance factor, so that transfers of a changed schedule or network are not used.
+ * Instances are immutable and can be shared among threads.
+ */
+public final class TransitStopTransfers {
+
+	private final static Logger log = Logger.getLogger(TransitStopTransfers.class);
+
+	private static final int MAGIC = 0x4d545354; // "MTST"
+	private static final int VERSION = 2;
+
+	private static final long NO_CHECKSUM = 0;
+
+	private final TransferDistanceType distanceType;
+	private final double maxDistance;
+	private final long stopsChecksum;
+	private final long networkChecksum;
+	private final TransitStopFacility[] stops;
+	private final Map<TransitStopFacility, Integer> stopIndices;
+	private final int[] firstTransfer;
+	private final int[] toStop;
+	private final double[] distance;
+
+	private TransitStopTransfers(final TransferDistanceType distanceType, final double maxDistance, final long stopsChecksum,
+			final long networkChecksum, final TransitStopFacility[] stops, final int[] firstTransfer, final int[] toStop,
+			final double[] distance) {
+		this.distanceType = distanceType;
+		this.maxDistance = maxDistance;
+		this.stopsChecksum = stopsChecksum;
+		this.networkChecksum = networkChecksum;
+		this.stops = stops;
+		this.stopIndices = getIndices(stops);
+		this.firstTransfer = firstTransfer;
+		this.toStop = toStop;
+		this.distance = distance;
+	}
+
+	/**
+	 * Connects all stops which are at most <code>maxBeelineDistance</code> apart. This replaces the pairwise search
+	 * between all route stops in {@link TransitRouterNetwork#createFromSchedule(TransitSchedule, double)}.
+	 */
+	public static TransitStopTransfers createBeeline(final TransitSchedule schedule, final double maxBeelineDistance) {
+		TransitStopFacility[] stops = getStops(schedule);
+		QuadTree<TransitStopFacility> stopsQT = createQuadTree(stops);
+		Map<TransitStopFacility, Integer> stopIndices = getIndices(stops);
+		int[] firstTransfer = new int[stops.length + 1];
+		int[][] toStops = new int[stops.length][];
+		double[][] distances = new double[stops.length][];
+		for (int s = 0; s < stops.length; s++) {
+			Coord coord = stops[s].getCoord();
+			Collection<TransitStopFacility> nearby = stopsQT.getDisk(coord.getX(), coord.getY(), maxBeelineDistance);
+			toStops[s] = new int[nearby.size()];
+			distances[s] = new double[nearby.size()];
+			int n = 0;
+			for (TransitStopFacility stop : nearby) {
+				if (stop != stops[s]) {
+					toStops[s][n] = stopIndices.get(stop);
+					distances[s][n] = CoordUtils.calcEuclideanDistance(coord, stop.getCoord());
+					n++;
+				}
+			}
+			firstTransfer[s + 1] = firstTransfer[s] + n;
+		}
+		TransitStopTransfers transfers = create(TransferDistanceType.Beeline, maxBeelineDistance, calcStopsChecksum(stops), NO_CHECKSUM,
+				stops, firstTransfer, toStops, distances);
+		log.info(transfers.getTransferCount() + " beeline transfers between " + stops.length + " stops.");
+		return transfers;
+	}
+
+	/**
+	 * Connects all stops whose walk distance along the network, divided by the beeline distance factor, is at most
+	 * <code>maxBeelineDistance</code>. The walk starts and ends at the network nodes nearest to the stops; the
+	 * distances between the stops and these nodes are added as beeline distances.
+	 */
+	public static TransitStopTransfers createFromNetwork(final TransitSchedule schedule, final Network network,
+			final double maxBeelineDistance, final double beelineDistanceFactor) {
+		TransitStopFacility[] stops = getStops(schedule);
+		QuadTree<TransitStopFacility> stopsQT = createQuadTree(stops);
+		Map<TransitStopFacility, Integer> stopIndices = getIndices(stops);
+		Node[] stopNodes = new Node[stops.length];
+		double[] stopNodeDistances = new double[stops.length];
+		for (int s = 0; s < stops.length; s++) {
+			stopNodes[s] = NetworkUtils.getNearestNode(network, stops[s].getCoord());
+			stopNodeDistances[s] = CoordUtils.calcEuclideanDistance(stops[s].getCoord(), stopNodes[s].getCoord());
+		}
+		double maxNetworkDistance = maxBeelineDistance * beelineDistanceFactor;
+		int[] firstTransfer = new int[stops.length + 1];
+		int[][] toStops = new int[stops.length][];
+		double[][] distances = new double[stops.length][];
+		for (int s = 0; s < stops.length; s++) {
+			Coord coord = stops[s].getCoord();
+			Collection<TransitStopFacility> nearby = stopsQT.getDisk(coord.getX(), coord.getY(), maxNetworkDistance);
+			Map<Node, Double> nodeDistances = calcNodeDistances(stopNodes[s], maxNetworkDistance - stopNodeDistances[s]);
+			toStops[s] = new int[nearby.size()];
+			distances[s] = new double[nearby.size()];
+			int n = 0;
+			for (TransitStopFacility stop : nearby) {
+				int t = stopIndices.get(stop);
+				Double nodeDistance = nodeDistances.get(stopNodes[t]);
+				if (t == s || nodeDistance == null) {
+					continue;
+				}
+				double walkDistance = (stopNodeDistances[s] + nodeDistance + stopNodeDistances[t]) / beelineDistanceFactor;
+				if (walkDistance <= maxBeelineDistance) {
+					toStops[s][n] = t;
+					distances[s][n] = walkDistance;
+					n++;
+				}
+			}
+			firstTransfer[s + 1] = firstTransfer[s] + n;
+		}
+		TransitStopTransfers transfers = create(TransferDistanceType.Network, maxBeelineDistance, calcStopsChecksum(stops),
+				calcNetworkChecksum(network, beelineDistanceFactor), stops, firstTransfer, toStops, distances);
+		log.info(transfers.getTransferCount() + " network transfers between " + stops.length + " stops.");
+		return transfers;
+	}
+
+	/**
+	 * Reads the transfers from the file given in the config if it exists and was created for the same schedule,
+	 * distance type and maximal distance, and for network distances also for the same network and beeline distance
+	 * factor; otherwise creates them, and writes them to that file if one is given. If the network is not given, the
+	 * network distances of the file are used without checking the network.
+	 */
+	public static TransitStopTransfers loadOrCreate(final TransitSchedule schedule, final Network network,
+			final TransitRouterConfigGroup config, final double beelineDistanceFactor) {
+		String filename = config.getTransferGraphFile();
+		if (filename != null && new File(filename).exists()) {
+			try {
+				TransitStopTransfers transfers = read(filename, schedule);
+				if (transfers.distanceType == config.getTransferDistanceType()
+						&& transfers.maxDistance == config.getMaxBeelineWalkConnectionDistance()
+						&& (transfers.distanceType != TransferDistanceType.Network || network == null
+								|| transfers.networkChecksum == calcNetworkChecksum(network, beelineDistanceFactor))) {
+					log.info("read " + transfers.getTransferCount() + " transfers from " + filename);
+					return transfers;
+				}
+				log.warn("the transfers in " + filename + " were created with other settings or another network, creating them again.");
+			} catch (RuntimeException e) {
+				log.warn("could not read the transfers from " + filename + ", creating them again: " + e.getMessage());
+			}
+		}
+		TransitStopTransfers transfers;
+		switch (config.getTransferDistanceType()) {
+			case Beeline:
+				transfers = createBeeline(schedule, config.getMaxBeelineWalkConnectionDistance());
+				break;
+			case Network:
+				transfers = createFromNetwork(schedule, network, config.getMaxBeelineWalkConnectionDistance(), beelineDistanceFactor);
+				break;
+			default:
+				throw new RuntimeException("unknown transfer distance type: " + config.getTransferDistanceType());
+		}
+		if (filename != null) {
+			transfers.write(filename);
+		}
+		return transfers;
+	}
+
+	/**
+	 * Writes the transfers in a binary format; the stops are identified by their ids.
+	 */
+	public void write(final String filename) {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(IOUtils.getOutputStream(filename), 1 << 16))) {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeUTF(this.distanceType.name());
+			out.writeDouble(this.maxDistance);
+			out.writeLong(this.stopsChecksum);
+			out.writeLong(this.networkChecksum);
+			out.writeInt(this.stops.length);
+			for (TransitStopFacility stop : this.stops) {
+				out.writeUTF(stop.getId().toString());
+			}
+			for (int s = 0; s < this.stops.length; s++) {
+				out.writeInt(this.firstTransfer[s + 1] - this.firstTransfer[s]);
+				for (int t = this.firstTransfer[s]; t < this.firstTransfer[s + 1]; t++) {
+					out.writeInt(this.toStop[t]);
+					out.writeDouble(this.distance[t]);
+				}
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Reads transfers written by {@link #write(String)}. The stops of the file must be the same as the ones of the
+	 * schedule, with the same coordinates.
+	 */
+	public static TransitStopTransfers read(final String filename, final TransitSchedule schedule) {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(IOUtils.getInputStream(filename), 1 << 16))) {
+			if (in.readInt() != MAGIC) {
+				throw new UncheckedIOException(new IOException("not a transit stop transfers file"));
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new UncheckedIOException(new IOException("unsupported version " + version + " of the transit stop transfers format"));
+			}
+			TransferDistanceType distanceType = TransferDistanceType.valueOf(in.readUTF());
+			double maxDistance = in.readDouble();
+			long stopsChecksum = in.readLong();
+			long networkChecksum = in.readLong();
+			int stopCount = in.readInt();
+			TransitStopFacility[] scheduleStops = getStops(schedule);
+			if (stopCount != scheduleStops.length) {
+				throw new UncheckedIOException(new IOException("the transfers were created for another schedule"));
+			}
+			Map<Id<TransitStopFacility>, TransitStopFacility> stopsById = new HashMap<>();
+			for (TransitStopFacility stop : scheduleStops) {
+				stopsById.put(stop.getId(), stop);
+			}
+			TransitStopFacility[] stops = new TransitStopFacility[stopCount];
+			for (int s = 0; s < stopCount; s++) {
+				stops[s] = stopsById.get(Id.create(in.readUTF(), TransitStopFacility.class));
+				if (stops[s] == null) {
+					throw new UncheckedIOException(new IOException("the transfers were created for another schedule"));
+				}
+			}
+			if (stopsChecksum != calcStopsChecksum(stops)) {
+				throw new UncheckedIOException(new IOException("the transfers were created for other stop coordinates"));
+			}
+			int[] firstTransfer = new int[stopCount + 1];
+			int[][] toStops = new int[stopCount][];
+			double[][] distances = new double[stopCount][];
+			for (int s = 0; s < stopCount; s++) {
+				int n = in.readInt();
+				toStops[s] = new int[n];
+				distances[s] = new double[n];
+				for (int i = 0; i < n; i++) {
+					toStops[s][i] = in.readInt();
+					distances[s][i] = in.readDouble();
+				}
+				firstTransfer[s + 1] = firstTransfer[s] + n;
+			}
+			return create(distanceType, maxDistance, stopsChecksum, networkChecksum, stops, firstTransfer, toStops, distances);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	public TransferDistanceType getDistanceType() {
+		return this.distanceType;
+	}
+
+	public double getMaxDistance() {
+		return this.maxDistance;
+	}
+
+	public int getTransferCount() {
+		return this.toStop.length;
+	}
+
+	public boolean containsStop(final TransitStopFacility stop) {
+		return this.stopIndices.containsKey(stop);
+	}
+
+	/**
+	 * @return the transfers from the stop, as indices to use with {@link #getToStop(int)} and {@link #getDistance(int)}
+	 */
+	public int getFirstTransfer(final TransitStopFacility stop) {
+		return this.firstTransfer[getIndex(stop)];
+	}
+
+	/**
+	 * @return the index after the last transfer from the stop
+	 */
+	public int getEndTransfer(final TransitStopFacility stop) {
+		return this.firstTransfer[getIndex(stop) + 1];
+	}
+
+	public TransitStopFacility getToStop(final int transfer) {
+		return this.stops[this.toStop[transfer]];
+	}
+
+	public double getDistance(final int transfer) {
+		return this.distance[transfer];
+	}
+
+	/**
+	 * @return the distance of the transfer between the two stops, or {@link Double#NaN} if there is none
+	 */
+	public double getDistance(final TransitStopFacility fromStop, final TransitStopFacility toStop) {
+		int to = getIndex(toStop);
+		int s = getIndex(fromStop);
+		for (int t = this.firstTransfer[s]; t < this.firstTransfer[s + 1]; t++) {
+			if (this.toStop[t] == to) {
+				return this.distance[t];
+			}
+		}
+		return Double.NaN;
+	}
+
+	private int getIndex(final TransitStopFacility stop) {
+		Integer index = this.stopIndices.get(stop);
+		if (index == null) {
+			throw new IllegalArgumentException("stop " + stop.getId() + " is not part of the transit schedule.");
+		}
+		return index;
+	}
+
+	private static TransitStopTransfers create(final TransferDistanceType distanceType, final double maxDistance,
+			final long stopsChecksum, final long networkChecksum, final TransitStopFacility[] stops, final int[] firstTransfer,
+			final int[][] toStops, final double[][] distances) {
+		int[] toStop = new int[firstTransfer[stops.length]];
+		double[] distance = new double[toStop.length];
+		for (int s = 0; s < stops.length; s++) {
+			int n = firstTransfer[s + 1] - firstTransfer[s];
+			System.arraycopy(toStops[s], 0, toStop, firstTransfer[s], n);
+			System.arraycopy(distances[s], 0, distance, firstTransfer[s], n);
+		}
+		return new TransitStopTransfers(distanceType, maxDistance, stopsChecksum, networkChecksum, stops, firstTransfer, toStop, distance);
+	}
+
+	/**
+	 * @return the CRC32 checksum of the ids and coordinates of the stops, in their order
+	 */
+	private static long calcStopsChecksum(final TransitStopFacility[] stops) {
+		CRC32 crc = new CRC32();
+		ByteBuffer buffer = ByteBuffer.allocate(16);
+		for (TransitStopFacility stop : stops) {
+			crc.update(stop.getId().toString().getBytes(StandardCharsets.UTF_8));
+			buffer.clear();
+			buffer.putDouble(stop.getCoord().getX()).putDouble(stop.getCoord().getY());
+			crc.update(buffer.array(), 0, 16);
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * @return the CRC32 checksum of everything the network distances depend on: the nodes and their coordinates, the
+	 * links with their nodes and lengths, and the beeline distance factor
+	 */
+	private static long calcNetworkChecksum(final Network network, final double beelineDistanceFactor) {
+		CRC32 crc = new CRC32();
+		ByteBuffer buffer = ByteBuffer.allocate(16);
+		for (Node node : network.getNodes().values()) {
+			crc.update(node.getId().toString().getBytes(StandardCharsets.UTF_8));
+			buffer.clear();
+			buffer.putDouble(node.getCoord().getX()).putDouble(node.getCoord().getY());
+			crc.update(buffer.array(), 0, 16);
+		}
+		for (Link link : network.getLinks().values()) {
+			crc.update(link.getId().toString().getBytes(StandardCharsets.UTF_8));
+			crc.update(link.getFromNode().getId().toString().getBytes(StandardCharsets.UTF_8));
+			crc.update(link.getToNode().getId().toString().getBytes(StandardCharsets.UTF_8));
+			buffer.clear();
+			buffer.putDouble(link.getLength());
+			crc.update(buffer.array(), 0, 8);
+		}
+		buffer.clear();
+		buffer.putDouble(beelineDistanceFactor);
+		crc.update(buffer.array(), 0, 8);
+		return crc.getValue();
+	}
+
+	/**
+	 * @return the stop facilities of the schedule, and those only referenced by a route
+	 */
+	private static TransitStopFacility[] getStops(final TransitSchedule schedule) {
+		Set<TransitStopFacility> stops = new LinkedHashSet<>(schedule.getFacilities().values());
+		for (TransitLine line : schedule.getTransitLines().values()) {
+			for (TransitRoute route : line.getRoutes().values()) {
+				for (TransitRouteStop stop : route.getStops()) {
+					stops.add(stop.getStopFacility());
+				}
+			}
+		}
+		return stops.toArray(new TransitStopFacility[stops.size()]);
+	}
+
+	private static Map<TransitStopFacility, Integer> getIndices(final TransitStopFacility[] stops) {
+		Map<TransitStopFacility, Integer> indices = new IdentityHashMap<>(stops.length);
+		for (int s = 0; s < stops.length; s++) {
+			indices.put(stops[s], s);
+		}
+		return indices;
+	}
+
+	private static QuadTree<TransitStopFacility> createQuadTree(final TransitStopFacility[] stops) {
+		double minX = Double.POSITIVE_INFINITY;
+		double minY = Double.POSITIVE_INFINITY;
+		double maxX = Double.NEGATIVE_INFINITY;
+		double maxY = Double.NEGATIVE_INFINITY;
+		for (TransitStopFacility stop : stops) {
+			Coord c = stop.getCoord();
+			minX = Math.min(minX, c.getX());
+			minY = Math.min(minY, c.getY());
+			maxX = Math.max(maxX, c.getX());
+			maxY = Math.max(maxY, c.getY());
+		}
+		if (stops.length == 0) {
+			minX = minY = maxX = maxY = 0.0;
+		}
+		QuadTree<TransitStopFacility> stopsQT = new QuadTree<>(minX, minY, maxX, maxY);
+		for (TransitStopFacility stop : stops) {
+			stopsQT.put(stop.getCoord().getX(), stop.getCoord().getY(), stop);
+		}
+		return stopsQT;
+	}
+
+	/**
+	 * A Dijkstra on the link lengths, in both directions of the links as one can walk against the direction of
+	 * travel, which stops at the given distance.
+	 */
+	private static Map<Node, Double> calcNodeDistances(final Node start, final double maxDistance) {
+		Map<Node, Double> distances = new HashMap<>();
+		if (maxDistance < 0.0) {
+			return distances;
+		}
+		PriorityQueue<NodeEntry> queue = new PriorityQueue<>();
+		queue.add(new NodeEntry(start, 0.0));
+		while (!queue.isEmpty()) {
+			NodeEntry entry = queue.poll();
+			if (distances.containsKey(entry.node)) {
+				continue;
+			}
+			distances.put(entry.node, entry.distance);
+			for (Link link : entry.node.getOutLinks().values()) {
+				addToQueue(queue, distances, link.getToNode(), entry.distance + link.getLength(), maxDistance);
+			}
+			for (Link link : entry.node.getInLinks().values()) {
+				addToQueue(queue, distances, link.getFromNode(), entry.distance + link.getLength(), maxDistance);
+			}
+		}
+		return distances;
+	}
+
+	private static void addToQueue(final PriorityQueue<NodeEntry> queue, final Map<Node, Double> distances, final Node node,
+			final double distance, final double maxDistance) {
+		if (distance <= maxDistance && !distances.containsKey(node)) {
+			queue.add(new NodeEntry(node, distance));
+		}
+	}
+
+	private static final class NodeEntry implements Comparable<NodeEntry> {
+		final Node node;
+		final double distance;
+
+		NodeEntry(final Node node, final double distance) {
+			this.node = node;
+			this.distance = distance;
+		}
+
+		@Override
+		public int compareTo(final NodeEntry other) {
+			return Double.compare(this.distance, other.distance);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "[stops=" + this.stops.length + "][transfers=" + this.toStop.length + "][distanceType=" + this.distanceType
+				+ "][maxDistance=" + this.maxDistance + "]";
+	}
+
+}
@@ -0,0 +1,502 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TransitScheduleSnapshot.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.transitSchedule;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.log4j.Logger;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteFactories;
+import org.matsim.core.utils.io.UncheckedIOException;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.MinimalTransferTimes;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopArea;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.utils.objectattributes.attributable.Attributes;
+import org.matsim.vehicles.Vehicle;
+
+/**
+ * A binary copy of a transit schedule which can be loaded much faster than the xml file it was created from. The
+ * file starts with a version and the checksum of the xml file (and of the settings used to read it, e.g. the
+ * coordinate systems), so an outdated snapshot is detected and not used, see {@link #read(String, long, TransitSchedule, RouteFactories)}.
+ * <p></p>
+ * All strings (ids, names, modes) are stored once in a table at the start of the file and referenced by their
+ * index, numbers are stored in binary form. The file is read through a memory-mapped buffer, so workers on the same
+ * machine share its pages in the operating system's file cache.
+ * <p></p>
+ * Only attributes of the types String, Integer, Long, Double, Float and Boolean can be stored; the snapshot of a
+ * schedule with other attributes cannot be written. Snapshots are limited to 2 GB.
+ */
+public final class TransitScheduleSnapshot {
+
+	private final static Logger log = Logger.getLogger(TransitScheduleSnapshot.class);
+
+	private static final int MAGIC = 0x4d545353; // "MTSS"
+	private static final int VERSION = 1;
+
+	private static final int NONE = -1;
+
+	private static final byte TYPE_STRING = 0;
+	private static final byte TYPE_INTEGER = 1;
+	private static final byte TYPE_LONG = 2;
+	private static final byte TYPE_DOUBLE = 3;
+	private static final byte TYPE_FLOAT = 4;
+	private static final byte TYPE_BOOLEAN = 5;
+
+	private TransitScheduleSnapshot() {
+	}
+
+	/**
+	 * @return the CRC32 checksum of the bytes of the file, as it is stored on disk
+	 */
+	public static long calcChecksum(final URL url) {
+		CRC32 crc = new CRC32();
+		byte[] buffer = new byte[1 << 16];
+		try (InputStream in = url.openStream()) {
+			int n;
+			while ((n = in.read(buffer)) >= 0) {
+				crc.update(buffer, 0, n);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return crc.getValue();
+	}
+
+	/**
+	 * Combines the checksum of the schedule file with settings that change how it is read.
+	 */
+	public static long calcChecksum(final URL url, final String settings) {
+		CRC32 crc = new CRC32();
+		crc.update(settings.getBytes(StandardCharsets.UTF_8));
+		return calcChecksum(url) * 31 + crc.getValue();
+	}
+
+	/**
+	 * Writes the schedule. The file is written to a temporary file of its own next to the target first and then moved
+	 * atomically, so a reader never sees a partially written snapshot, even if several processes write the snapshot
+	 * at the same time.
+	 *
+	 * @param checksum the checksum of the source of the schedule, see {@link #calcChecksum(URL, String)}
+	 * @throws IllegalArgumentException if the schedule contains data which cannot be stored
+	 */
+	public static void write(final TransitSchedule schedule, final long checksum, final String filename) {
+		Writer writer = new Writer();
+		try {
+			writer.writeSchedule(schedule);
+			Path target = new File(filename).getAbsoluteFile().toPath();
+			Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+			try {
+				writeSnapshot(writer, checksum, tmp);
+				try {
+					Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+				} catch (AtomicMoveNotSupportedException e) {
+					Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+				}
+			} finally {
+				Files.deleteIfExists(tmp);
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		log.info("wrote transit schedule snapshot " + filename);
+	}
+
+	private static void writeSnapshot(final Writer writer, final long checksum, final Path tmp) throws IOException {
+		try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16)) {
+			DataOutputStream out = new DataOutputStream(stream);
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeLong(checksum);
+			out.writeInt(writer.strings.size());
+			for (String string : writer.strings.keySet()) {
+				byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+			writer.body.writeTo(out);
+			out.flush();
+		}
+	}
+
+	/**
+	 * Reads the snapshot into the given, empty schedule if its version and checksum are the expected ones.
+	 *
+	 * @return <code>false</code> if the file does not exist, or was written by another version or for other input
+	 * (nothing is read then); <code>true</code> if the schedule was read
+	 * @throws UncheckedIOException if the file is corrupt
+	 */
+	public static boolean read(final String filename, final long checksum, final TransitSchedule schedule, final RouteFactories routeFactories) {
+		File file = new File(filename);
+		if (!file.exists()) {
+			return false;
+		}
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.remaining() < 16 || buffer.getInt() != MAGIC) {
+				throw new UncheckedIOException(new IOException(filename + " is not a transit schedule snapshot"));
+			}
+			int version = buffer.getInt();
+			if (version != VERSION) {
+				log.info("transit schedule snapshot " + filename + " has version " + version + " instead of " + VERSION + ", not using it.");
+				return false;
+			}
+			if (buffer.getLong() != checksum) {
+				log.info("transit schedule snapshot " + filename + " was written for other input, not using it.");
+				return false;
+			}
+			new Reader(buffer, schedule, routeFactories).readSchedule();
+			log.info("read transit schedule snapshot " + filename);
+			return true;
+		} catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+			throw new UncheckedIOException(filename + " is corrupt", e);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static final class Writer {
+		final Map<String, Integer> strings = new LinkedHashMap<>();
+		final ByteArrayOutputStream body = new ByteArrayOutputStream(1 << 20);
+		final DataOutputStream out = new DataOutputStream(this.body);
+
+		void writeSchedule(final TransitSchedule schedule) throws IOException {
+			writeAttributes(schedule.getAttributes());
+
+			Map<TransitStopFacility, Integer> stopIndices = new IdentityHashMap<>();
+			this.out.writeInt(schedule.getFacilities().size());
+			for (TransitStopFacility stop : schedule.getFacilities().values()) {
+				stopIndices.put(stop, stopIndices.size());
+				writeString(stop.getId().toString());
+				Coord coord = stop.getCoord();
+				this.out.writeDouble(coord.getX());
+				this.out.writeDouble(coord.getY());
+				this.out.writeBoolean(coord.hasZ());
+				if (coord.hasZ()) {
+					this.out.writeDouble(coord.getZ());
+				}
+				writeString(stop.getLinkId() == null ? null : stop.getLinkId().toString());
+				writeString(stop.getName());
+				writeString(stop.getStopAreaId() == null ? null : stop.getStopAreaId().toString());
+				this.out.writeBoolean(stop.getIsBlockingLane());
+				writeAttributes(stop.getAttributes());
+			}
+
+			List<Id<TransitStopFacility>> fromStops = new ArrayList<>();
+			List<Id<TransitStopFacility>> toStops = new ArrayList<>();
+			List<Double> seconds = new ArrayList<>();
+			MinimalTransferTimes.MinimalTransferTimesIterator iterator = schedule.getMinimalTransferTimes().iterator();
+			while (iterator.hasNext()) {
+				iterator.next();
+				fromStops.add(iterator.getFromStopId());
+				toStops.add(iterator.getToStopId());
+				seconds.add(iterator.getSeconds());
+			}
+			this.out.writeInt(seconds.size());
+			for (int i = 0; i < seconds.size(); i++) {
+				writeString(fromStops.get(i).toString());
+				writeString(toStops.get(i).toString());
+				this.out.writeDouble(seconds.get(i));
+			}
+
+			this.out.writeInt(schedule.getTransitLines().size());
+			for (TransitLine line : schedule.getTransitLines().values()) {
+				writeString(line.getId().toString());
+				writeString(line.getName());
+				writeAttributes(line.getAttributes());
+				this.out.writeInt(line.getRoutes().size());
+				for (TransitRoute route : line.getRoutes().values()) {
+					writeRoute(route, stopIndices);
+				}
+			}
+		}
+
+		private void writeRoute(final TransitRoute route, final Map<TransitStopFacility, Integer> stopIndices) throws IOException {
+			writeString(route.getId().toString());
+			writeString(route.getTransportMode());
+			writeString(route.getDescription());
+			writeAttributes(route.getAttributes());
+			NetworkRoute networkRoute = route.getRoute();
+			if (networkRoute == null) {
+				this.out.writeInt(NONE);
+			} else {
+				this.out.writeInt(networkRoute.getLinkIds().size() + 2);
+				writeString(networkRoute.getStartLinkId().toString());
+				for (Id<Link> linkId : networkRoute.getLinkIds()) {
+					writeString(linkId.toString());
+				}
+				writeString(networkRoute.getEndLinkId().toString());
+			}
+			this.out.writeInt(route.getStops().size());
+			for (TransitRouteStop stop : route.getStops()) {
+				Integer index = stopIndices.get(stop.getStopFacility());
+				if (index == null) {
+					throw new IllegalArgumentException("stop " + stop.getStopFacility().getId() + " of route " + route.getId()
+							+ " is not part of the schedule.");
+				}
+				this.out.writeInt(index);
+				this.out.writeDouble(stop.getArrivalOffset());
+				this.out.writeDouble(stop.getDepartureOffset());
+				this.out.writeBoolean(stop.isAwaitDepartureTime());
+			}
+			this.out.writeInt(route.getDepartures().size());
+			for (Departure departure : route.getDepartures().values()) {
+				writeString(departure.getId().toString());
+				this.out.writeDouble(departure.getDepartureTime());
+				writeString(departure.getVehicleId() == null ? null : departure.getVehicleId().toString());
+				writeAttributes(departure.getAttributes());
+			}
+		}
+
+		private void writeAttributes(final Attributes attributes) throws IOException {
+			this.out.writeInt(attributes.size());
+			for (Map.Entry<String, Object> entry : attributes.getAsMap().entrySet()) {
+				writeString(entry.getKey());
+				Object value = entry.getValue();
+				if (value instanceof String) {
+					this.out.writeByte(TYPE_STRING);
+					writeString((String) value);
+				} else if (value instanceof Integer) {
+					this.out.writeByte(TYPE_INTEGER);
+					this.out.writeInt((Integer) value);
+				} else if (value instanceof Long) {
+					this.out.writeByte(TYPE_LONG);
+					this.out.writeLong((Long) value);
+				} else if (value instanceof Double) {
+					this.out.writeByte(TYPE_DOUBLE);
+					this.out.writeDouble((Double) value);
+				} else if (value instanceof Float) {
+					this.out.writeByte(TYPE_FLOAT);
+					this.out.writeFloat((Float) value);
+				} else if (value instanceof Boolean) {
+					this.out.writeByte(TYPE_BOOLEAN);
+					this.out.writeBoolean((Boolean) value);
+				} else {
+					throw new IllegalArgumentException("attribute " + entry.getKey() + " of type " + value.getClass().getName()
+							+ " cannot be stored in a transit schedule snapshot.");
+				}
+			}
+		}
+
+		private void writeString(final String string) throws IOException {
+			if (string == null) {
+				this.out.writeInt(NONE);
+				return;
+			}
+			Integer index = this.strings.get(string);
+			if (index == null) {
+				index = this.strings.size();
+				this.strings.put(string, index);
+			}
+			this.out.writeInt(index);
+		}
+	}
+
+	private static final class Reader {
+		private final ByteBuffer buffer;
+		private final TransitSchedule schedule;
+		private final TransitScheduleFactory factory;
+		private final RouteFactories routeFactories;
+		private final String[] strings;
+
+		Reader(final ByteBuffer buffer, final TransitSchedule schedule, final RouteFactories routeFactories) {
+			this.buffer = buffer;
+			this.schedule = schedule;
+			this.factory = schedule.getFactory();
+			this.routeFactories = routeFactories;
+			this.strings = new String[buffer.getInt()];
+			byte[] bytes = new byte[256];
+			for (int i = 0; i < this.strings.length; i++) {
+				int length = buffer.getInt();
+				if (length > bytes.length) {
+					bytes = new byte[Math.max(length, 2 * bytes.length)];
+				}
+				buffer.get(bytes, 0, length);
+				this.strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+			}
+		}
+
+		void readSchedule() {
+			readAttributes(this.schedule.getAttributes());
+
+			int stopCount = this.buffer.getInt();
+			TransitStopFacility[] stops = new TransitStopFacility[stopCount];
+			for (int s = 0; s < stopCount; s++) {
+				Id<TransitStopFacility> id = Id.create(readString(), TransitStopFacility.class);
+				double x = this.buffer.getDouble();
+				double y = this.buffer.getDouble();
+				Coord coord = this.buffer.get() != 0 ? new Coord(x, y, this.buffer.getDouble()) : new Coord(x, y);
+				String linkId = readString();
+				String name = readString();
+				String stopAreaId = readString();
+				boolean isBlocking = this.buffer.get() != 0;
+				TransitStopFacility stop = this.factory.createTransitStopFacility(id, coord, isBlocking);
+				if (linkId != null) {
+					stop.setLinkId(Id.create(linkId, Link.class));
+				}
+				if (name != null) {
+					stop.setName(name);
+				}
+				if (stopAreaId != null) {
+					stop.setStopAreaId(Id.create(stopAreaId, TransitStopArea.class));
+				}
+				readAttributes(stop.getAttributes());
+				this.schedule.addStopFacility(stop);
+				stops[s] = stop;
+			}
+
+			int transferTimeCount = this.buffer.getInt();
+			for (int i = 0; i < transferTimeCount; i++) {
+				Id<TransitStopFacility> fromStop = Id.create(readString(), TransitStopFacility.class);
+				Id<TransitStopFacility> toStop = Id.create(readString(), TransitStopFacility.class);
+				this.schedule.getMinimalTransferTimes().set(fromStop, toStop, this.buffer.getDouble());
+			}
+
+			int lineCount = this.buffer.getInt();
+			for (int l = 0; l < lineCount; l++) {
+				TransitLine line = this.factory.createTransitLine(Id.create(readString(), TransitLine.class));
+				String name = readString();
+				if (name != null) {
+					line.setName(name);
+				}
+				readAttributes(line.getAttributes());
+				int routeCount = this.buffer.getInt();
+				for (int r = 0; r < routeCount; r++) {
+					line.addRoute(readRoute(stops));
+				}
+				this.schedule.addTransitLine(line);
+			}
+		}
+
+		private TransitRoute readRoute(final TransitStopFacility[] stops) {
+			Id<TransitRoute> id = Id.create(readString(), TransitRoute.class);
+			String mode = readString();
+			String description = readString();
+			Attributes attributes = new Attributes();
+			readAttributes(attributes);
+			NetworkRoute networkRoute = null;
+			int linkCount = this.buffer.getInt();
+			if (linkCount != NONE) {
+				Id<Link> startLinkId = Id.create(readString(), Link.class);
+				List<Id<Link>> linkIds = new ArrayList<>(linkCount - 2);
+				for (int i = 0; i < linkCount - 2; i++) {
+					linkIds.add(Id.create(readString(), Link.class));
+				}
+				Id<Link> endLinkId = Id.create(readString(), Link.class);
+				networkRoute = this.routeFactories.createRoute(NetworkRoute.class, startLinkId, endLinkId);
+				networkRoute.setLinkIds(startLinkId, linkIds, endLinkId);
+			}
+			int stopCount = this.buffer.getInt();
+			List<TransitRouteStop> routeStops = new ArrayList<>(stopCount);
+			for (int i = 0; i < stopCount; i++) {
+				TransitStopFacility stop = stops[this.buffer.getInt()];
+				double arrivalOffset = this.buffer.getDouble();
+				double departureOffset = this.buffer.getDouble();
+				TransitRouteStop routeStop = this.factory.createTransitRouteStop(stop, arrivalOffset, departureOffset);
+				routeStop.setAwaitDepartureTime(this.buffer.get() != 0);
+				routeStops.add(routeStop);
+			}
+			TransitRoute route = this.factory.createTransitRoute(id, networkRoute, routeStops, mode);
+			route.setDescription(description);
+			for (Map.Entry<String, Object> entry : attributes.getAsMap().entrySet()) {
+				route.getAttributes().putAttribute(entry.getKey(), entry.getValue());
+			}
+			int departureCount = this.buffer.getInt();
+			for (int i = 0; i < departureCount; i++) {
+				Departure departure = this.factory.createDeparture(Id.create(readString(), Departure.class), this.buffer.getDouble());
+				String vehicleId = readString();
+				if (vehicleId != null) {
+					departure.setVehicleId(Id.create(vehicleId, Vehicle.class));
+				}
+				readAttributes(departure.getAttributes());
+				route.addDeparture(departure);
+			}
+			return route;
+		}
+
+		private void readAttributes(final Attributes attributes) {
+			int count = this.buffer.getInt();
+			for (int i = 0; i < count; i++) {
+				String key = readString();
+				byte type = this.buffer.get();
+				switch (type) {
+					case TYPE_STRING:
+						attributes.putAttribute(key, readString());
+						break;
+					case TYPE_INTEGER:
+						attributes.putAttribute(key, this.buffer.getInt());
+						break;
+					case TYPE_LONG:
+						attributes.putAttribute(key, this.buffer.getLong());
+						break;
+					case TYPE_DOUBLE:
+						attributes.putAttribute(key, this.buffer.getDouble());
+						break;
+					case TYPE_FLOAT:
+						attributes.putAttribute(key, this.buffer.getFloat());
+						break;
+					case TYPE_BOOLEAN:
+						attributes.putAttribute(key, this.buffer.get() != 0);
+						break;
+					default:
+						throw new UncheckedIOException(new IOException("unknown attribute type " + type));
+				}
+			}
+		}
+
+		private String readString() {
+			int index = this.buffer.getInt();
+			return index == NONE ? null : this.strings[index];
+		}
+	}
+
+}
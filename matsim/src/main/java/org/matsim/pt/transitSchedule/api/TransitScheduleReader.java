@@ -78,6 +78,7 @@ public class TransitScheduleReader implements MatsimReader {
 		public XmlScheduleReader(CoordinateTransformation transformation, Scenario scenario) {
 			this.transformation = transformation;
 			this.scenario = scenario;
+			this.setPipelined(true);
 		}
 
 		@Override
@@ -0,0 +1,65 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ConvertPopulationFormat.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.run;
+
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.io.BinaryPopulationWriter;
+import org.matsim.core.population.io.PopulationReader;
+import org.matsim.core.population.io.PopulationWriter;
+import org.matsim.core.scenario.ScenarioUtils;
+
+/**
+ * Converts a population between the xml format (population_v6) and the binary format of
+ * {@link BinaryPopulationWriter}.  The format of the input file is detected automatically; the output file is written
+ * in the binary format if its name ends with ".bin", and as xml otherwise.
+ * <p></p>
+ * Usage: <code>ConvertPopulationFormat inputPlansFile outputPlansFile [numberOfThreads]</code>
+ */
+public class ConvertPopulationFormat {
+
+	public static void main(final String[] args) {
+		if (args.length < 2 || args.length > 3) {
+			System.out.println("Usage: ConvertPopulationFormat inputPlansFile outputPlansFile [numberOfThreads]");
+			System.out.println("The output file is written in the binary format if its name ends with \".bin\", and as xml otherwise.");
+			System.exit(1);
+		}
+		Config config = ConfigUtils.createConfig();
+		if (args.length == 3) {
+			config.global().setNumberOfThreads(Integer.parseInt(args[2]));
+		}
+		convert(config, args[0], args[1]);
+	}
+
+	public static void convert(final Config config, final String inputFile, final String outputFile) {
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		new PopulationReader(scenario).readFile(inputFile);
+		if (outputFile.endsWith(".bin")) {
+			BinaryPopulationWriter writer = new BinaryPopulationWriter(scenario.getPopulation());
+			writer.setNumberOfThreads(config.global().getNumberOfThreads());
+			writer.write(outputFile);
+		} else {
+			new PopulationWriter(scenario.getPopulation()).writeV6(outputFile);
+		}
+	}
+
+}
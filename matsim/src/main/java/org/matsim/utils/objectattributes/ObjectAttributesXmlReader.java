@@ -41,7 +41,6 @@ import org.matsim.utils.objectattributes.attributeconverters.IntegerConverter;
 import org.matsim.utils.objectattributes.attributeconverters.LongConverter;
 import org.matsim.utils.objectattributes.attributeconverters.StringConverter;
 import org.xml.sax.Attributes;
-import org.xml.sax.SAXException;
 
 /**
  * Reads object attributes from a file. The reader supports attributes of type {@link String},
@@ -55,7 +54,6 @@ public class ObjectAttributesXmlReader extends MatsimXmlParser {
 	private final static Logger log = Logger.getLogger(ObjectAttributesXmlReader.class);
 	private final ObjectAttributesConverter converter = new ObjectAttributesConverter();
 	private final ObjectAttributes attributes;
-	private boolean readCharacters = false;
 	private String currentObject = null;
 	private String currentAttribute = null;
 	private String currentAttributeClass = null;
@@ -65,6 +63,7 @@ public class ObjectAttributesXmlReader extends MatsimXmlParser {
 	public ObjectAttributesXmlReader(final ObjectAttributes attributes) {
 		this.attributes = attributes;
 		super.setValidating(false);
+		super.setPipelined(true);
 	}
 
 	@Override
@@ -72,7 +71,6 @@ public class ObjectAttributesXmlReader extends MatsimXmlParser {
 		if (TAG_ATTRIBUTE.equals(name)) {
 			this.currentAttribute = atts.getValue(ATTR_ATTRIBUTENAME);
 			this.currentAttributeClass = atts.getValue(ATTR_ATTRIBUTECLASS);
-			this.readCharacters = true;
 		} else if (TAG_OBJECT.equals(name)) {
 			this.currentObject = atts.getValue(ATTR_OBJECTID);
 		}
@@ -81,8 +79,6 @@ public class ObjectAttributesXmlReader extends MatsimXmlParser {
 	@Override
 	public void endTag(String name, String content, Stack<String> context) {
 		if (TAG_ATTRIBUTE.equals(name)) {
-			this.readCharacters = false;
-
 			Object o = converter.convert(this.currentAttributeClass, content);
 			this.attributes.putAttribute(this.currentObject, this.currentAttribute, o);
 		} else if (TAG_OBJECT.equals(name)) {
@@ -95,16 +91,14 @@ public class ObjectAttributesXmlReader extends MatsimXmlParser {
 	}
 
 	@Override
-	public void characters(char[] ch, int start, int length) throws SAXException {
-		if (this.readCharacters) {
-			super.characters(ch, start, length);
-		}
-		// ignore characters to prevent OutOfMemoryExceptions
+	protected boolean isReadingContent(final String name) {
+		// ignore characters of all other tags to prevent OutOfMemoryExceptions
 		/* non-validating files contain empty tags with attributes,
 		 * but without the dtd or schema, all whitespace between tags is handled
 		 * by characters and added up by super.characters, consuming huge
 		 * amount of memory when large files are read in.
 		 */
+		return TAG_ATTRIBUTE.equals(name);
 	}
 
 	/**
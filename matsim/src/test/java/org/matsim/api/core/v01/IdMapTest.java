@@ -0,0 +1,108 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * IdMapTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.api.core.v01;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class IdMapTest {
+
+	@Test
+	public void testPutGetRemove() {
+		Id<TPerson> id1 = Id.create("1", TPerson.class);
+		Id<TPerson> id2 = Id.create("2", TPerson.class);
+		Id<TPerson> id3 = Id.create("3", TPerson.class);
+
+		IdMap<TPerson, String> map = new IdMap<>(TPerson.class, 1);
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertNull(map.put(id1, "one"));
+		Assert.assertNull(map.put(id3, "three"));
+		Assert.assertEquals(2, map.size());
+		Assert.assertEquals("one", map.get(id1));
+		Assert.assertNull(map.get(id2));
+		Assert.assertEquals("three", map.get(id3));
+		Assert.assertTrue(map.containsKey(id3));
+		Assert.assertFalse(map.containsKey(id2));
+		Assert.assertTrue(map.containsValue("three"));
+
+		Assert.assertEquals("one", map.put(id1, "uno"));
+		Assert.assertEquals(2, map.size());
+		Assert.assertEquals("uno", map.remove(id1));
+		Assert.assertNull(map.remove(id1));
+		Assert.assertEquals(1, map.size());
+		Assert.assertNull(map.get(id1));
+		Assert.assertNull(map.get(null));
+	}
+
+	@Test
+	public void testIteration() {
+		Id<TPerson> id1 = Id.create("a", TPerson.class);
+		Id<TPerson> id2 = Id.create("b", TPerson.class);
+		Id<TPerson> id3 = Id.create("c", TPerson.class);
+
+		IdMap<TPerson, String> map = new IdMap<>(TPerson.class);
+		map.put(id3, "c");
+		map.put(id1, "a");
+		map.put(id2, "b");
+
+		Iterator<Map.Entry<Id<TPerson>, String>> iter = map.entrySet().iterator();
+		Map.Entry<Id<TPerson>, String> e = iter.next();
+		Assert.assertSame(id1, e.getKey());
+		Assert.assertEquals("a", e.getValue());
+		iter.remove();
+		Assert.assertSame(id2, iter.next().getKey());
+		Assert.assertSame(id3, iter.next().getKey());
+		Assert.assertFalse(iter.hasNext());
+
+		Assert.assertEquals(2, map.size());
+		Assert.assertFalse(map.containsKey(id1));
+		Assert.assertEquals(2, map.keySet().size());
+		Assert.assertTrue(map.values().contains("b"));
+	}
+
+	@Test
+	public void testIdSet() {
+		Id<TPerson> id1 = Id.create("x", TPerson.class);
+		Id<TPerson> id2 = Id.create("y", TPerson.class);
+
+		IdSet<TPerson> set = new IdSet<>(TPerson.class);
+		Assert.assertTrue(set.add(id2));
+		Assert.assertFalse(set.add(id2));
+		Assert.assertTrue(set.add(id1));
+		Assert.assertEquals(2, set.size());
+		Assert.assertTrue(set.contains(id1));
+
+		Iterator<Id<TPerson>> iter = set.iterator();
+		Assert.assertSame(id1, iter.next());
+		Assert.assertSame(id2, iter.next());
+		Assert.assertFalse(iter.hasNext());
+
+		Assert.assertTrue(set.remove(id1));
+		Assert.assertFalse(set.contains(id1));
+		Assert.assertEquals(1, set.size());
+	}
+
+	private static class TPerson {}
+
+}
@@ -67,7 +67,47 @@ public class IdTest {
 //		} // FIXME temporarily deactivated
 	}
 	
+	@Test
+	public void testIndex() {
+		Id<TIndexed> id1 = Id.create("1", TIndexed.class);
+		Id<TIndexed> id2 = Id.create("2", TIndexed.class);
+		Id<TIndexed> id1again = Id.create("1", TIndexed.class);
+
+		Assert.assertEquals(0, id1.index());
+		Assert.assertEquals(1, id2.index());
+		Assert.assertEquals(0, id1again.index());
+		Assert.assertEquals(2, Id.getNumberOfIds(TIndexed.class));
+		Assert.assertSame(id1, Id.get(0, TIndexed.class));
+		Assert.assertSame(id2, Id.get(1, TIndexed.class));
+		Assert.assertNull(Id.get(2, TIndexed.class));
+	}
+
+	@Test
+	public void testIndex_concurrentCreation() throws InterruptedException {
+		Thread[] threads = new Thread[4];
+		for (int t = 0; t < threads.length; t++) {
+			threads[t] = new Thread(() -> {
+				for (int i = 0; i < 1000; i++) {
+					Id<TConcurrent> id = Id.create(i, TConcurrent.class);
+					Assert.assertSame(id, Id.get(id.index(), TConcurrent.class));
+				}
+			});
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals(1000, Id.getNumberOfIds(TConcurrent.class));
+		for (int i = 0; i < 1000; i++) {
+			Id<TConcurrent> id = Id.get(i, TConcurrent.class);
+			Assert.assertEquals(i, id.index());
+			Assert.assertSame(id, Id.create(id.toString(), TConcurrent.class));
+		}
+	}
+
 	private static class TLink {}
+	private static class TIndexed {}
+	private static class TConcurrent {}
 	private static class TNode {}
 	
 }
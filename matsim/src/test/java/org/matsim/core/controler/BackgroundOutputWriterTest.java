@@ -0,0 +1,141 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BackgroundOutputWriterTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.controler;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BackgroundOutputWriterTest {
+
+	@Test
+	public void testTasksAreRunInOrder() {
+		BackgroundOutputWriter writer = new BackgroundOutputWriter(true);
+		Assert.assertTrue(writer.isWritingInBackground());
+		final List<Integer> done = Collections.synchronizedList(new ArrayList<Integer>());
+		for (int i = 0; i < 50; i++) {
+			final int task = i;
+			writer.submit("task " + i, new Runnable() {
+				@Override
+				public void run() {
+					done.add(task);
+				}
+			});
+		}
+		writer.awaitCompletion();
+		Assert.assertEquals(50, done.size());
+		for (int i = 0; i < 50; i++) {
+			Assert.assertEquals(i, done.get(i).intValue());
+		}
+		writer.close();
+		Assert.assertFalse(writer.isWritingInBackground());
+	}
+
+	@Test
+	public void testSubmitBlocksWhenTooManyTasksArePending() throws InterruptedException {
+		final BackgroundOutputWriter writer = new BackgroundOutputWriter(true);
+		final CountDownLatch blocker = new CountDownLatch(1);
+		final AtomicInteger submitted = new AtomicInteger();
+		Thread producer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				for (int i = 0; i < BackgroundOutputWriter.MAX_PENDING_TASKS + 2; i++) {
+					writer.submit("task " + i, new Runnable() {
+						@Override
+						public void run() {
+							try {
+								blocker.await();
+							} catch (InterruptedException e) {
+								throw new RuntimeException(e);
+							}
+						}
+					});
+					submitted.incrementAndGet();
+				}
+			}
+		});
+		producer.start();
+		producer.join(500);
+		Assert.assertTrue(producer.isAlive());
+		Assert.assertEquals(BackgroundOutputWriter.MAX_PENDING_TASKS, submitted.get());
+
+		blocker.countDown();
+		producer.join();
+		writer.close();
+		Assert.assertEquals(BackgroundOutputWriter.MAX_PENDING_TASKS + 2, submitted.get());
+	}
+
+	@Test
+	public void testFailureIsReported() {
+		BackgroundOutputWriter writer = new BackgroundOutputWriter(true);
+		final AtomicInteger runs = new AtomicInteger();
+		// the failure must not happen before the second task is submitted, submit() would report it already
+		final CountDownLatch blocker = new CountDownLatch(1);
+		writer.submit("failing task", new Runnable() {
+			@Override
+			public void run() {
+				try {
+					blocker.await();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				}
+				throw new IllegalStateException("disk full");
+			}
+		});
+		writer.submit("later task", new Runnable() {
+			@Override
+			public void run() {
+				runs.incrementAndGet();
+			}
+		});
+		blocker.countDown();
+		try {
+			writer.close();
+			Assert.fail("expected exception");
+		} catch (RuntimeException e) {
+			Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+		}
+		Assert.assertEquals("tasks after a failure should be skipped", 0, runs.get());
+	}
+
+	@Test
+	public void testTasksAreRunDirectlyIfNotInBackground() {
+		BackgroundOutputWriter writer = new BackgroundOutputWriter(false);
+		Assert.assertFalse(writer.isWritingInBackground());
+		final Thread caller = Thread.currentThread();
+		final List<Thread> threads = new ArrayList<>();
+		writer.submit("task", new Runnable() {
+			@Override
+			public void run() {
+				threads.add(Thread.currentThread());
+			}
+		});
+		Assert.assertEquals(1, threads.size());
+		Assert.assertSame(caller, threads.get(0));
+		writer.close();
+	}
+
+}
@@ -21,13 +21,36 @@ package org.matsim.core.controler.corelisteners;
 
 import org.junit.Rule;
 import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
 import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup.ActivityParams;
+import org.matsim.core.config.groups.StrategyConfigGroup.StrategySettings;
 import org.matsim.core.controler.Controler;
+import org.matsim.core.controler.OutputDirectoryHierarchy.OverwriteFileSetting;
+import org.matsim.core.controler.listener.ShutdownListener;
+import org.matsim.core.population.io.PopulationReader;
+import org.matsim.core.replanning.strategies.DefaultPlanStrategiesModule.DefaultSelector;
+import org.matsim.core.replanning.strategies.DefaultPlanStrategiesModule.DefaultStrategy;
+import org.matsim.core.scenario.ScenarioUtils;
 import org.matsim.testcases.MatsimTestUtils;
 
 import java.io.File;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -108,4 +131,90 @@ public class PlansDumpingIT {
 		assertTrue(new File(c.getControlerIO().getIterationFilename(9, "plans.xml.gz")).exists());
 		assertTrue(new File(c.getControlerIO().getIterationFilename(10, "plans.xml.gz")).exists());
 	}
+
+	@Test
+	public void testPlansDump_InBackground() {
+		Config config = ConfigUtils.createConfig();
+		config.controler().setOutputDirectory(this.util.getOutputDirectory());
+		config.controler().setOverwriteFileSetting(OverwriteFileSetting.overwriteExistingFiles);
+		config.controler().setLastIteration(3);
+		config.controler().setWritePlansInterval(1);
+		config.controler().setWriteEventsInterval(0);
+		config.controler().setCreateGraphs(false);
+		config.controler().setWritingOutputInBackground(true);
+		StrategySettings reRoute = new StrategySettings();
+		reRoute.setStrategyName(DefaultStrategy.ReRoute.toString());
+		reRoute.setWeight(0.5);
+		config.strategy().addStrategySettings(reRoute);
+		StrategySettings selector = new StrategySettings();
+		selector.setStrategyName(DefaultSelector.ChangeExpBeta.toString());
+		selector.setWeight(0.5);
+		config.strategy().addStrategySettings(selector);
+		for (String type : new String[] { "h", "w" }) {
+			ActivityParams params = new ActivityParams(type);
+			params.setTypicalDuration(8 * 3600);
+			config.planCalcScore().addActivityParams(params);
+		}
+		Scenario scenario = createScenario(config);
+
+		Controler c = new Controler(scenario);
+		// other shutdown listeners can read the complete output plans
+		AtomicInteger personsAtShutdown = new AtomicInteger(-1);
+		c.addControlerListener((ShutdownListener) event -> {
+			Scenario output = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+			new PopulationReader(output).readFile(event.getServices().getControlerIO().getOutputFilename(Controler.FILENAME_POPULATION));
+			personsAtShutdown.set(output.getPopulation().getPersons().size());
+		});
+		c.run();
+		assertEquals(10, personsAtShutdown.get());
+
+		for (int iteration = 0; iteration <= 3; iteration++) {
+			assertTrue(new File(c.getControlerIO().getIterationFilename(iteration, "plans.xml.gz")).exists());
+		}
+		// the plans are dumped before the mobsim, so the scores of the first scoring must not be in the first dump
+		Scenario dump = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new PopulationReader(dump).readFile(c.getControlerIO().getIterationFilename(0, "plans.xml.gz"));
+		assertEquals(10, dump.getPopulation().getPersons().size());
+		for (Person person : dump.getPopulation().getPersons().values()) {
+			assertEquals(1, person.getPlans().size());
+			assertNull(person.getSelectedPlan().getScore());
+		}
+		// the data at the end is written in the background as well, but before the controler returns
+		assertTrue(new File(c.getControlerIO().getOutputFilename(Controler.FILENAME_POPULATION)).exists());
+		assertTrue(new File(c.getControlerIO().getOutputFilename(Controler.FILENAME_NETWORK)).exists());
+	}
+
+	private static Scenario createScenario(final Config config) {
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		Network network = scenario.getNetwork();
+		Node node1 = network.getFactory().createNode(Id.create(1, Node.class), new Coord(0.0, 0.0));
+		Node node2 = network.getFactory().createNode(Id.create(2, Node.class), new Coord(1000.0, 0.0));
+		Node node3 = network.getFactory().createNode(Id.create(3, Node.class), new Coord(2000.0, 0.0));
+		network.addNode(node1);
+		network.addNode(node2);
+		network.addNode(node3);
+		Link link1 = network.getFactory().createLink(Id.create(1, Link.class), node1, node2);
+		Link link2 = network.getFactory().createLink(Id.create(2, Link.class), node2, node3);
+		for (Link link : new Link[] { link1, link2 }) {
+			link.setLength(1000.0);
+			link.setFreespeed(10.0);
+			link.setCapacity(3600.0);
+			link.setNumberOfLanes(1.0);
+			network.addLink(link);
+		}
+
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		for (int i = 0; i < 10; i++) {
+			Person person = pf.createPerson(Id.createPersonId(i));
+			Plan plan = pf.createPlan();
+			Activity home = pf.createActivityFromLinkId("h", link1.getId());
+			home.setEndTime(7 * 3600 + 60 * i);
+			plan.addActivity(home);
+			plan.addLeg(pf.createLeg(TransportMode.car));
+			plan.addActivity(pf.createActivityFromLinkId("w", link2.getId()));
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+		return scenario;
+	}
 }
@@ -0,0 +1,179 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * StreamingPlansReplanningIT.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.controler.corelisteners;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup.ActivityParams;
+import org.matsim.core.config.groups.StrategyConfigGroup.StrategySettings;
+import org.matsim.core.controler.Controler;
+import org.matsim.core.controler.OutputDirectoryHierarchy.OverwriteFileSetting;
+import org.matsim.core.population.io.PopulationReader;
+import org.matsim.core.replanning.strategies.DefaultPlanStrategiesModule.DefaultSelector;
+import org.matsim.core.replanning.strategies.DefaultPlanStrategiesModule.DefaultStrategy;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class StreamingPlansReplanningIT {
+
+	@Rule public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testOnlySelectedPlansInMemory() {
+		Config config = ConfigUtils.createConfig();
+		config.controler().setOutputDirectory(this.utils.getOutputDirectory());
+		config.controler().setOverwriteFileSetting(OverwriteFileSetting.overwriteExistingFiles);
+		config.controler().setLastIteration(5);
+		config.controler().setCreateGraphs(false);
+		config.controler().setWriteEventsInterval(0);
+		config.controler().setDumpDataAtEnd(false);
+		config.strategy().setStreamingReplanningChunkSize(3);
+		config.strategy().setMaxAgentPlanMemorySize(3);
+		addStrategy(config, DefaultStrategy.ReRoute.toString(), 0.5);
+		addStrategy(config, DefaultSelector.ChangeExpBeta.toString(), 0.5);
+		for (String type : new String[] { "h", "w" }) {
+			ActivityParams params = new ActivityParams(type);
+			params.setTypicalDuration(8 * 3600);
+			config.planCalcScore().addActivityParams(params);
+		}
+		Scenario scenario = createScenario(config);
+
+		Controler controler = new Controler(scenario);
+		controler.run();
+
+		Scenario store = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new PopulationReader(store).readFile(controler.getControlerIO().getOutputFilename(StreamingPlansReplanningImpl.STORE_FILENAME));
+		Assert.assertEquals(10, store.getPopulation().getPersons().size());
+		int maxPlans = 0;
+		for (Person person : scenario.getPopulation().getPersons().values()) {
+			Assert.assertEquals(1, person.getPlans().size());
+			Person storedPerson = store.getPopulation().getPersons().get(person.getId());
+			// the plans are removed before replanning, so a new plan may come on top of the maximum
+			Assert.assertTrue(storedPerson.getPlans().size() <= 4);
+			maxPlans = Math.max(maxPlans, storedPerson.getPlans().size());
+			Leg leg = (Leg) person.getSelectedPlan().getPlanElements().get(1);
+			Leg storedLeg = (Leg) storedPerson.getSelectedPlan().getPlanElements().get(1);
+			Assert.assertEquals(storedLeg.getRoute().getRouteDescription(), leg.getRoute().getRouteDescription());
+		}
+		Assert.assertTrue(maxPlans > 1);
+	}
+
+	@Test
+	public void testAllPlansAreDumped() {
+		Config config = ConfigUtils.createConfig();
+		config.controler().setOutputDirectory(this.utils.getOutputDirectory());
+		config.controler().setOverwriteFileSetting(OverwriteFileSetting.overwriteExistingFiles);
+		config.controler().setLastIteration(10);
+		config.controler().setCreateGraphs(false);
+		config.controler().setWriteEventsInterval(0);
+		config.controler().setWritePlansInterval(10);
+		config.strategy().setStreamingReplanningChunkSize(3);
+		config.strategy().setMaxAgentPlanMemorySize(3);
+		addStrategy(config, DefaultStrategy.ReRoute.toString(), 0.5);
+		addStrategy(config, DefaultSelector.ChangeExpBeta.toString(), 0.5);
+		for (String type : new String[] { "h", "w" }) {
+			ActivityParams params = new ActivityParams(type);
+			params.setTypicalDuration(8 * 3600);
+			config.planCalcScore().addActivityParams(params);
+		}
+		Scenario scenario = createScenario(config);
+
+		Controler controler = new Controler(scenario);
+		controler.run();
+
+		for (String filename : new String[] { controler.getControlerIO().getOutputFilename(Controler.FILENAME_POPULATION),
+				controler.getControlerIO().getIterationFilename(10, "plans.xml.gz") }) {
+			Scenario dump = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+			new PopulationReader(dump).readFile(filename);
+			Assert.assertEquals(10, dump.getPopulation().getPersons().size());
+			for (Person person : scenario.getPopulation().getPersons().values()) {
+				Person dumpedPerson = dump.getPopulation().getPersons().get(person.getId());
+				Assert.assertTrue(filename, dumpedPerson.getPlans().size() >= 3);
+				Assert.assertNotNull(filename, dumpedPerson.getSelectedPlan().getScore());
+			}
+		}
+
+		// the output plans have the scores of the last iteration, the file of the replanning has the ones before:
+		Scenario dump = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new PopulationReader(dump).readFile(controler.getControlerIO().getOutputFilename(Controler.FILENAME_POPULATION));
+		for (Person person : scenario.getPopulation().getPersons().values()) {
+			Person dumpedPerson = dump.getPopulation().getPersons().get(person.getId());
+			Assert.assertEquals(person.getSelectedPlan().getScore(), dumpedPerson.getSelectedPlan().getScore(), 1e-10);
+		}
+	}
+
+	private static void addStrategy(final Config config, final String name, final double weight) {
+		StrategySettings settings = new StrategySettings();
+		settings.setStrategyName(name);
+		settings.setWeight(weight);
+		config.strategy().addStrategySettings(settings);
+	}
+
+	private static Scenario createScenario(final Config config) {
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		Network network = scenario.getNetwork();
+		Node node1 = network.getFactory().createNode(Id.create(1, Node.class), new Coord(0.0, 0.0));
+		Node node2 = network.getFactory().createNode(Id.create(2, Node.class), new Coord(1000.0, 0.0));
+		Node node3 = network.getFactory().createNode(Id.create(3, Node.class), new Coord(2000.0, 0.0));
+		network.addNode(node1);
+		network.addNode(node2);
+		network.addNode(node3);
+		Link link1 = network.getFactory().createLink(Id.create(1, Link.class), node1, node2);
+		Link link2 = network.getFactory().createLink(Id.create(2, Link.class), node2, node3);
+		for (Link link : new Link[] { link1, link2 }) {
+			link.setLength(1000.0);
+			link.setFreespeed(10.0);
+			link.setCapacity(3600.0);
+			link.setNumberOfLanes(1.0);
+			network.addLink(link);
+		}
+
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		for (int i = 0; i < 10; i++) {
+			Person person = pf.createPerson(Id.createPersonId(i));
+			Plan plan = pf.createPlan();
+			Activity home = pf.createActivityFromLinkId("h", link1.getId());
+			home.setEndTime(7 * 3600 + 60 * i);
+			plan.addActivity(home);
+			plan.addLeg(pf.createLeg(TransportMode.car));
+			plan.addActivity(pf.createActivityFromLinkId("w", link2.getId()));
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+		return scenario;
+	}
+
+}
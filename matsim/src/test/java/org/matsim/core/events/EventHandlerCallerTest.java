@@ -0,0 +1,221 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventHandlerCallerTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.lang.reflect.Method;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.GenericEvent;
+import org.matsim.core.events.handler.EventHandler;
+import org.matsim.core.events.handler.HiddenEventHandlerFixture;
+
+public class EventHandlerCallerTest {
+
+	@Test
+	public void testGeneratedCaller() throws NoSuchMethodException {
+		Method method = PublicEventHandler.class.getMethod("handleEvent", PublicEvent.class);
+		EventHandlerCaller caller = EventHandlerCaller.create(PublicHandler.class, method);
+		Assert.assertFalse(caller instanceof EventHandlerCaller.ReflectiveEventHandlerCaller);
+
+		PublicHandler handler = new PublicHandler();
+		caller.call(handler, new PublicEvent(1.0));
+		caller.call(handler, new PublicEvent(2.0));
+		Assert.assertEquals(2, handler.count);
+		Assert.assertEquals(2.0, handler.lastTime, 0.0);
+	}
+
+	@Test
+	public void testGeneratedCaller_nonPublicHandlerClass() throws NoSuchMethodException {
+		// the handler class cannot be called directly, so the caller is generated for the interface method
+		Method method = PublicEventHandler.class.getMethod("handleEvent", PublicEvent.class);
+		EventHandlerCaller caller = EventHandlerCaller.create(PrivateHandler.class, method);
+		Assert.assertFalse(caller instanceof EventHandlerCaller.ReflectiveEventHandlerCaller);
+
+		PrivateHandler handler = new PrivateHandler();
+		caller.call(handler, new PublicEvent(1.0));
+		Assert.assertEquals(1, handler.count);
+	}
+
+	@Test
+	public void testReflectionFallback() throws NoSuchMethodException {
+		// the handler interface is not accessible from the events package, so no caller can be generated
+		Method method = HiddenEventHandlerFixture.getHandlerMethod();
+		EventHandlerCaller caller = EventHandlerCaller.create(HiddenEventHandlerFixture.getHandlerClass(), method);
+		Assert.assertTrue(caller instanceof EventHandlerCaller.ReflectiveEventHandlerCaller);
+
+		HiddenEventHandlerFixture fixture = new HiddenEventHandlerFixture();
+		caller.call(fixture.getHandler(), new GenericEvent("hidden", 1.0));
+		caller.call(fixture.getHandler(), new GenericEvent("hidden", 2.0));
+		Assert.assertEquals(2, fixture.getCount());
+	}
+
+	@Test
+	public void testExceptionPropagation() throws NoSuchMethodException {
+		Method method = PublicEventHandler.class.getMethod("handleEvent", PublicEvent.class);
+		CrashingHandler handler = new CrashingHandler();
+		try {
+			EventHandlerCaller.create(CrashingHandler.class, method).call(handler, new PublicEvent(1.0));
+			Assert.fail("expected exception, but got none.");
+		} catch (IllegalStateException e) {
+			Assert.assertEquals("crash", e.getMessage());
+		}
+		try {
+			new EventHandlerCaller.ReflectiveEventHandlerCaller(method).call(handler, new PublicEvent(1.0));
+			Assert.fail("expected exception, but got none.");
+		} catch (IllegalStateException e) {
+			// the reflective caller unwraps the InvocationTargetException
+			Assert.assertEquals("crash", e.getMessage());
+		}
+		Assert.assertEquals(2, handler.count);
+	}
+
+	@Test
+	public void testEventsManager_exceptionPropagation() {
+		for (boolean synchronizeOnHandlers : new boolean[] { true, false }) {
+			EventsManagerImpl manager = new EventsManagerImpl(synchronizeOnHandlers);
+			manager.addHandler(new CrashingHandler());
+			try {
+				manager.processEvent(new PublicEvent(1.0));
+				Assert.fail("expected exception, but got none.");
+			} catch (RuntimeException e) {
+				Assert.assertTrue(e.getCause() instanceof IllegalStateException);
+			}
+		}
+	}
+
+	@Test
+	public void testEventsManager_multipleInterfaces() {
+		for (boolean synchronizeOnHandlers : new boolean[] { true, false }) {
+			EventsManagerImpl manager = new EventsManagerImpl(synchronizeOnHandlers);
+			MultiHandler handler = new MultiHandler();
+			manager.addHandler(handler);
+			manager.processEvent(new PublicEvent(1.0));
+			manager.processEvent(new OtherEvent(2.0));
+			manager.processEvent(new SubEvent(3.0));
+			// the sub event is passed to the handle methods of both its own and its super class
+			Assert.assertEquals(2, handler.publicEvents);
+			Assert.assertEquals(1, handler.otherEvents);
+			Assert.assertEquals(1, handler.subEvents);
+
+			manager.removeHandler(handler);
+			manager.processEvent(new PublicEvent(4.0));
+			Assert.assertEquals(2, handler.publicEvents);
+		}
+	}
+
+	@Test
+	public void testEventsManager_reflectionFallback() {
+		for (boolean synchronizeOnHandlers : new boolean[] { true, false }) {
+			EventsManagerImpl manager = new EventsManagerImpl(synchronizeOnHandlers);
+			HiddenEventHandlerFixture fixture = new HiddenEventHandlerFixture();
+			manager.addHandler(fixture.getHandler());
+			manager.processEvent(new GenericEvent("hidden", 1.0));
+			manager.processEvent(new PublicEvent(2.0));
+			Assert.assertEquals(1, fixture.getCount());
+		}
+	}
+
+	public static class PublicEvent extends Event {
+		public PublicEvent(final double time) {
+			super(time);
+		}
+		@Override
+		public String getEventType() {
+			return "public";
+		}
+	}
+
+	public static class SubEvent extends PublicEvent {
+		public SubEvent(final double time) {
+			super(time);
+		}
+	}
+
+	public static class OtherEvent extends Event {
+		public OtherEvent(final double time) {
+			super(time);
+		}
+		@Override
+		public String getEventType() {
+			return "other";
+		}
+	}
+
+	public interface PublicEventHandler extends EventHandler {
+		public void handleEvent(PublicEvent event);
+	}
+
+	public interface SubEventHandler extends EventHandler {
+		public void handleEvent(SubEvent event);
+	}
+
+	public interface OtherEventHandler extends EventHandler {
+		public void handleEvent(OtherEvent event);
+	}
+
+	public static class PublicHandler implements PublicEventHandler {
+		int count = 0;
+		double lastTime = Double.NaN;
+		@Override
+		public void handleEvent(final PublicEvent event) {
+			this.count++;
+			this.lastTime = event.getTime();
+		}
+	}
+
+	private static class PrivateHandler implements PublicEventHandler {
+		int count = 0;
+		@Override
+		public void handleEvent(final PublicEvent event) {
+			this.count++;
+		}
+	}
+
+	public static class CrashingHandler implements PublicEventHandler {
+		int count = 0;
+		@Override
+		public void handleEvent(final PublicEvent event) {
+			this.count++;
+			throw new IllegalStateException("crash");
+		}
+	}
+
+	public static class MultiHandler implements PublicEventHandler, SubEventHandler, OtherEventHandler {
+		int publicEvents = 0;
+		int subEvents = 0;
+		int otherEvents = 0;
+		@Override
+		public void handleEvent(final PublicEvent event) {
+			this.publicEvents++;
+		}
+		@Override
+		public void handleEvent(final SubEvent event) {
+			this.subEvents++;
+		}
+		@Override
+		public void handleEvent(final OtherEvent event) {
+			this.otherEvents++;
+		}
+	}
+
+}
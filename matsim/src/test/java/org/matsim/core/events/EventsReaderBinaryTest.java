@@ -0,0 +1,188 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * EventsReaderBinaryTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.GenericEvent;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.PersonMoneyEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.events.algorithms.EventWriterBinary;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.testcases.utils.EventsCollector;
+
+public class EventsReaderBinaryTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	private static List<Event> createEvents() {
+		List<Event> events = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			double time = 6 * 3600 + i;
+			events.add(new ActivityEndEvent(time, Id.createPersonId(i % 17), Id.createLinkId(i % 23), null, "home"));
+			events.add(new VehicleEntersTrafficEvent(time, Id.createPersonId(i % 17), Id.createLinkId(i % 23), Id.createVehicleId(i % 17), "car", 1.0));
+			events.add(new LinkEnterEvent(time + 0.5, Id.createVehicleId(i % 17), Id.createLinkId(i % 31)));
+			if (i % 10 == 0) {
+				events.add(new PersonMoneyEvent(time + 0.5, Id.createPersonId(i % 17), -0.123 * i));
+			}
+			if (i % 100 == 0) {
+				GenericEvent generic = new GenericEvent("myEvent", time + 0.5);
+				generic.getAttributes().put("count", Integer.toString(i));
+				if (i % 200 == 0) {
+					generic.getAttributes().put("note", "a \"special\" <value>");
+				}
+				events.add(generic);
+			}
+		}
+		return events;
+	}
+
+	private String writeEvents(List<Event> events) {
+		String filename = this.utils.getOutputDirectory() + "events" + EventsReaderBinary.FILE_EXTENSION;
+		EventWriterBinary writer = new EventWriterBinary(filename, 64);
+		for (Event event : events) {
+			writer.handleEvent(event);
+		}
+		writer.closeFile();
+		return filename;
+	}
+
+	@Test
+	public void testWriteRead() {
+		List<Event> events = createEvents();
+		String filename = writeEvents(events);
+
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		eventsManager.addHandler(collector);
+		new MatsimEventsReader(eventsManager).readFile(filename);
+
+		Assert.assertEquals(events.size(), collector.getEvents().size());
+		for (int i = 0; i < events.size(); i++) {
+			Assert.assertEquals("different event at position " + i, events.get(i), collector.getEvents().get(i));
+		}
+		Assert.assertTrue(collector.getEvents().get(0) instanceof ActivityEndEvent);
+	}
+
+	@Test
+	public void testFormatDetectedByMagicNumber() throws IOException {
+		List<Event> events = createEvents();
+		String filename = writeEvents(events);
+		String otherName = this.utils.getOutputDirectory() + "output_events.bin";
+		Files.copy(Paths.get(filename), Paths.get(otherName));
+
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		eventsManager.addHandler(collector);
+		new MatsimEventsReader(eventsManager).readFile(otherName);
+		Assert.assertEquals(events.size(), collector.getEvents().size());
+
+		// other binary files with the same extension, e.g. binary populations, are not taken for events
+		String plansName = this.utils.getOutputDirectory() + "plans.bin";
+		Files.write(Paths.get(plansName), new byte[] { 0x4d, 0x50, 0x4f, 0x42, 0, 0, 0, 1 });
+		try {
+			new MatsimEventsReader(eventsManager).readFile(plansName);
+			Assert.fail("expected exception, but got none.");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testFilterByEventType() {
+		List<Event> events = createEvents();
+		String filename = writeEvents(events);
+
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		eventsManager.addHandler(collector);
+		EventsReaderBinary reader = new EventsReaderBinary(eventsManager);
+		reader.setEventTypes(Arrays.asList(PersonMoneyEvent.EVENT_TYPE, "myEvent"));
+		reader.readFile(filename);
+
+		List<Event> expected = new ArrayList<>();
+		for (Event event : events) {
+			if (event instanceof PersonMoneyEvent || event instanceof GenericEvent) {
+				expected.add(event);
+			}
+		}
+		Assert.assertEquals(expected, collector.getEvents());
+	}
+
+	@Test
+	public void testFilterByTime() {
+		List<Event> events = createEvents();
+		String filename = writeEvents(events);
+
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		EventsCollector collector = new EventsCollector();
+		eventsManager.addHandler(collector);
+		EventsReaderBinary reader = new EventsReaderBinary(eventsManager);
+		reader.setTimeWindow(6 * 3600 + 500, 6 * 3600 + 600);
+		reader.setEventTypes(Arrays.asList(LinkEnterEvent.EVENT_TYPE));
+		reader.readFile(filename);
+
+		List<Event> expected = new ArrayList<>();
+		for (Event event : events) {
+			if (event instanceof LinkEnterEvent && event.getTime() >= 6 * 3600 + 500 && event.getTime() <= 6 * 3600 + 600) {
+				expected.add(event);
+			}
+		}
+		Assert.assertEquals(100, expected.size());
+		Assert.assertEquals(expected, collector.getEvents());
+	}
+
+	@Test
+	public void testCustomEventMapper() {
+		List<Event> events = createEvents();
+		String filename = writeEvents(events);
+
+		final List<Integer> counts = new ArrayList<>();
+		EventsManager eventsManager = EventsUtils.createEventsManager();
+		EventsReaderBinary reader = new EventsReaderBinary(eventsManager);
+		reader.addCustomEventMapper("myEvent", new EventsReaderXMLv1.CustomEventMapper<Event>() {
+			@Override
+			public Event apply(GenericEvent event) {
+				counts.add(Integer.parseInt(event.getAttributes().get("count")));
+				return event;
+			}
+		});
+		reader.setEventTypes(Arrays.asList("myEvent"));
+		reader.readFile(filename);
+
+		Assert.assertEquals(Arrays.asList(0, 100, 200, 300, 400, 500, 600, 700, 800, 900), counts);
+	}
+
+}
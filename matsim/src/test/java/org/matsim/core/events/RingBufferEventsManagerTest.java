@@ -0,0 +1,237 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RingBufferEventsManagerTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonStuckEvent;
+import org.matsim.api.core.v01.events.handler.LinkEnterEventHandler;
+import org.matsim.api.core.v01.events.handler.LinkLeaveEventHandler;
+import org.matsim.api.core.v01.events.handler.PersonStuckEventHandler;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.groups.ParallelEventHandlingConfigGroup.WaitStrategy;
+import org.matsim.testcases.utils.EventsCollector;
+
+public class RingBufferEventsManagerTest {
+
+	@Test
+	public void testEventHandlerCanProduceAdditionalEventLateInSimStep() {
+		final RingBufferEventsManager events = new RingBufferEventsManager(8, true);
+		events.addHandler(new LinkEnterEventHandler() {
+			@Override
+			public void handleEvent(LinkEnterEvent event) {
+				try {
+					Thread.sleep(10);
+				} catch (InterruptedException e) {
+					e.printStackTrace();
+				}
+				events.processEvent(new PersonStuckEvent(event.getTime(), Id.createPersonId(0), Id.createLinkId(0), "car"));
+			}
+		});
+		EventsCollector collector = new EventsCollector();
+		events.addHandler(collector);
+		events.initProcessing();
+		events.processEvent(new LinkEnterEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.processEvent(new LinkLeaveEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.afterSimStep(0.0);
+		events.processEvent(new LinkEnterEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.processEvent(new LinkLeaveEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)));
+		events.afterSimStep(1.0);
+		events.finishProcessing();
+
+		List<Event> expected = Arrays.<Event>asList(
+				new LinkEnterEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)),
+				new LinkLeaveEvent(0.0, Id.createVehicleId(0), Id.createLinkId(0)),
+				new PersonStuckEvent(0.0, Id.createPersonId(0), Id.createLinkId(0), "car"),
+				new LinkEnterEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)),
+				new LinkLeaveEvent(1.0, Id.createVehicleId(0), Id.createLinkId(0)),
+				new PersonStuckEvent(1.0, Id.createPersonId(0), Id.createLinkId(0), "car"));
+		Assert.assertEquals(expected, collector.getEvents());
+	}
+
+	@Test
+	public void testAllEventsProcessed_blocking() {
+		runAllEventsProcessed(WaitStrategy.blocking);
+	}
+
+	@Test
+	public void testAllEventsProcessed_yielding() {
+		runAllEventsProcessed(WaitStrategy.yielding);
+	}
+
+	@Test
+	public void testAllEventsProcessed_busySpin() {
+		runAllEventsProcessed(WaitStrategy.busySpin);
+	}
+
+	private static void runAllEventsProcessed(WaitStrategy waitStrategy) {
+		// use a small ring buffer so that it wraps around many times
+		RingBufferEventsManager events = new RingBufferEventsManager(3, true, true, waitStrategy, 16);
+		CountingHandler[] handlers = new CountingHandler[5];
+		for (int i = 0; i < handlers.length; i++) {
+			handlers[i] = new CountingHandler();
+			events.addHandler(handlers[i]);
+		}
+
+		events.initProcessing();
+		int count = 0;
+		for (int time = 0; time < 100; time++) {
+			for (int i = 0; i < 100; i++) {
+				events.processEvent(new LinkEnterEvent(time, Id.createVehicleId(i), Id.createLinkId(i)));
+				events.processEvent(new LinkLeaveEvent(time, Id.createVehicleId(i), Id.createLinkId(i)));
+				count++;
+			}
+			events.afterSimStep(time);
+			for (CountingHandler handler : handlers) {
+				Assert.assertEquals("not all events of the time step were processed.", count, handler.linkEnterCount);
+				Assert.assertEquals("not all events of the time step were processed.", count, handler.linkLeaveCount);
+			}
+		}
+		events.finishProcessing();
+
+		// after the mobsim, events are processed directly
+		events.processEvent(new LinkEnterEvent(100, Id.createVehicleId(0), Id.createLinkId(0)));
+		for (CountingHandler handler : handlers) {
+			Assert.assertEquals(count + 1, handler.linkEnterCount);
+			Assert.assertEquals(count, handler.linkLeaveCount);
+		}
+	}
+
+	@Test
+	public void testNoSyncOnTimeSteps() {
+		RingBufferEventsManager events = new RingBufferEventsManager(2, false, true, WaitStrategy.blocking, 64);
+		CountingHandler handler1 = new CountingHandler();
+		CountingHandler handler2 = new CountingHandler();
+		events.addHandler(handler1);
+		events.addHandler(handler2);
+
+		events.initProcessing();
+		for (int i = 0; i < 10000; i++) {
+			events.processEvent(new LinkEnterEvent(i, Id.createVehicleId(0), Id.createLinkId(0)));
+			events.afterSimStep(i);
+		}
+		events.finishProcessing();
+
+		Assert.assertEquals(10000, handler1.linkEnterCount);
+		Assert.assertEquals(10000, handler2.linkEnterCount);
+	}
+
+	@Test
+	public void testEventHandlerProducesEventsWhileBufferIsFull_syncOnTimeSteps() {
+		runEventHandlerProducesEventsWhileBufferIsFull(true);
+	}
+
+	@Test
+	public void testEventHandlerProducesEventsWhileBufferIsFull_noSyncOnTimeSteps() {
+		runEventHandlerProducesEventsWhileBufferIsFull(false);
+	}
+
+	private static void runEventHandlerProducesEventsWhileBufferIsFull(boolean syncOnTimeSteps) {
+		// the ring buffer is filled by the producer faster than the events can be processed
+		final RingBufferEventsManager events = new RingBufferEventsManager(3, syncOnTimeSteps, true, WaitStrategy.blocking, 4);
+		events.addHandler(new LinkEnterEventHandler() {
+			@Override
+			public void handleEvent(LinkEnterEvent event) {
+				for (int i = 0; i < 3; i++) {
+					events.processEvent(new PersonStuckEvent(event.getTime(), Id.createPersonId(i), event.getLinkId(), "car"));
+				}
+			}
+		});
+		final int[] stuckCount = new int[1];
+		final List<Id<Person>> stuckPersons = new ArrayList<>();
+		events.addHandler(new PersonStuckEventHandler() {
+			@Override
+			public void handleEvent(PersonStuckEvent event) {
+				stuckCount[0]++;
+				stuckPersons.add(event.getPersonId());
+			}
+		});
+		CountingHandler counter = new CountingHandler();
+		events.addHandler(counter);
+
+		events.initProcessing();
+		for (int time = 0; time < 100; time++) {
+			for (int i = 0; i < 10; i++) {
+				events.processEvent(new LinkEnterEvent(time, Id.createVehicleId(i), Id.createLinkId(i)));
+			}
+			events.afterSimStep(time);
+			if (syncOnTimeSteps) {
+				Assert.assertEquals("not all events created by handlers were processed.", (time + 1) * 30, stuckCount[0]);
+			}
+		}
+		events.finishProcessing();
+
+		Assert.assertEquals(1000, counter.linkEnterCount);
+		Assert.assertEquals(3000, stuckCount[0]);
+		// the events created by one handler call keep their order
+		for (int i = 0; i < stuckPersons.size(); i++) {
+			Assert.assertEquals(Id.createPersonId(i % 3), stuckPersons.get(i));
+		}
+	}
+
+	@Test
+	public void testExceptionInEventHandler() {
+		RingBufferEventsManager events = new RingBufferEventsManager(2, true, true, WaitStrategy.blocking, 16);
+		events.addHandler(new CountingHandler());
+		events.addHandler(new LinkEnterEventHandler() {
+			@Override
+			public void handleEvent(LinkEnterEvent event) {
+				throw new IllegalStateException("just testing");
+			}
+		});
+
+		events.initProcessing();
+		for (int i = 0; i < 100; i++) {
+			events.processEvent(new LinkEnterEvent(i, Id.createVehicleId(0), Id.createLinkId(0)));
+			events.afterSimStep(i);
+		}
+		try {
+			events.finishProcessing();
+			Assert.fail("Expected exception.");
+		} catch (RuntimeException e) {
+			Assert.assertTrue(e.getCause() instanceof RuntimeException);
+		}
+	}
+
+	private static class CountingHandler implements LinkEnterEventHandler, LinkLeaveEventHandler {
+		/*package*/ int linkEnterCount = 0;
+		/*package*/ int linkLeaveCount = 0;
+
+		@Override
+		public void handleEvent(LinkEnterEvent event) {
+			this.linkEnterCount++;
+		}
+
+		@Override
+		public void handleEvent(LinkLeaveEvent event) {
+			this.linkLeaveCount++;
+		}
+	}
+
+}
@@ -0,0 +1,63 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * HiddenEventHandlerFixture.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.events.handler;
+
+import java.lang.reflect.Method;
+
+import org.matsim.api.core.v01.events.GenericEvent;
+
+/**
+ * An event handler whose class and handler interface are not accessible from other packages, so an events
+ * manager cannot link to its <code>handleEvent</code> method directly.
+ */
+public final class HiddenEventHandlerFixture {
+
+	private final HiddenHandler handler = new HiddenHandler();
+
+	public EventHandler getHandler() {
+		return this.handler;
+	}
+
+	public int getCount() {
+		return this.handler.count;
+	}
+
+	public static Method getHandlerMethod() throws NoSuchMethodException {
+		return HiddenEventHandler.class.getMethod("handleEvent", GenericEvent.class);
+	}
+
+	public static Class<?> getHandlerClass() {
+		return HiddenHandler.class;
+	}
+
+	interface HiddenEventHandler extends EventHandler {
+		public void handleEvent(GenericEvent event);
+	}
+
+	static class HiddenHandler implements HiddenEventHandler {
+		int count = 0;
+		@Override
+		public void handleEvent(final GenericEvent event) {
+			this.count++;
+		}
+	}
+
+}
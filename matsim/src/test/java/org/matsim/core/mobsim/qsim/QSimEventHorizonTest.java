@@ -0,0 +1,175 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QSimEventHorizonTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.events.handler.BasicEventHandler;
+import org.matsim.core.mobsim.framework.events.MobsimAfterSimStepEvent;
+import org.matsim.core.mobsim.framework.listeners.MobsimAfterSimStepListener;
+import org.matsim.core.mobsim.qsim.interfaces.HasNextTimeOfInterest;
+import org.matsim.core.scenario.ScenarioUtils;
+
+public class QSimEventHorizonTest {
+
+	@Test
+	public void testSameEventsAsStepwise() {
+		StepCounter stepwiseSteps = new StepCounter();
+		List<String> expected = runQSim(false, stepwiseSteps);
+		StepCounter eventHorizonSteps = new StepCounter();
+		List<String> events = runQSim(true, eventHorizonSteps);
+
+		Assert.assertFalse(expected.isEmpty());
+		Assert.assertEquals(expected, events);
+		Assert.assertTrue("no time steps skipped", eventHorizonSteps.steps * 5 < stepwiseSteps.steps);
+	}
+
+	@Test
+	public void testNoSkippingWithUnknownListener() {
+		final int[] steps = new int[1];
+		Scenario scenario = createScenario(true);
+		EventsManager events = EventsUtils.createEventsManager();
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+		QSim qsim = QSimUtils.createDefaultQSim(scenario, events);
+		qsim.addQueueSimulationListeners(new MobsimAfterSimStepListener() {
+			@Override
+			public void notifyMobsimAfterSimStep(MobsimAfterSimStepEvent e) {
+				steps[0]++;
+			}
+		});
+		StepCounter counter = new StepCounter();
+		qsim.addQueueSimulationListeners(counter);
+		qsim.run();
+
+		Assert.assertEquals(counter.steps, steps[0]);
+		Assert.assertEquals(qsim.getSimTimer().getTimeOfDay() - qsim.getSimTimer().getSimStartTime() + 1, steps[0], 1e-9);
+	}
+
+	private static List<String> runQSim(final boolean usingEventHorizon, final StepCounter counter) {
+		Scenario scenario = createScenario(usingEventHorizon);
+		final List<String> eventsList = new ArrayList<>();
+		EventsManager events = EventsUtils.createEventsManager();
+		events.addHandler(new BasicEventHandler() {
+			@Override
+			public void reset(int iteration) {
+			}
+
+			@Override
+			public void handleEvent(Event event) {
+				eventsList.add(event.toString());
+			}
+		});
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+		QSim qsim = QSimUtils.createDefaultQSim(scenario, events);
+		qsim.addQueueSimulationListeners(counter);
+		qsim.run();
+		return eventsList;
+	}
+
+	/**
+	 * A line of links, with persons going by car to work and walking back home, with long gaps between their trips.
+	 */
+	private static Scenario createScenario(final boolean usingEventHorizon) {
+		Config config = ConfigUtils.createConfig();
+		config.qsim().setUsingEventHorizon(usingEventHorizon);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		Network network = scenario.getNetwork();
+		NetworkFactory nf = network.getFactory();
+		Node[] nodes = new Node[5];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = nf.createNode(Id.createNodeId(i), new Coord(i * 1000.0, 0.0));
+			network.addNode(nodes[i]);
+		}
+		for (int i = 0; i + 1 < nodes.length; i++) {
+			addLink(network, Id.createLinkId(i + "f"), nodes[i], nodes[i + 1]);
+			addLink(network, Id.createLinkId(i + "b"), nodes[i + 1], nodes[i]);
+		}
+
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		for (int p = 0; p < 20; p++) {
+			Person person = pf.createPerson(Id.createPersonId(p));
+			Plan plan = pf.createPlan();
+			Activity home = createActivity(pf, "h", Id.createLinkId("0f"), 500.0);
+			home.setEndTime(6 * 3600 + p * 1237);
+			plan.addActivity(home);
+			plan.addLeg(pf.createLeg(TransportMode.car));
+			Activity work = createActivity(pf, "w", Id.createLinkId("3f"), 3500.0);
+			work.setMaximumDuration(8 * 3600 + p * 61);
+			plan.addActivity(work);
+			plan.addLeg(pf.createLeg(TransportMode.walk));
+			plan.addActivity(createActivity(pf, "h", Id.createLinkId("0f"), 500.0));
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+		return scenario;
+	}
+
+	private static Activity createActivity(final PopulationFactory pf, final String type, final Id<Link> linkId, final double x) {
+		Activity activity = pf.createActivityFromLinkId(type, linkId);
+		activity.setCoord(new Coord(x, 0.0));
+		return activity;
+	}
+
+	private static void addLink(final Network network, final Id<Link> id, final Node from, final Node to) {
+		Link link = network.getFactory().createLink(id, from, to);
+		link.setLength(1000.0);
+		link.setFreespeed(10.0);
+		link.setCapacity(600.0);
+		link.setNumberOfLanes(1.0);
+		network.addLink(link);
+	}
+
+	private static class StepCounter implements MobsimAfterSimStepListener, HasNextTimeOfInterest {
+		private int steps = 0;
+
+		@Override
+		public void notifyMobsimAfterSimStep(MobsimAfterSimStepEvent e) {
+			this.steps++;
+		}
+
+		@Override
+		public double getNextTimeOfInterest() {
+			return Double.POSITIVE_INFINITY;
+		}
+	}
+
+}
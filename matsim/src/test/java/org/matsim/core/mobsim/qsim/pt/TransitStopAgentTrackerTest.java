@@ -20,6 +20,10 @@
 
 package org.matsim.core.mobsim.qsim.pt;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
 import junit.framework.TestCase;
 
 import org.apache.log4j.Logger;
@@ -29,6 +33,7 @@ import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.events.EventsUtils;
 import org.matsim.pt.fakes.FakeAgent;
 import org.matsim.pt.transitSchedule.TransitScheduleFactoryImpl;
+import org.matsim.pt.transitSchedule.api.TransitLine;
 import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
 import org.matsim.pt.transitSchedule.api.TransitStopFacility;
 
@@ -114,4 +119,78 @@ public class TransitStopAgentTrackerTest extends TestCase {
 			log.info("catched expected exception.", e);
 		}
 	}
+
+	public void testIndexingByLine() {
+		EventsManager events = EventsUtils.createEventsManager();
+		TransitStopAgentTracker tracker = new TransitStopAgentTracker(events, true);
+		TransitScheduleFactory builder = new TransitScheduleFactoryImpl();
+		Id<TransitLine> lineA = Id.create("A", TransitLine.class);
+		Id<TransitLine> lineB = Id.create("B", TransitLine.class);
+		PTPassengerAgent agent1 = createAgent(lineA);
+		PTPassengerAgent agent2 = createAgent(lineB);
+		PTPassengerAgent agent3 = createAgent(lineA);
+		TransitStopFacility stop1 = builder.createTransitStopFacility(Id.create(1, TransitStopFacility.class), new Coord((double) 2, (double) 3), false);
+
+		tracker.addAgentToStop(10, agent1, stop1.getId());
+		tracker.addAgentToStop(10, agent2, stop1.getId());
+		tracker.addAgentToStop(10, agent3, stop1.getId());
+		assertEquals(Arrays.asList(agent1, agent3), tracker.getAgentsAtFacility(stop1.getId(), lineA));
+		assertEquals(Arrays.asList(agent2), tracker.getAgentsAtFacility(stop1.getId(), lineB));
+		assertEquals(Arrays.asList(agent1, agent2, agent3), tracker.getAgentsAtFacility(stop1.getId()));
+
+		// agents without a desired line are offered every line, in the order of arrival
+		PTPassengerAgent agent4 = new FakeAgent(null, null);
+		tracker.addAgentToStop(10, agent4, stop1.getId());
+		tracker.removeAgentFromStop(agent1, stop1.getId());
+		PTPassengerAgent agent5 = createAgent(lineA);
+		tracker.addAgentToStop(10, agent5, stop1.getId());
+		assertEquals(Arrays.asList(agent3, agent4, agent5), tracker.getAgentsAtFacility(stop1.getId(), lineA));
+		assertEquals(Arrays.asList(agent2, agent4), tracker.getAgentsAtFacility(stop1.getId(), lineB));
+		assertEquals(Arrays.asList(agent4), tracker.getAgentsAtFacility(stop1.getId(), Id.create("C", TransitLine.class)));
+		assertEquals(4, tracker.getAgentsAtFacility(stop1.getId()).size());
+
+		// without the index, all agents are offered every line
+		TransitStopAgentTracker tracker2 = new TransitStopAgentTracker(events);
+		tracker2.addAgentToStop(10, agent1, stop1.getId());
+		tracker2.addAgentToStop(10, agent2, stop1.getId());
+		assertEquals(Arrays.asList(agent1, agent2), tracker2.getAgentsAtFacility(stop1.getId(), lineA));
+	}
+
+	public void testAgentsAreViews() {
+		EventsManager events = EventsUtils.createEventsManager();
+		TransitScheduleFactory builder = new TransitScheduleFactoryImpl();
+		Id<TransitLine> lineA = Id.create("A", TransitLine.class);
+		TransitStopFacility stop1 = builder.createTransitStopFacility(Id.create(1, TransitStopFacility.class), new Coord((double) 2, (double) 3), false);
+		for (boolean indexingByLine : new boolean[] { false, true }) {
+			TransitStopAgentTracker tracker = new TransitStopAgentTracker(events, indexingByLine);
+			PTPassengerAgent agent1 = createAgent(lineA);
+			PTPassengerAgent agent2 = createAgent(lineA);
+			tracker.addAgentToStop(10, agent1, stop1.getId());
+			List<PTPassengerAgent> agentsOfLine = tracker.getAgentsAtFacility(stop1.getId(), lineA);
+			List<PTPassengerAgent> agents = tracker.getAgentsAtFacility(stop1.getId());
+			Map<Id<TransitStopFacility>, List<PTPassengerAgent>> agentsAtStop = tracker.getAgentsAtStop();
+
+			// agents arriving later show up in lists handed out before
+			tracker.addAgentToStop(10, agent2, stop1.getId());
+			assertEquals(Arrays.asList(agent1, agent2), agentsOfLine);
+			assertEquals(Arrays.asList(agent1, agent2), agents);
+			assertEquals(Arrays.asList(agent1, agent2), agentsAtStop.get(stop1.getId()));
+
+			// iterating is not affected by concurrent changes
+			for (PTPassengerAgent agent : agentsOfLine) {
+				tracker.removeAgentFromStop(agent, stop1.getId());
+			}
+			assertTrue(agentsOfLine.isEmpty());
+			assertTrue(agentsAtStop.get(stop1.getId()).isEmpty());
+		}
+	}
+
+	private static PTPassengerAgent createAgent(final Id<TransitLine> lineId) {
+		return new FakeAgent(null, null) {
+			@Override
+			public Id<TransitLine> getDesiredTransitLineId() {
+				return lineId;
+			}
+		};
+	}
 }
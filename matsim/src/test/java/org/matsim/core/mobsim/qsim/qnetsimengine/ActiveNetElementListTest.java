@@ -0,0 +1,103 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ActiveNetElementListTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ActiveNetElementListTest {
+
+	@Test
+	public void testAdd_growsAndKeepsOrder() {
+		ActiveNetElementList<String> list = new ActiveNetElementList<>(2);
+		list.add("a");
+		list.add("b");
+		list.add("c");
+		list.add("d");
+		list.add("e");
+		Assert.assertEquals(5, list.size());
+
+		// keep every second element, the same way the runners do
+		int remaining = 0;
+		for (int i = 0; i < list.size(); i++) {
+			if (i % 2 == 0) {
+				list.set(remaining++, list.get(i));
+			}
+		}
+		list.truncate(remaining);
+
+		Assert.assertEquals(3, list.size());
+		Assert.assertEquals("a", list.get(0));
+		Assert.assertEquals("c", list.get(1));
+		Assert.assertEquals("e", list.get(2));
+
+		list.add("f");
+		Assert.assertEquals(4, list.size());
+		Assert.assertEquals("f", list.get(3));
+	}
+
+	@Test
+	public void testAddConcurrently() throws InterruptedException {
+		final int threads = 4;
+		final int perThread = 10000;
+		final ActiveNetElementList<Integer> list = new ActiveNetElementList<>(threads * perThread);
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++) {
+			final int offset = t * perThread;
+			workers[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int i = 0; i < perThread; i++) {
+						list.addConcurrently(offset + i);
+					}
+				}
+			});
+			workers[t].start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+
+		Assert.assertEquals(threads * perThread, list.size());
+		Set<Integer> elements = new HashSet<>();
+		for (int i = 0; i < list.size(); i++) {
+			elements.add(list.get(i));
+		}
+		Assert.assertEquals(threads * perThread, elements.size());
+	}
+
+	@Test
+	public void testAddConcurrently_capacityExceeded() {
+		ActiveNetElementList<String> list = new ActiveNetElementList<>(1);
+		list.addConcurrently("a");
+		try {
+			list.addConcurrently("b");
+			Assert.fail("expected exception, got none.");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		Assert.assertEquals(1, list.size());
+	}
+
+}
@@ -0,0 +1,256 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QNetworkPartitionerTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.handler.PersonArrivalEventHandler;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.QSimConfigGroup.NodePartitioning;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsUtils;
+import org.matsim.core.mobsim.qsim.QSimUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+
+public class QNetworkPartitionerTest {
+
+	private static final int SIZE = 20;
+
+	@Test
+	public void testSpaceFillingCurve_balancedAndLocal() {
+		Scenario scenario = createScenario(ConfigUtils.createConfig());
+		List<Node> nodes = new ArrayList<>(scenario.getNetwork().getNodes().values());
+
+		int[] partition = new QNetworkPartitioner().partition(nodes, 4, false);
+
+		int[] counts = new int[4];
+		for (int runner : partition) {
+			counts[runner]++;
+		}
+		for (int count : counts) {
+			Assert.assertEquals(nodes.size() / 4.0, count, nodes.size() / 20.0);
+		}
+
+		int[] roundRobin = new int[nodes.size()];
+		for (int i = 0; i < roundRobin.length; i++) {
+			roundRobin[i] = i % 4;
+		}
+		int cutLinks = countCutLinks(scenario.getNetwork(), nodes, partition);
+		Assert.assertTrue("too many links between partitions: " + cutLinks,
+				cutLinks * 5 < countCutLinks(scenario.getNetwork(), nodes, roundRobin));
+	}
+
+	@Test
+	public void testSpaceFillingCurve_deterministic() {
+		Scenario scenario = createScenario(ConfigUtils.createConfig());
+		List<Node> nodes = new ArrayList<>(scenario.getNetwork().getNodes().values());
+
+		int[] partition1 = new QNetworkPartitioner().partition(nodes, 3, false);
+		int[] partition2 = new QNetworkPartitioner().partition(nodes, 3, false);
+		Assert.assertArrayEquals(partition1, partition2);
+	}
+
+	@Test
+	public void testSpaceFillingCurve_observedLoad() {
+		Scenario scenario = createScenario(ConfigUtils.createConfig());
+		List<Node> nodes = new ArrayList<>(scenario.getNetwork().getNodes().values());
+		int maxIndex = -1;
+		for (Node node : nodes) {
+			maxIndex = Math.max(maxIndex, node.getId().index());
+		}
+
+		QNetworkPartitioner partitioner = new QNetworkPartitioner();
+		int[] partition = partitioner.partition(nodes, 2, true);
+
+		// all the load is observed at the nodes of runner 0
+		int[] load = new int[maxIndex + 1];
+		for (int i = 0; i < nodes.size(); i++) {
+			if (partition[i] == 0) {
+				load[nodes.get(i).getId().index()] = 100;
+			}
+		}
+		partitioner.setObservedLoad(Arrays.asList(load));
+		int[] rebalanced = partitioner.partition(nodes, 2, true);
+
+		int loadedNodesOfRunner0 = 0;
+		int loadedNodesOfRunner1 = 0;
+		for (int i = 0; i < nodes.size(); i++) {
+			if (partition[i] == 0) {
+				if (rebalanced[i] == 0) {
+					loadedNodesOfRunner0++;
+				} else {
+					loadedNodesOfRunner1++;
+				}
+			}
+		}
+		Assert.assertEquals(loadedNodesOfRunner0, loadedNodesOfRunner1, nodes.size() / 20.0);
+
+		// without observed load, the partitioner ignores the observations
+		Assert.assertArrayEquals(partition, partitioner.partition(nodes, 2, false));
+	}
+
+	@Test
+	public void testQSim_sameArrivalsAsRoundRobin() {
+		Config config = ConfigUtils.createConfig();
+		config.qsim().setNumberOfThreads(1);
+		Map<Id<Person>, Double> expected = runQSim(createScenario(config));
+
+		config = ConfigUtils.createConfig();
+		config.qsim().setNumberOfThreads(3);
+		config.qsim().setNodePartitioning(NodePartitioning.spaceFillingCurveWithObservedLoad);
+		Scenario scenario = createScenario(config);
+		// the second run uses the load observed in the first one
+		for (int iteration = 0; iteration < 2; iteration++) {
+			Map<Id<Person>, Double> arrivals = runQSim(scenario);
+			Assert.assertEquals(expected.size(), arrivals.size());
+			for (Map.Entry<Id<Person>, Double> e : expected.entrySet()) {
+				Assert.assertEquals("arrival of " + e.getKey(), e.getValue(), arrivals.get(e.getKey()), 1e-9);
+			}
+		}
+		Assert.assertNotNull(scenario.getScenarioElement(QNetworkPartitioner.ELEMENT_NAME));
+	}
+
+	private static int countCutLinks(final Network network, final List<Node> nodes, final int[] partition) {
+		int maxIndex = -1;
+		for (Node node : nodes) {
+			maxIndex = Math.max(maxIndex, node.getId().index());
+		}
+		int[] runnerByIndex = new int[maxIndex + 1];
+		for (int i = 0; i < nodes.size(); i++) {
+			runnerByIndex[nodes.get(i).getId().index()] = partition[i];
+		}
+		int cut = 0;
+		for (Link link : network.getLinks().values()) {
+			if (runnerByIndex[link.getFromNode().getId().index()] != runnerByIndex[link.getToNode().getId().index()]) {
+				cut++;
+			}
+		}
+		return cut;
+	}
+
+	private static Map<Id<Person>, Double> runQSim(final Scenario scenario) {
+		final Map<Id<Person>, Double> arrivals = new ConcurrentHashMap<>();
+		EventsManager events = EventsUtils.createEventsManager();
+		events.addHandler(new PersonArrivalEventHandler() {
+			@Override
+			public void reset(int iteration) {
+			}
+
+			@Override
+			public void handleEvent(PersonArrivalEvent event) {
+				arrivals.put(event.getPersonId(), event.getTime());
+			}
+		});
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+		QSimUtils.createDefaultQSim(scenario, events).run();
+		return arrivals;
+	}
+
+	/**
+	 * A grid of SIZE × SIZE nodes, with persons driving along every row and every column.
+	 */
+	private static Scenario createScenario(final Config config) {
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		Network network = scenario.getNetwork();
+		NetworkFactory nf = network.getFactory();
+		Node[][] nodes = new Node[SIZE][SIZE];
+		for (int x = 0; x < SIZE; x++) {
+			for (int y = 0; y < SIZE; y++) {
+				nodes[x][y] = nf.createNode(Id.createNodeId(x + "_" + y), new Coord(x * 100.0, y * 100.0));
+				network.addNode(nodes[x][y]);
+			}
+		}
+		for (int x = 0; x < SIZE; x++) {
+			for (int y = 0; y < SIZE; y++) {
+				if (x + 1 < SIZE) {
+					addLink(network, nodes[x][y], nodes[x + 1][y]);
+					addLink(network, nodes[x + 1][y], nodes[x][y]);
+				}
+				if (y + 1 < SIZE) {
+					addLink(network, nodes[x][y], nodes[x][y + 1]);
+					addLink(network, nodes[x][y + 1], nodes[x][y]);
+				}
+			}
+		}
+
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		for (int line = 0; line < SIZE; line++) {
+			for (int direction = 0; direction < 2; direction++) {
+				List<Id<Link>> linkIds = new ArrayList<>();
+				for (int i = 0; i + 1 < SIZE; i++) {
+					Node from = direction == 0 ? nodes[i][line] : nodes[line][i];
+					Node to = direction == 0 ? nodes[i + 1][line] : nodes[line][i + 1];
+					linkIds.add(Id.createLinkId(from.getId() + "-" + to.getId()));
+				}
+				for (int p = 0; p < 30; p++) {
+					Person person = pf.createPerson(Id.createPersonId(line + "_" + direction + "_" + p));
+					Plan plan = pf.createPlan();
+					Activity home = pf.createActivityFromLinkId("h", linkIds.get(0));
+					home.setEndTime(6 * 3600 + p * 5);
+					plan.addActivity(home);
+					Leg leg = pf.createLeg(TransportMode.car);
+					NetworkRoute route = RouteUtils.createLinkNetworkRouteImpl(linkIds.get(0), linkIds.subList(1, linkIds.size() - 1),
+							linkIds.get(linkIds.size() - 1));
+					leg.setRoute(route);
+					plan.addLeg(leg);
+					plan.addActivity(pf.createActivityFromLinkId("w", linkIds.get(linkIds.size() - 1)));
+					person.addPlan(plan);
+					scenario.getPopulation().addPerson(person);
+				}
+			}
+		}
+		return scenario;
+	}
+
+	private static void addLink(final Network network, final Node from, final Node to) {
+		Link link = network.getFactory().createLink(Id.createLinkId(from.getId() + "-" + to.getId()), from, to);
+		link.setLength(100.0);
+		link.setFreespeed(10.0);
+		link.setCapacity(600.0);
+		link.setNumberOfLanes(1.0);
+		network.addLink(link);
+	}
+
+}
@@ -0,0 +1,273 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * QueueWithBufferCompactQueuesTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Provider;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.NetworkFactory;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.api.experimental.events.EventsManager;
+import org.matsim.core.api.experimental.events.VehicleArrivesAtFacilityEvent;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.QSimConfigGroup.LinkDynamics;
+import org.matsim.core.config.groups.QSimConfigGroup.TrafficDynamics;
+import org.matsim.core.controler.AbstractModule;
+import org.matsim.core.controler.Injector;
+import org.matsim.core.controler.PrepareForSimUtils;
+import org.matsim.core.events.EventsManagerModule;
+import org.matsim.core.gbl.MatsimRandom;
+import org.matsim.core.mobsim.DefaultMobsimModule;
+import org.matsim.core.mobsim.framework.Mobsim;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.scenario.ScenarioByInstanceModule;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.testcases.utils.EventsCollector;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleCapacity;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.Vehicles;
+
+public class QueueWithBufferCompactQueuesTest {
+
+	@Test
+	public void testSameEventsAsQueueWithBuffer_queue() {
+		assertSameEvents(TrafficDynamics.queue, true);
+		assertSameEvents(TrafficDynamics.queue, false);
+	}
+
+	@Test
+	public void testSameEventsAsQueueWithBuffer_withHoles() {
+		assertSameEvents(TrafficDynamics.withHoles, true);
+	}
+
+	@Test
+	public void testSameEventsAsQueueWithBuffer_kinematicWaves() {
+		assertSameEvents(TrafficDynamics.kinematicWaves, true);
+	}
+
+	@Test
+	public void testSameEventsAsQueueWithBuffer_passing() {
+		assertSameEvents(TrafficDynamics.queue, true, LinkDynamics.PassingQ, false);
+	}
+
+	/**
+	 * Buses which wait at their stops for their departure time, which increases the exit time of vehicles already in
+	 * the compact queue, and which are put in front of the queue again after non-blocking stops.
+	 */
+	@Test
+	public void testSameEventsAsQueueWithBuffer_transit() {
+		assertSameEvents(TrafficDynamics.queue, true, LinkDynamics.FIFO, true);
+	}
+
+	private static void assertSameEvents(final TrafficDynamics trafficDynamics, final boolean usingFastCapacityUpdate) {
+		assertSameEvents(trafficDynamics, usingFastCapacityUpdate, LinkDynamics.FIFO, false);
+	}
+
+	private static void assertSameEvents(final TrafficDynamics trafficDynamics, final boolean usingFastCapacityUpdate,
+			final LinkDynamics linkDynamics, final boolean withTransit) {
+		Scenario scenario = createScenario(trafficDynamics, usingFastCapacityUpdate, withTransit);
+		scenario.getConfig().qsim().setLinkDynamics(linkDynamics);
+		List<String> expected = runQSim(scenario, false);
+		scenario = createScenario(trafficDynamics, usingFastCapacityUpdate, withTransit);
+		scenario.getConfig().qsim().setLinkDynamics(linkDynamics);
+		List<String> events = runQSim(scenario, true);
+		Assert.assertTrue(expected.size() > 1000);
+		if (withTransit) {
+			int stopEvents = 0;
+			for (String event : expected) {
+				if (event.contains("type=\"" + VehicleArrivesAtFacilityEvent.EVENT_TYPE + "\"")) {
+					stopEvents++;
+				}
+			}
+			Assert.assertEquals(60, stopEvents);
+		}
+		Assert.assertEquals(expected, events);
+	}
+
+	private static List<String> runQSim(final Scenario scenario, final boolean usingCompactQueues) {
+		// the nodes choose randomly between their in-links, so both runs need the same random numbers:
+		MatsimRandom.reset();
+		Collection<AbstractModule> defaultsModules = new ArrayList<>() ;
+		defaultsModules.add( new ScenarioByInstanceModule( scenario ) ) ;
+		defaultsModules.add( new EventsManagerModule() ) ;
+		defaultsModules.add( new DefaultMobsimModule() ) ;
+
+		AbstractModule overrides = new AbstractModule() {
+			@Override public void install() {
+				bind( QNetworkFactory.class ).toProvider( new Provider<QNetworkFactory>(){
+					@Inject private EventsManager events ;
+					@Override public QNetworkFactory get() {
+						final ConfigurableQNetworkFactory factory = new ConfigurableQNetworkFactory( events, scenario ) ;
+						factory.setUsingCompactQueues( usingCompactQueues );
+						return factory ;
+					}
+				} ) ;
+			}
+		} ;
+
+		com.google.inject.Injector injector = Injector.createInjector(scenario.getConfig(), AbstractModule.override( defaultsModules, overrides ) ) ;
+		EventsManager eventsManager = injector.getInstance( EventsManager.class ) ;
+		eventsManager.initProcessing();
+		EventsCollector collector = new EventsCollector();
+		eventsManager.addHandler(collector);
+
+		PrepareForSimUtils.createDefaultPrepareForSim(scenario).run();
+		injector.getInstance( Mobsim.class ).run();
+
+		List<String> events = new ArrayList<>();
+		for (Event event : collector.getEvents()) {
+			events.add(event.toString());
+		}
+		return events;
+	}
+
+	/**
+	 * Two streams of vehicles which merge before a bottleneck, so that the queues spill back onto the upstream links.
+	 */
+	private static Scenario createScenario(final TrafficDynamics trafficDynamics, final boolean usingFastCapacityUpdate,
+			final boolean withTransit) {
+		Config config = ConfigUtils.createConfig();
+		config.transit().setUseTransit(withTransit);
+		config.qsim().setTrafficDynamics(trafficDynamics);
+		config.qsim().setUsingFastCapacityUpdate(usingFastCapacityUpdate);
+		config.qsim().setEndTime(12 * 3600);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+
+		Network network = scenario.getNetwork();
+		NetworkFactory nf = network.getFactory();
+		double[][] coords = {{0, 0}, {0, 1000}, {1000, 500}, {2000, 500}, {3000, 500}, {4000, 500}};
+		Node[] nodes = new Node[coords.length];
+		for (int i = 0; i < coords.length; i++) {
+			nodes[i] = nf.createNode(Id.createNodeId(i), new Coord(coords[i][0], coords[i][1]));
+			network.addNode(nodes[i]);
+		}
+		addLink(network, "a", nodes[0], nodes[2], 3600.);
+		addLink(network, "b", nodes[1], nodes[2], 3600.);
+		addLink(network, "c", nodes[2], nodes[3], 3600.);
+		addLink(network, "d", nodes[3], nodes[4], 600.);
+		addLink(network, "e", nodes[4], nodes[5], 3600.);
+
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		for (int p = 0; p < 200; p++) {
+			String start = p % 2 == 0 ? "a" : "b";
+			Person person = pf.createPerson(Id.createPersonId(p));
+			Plan plan = pf.createPlan();
+			Activity home = pf.createActivityFromLinkId("h", Id.createLinkId(start));
+			home.setCoord(new Coord(0, 0));
+			home.setEndTime(6 * 3600 + p);
+			plan.addActivity(home);
+			Leg leg = pf.createLeg(TransportMode.car);
+			List<Id<Link>> linkIds = new ArrayList<>();
+			linkIds.add(Id.createLinkId("c"));
+			linkIds.add(Id.createLinkId("d"));
+			leg.setRoute(RouteUtils.createLinkNetworkRouteImpl(Id.createLinkId(start), linkIds, Id.createLinkId("e")));
+			plan.addLeg(leg);
+			Activity work = pf.createActivityFromLinkId("w", Id.createLinkId("e"));
+			work.setCoord(new Coord(4000, 500));
+			plan.addActivity(work);
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+		if (withTransit) {
+			addBusLine(scenario);
+		}
+		return scenario;
+	}
+
+	/**
+	 * A bus every two minutes along a, c, d and e, with a blocking stop on c and a non-blocking one on d. The buses
+	 * arrive early at both stops, so they wait for their departure time.
+	 */
+	private static void addBusLine(final Scenario scenario) {
+		TransitSchedule schedule = scenario.getTransitSchedule();
+		TransitScheduleFactory sf = schedule.getFactory();
+		TransitStopFacility stopC = sf.createTransitStopFacility(Id.create("c", TransitStopFacility.class), new Coord(2000, 500), true);
+		stopC.setLinkId(Id.createLinkId("c"));
+		schedule.addStopFacility(stopC);
+		TransitStopFacility stopD = sf.createTransitStopFacility(Id.create("d", TransitStopFacility.class), new Coord(3000, 500), false);
+		stopD.setLinkId(Id.createLinkId("d"));
+		schedule.addStopFacility(stopD);
+		List<Id<Link>> linkIds = new ArrayList<>();
+		linkIds.add(Id.createLinkId("c"));
+		linkIds.add(Id.createLinkId("d"));
+		NetworkRoute route = RouteUtils.createLinkNetworkRouteImpl(Id.createLinkId("a"), linkIds, Id.createLinkId("e"));
+		List<TransitRouteStop> stops = new ArrayList<>();
+		stops.add(sf.createTransitRouteStop(stopC, 120, 180));
+		stops.add(sf.createTransitRouteStop(stopD, 300, 330));
+		TransitRoute transitRoute = sf.createTransitRoute(Id.create("1", TransitRoute.class), route, stops, "bus");
+		TransitLine line = sf.createTransitLine(Id.create("1", TransitLine.class));
+		line.addRoute(transitRoute);
+		schedule.addTransitLine(line);
+
+		Vehicles vehicles = scenario.getTransitVehicles();
+		VehicleType type = vehicles.getFactory().createVehicleType(Id.create("bus", VehicleType.class));
+		VehicleCapacity capacity = vehicles.getFactory().createVehicleCapacity();
+		capacity.setSeats(50);
+		capacity.setStandingRoom(0);
+		type.setCapacity(capacity);
+		vehicles.addVehicleType(type);
+		for (int i = 0; i < 30; i++) {
+			Departure departure = sf.createDeparture(Id.create(i, Departure.class), 6 * 3600 + i * 120);
+			Vehicle vehicle = vehicles.getFactory().createVehicle(Id.create("bus" + i, Vehicle.class), type);
+			vehicles.addVehicle(vehicle);
+			departure.setVehicleId(vehicle.getId());
+			transitRoute.addDeparture(departure);
+		}
+	}
+
+	private static void addLink(final Network network, final String id, final Node from, final Node to, final double capacity) {
+		Link link = network.getFactory().createLink(Id.createLinkId(id), from, to);
+		link.setLength(1000.0);
+		link.setFreespeed(15.0);
+		link.setCapacity(capacity);
+		link.setNumberOfLanes(1.0);
+		network.addLink(link);
+	}
+
+}
@@ -0,0 +1,98 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactFIFOVehicleQTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.mobsim.qsim.qnetsimengine.vehicleq;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Id;
+import org.matsim.core.mobsim.qsim.qnetsimengine.QVehicle;
+import org.matsim.vehicles.Vehicle;
+import org.matsim.vehicles.VehicleImpl;
+import org.matsim.vehicles.VehicleType;
+import org.matsim.vehicles.VehicleTypeImpl;
+
+public class CompactFIFOVehicleQTest {
+
+	/**
+	 * Applies the same random operations to the compact queue and to a deque, so that the ring buffers wrap around and
+	 * grow, and the indices of the vehicle table are reused.
+	 */
+	@Test
+	public void testSameOrderAsDeque() {
+		VehicleType type = new VehicleTypeImpl(Id.create("type", VehicleType.class));
+		CompactFIFOVehicleQ queue = new CompactFIFOVehicleQ();
+		ArrayDeque<QVehicle> expected = new ArrayDeque<>();
+		Random random = new Random(4711);
+		int count = 0;
+		for (int step = 0; step < 10000; step++) {
+			int operation = random.nextInt(10);
+			if (operation < 4) {
+				QVehicle veh = new QVehicle(new VehicleImpl(Id.create(count++, Vehicle.class), type));
+				veh.setEarliestLinkExitTime(step);
+				queue.add(veh);
+				expected.add(veh);
+			} else if (operation < 5) {
+				QVehicle veh = new QVehicle(new VehicleImpl(Id.create(count++, Vehicle.class), type));
+				veh.setEarliestLinkExitTime(step);
+				queue.addFirst(veh);
+				expected.addFirst(veh);
+			} else if (operation < 8) {
+				Assert.assertSame(expected.poll(), queue.poll());
+			} else if (!expected.isEmpty()) {
+				List<QVehicle> vehicles = new ArrayList<>(expected);
+				QVehicle veh = vehicles.get(random.nextInt(vehicles.size()));
+				Assert.assertTrue(queue.remove(veh));
+				expected.remove(veh);
+			}
+			Assert.assertEquals(expected.size(), queue.size());
+			Assert.assertSame(expected.peek(), queue.peek());
+			Assert.assertEquals(expected.isEmpty() ? Double.POSITIVE_INFINITY : expected.peek().getEarliestLinkExitTime(),
+					queue.getEarliestLinkExitTimeOfFirst(), 0.0);
+			if (step % 100 == 0) {
+				Assert.assertEquals(new ArrayList<>(expected), new ArrayList<>(queue));
+			}
+		}
+		queue.clear();
+		Assert.assertTrue(queue.isEmpty());
+		Assert.assertNull(queue.poll());
+	}
+
+	/**
+	 * The exit time in the ring buffer is the one of the time the vehicle was added, a lower bound.
+	 */
+	@Test
+	public void testExitTimeIsLowerBound() {
+		VehicleType type = new VehicleTypeImpl(Id.create("type", VehicleType.class));
+		CompactFIFOVehicleQ queue = new CompactFIFOVehicleQ();
+		QVehicle veh = new QVehicle(new VehicleImpl(Id.create(1, Vehicle.class), type));
+		veh.setEarliestLinkExitTime(100.0);
+		queue.add(veh);
+		veh.setEarliestLinkExitTime(130.0);
+		Assert.assertEquals(100.0, queue.getEarliestLinkExitTimeOfFirst(), 0.0);
+		Assert.assertEquals(130.0, queue.peek().getEarliestLinkExitTime(), 0.0);
+	}
+
+}
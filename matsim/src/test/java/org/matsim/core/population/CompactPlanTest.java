@@ -0,0 +1,264 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactPlanTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.PlanElement;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.io.PopulationWriter;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.vehicles.Vehicle;
+
+public class CompactPlanTest {
+
+	@Test
+	public void testNonSelectedPlansAreCompactedAndRestored() {
+		Population population = createPopulation(true);
+		PopulationFactory pf = population.getFactory();
+		Person person = pf.createPerson(Id.createPersonId(1));
+		Plan plan1 = createPlan(pf, 0);
+		Plan plan2 = createPlan(pf, 1);
+		person.addPlan(plan1);
+		person.addPlan(plan2);
+		plan2.setScore(12.5);
+		plan2.setType("second");
+		((Activity) plan2.getPlanElements().get(2)).setCoord(new Coord(5000.0, 200.0, 12.0));
+		population.addPerson(person);
+
+		Assert.assertSame(plan1, person.getSelectedPlan());
+		Assert.assertFalse(((CompactPlan) plan1).isCompact());
+		Assert.assertTrue(((CompactPlan) plan2).isCompact());
+		// plan selection does not need to materialize the plan:
+		Assert.assertEquals(12.5, plan2.getScore(), 0.0);
+		Assert.assertEquals("second", plan2.getType());
+		Assert.assertSame(person, plan2.getPerson());
+		Assert.assertTrue(((CompactPlan) plan2).isCompact());
+
+		person.setSelectedPlan(plan2);
+		Assert.assertTrue(((CompactPlan) plan1).isCompact());
+		assertPlanElements(plan2, 1);
+		Assert.assertFalse(((CompactPlan) plan2).isCompact());
+		Assert.assertEquals(new Coord(5000.0, 200.0, 12.0), ((Activity) plan2.getPlanElements().get(2)).getCoord());
+		assertPlanElements(plan1, 0);
+	}
+
+	@Test
+	public void testCopyOfSelectedPlan() {
+		Population population = createPopulation(true);
+		PopulationFactory pf = population.getFactory();
+		Person person = pf.createPerson(Id.createPersonId(1));
+		Plan plan = createPlan(pf, 0);
+		person.addPlan(plan);
+		population.addPerson(person);
+
+		Plan copy = person.createCopyOfSelectedPlanAndMakeSelected();
+		Assert.assertTrue(copy instanceof CompactPlan);
+		Assert.assertTrue(((CompactPlan) plan).isCompact());
+		assertPlanElements(copy, 0);
+		assertPlanElements(plan, 0);
+	}
+
+	@Test
+	public void testReadingDoesNotMaterialize() {
+		Population population = createPopulation(true);
+		PopulationFactory pf = population.getFactory();
+		Person person = pf.createPerson(Id.createPersonId(1));
+		person.addPlan(createPlan(pf, 0));
+		Plan plan = createPlan(pf, 1);
+		person.addPlan(plan);
+		population.addPerson(person);
+		Assert.assertTrue(((CompactPlan) plan).isCompact());
+
+		Plan copy = PopulationUtils.createPlan();
+		PopulationUtils.copyFromTo(plan, copy);
+		Assert.assertTrue(((CompactPlan) plan).isCompact());
+		assertPlanElements(copy, 1);
+
+		new PopulationWriter(population).write(new ByteArrayOutputStream());
+		Assert.assertTrue(((CompactPlan) plan).isCompact());
+
+		// a writer materializes the plan while writing it, but compacts it again afterwards:
+		assertPlanElements(plan, 1);
+		Assert.assertFalse(((CompactPlan) plan).isCompact());
+		PopulationUtils.compactNonSelectedPlans(person);
+		Assert.assertTrue(((CompactPlan) plan).isCompact());
+	}
+
+	@Test
+	public void testConcurrentMaterialization() throws InterruptedException {
+		Population population = createPopulation(true);
+		PopulationFactory pf = population.getFactory();
+		final Person person = pf.createPerson(Id.createPersonId(1));
+		person.addPlan(createPlan(pf, 0));
+		final Plan plan = createPlan(pf, 1);
+		person.addPlan(plan);
+		population.addPerson(person);
+
+		for (int round = 0; round < 100; round++) {
+			Assert.assertTrue(((CompactPlan) plan).isCompact());
+			final List<List<PlanElement>> elements = Collections.synchronizedList(new ArrayList<List<PlanElement>>());
+			Thread[] threads = new Thread[4];
+			for (int i = 0; i < threads.length; i++) {
+				threads[i] = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						elements.add(plan.getPlanElements());
+					}
+				});
+				threads[i].start();
+			}
+			for (Thread thread : threads) {
+				thread.join();
+			}
+			// all threads see the same materialized plan:
+			for (List<PlanElement> list : elements) {
+				Assert.assertSame(elements.get(0), list);
+			}
+			assertPlanElements(plan, 1);
+			PopulationUtils.compactNonSelectedPlans(person);
+		}
+	}
+
+	@Test
+	public void testPlansWithAttributesAreNotCompacted() {
+		Population population = createPopulation(true);
+		PopulationFactory pf = population.getFactory();
+		Person person = pf.createPerson(Id.createPersonId(1));
+		person.addPlan(createPlan(pf, 0));
+		Plan plan = createPlan(pf, 1);
+		((Activity) plan.getPlanElements().get(0)).getAttributes().putAttribute("a", "b");
+		person.addPlan(plan);
+		population.addPerson(person);
+
+		Assert.assertFalse(((CompactPlan) plan).isCompact());
+		Assert.assertEquals("b", ((Activity) plan.getPlanElements().get(0)).getAttributes().getAttribute("a"));
+	}
+
+	@Test
+	public void testDefaultIsNotCompacting() {
+		Population population = createPopulation(false);
+		Assert.assertFalse(population.getFactory().createPlan() instanceof CompactPlan);
+	}
+
+	private static Population createPopulation(final boolean compacting) {
+		Config config = ConfigUtils.createConfig();
+		config.plans().setCompactingNonSelectedPlans(compacting);
+		return PopulationUtils.createPopulation(config);
+	}
+
+	private static Plan createPlan(final PopulationFactory pf, final int variant) {
+		Plan plan = pf.createPlan();
+		Activity home = pf.createActivityFromCoord("home", new Coord(100.0 + variant, 200.0));
+		home.setLinkId(Id.createLinkId("1"));
+		home.setEndTime(6 * 3600 + variant);
+		plan.addActivity(home);
+
+		Leg car = pf.createLeg(TransportMode.car);
+		car.setDepartureTime(6 * 3600 + variant);
+		car.setTravelTime(600.25);
+		NetworkRoute route = pf.getRouteFactories().createRoute(NetworkRoute.class, Id.createLinkId("1"), Id.createLinkId("4"));
+		route.setLinkIds(Id.createLinkId("1"), Arrays.asList(Id.createLinkId("2"), Id.createLinkId("3")), Id.createLinkId("4"));
+		route.setDistance(2500.0);
+		route.setTravelTime(600.25);
+		route.setTravelCost(3.5);
+		route.setVehicleId(Id.createVehicleId("car1"));
+		car.setRoute(route);
+		plan.addLeg(car);
+
+		Activity work = pf.createActivityFromLinkId("work", Id.createLinkId("4"));
+		work.setCoord(new Coord(5000.0, 200.0));
+		work.setStartTime(6 * 3600 + 600.25);
+		work.setMaximumDuration(8 * 3600);
+		plan.addActivity(work);
+
+		Leg walk = pf.createLeg(TransportMode.walk);
+		Route walkRoute = pf.getRouteFactories().createRoute(Route.class, Id.createLinkId("4"), Id.createLinkId("1"));
+		walkRoute.setDistance(3000.0);
+		walkRoute.setTravelTime(2400.0);
+		walk.setRoute(walkRoute);
+		plan.addLeg(walk);
+
+		plan.addActivity(pf.createActivityFromLinkId("home", Id.createLinkId("1")));
+		return plan;
+	}
+
+	private static void assertPlanElements(final Plan plan, final int variant) {
+		Assert.assertEquals(5, plan.getPlanElements().size());
+
+		Activity home = (Activity) plan.getPlanElements().get(0);
+		Assert.assertEquals("home", home.getType());
+		Assert.assertEquals(new Coord(100.0 + variant, 200.0), home.getCoord());
+		Assert.assertEquals(Id.createLinkId("1"), home.getLinkId());
+		Assert.assertNull(home.getFacilityId());
+		Assert.assertEquals(Time.UNDEFINED_TIME, home.getStartTime(), 0.0);
+		Assert.assertEquals(6 * 3600 + variant, home.getEndTime(), 0.0);
+
+		Leg car = (Leg) plan.getPlanElements().get(1);
+		Assert.assertEquals(TransportMode.car, car.getMode());
+		Assert.assertEquals(6 * 3600 + variant, car.getDepartureTime(), 0.0);
+		Assert.assertEquals(600.25, car.getTravelTime(), 0.0);
+		NetworkRoute route = (NetworkRoute) car.getRoute();
+		Assert.assertEquals(Id.createLinkId("1"), route.getStartLinkId());
+		Assert.assertEquals(Arrays.asList(Id.createLinkId("2"), Id.createLinkId("3")), route.getLinkIds());
+		Assert.assertEquals(Id.createLinkId("4"), route.getEndLinkId());
+		Assert.assertEquals(2500.0, route.getDistance(), 0.0);
+		Assert.assertEquals(600.25, route.getTravelTime(), 0.0);
+		Assert.assertEquals(3.5, route.getTravelCost(), 0.0);
+		Assert.assertEquals(Id.create("car1", Vehicle.class), route.getVehicleId());
+
+		Activity work = (Activity) plan.getPlanElements().get(2);
+		Assert.assertEquals(5000.0, work.getCoord().getX(), 0.0);
+		Assert.assertEquals(6 * 3600 + 600.25, work.getStartTime(), 0.0);
+		Assert.assertEquals(Time.UNDEFINED_TIME, work.getEndTime(), 0.0);
+		Assert.assertEquals(8 * 3600, work.getMaximumDuration(), 0.0);
+
+		Leg walk = (Leg) plan.getPlanElements().get(3);
+		Assert.assertEquals(TransportMode.walk, walk.getMode());
+		Assert.assertEquals(Time.UNDEFINED_TIME, walk.getDepartureTime(), 0.0);
+		Assert.assertEquals(Id.createLinkId("4"), walk.getRoute().getStartLinkId());
+		Assert.assertEquals(Id.createLinkId("1"), walk.getRoute().getEndLinkId());
+		Assert.assertEquals(3000.0, walk.getRoute().getDistance(), 0.0);
+		Assert.assertEquals(2400.0, walk.getRoute().getTravelTime(), 0.0);
+
+		Assert.assertEquals("home", ((Activity) plan.getPlanElements().get(4)).getType());
+		Assert.assertEquals(Id.createLinkId("1"), ((Activity) plan.getPlanElements().get(4)).getLinkId());
+	}
+
+}
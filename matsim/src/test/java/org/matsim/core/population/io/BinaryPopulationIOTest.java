@@ -0,0 +1,213 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * BinaryPopulationIOTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.population.io;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.population.Activity;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.api.core.v01.population.Route;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.algorithms.PersonAlgorithm;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.misc.CRCChecksum;
+import org.matsim.facilities.ActivityFacility;
+import org.matsim.pt.routes.ExperimentalTransitRoute;
+import org.matsim.run.ConvertPopulationFormat;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class BinaryPopulationIOTest {
+
+	@Rule
+	public final MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testRoundTripInSeveralChunksAndThreads() {
+		Population population = createPopulation(25);
+		String xmlFile = this.utils.getOutputDirectory() + "population.xml";
+		String binaryFile = this.utils.getOutputDirectory() + "population.bin";
+		String xmlFromBinaryFile = this.utils.getOutputDirectory() + "population_from_binary.xml";
+
+		new PopulationWriter(population).writeV6(xmlFile);
+		BinaryPopulationWriter writer = new BinaryPopulationWriter(population);
+		writer.setNumberOfThreads(3);
+		writer.setChunkSize(4);
+		writer.write(binaryFile);
+
+		Assert.assertTrue(BinaryPopulationReader.isBinaryPopulationFile(binaryFile));
+		Assert.assertFalse(BinaryPopulationReader.isBinaryPopulationFile(xmlFile));
+
+		Config config = ConfigUtils.createConfig();
+		config.global().setNumberOfThreads(2);
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		new PopulationReader(scenario).readFile(binaryFile);
+		Assert.assertEquals(25, scenario.getPopulation().getPersons().size());
+		Assert.assertEquals("test population", scenario.getPopulation().getName());
+		Assert.assertEquals(42, scenario.getPopulation().getAttributes().getAttribute("answer"));
+
+		Person person = scenario.getPopulation().getPersons().get(Id.createPersonId(3));
+		Assert.assertEquals(Boolean.TRUE, person.getAttributes().getAttribute("carAvail"));
+		Assert.assertSame(person.getPlans().get(1), person.getSelectedPlan());
+		Assert.assertNull(person.getPlans().get(0).getScore());
+		Assert.assertEquals(1.5, person.getPlans().get(1).getScore(), 0.0);
+		Activity work = (Activity) person.getSelectedPlan().getPlanElements().get(2);
+		Assert.assertEquals(-5.0, work.getCoord().getZ(), 0.0);
+		Assert.assertEquals(Id.create("f3", ActivityFacility.class), work.getFacilityId());
+		Assert.assertEquals(8 * 3600 + 0.25, work.getStartTime(), 0.0);
+		NetworkRoute route = (NetworkRoute) ((Leg) person.getSelectedPlan().getPlanElements().get(1)).getRoute();
+		Assert.assertEquals(Arrays.asList(Id.createLinkId("4"), Id.createLinkId("5"), Id.createLinkId("3")), route.getLinkIds());
+		Assert.assertEquals(Id.create("car3", Vehicle.class), route.getVehicleId());
+
+		new PopulationWriter(scenario.getPopulation()).writeV6(xmlFromBinaryFile);
+		Assert.assertEquals(CRCChecksum.getCRCFromFile(xmlFile), CRCChecksum.getCRCFromFile(xmlFromBinaryFile));
+	}
+
+	@Test
+	public void testConverter() {
+		String xmlFile = this.utils.getOutputDirectory() + "population.xml.gz";
+		String binaryFile = this.utils.getOutputDirectory() + "population.bin";
+		String convertedXmlFile = this.utils.getOutputDirectory() + "population_converted.xml.gz";
+		new PopulationWriter(createPopulation(10)).writeV6(xmlFile);
+
+		ConvertPopulationFormat.main(new String[] {xmlFile, binaryFile, "2"});
+		Assert.assertTrue(BinaryPopulationReader.isBinaryPopulationFile(binaryFile));
+		ConvertPopulationFormat.main(new String[] {binaryFile, convertedXmlFile});
+		Assert.assertFalse(BinaryPopulationReader.isBinaryPopulationFile(convertedXmlFile));
+
+		Assert.assertEquals(CRCChecksum.getCRCFromFile(xmlFile), CRCChecksum.getCRCFromFile(convertedXmlFile));
+	}
+
+	@Test
+	public void testParseUrl() throws MalformedURLException {
+		String xmlFile = this.utils.getOutputDirectory() + "population.xml.gz";
+		String binaryFile = this.utils.getOutputDirectory() + "population.bin";
+		new PopulationWriter(createPopulation(10)).writeV6(xmlFile);
+		new BinaryPopulationWriter(createPopulation(10)).write(binaryFile);
+
+		for (String file : new String[] {xmlFile, binaryFile}) {
+			Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+			new PopulationReader(scenario).parse(new File(file).toURI().toURL());
+			Assert.assertEquals(10, scenario.getPopulation().getPersons().size());
+			Assert.assertEquals("test population", scenario.getPopulation().getName());
+		}
+	}
+
+	@Test
+	public void testStreamingReader() {
+		String binaryFile = this.utils.getOutputDirectory() + "population.bin";
+		new BinaryPopulationWriter(createPopulation(10)).write(binaryFile);
+
+		final List<Id<Person>> personIds = new ArrayList<>();
+		StreamingPopulationReader reader = new StreamingPopulationReader(ScenarioUtils.createScenario(ConfigUtils.createConfig()));
+		reader.addAlgorithm(new PersonAlgorithm() {
+			@Override
+			public void run(Person person) {
+				personIds.add(person.getId());
+			}
+		});
+		reader.readFile(binaryFile);
+		Assert.assertEquals(10, personIds.size());
+	}
+
+	private static Population createPopulation(final int nOfPersons) {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Population population = scenario.getPopulation();
+		population.setName("test population");
+		population.getAttributes().putAttribute("answer", 42);
+		PopulationFactory pf = population.getFactory();
+		for (int i = 0; i < nOfPersons; i++) {
+			Person person = pf.createPerson(Id.createPersonId(i));
+			person.getAttributes().putAttribute("carAvail", i % 2 == 1);
+			for (int p = 0; p < 2; p++) {
+				Plan plan = pf.createPlan();
+				if (p == 1) {
+					plan.setScore(i * 0.5);
+					plan.setType("variant");
+					plan.getAttributes().putAttribute("innovated", "yes");
+				}
+				Activity home = pf.createActivityFromLinkId("home", Id.createLinkId(i % 5));
+				home.setCoord(new Coord(100.0 * i, 200.0));
+				home.setEndTime(7 * 3600 + 60 * i);
+				home.getAttributes().putAttribute("rooms", 3L);
+				plan.addActivity(home);
+
+				Leg car = pf.createLeg(TransportMode.car);
+				car.setDepartureTime(7 * 3600 + 60 * i);
+				car.setTravelTime(900.5);
+				car.getAttributes().putAttribute("comfort", 0.75);
+				NetworkRoute route = pf.getRouteFactories().createRoute(NetworkRoute.class, Id.createLinkId(i % 5), Id.createLinkId(9));
+				route.setLinkIds(Id.createLinkId(i % 5), Arrays.asList(Id.createLinkId(i % 5 + 1), Id.createLinkId(5), Id.createLinkId(i % 5)), Id.createLinkId(9));
+				route.setDistance(1234.5 + i);
+				route.setTravelTime(900.5);
+				route.setTravelCost(2.0);
+				route.setVehicleId(Id.create("car" + i, Vehicle.class));
+				car.setRoute(route);
+				plan.addLeg(car);
+
+				Activity work = pf.createActivityFromCoord("work", new Coord(5000.0, 100.0 * p, -5.0));
+				work.setLinkId(Id.createLinkId(9));
+				work.setFacilityId(Id.create("f" + i, ActivityFacility.class));
+				work.setStartTime(8 * 3600 + 0.25);
+				work.setMaximumDuration(8 * 3600);
+				plan.addActivity(work);
+
+				Leg pt = pf.createLeg(TransportMode.pt);
+				ExperimentalTransitRoute transitRoute = pf.getRouteFactories().createRoute(ExperimentalTransitRoute.class, Id.createLinkId(9), Id.createLinkId(0));
+				transitRoute.setRouteDescription("PT1===stop9===line1===route1===stop0");
+				transitRoute.setDistance(4000.0);
+				pt.setRoute(transitRoute);
+				plan.addLeg(pt);
+				plan.addActivity(pf.createActivityFromLinkId("pt interaction", Id.createLinkId(0)));
+
+				Leg walk = pf.createLeg(TransportMode.walk);
+				Route walkRoute = pf.getRouteFactories().createRoute(Route.class, Id.createLinkId(0), Id.createLinkId(i % 5));
+				walkRoute.setTravelTime(300.0);
+				walk.setRoute(walkRoute);
+				plan.addLeg(walk);
+
+				plan.addActivity(pf.createActivityFromLinkId("home", Id.createLinkId(i % 5)));
+				person.addPlan(plan);
+			}
+			person.setSelectedPlan(person.getPlans().get(i % 2));
+			population.addPerson(person);
+		}
+		return population;
+	}
+
+}
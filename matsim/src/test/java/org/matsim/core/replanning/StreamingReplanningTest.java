@@ -0,0 +1,161 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * StreamingReplanningTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.replanning;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.api.core.v01.population.Plan;
+import org.matsim.api.core.v01.population.Population;
+import org.matsim.api.core.v01.population.PopulationFactory;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.algorithms.PersonAlgorithm;
+import org.matsim.core.population.io.PopulationReader;
+import org.matsim.core.population.io.PopulationWriter;
+import org.matsim.core.replanning.selectors.BestPlanSelector;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class StreamingReplanningTest {
+
+	@Rule
+	public MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testReplanningInChunks() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		for (int i = 0; i < 10; i++) {
+			Person person = pf.createPerson(Id.createPersonId(i));
+			for (int j = 0; j < 2; j++) {
+				Plan plan = pf.createPlan();
+				plan.addActivity(pf.createActivityFromCoord("home", new Coord(i, j)));
+				// the second plan is better for persons with an odd id
+				plan.setScore((i % 2 == j) ? 10.0 : 5.0);
+				person.addPlan(plan);
+			}
+			scenario.getPopulation().addPerson(person);
+		}
+		String inputFile = this.utils.getOutputDirectory() + "input_plans.xml";
+		String outputFile = this.utils.getOutputDirectory() + "output_plans.xml";
+		new PopulationWriter(scenario.getPopulation()).write(inputFile);
+
+		final List<Integer> chunkSizes = new ArrayList<>();
+		StrategyManager manager = new StrategyManager() {
+			@Override
+			protected void beforePopulationRunHook(Population population, ReplanningContext replanningContext) {
+				chunkSizes.add(population.getPersons().size());
+			}
+		};
+		manager.addStrategyForDefaultSubpopulation(new PlanStrategyImpl(new BestPlanSelector<Plan, Person>()), 1.0);
+
+		final List<Id<Person>> prepared = new ArrayList<>();
+		StreamingReplanning replanning = new StreamingReplanning(scenario, manager, 3);
+		replanning.addPreparatoryAlgorithm(new PersonAlgorithm() {
+			@Override
+			public void run(Person person) {
+				prepared.add(person.getId());
+			}
+		});
+		replanning.run(inputFile, outputFile, new ReplanningContext() {
+			@Override
+			public int getIteration() {
+				return 1;
+			}
+		});
+
+		Assert.assertEquals(4, chunkSizes.size());
+		Assert.assertEquals(3, chunkSizes.get(0).intValue());
+		Assert.assertEquals(1, chunkSizes.get(3).intValue());
+		Assert.assertEquals(10, prepared.size());
+
+		Scenario result = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new PopulationReader(result).readFile(outputFile);
+		Assert.assertEquals(10, result.getPopulation().getPersons().size());
+		for (Person person : result.getPopulation().getPersons().values()) {
+			Assert.assertEquals(2, person.getPlans().size());
+			Assert.assertEquals(10.0, person.getSelectedPlan().getScore(), 0.0);
+		}
+	}
+
+	@Test
+	public void testFailingStrategyStopsReader() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		PopulationFactory pf = scenario.getPopulation().getFactory();
+		for (int i = 0; i < 20; i++) {
+			Person person = pf.createPerson(Id.createPersonId(i));
+			Plan plan = pf.createPlan();
+			plan.addActivity(pf.createActivityFromCoord("home", new Coord(i, 0)));
+			person.addPlan(plan);
+			scenario.getPopulation().addPerson(person);
+		}
+		String inputFile = this.utils.getOutputDirectory() + "input_plans.xml";
+		new PopulationWriter(scenario.getPopulation()).write(inputFile);
+
+		StrategyManager manager = new StrategyManager() {
+			private int chunks = 0;
+			@Override
+			protected void beforePopulationRunHook(Population population, ReplanningContext replanningContext) {
+				if (++this.chunks == 2) {
+					throw new IllegalStateException("crash");
+				}
+			}
+		};
+		manager.addStrategyForDefaultSubpopulation(new PlanStrategyImpl(new BestPlanSelector<Plan, Person>()), 1.0);
+		try {
+			new StreamingReplanning(scenario, manager, 1).run(inputFile, this.utils.getOutputDirectory() + "output_plans.xml",
+					new ReplanningContext() {
+						@Override
+						public int getIteration() {
+							return 1;
+						}
+					});
+			Assert.fail("expected exception, but got none.");
+		} catch (IllegalStateException e) {
+			Assert.assertEquals("crash", e.getMessage());
+		}
+		for (Thread thread : Thread.getAllStackTraces().keySet()) {
+			Assert.assertFalse(thread.getName().startsWith("StreamingReplanning"));
+		}
+	}
+
+	@Test(expected = RuntimeException.class)
+	public void testMissingInputFile() {
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		StrategyManager manager = new StrategyManager();
+		manager.addStrategyForDefaultSubpopulation(new PlanStrategyImpl(new BestPlanSelector<Plan, Person>()), 1.0);
+		new StreamingReplanning(scenario, manager, 3).run(this.utils.getOutputDirectory() + "does_not_exist.xml",
+				this.utils.getOutputDirectory() + "output_plans.xml", new ReplanningContext() {
+					@Override
+					public int getIteration() {
+						return 1;
+					}
+				});
+	}
+
+}
@@ -20,13 +20,21 @@
 
 package org.matsim.core.replanning.modules;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.apache.log4j.Logger;
 import org.junit.Assert;
 import org.junit.Test;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.groups.GlobalConfigGroup;
+import org.matsim.core.config.groups.GlobalConfigGroup.ReplanningScheduling;
+import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.population.algorithms.PlanAlgorithm;
+import org.matsim.core.replanning.ReplanningContext;
 
 /**
  * @author mrieser
@@ -60,6 +68,48 @@ public class AbstractMultithreadedModuleTest {
 
 	}
 
+	@Test
+	public void testDynamicScheduling_handlesEveryPlanOnce() {
+		Config config = new Config();
+		config.addCoreModules();
+		config.global().setNumberOfThreads(3);
+		config.global().setReplanningScheduling(ReplanningScheduling.dynamic);
+		CountingModule testee = new CountingModule(config.global());
+
+		List<Plan> plans = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			plans.add(PopulationUtils.createPlan());
+		}
+		for (int iteration = 0; iteration < 2; iteration++) {
+			testee.prepareReplanning(null);
+			for (Plan plan : plans) {
+				testee.handlePlan(plan);
+			}
+			testee.finishReplanning();
+		}
+
+		Assert.assertEquals(3, testee.instances.get());
+		Assert.assertEquals(plans.size(), testee.handled.size());
+		for (Plan plan : plans) {
+			Assert.assertEquals(2, testee.handled.get(plan).get());
+		}
+	}
+
+	@Test
+	public void testDynamicScheduling_crashingThread() {
+		try {
+			DummyCrashingModule testee = new DummyCrashingModule(2, ReplanningScheduling.dynamic);
+			testee.prepareReplanning(null);
+			testee.handlePlan(null);
+			testee.handlePlan(null);
+			testee.handlePlan(null);
+			testee.finishReplanning();
+			Assert.fail("expected exception, got none.");
+		} catch (Exception e) {
+			log.info("Catched expected exception.", e);
+		}
+	}
+
 	private static class DummyAbstractMultithreadedModule extends AbstractMultithreadedModule {
 		public DummyAbstractMultithreadedModule(GlobalConfigGroup globalConfigGroup) {
 			super(globalConfigGroup);
@@ -74,12 +124,37 @@ public class AbstractMultithreadedModuleTest {
 		public DummyCrashingModule(final int nOfThreads) {
 			super(nOfThreads);
 		}
+		public DummyCrashingModule(final int nOfThreads, final ReplanningScheduling scheduling) {
+			super(nOfThreads, scheduling);
+		}
 		@Override
 		public PlanAlgorithm getPlanAlgoInstance() {
 			return new CrashingPlanAlgo();
 		}
 	}
 
+	private static class CountingModule extends AbstractMultithreadedModule {
+		private final AtomicInteger instances = new AtomicInteger(0);
+		private final ConcurrentHashMap<Plan, AtomicInteger> handled = new ConcurrentHashMap<>();
+		public CountingModule(GlobalConfigGroup globalConfigGroup) {
+			super(globalConfigGroup);
+		}
+		@Override
+		protected void beforePrepareReplanningHook(ReplanningContext replanningContext) {
+			this.instances.set(0);
+		}
+		@Override
+		public PlanAlgorithm getPlanAlgoInstance() {
+			this.instances.incrementAndGet();
+			return new PlanAlgorithm() {
+				@Override
+				public void run(Plan plan) {
+					handled.computeIfAbsent(plan, p -> new AtomicInteger(0)).incrementAndGet();
+				}
+			};
+		}
+	}
+
 	private static class CrashingPlanAlgo implements PlanAlgorithm {
 		@Override
 		public void run(Plan plan) {
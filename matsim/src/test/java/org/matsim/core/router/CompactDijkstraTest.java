@@ -0,0 +1,112 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CompactDijkstraTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.network.algorithms.TransportModeNetworkFilter;
+import org.matsim.core.router.ContractionHierarchiesTest.BinnedCosts;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+
+public class CompactDijkstraTest extends AbstractLeastCostPathCalculatorTest {
+
+	@Override
+	protected LeastCostPathCalculator getLeastCostPathCalculator(Network network) {
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		return new CompactDijkstraFactory().createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+	}
+
+	public void testCalcLeastCostPath_SameCostAsDijkstra() {
+		Network network = ContractionHierarchiesTest.createGridNetwork(20, 42);
+		BinnedCosts costs = new BinnedCosts(network, 1, 3600, 7);
+
+		LeastCostPathCalculator compact = new CompactDijkstraFactory().createPathCalculator(network, costs, costs);
+		LeastCostPathCalculator dijkstra = new Dijkstra(network, costs, costs);
+		ContractionHierarchiesTest.assertSameCosts(network, compact, dijkstra, 0.0, costs);
+	}
+
+	public void testCalcLeastCostPath_SubnetworksShareGraph() {
+		Network network = ContractionHierarchiesTest.createGridNetwork(15, 4711);
+		for (Link link : network.getLinks().values()) {
+			Set<String> modes = new HashSet<>();
+			modes.add(TransportMode.car);
+			if (Integer.parseInt(link.getId().toString()) % 3 != 0) {
+				modes.add(TransportMode.bike);
+			}
+			link.setAllowedModes(modes);
+		}
+		Network carNetwork = NetworkUtils.createNetwork();
+		new TransportModeNetworkFilter(network).filter(carNetwork, Collections.singleton(TransportMode.car));
+		Network bikeNetwork = NetworkUtils.createNetwork();
+		new TransportModeNetworkFilter(network).filter(bikeNetwork, Collections.singleton(TransportMode.bike));
+
+		BinnedCosts costs = new BinnedCosts(network, 1, 3600, 13);
+		CompactDijkstraFactory factory = new CompactDijkstraFactory(network);
+		CompactDijkstra car = (CompactDijkstra) factory.createPathCalculator(carNetwork, costs, costs);
+		CompactDijkstra bike = (CompactDijkstra) factory.createPathCalculator(bikeNetwork, costs, costs);
+		assertSame(car.graph, bike.graph);
+
+		LeastCostPathCalculator dijkstra = new Dijkstra(bikeNetwork, costs, costs);
+		Node[] nodes = bikeNetwork.getNodes().values().toArray(new Node[0]);
+		for (int i = 0; i < nodes.length; i += 7) {
+			for (int j = 0; j < nodes.length; j += 5) {
+				Path expected = dijkstra.calcLeastCostPath(nodes[i], nodes[j], 0.0, null, null);
+				Path actual = bike.calcLeastCostPath(nodes[i], nodes[j], 0.0, null, null);
+				if (expected == null) {
+					assertNull(actual);
+					continue;
+				}
+				assertEquals(expected.travelCost, actual.travelCost, 1e-6);
+				for (Link link : actual.links) {
+					assertSame("the path must consist of the links of the bike network", bikeNetwork.getLinks().get(link.getId()), link);
+				}
+				for (Node node : actual.nodes) {
+					assertSame("the path must consist of the nodes of the bike network", bikeNetwork.getNodes().get(node.getId()), node);
+				}
+			}
+		}
+	}
+
+	public void testCalcLeastCostPath_NodeOfOtherNetwork() {
+		Network network = ContractionHierarchiesTest.createGridNetwork(5, 1);
+		Network otherNetwork = ContractionHierarchiesTest.createGridNetwork(5, 1);
+		LeastCostPathCalculator routerAlgo = getLeastCostPathCalculator(network);
+		Node from = otherNetwork.getNodes().values().iterator().next();
+		Node to = network.getNodes().values().iterator().next();
+		try {
+			routerAlgo.calcLeastCostPath(from, to, 0.0, null, null);
+			fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+}
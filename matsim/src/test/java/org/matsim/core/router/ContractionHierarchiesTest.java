@@ -0,0 +1,277 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * ContractionHierarchiesTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import java.util.Random;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.controler.listener.IterationStartsListener;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.LeastCostPathCalculatorFactory;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.core.router.util.TravelTime;
+import org.matsim.vehicles.Vehicle;
+
+public class ContractionHierarchiesTest extends AbstractLeastCostPathCalculatorTest {
+
+	@Override
+	protected LeastCostPathCalculator getLeastCostPathCalculator(Network network) {
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		return new ContractionHierarchiesFactory().createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+	}
+
+	public void testCalcLeastCostPath_SameCostAsDijkstra() {
+		Network network = createGridNetwork(20, 42);
+		BinnedCosts costs = new BinnedCosts(network, 1, 3600, 7);
+
+		LeastCostPathCalculator ch = new ContractionHierarchies(network, costs, costs);
+		LeastCostPathCalculator dijkstra = new Dijkstra(network, costs, costs);
+		assertSameCosts(network, ch, dijkstra, 0.0, costs);
+	}
+
+	public void testCalcLeastCostPath_TimeBins() {
+		Network network = createGridNetwork(15, 4711);
+		BinnedCosts costs = new BinnedCosts(network, 4, 900, 13);
+		LeastCostPathCalculator ch = new ContractionHierarchiesFactory(900, 3600).createPathCalculator(network, costs, costs);
+
+		for (int bin = 0; bin < 4; bin++) {
+			// the least cost path of a time bin is the one for the costs at the start of the time bin
+			final double binStart = bin * 900;
+			final BinnedCosts binCosts = costs;
+			TravelDisutility staticCosts = new TravelDisutility() {
+				@Override
+				public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
+					return binCosts.getLinkTravelDisutility(link, binStart, person, vehicle);
+				}
+				@Override
+				public double getLinkMinimumTravelDisutility(Link link) {
+					return binCosts.getLinkMinimumTravelDisutility(link);
+				}
+			};
+			LeastCostPathCalculator dijkstra = new Dijkstra(network, staticCosts, costs);
+			assertSameCosts(network, ch, dijkstra, binStart + 100, staticCosts);
+		}
+	}
+
+	public void testFactory_customizesOncePerIteration() {
+		Network network = createGridNetwork(10, 42);
+		BinnedCosts times = new BinnedCosts(network, 1, 3600, 7);
+		assertCustomizesOncePerIteration(network, new ContractionHierarchiesFactory(900, 3600), times);
+	}
+
+	/**
+	 * Calculators created by the same factory in the same iteration must share the customization, even though each
+	 * of them has its own travel disutility as in the replanning threads.
+	 */
+	static void assertCustomizesOncePerIteration(Network network, LeastCostPathCalculatorFactory factory, BinnedCosts times) {
+		Node[] nodes = network.getNodes().values().toArray(new Node[0]);
+		Node from = nodes[0];
+		Node to = nodes[nodes.length - 1];
+
+		CountingCosts costs1 = new CountingCosts(times);
+		CountingCosts costs2 = new CountingCosts(times);
+		LeastCostPathCalculator calculator1 = factory.createPathCalculator(network, costs1, times);
+		LeastCostPathCalculator calculator2 = factory.createPathCalculator(network, costs2, times);
+		Path path = calculator1.calcLeastCostPath(from, to, 0.0, null, null);
+		assertTrue("the first query should customize the metric", costs1.count >= network.getLinks().size());
+		calculator2.calcLeastCostPath(from, to, 0.0, null, null);
+		// the second calculator only evaluates the costs of all links once to identify the metric, and the costs along the path
+		assertEquals("the second calculator should use the same metric", network.getLinks().size() + (path == null ? 0 : path.links.size()), costs2.count);
+
+		((IterationStartsListener) factory).notifyIterationStarts(null);
+		CountingCosts costs3 = new CountingCosts(times);
+		factory.createPathCalculator(network, costs3, times).calcLeastCostPath(from, to, 0.0, null, null);
+		assertTrue("a new iteration should customize the metric again", costs3.count >= network.getLinks().size());
+	}
+
+	public void testFactory_otherCostsOfSameType() {
+		Network network = createGridNetwork(10, 42);
+		assertSeparateMetricsForOtherCosts(network, new ContractionHierarchiesFactory(900, 3600));
+	}
+
+	/**
+	 * Travel disutilities of the same type, but with other parameters (as for another mode), must not share the
+	 * customization.
+	 */
+	static void assertSeparateMetricsForOtherCosts(Network network, LeastCostPathCalculatorFactory factory) {
+		BinnedCosts times = new BinnedCosts(network, 1, 3600, 7);
+		BinnedCosts costs1 = new BinnedCosts(network, 1, 3600, 11);
+		BinnedCosts costs2 = new BinnedCosts(network, 1, 3600, 13);
+		LeastCostPathCalculator calculator1 = factory.createPathCalculator(network, costs1, times);
+		LeastCostPathCalculator calculator2 = factory.createPathCalculator(network, costs2, times);
+		assertSameCosts(network, calculator1, new Dijkstra(network, costs1, times), 0.0, costs1);
+		assertSameCosts(network, calculator2, new Dijkstra(network, costs2, times), 0.0, costs2);
+	}
+
+	public void testCalcLeastCostPath_Unreachable() {
+		Network network = NetworkUtils.createNetwork();
+		Node node1 = NetworkUtils.createAndAddNode(network, Id.create("1", Node.class), new Coord(0, 0));
+		Node node2 = NetworkUtils.createAndAddNode(network, Id.create("2", Node.class), new Coord(100, 0));
+		Node node3 = NetworkUtils.createAndAddNode(network, Id.create("3", Node.class), new Coord(200, 0));
+		NetworkUtils.createAndAddLink(network, Id.create("1", Link.class), node1, node2, 100, 10, 1000, 1);
+		NetworkUtils.createAndAddLink(network, Id.create("2", Link.class), node3, node2, 100, 10, 1000, 1);
+
+		LeastCostPathCalculator routerAlgo = getLeastCostPathCalculator(network);
+		assertNull(routerAlgo.calcLeastCostPath(node1, node3, 0.0, null, null));
+		Path path = routerAlgo.calcLeastCostPath(node3, node2, 0.0, null, null);
+		assertEquals(1, path.links.size());
+		assertEquals(10.0, path.travelTime, 1e-9);
+	}
+
+	static void assertSameCosts(Network network, LeastCostPathCalculator ch, LeastCostPathCalculator dijkstra,
+			double startTime, TravelDisutility costs) {
+		Node[] nodes = network.getNodes().values().toArray(new Node[0]);
+		Random random = new Random(1234);
+		for (int i = 0; i < 500; i++) {
+			Node from = nodes[random.nextInt(nodes.length)];
+			Node to = nodes[random.nextInt(nodes.length)];
+			Path expected = dijkstra.calcLeastCostPath(from, to, startTime, null, null);
+			Path actual = ch.calcLeastCostPath(from, to, startTime, null, null);
+			assertEquals(from, actual.nodes.get(0));
+			assertEquals(to, actual.nodes.get(actual.nodes.size() - 1));
+			assertEquals(actual.links.size() + 1, actual.nodes.size());
+			double cost = 0;
+			for (int l = 0; l < actual.links.size(); l++) {
+				Link link = actual.links.get(l);
+				assertEquals("path is not connected", actual.nodes.get(l), link.getFromNode());
+				assertEquals("path is not connected", actual.nodes.get(l + 1), link.getToNode());
+				cost += costs.getLinkTravelDisutility(link, startTime, null, null);
+			}
+			assertEquals(expected.travelCost, cost, 1e-6);
+		}
+	}
+
+	/**
+	 * A grid with slightly disturbed coordinates, some one-way streets, some missing links and some parallel links.
+	 */
+	static Network createGridNetwork(int size, long seed) {
+		Random random = new Random(seed);
+		Network network = NetworkUtils.createNetwork();
+		Node[][] nodes = new Node[size][size];
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				Coord coord = new Coord(x * 100 + random.nextInt(30), y * 100 + random.nextInt(30));
+				nodes[x][y] = NetworkUtils.createAndAddNode(network, Id.create(x + "_" + y, Node.class), coord);
+			}
+		}
+		int linkCount = 0;
+		for (int x = 0; x < size; x++) {
+			for (int y = 0; y < size; y++) {
+				for (int d = 0; d < 2; d++) {
+					int nx = x + (d == 0 ? 1 : 0);
+					int ny = y + (d == 1 ? 1 : 0);
+					if (nx >= size || ny >= size || random.nextInt(10) == 0) {
+						continue;
+					}
+					int oneWay = random.nextInt(8);
+					if (oneWay != 0) {
+						NetworkUtils.createAndAddLink(network, Id.create(linkCount++, Link.class), nodes[x][y], nodes[nx][ny], 100, 10, 1000, 1);
+					}
+					if (oneWay != 1) {
+						NetworkUtils.createAndAddLink(network, Id.create(linkCount++, Link.class), nodes[nx][ny], nodes[x][y], 100, 10, 1000, 1);
+					}
+					if (random.nextInt(20) == 0) {
+						NetworkUtils.createAndAddLink(network, Id.create(linkCount++, Link.class), nodes[x][y], nodes[nx][ny], 100, 10, 1000, 1);
+					}
+				}
+			}
+		}
+		// the network might not be strongly connected, make sure every node can be reached via a ring
+		for (int i = 0; i < size - 1; i++) {
+			NetworkUtils.createAndAddLink(network, Id.create(linkCount++, Link.class), nodes[i][0], nodes[i + 1][0], 1000, 10, 1000, 1);
+			NetworkUtils.createAndAddLink(network, Id.create(linkCount++, Link.class), nodes[size - 1][i], nodes[size - 1][i + 1], 1000, 10, 1000, 1);
+			NetworkUtils.createAndAddLink(network, Id.create(linkCount++, Link.class), nodes[i + 1][size - 1], nodes[i][size - 1], 1000, 10, 1000, 1);
+			NetworkUtils.createAndAddLink(network, Id.create(linkCount++, Link.class), nodes[0][i + 1], nodes[0][i], 1000, 10, 1000, 1);
+		}
+		for (int x = 1; x < size - 1; x++) {
+			for (int y = 1; y < size - 1; y++) {
+				NetworkUtils.createAndAddLink(network, Id.create(linkCount++, Link.class), nodes[x][y], nodes[0][y], 10000, 10, 1000, 1);
+				NetworkUtils.createAndAddLink(network, Id.create(linkCount++, Link.class), nodes[0][y], nodes[x][y], 10000, 10, 1000, 1);
+			}
+		}
+		return network;
+	}
+
+	/**
+	 * Random link costs, constant within each time bin.
+	 */
+	static class CountingCosts implements TravelDisutility {
+		private final TravelDisutility delegate;
+		int count = 0;
+
+		CountingCosts(TravelDisutility delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
+			this.count++;
+			return this.delegate.getLinkTravelDisutility(link, time, person, vehicle);
+		}
+
+		@Override
+		public double getLinkMinimumTravelDisutility(Link link) {
+			return this.delegate.getLinkMinimumTravelDisutility(link);
+		}
+	}
+
+	static class BinnedCosts implements TravelTime, TravelDisutility {
+		private final int binSize;
+		private final double[][] costs;
+
+		BinnedCosts(Network network, int bins, int binSize, long seed) {
+			this.binSize = binSize;
+			this.costs = new double[bins][network.getLinks().size()];
+			Random random = new Random(seed);
+			for (int b = 0; b < bins; b++) {
+				for (int l = 0; l < this.costs[b].length; l++) {
+					this.costs[b][l] = 1 + random.nextInt(100);
+				}
+			}
+		}
+
+		@Override
+		public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
+			int bin = Math.min(this.costs.length - 1, Math.max(0, (int) (time / this.binSize)));
+			return this.costs[bin][Integer.parseInt(link.getId().toString())] * link.getLength() / 100;
+		}
+
+		@Override
+		public double getLinkMinimumTravelDisutility(Link link) {
+			return link.getLength() / 100;
+		}
+
+		@Override
+		public double getLinkTravelTime(Link link, double time, Person person, Vehicle vehicle) {
+			return link.getLength() / link.getFreespeed();
+		}
+	}
+
+}
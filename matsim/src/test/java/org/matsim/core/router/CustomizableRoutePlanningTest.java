@@ -0,0 +1,106 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * CustomizableRoutePlanningTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.core.router;
+
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.api.core.v01.population.Person;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.router.ContractionHierarchiesTest.BinnedCosts;
+import org.matsim.core.router.costcalculators.FreespeedTravelTimeAndDisutility;
+import org.matsim.core.router.util.LeastCostPathCalculator;
+import org.matsim.core.router.util.LeastCostPathCalculator.Path;
+import org.matsim.core.router.util.TravelDisutility;
+import org.matsim.vehicles.Vehicle;
+
+public class CustomizableRoutePlanningTest extends AbstractLeastCostPathCalculatorTest {
+
+	@Override
+	protected LeastCostPathCalculator getLeastCostPathCalculator(Network network) {
+		FreespeedTravelTimeAndDisutility travelTimeCostCalculator = new FreespeedTravelTimeAndDisutility(new PlanCalcScoreConfigGroup());
+		return new CustomizableRoutePlanningFactory().createPathCalculator(network, travelTimeCostCalculator, travelTimeCostCalculator);
+	}
+
+	public void testCalcLeastCostPath_SameCostAsDijkstra() {
+		// large enough for two levels of cells
+		Network network = ContractionHierarchiesTest.createGridNetwork(50, 42);
+		BinnedCosts costs = new BinnedCosts(network, 1, 3600, 7);
+
+		LeastCostPathCalculator crp = new CustomizableRoutePlanning(network, costs, costs);
+		LeastCostPathCalculator dijkstra = new Dijkstra(network, costs, costs);
+		ContractionHierarchiesTest.assertSameCosts(network, crp, dijkstra, 0.0, costs);
+	}
+
+	public void testCalcLeastCostPath_TimeBinsParallelCustomization() {
+		Network network = ContractionHierarchiesTest.createGridNetwork(30, 4711);
+		BinnedCosts costs = new BinnedCosts(network, 4, 900, 13);
+		LeastCostPathCalculator crp = new CustomizableRoutePlanningFactory(900, 3600, 3).createPathCalculator(network, costs, costs);
+
+		for (int bin = 0; bin < 4; bin++) {
+			// the least cost path of a time bin is the one for the costs at the start of the time bin
+			final double binStart = bin * 900;
+			final BinnedCosts binCosts = costs;
+			TravelDisutility staticCosts = new TravelDisutility() {
+				@Override
+				public double getLinkTravelDisutility(Link link, double time, Person person, Vehicle vehicle) {
+					return binCosts.getLinkTravelDisutility(link, binStart, person, vehicle);
+				}
+				@Override
+				public double getLinkMinimumTravelDisutility(Link link) {
+					return binCosts.getLinkMinimumTravelDisutility(link);
+				}
+			};
+			LeastCostPathCalculator dijkstra = new Dijkstra(network, staticCosts, costs);
+			ContractionHierarchiesTest.assertSameCosts(network, crp, dijkstra, binStart + 100, staticCosts);
+		}
+	}
+
+	public void testFactory_customizesOncePerIteration() {
+		Network network = ContractionHierarchiesTest.createGridNetwork(30, 42);
+		BinnedCosts times = new BinnedCosts(network, 1, 3600, 7);
+		ContractionHierarchiesTest.assertCustomizesOncePerIteration(network, new CustomizableRoutePlanningFactory(900, 3600, 3), times);
+	}
+
+	public void testFactory_otherCostsOfSameType() {
+		Network network = ContractionHierarchiesTest.createGridNetwork(30, 42);
+		ContractionHierarchiesTest.assertSeparateMetricsForOtherCosts(network, new CustomizableRoutePlanningFactory(900, 3600, 3));
+	}
+
+	public void testCalcLeastCostPath_Unreachable() {
+		Network network = NetworkUtils.createNetwork();
+		Node node1 = NetworkUtils.createAndAddNode(network, Id.create("1", Node.class), new Coord(0, 0));
+		Node node2 = NetworkUtils.createAndAddNode(network, Id.create("2", Node.class), new Coord(100, 0));
+		Node node3 = NetworkUtils.createAndAddNode(network, Id.create("3", Node.class), new Coord(200, 0));
+		NetworkUtils.createAndAddLink(network, Id.create("1", Link.class), node1, node2, 100, 10, 1000, 1);
+		NetworkUtils.createAndAddLink(network, Id.create("2", Link.class), node3, node2, 100, 10, 1000, 1);
+
+		LeastCostPathCalculator routerAlgo = getLeastCostPathCalculator(network);
+		assertNull(routerAlgo.calcLeastCostPath(node1, node3, 0.0, null, null));
+		Path path = routerAlgo.calcLeastCostPath(node3, node2, 0.0, null, null);
+		assertEquals(1, path.links.size());
+		assertEquals(10.0, path.travelTime, 1e-9);
+	}
+
+}
@@ -20,21 +20,41 @@
 
 package org.matsim.core.scoring;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.matsim.api.core.v01.Coord;
 import org.matsim.api.core.v01.Id;
 import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.events.ActivityEndEvent;
+import org.matsim.api.core.v01.events.ActivityStartEvent;
+import org.matsim.api.core.v01.events.Event;
+import org.matsim.api.core.v01.events.LinkEnterEvent;
+import org.matsim.api.core.v01.events.LinkLeaveEvent;
+import org.matsim.api.core.v01.events.PersonArrivalEvent;
+import org.matsim.api.core.v01.events.PersonDepartureEvent;
 import org.matsim.api.core.v01.events.PersonMoneyEvent;
+import org.matsim.api.core.v01.events.VehicleEntersTrafficEvent;
+import org.matsim.api.core.v01.events.VehicleLeavesTrafficEvent;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
 import org.matsim.api.core.v01.population.Person;
 import org.matsim.api.core.v01.population.Plan;
 import org.matsim.api.core.v01.population.Population;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.PlanCalcScoreConfigGroup.ActivityParams;
 import org.matsim.core.events.EventsUtils;
+import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.population.PopulationUtils;
 import org.matsim.core.scenario.MutableScenario;
 import org.matsim.core.scenario.ScenarioUtils;
 import org.matsim.core.scoring.functions.CharyparNagelScoringFunctionFactory;
 import org.matsim.testcases.MatsimTestCase;
+import org.matsim.vehicles.Vehicle;
 
 /**
  * @author mrieser
@@ -142,6 +162,90 @@ public class EventsToScoreTest extends MatsimTestCase {
 		}
 	}
 
+	public void testParallelScoring_sameScoresAsSequential() {
+		double[] sequential = scoreCommute(1);
+		double[] parallel = scoreCommute(3);
+		assertEquals(sequential.length, parallel.length);
+		for (int i = 0; i < sequential.length; i++) {
+			assertFalse(Double.isNaN(sequential[i]));
+			assertEquals(sequential[i], parallel[i], 1e-10);
+		}
+	}
+
+	/**
+	 * Scores home-work-home trips by car of some persons, with different times and some money events.
+	 */
+	private static double[] scoreCommute(int numberOfScoringThreads) {
+		Config config = ConfigUtils.createConfig();
+		config.planCalcScore().setNumberOfScoringThreads(numberOfScoringThreads);
+		ActivityParams home = new ActivityParams("home");
+		home.setTypicalDuration(12 * 3600);
+		config.planCalcScore().addActivityParams(home);
+		ActivityParams work = new ActivityParams("work");
+		work.setTypicalDuration(8 * 3600);
+		config.planCalcScore().addActivityParams(work);
+
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		Network network = scenario.getNetwork();
+		Node node1 = NetworkUtils.createAndAddNode(network, Id.create(1, Node.class), new Coord(0, 0));
+		Node node2 = NetworkUtils.createAndAddNode(network, Id.create(2, Node.class), new Coord(1000, 0));
+		Node node3 = NetworkUtils.createAndAddNode(network, Id.create(3, Node.class), new Coord(2000, 0));
+		Link link1 = NetworkUtils.createAndAddLink(network, Id.create(1, Link.class), node1, node2, 1000, 10, 3600, 1);
+		Link link2 = NetworkUtils.createAndAddLink(network, Id.create(2, Link.class), node2, node3, 1000, 10, 3600, 1);
+		Link link3 = NetworkUtils.createAndAddLink(network, Id.create(3, Link.class), node3, node1, 2000, 10, 3600, 1);
+
+		int personCount = 50;
+		List<Id<Person>> personIds = new ArrayList<>();
+		for (int i = 0; i < personCount; i++) {
+			Person person = PopulationUtils.getFactory().createPerson(Id.create(i, Person.class));
+			person.addPlan(PopulationUtils.createPlan());
+			scenario.getPopulation().addPerson(person);
+			personIds.add(person.getId());
+		}
+
+		EventsManager events = EventsUtils.createEventsManager();
+		EventsToScore e2s = EventsToScore.createWithoutScoreUpdating(scenario, new CharyparNagelScoringFunctionFactory(scenario), events);
+		e2s.beginIteration(0);
+		for (int trip = 0; trip < 2; trip++) {
+			// the events of all persons are interleaved, as in a mobsim
+			for (int step = 0; step < 7; step++) {
+				for (int i = 0; i < personCount; i++) {
+					Id<Person> personId = personIds.get(i);
+					Id<Vehicle> vehicleId = Id.create(i, Vehicle.class);
+					double time = (trip == 0 ? 6 * 3600 : 16 * 3600) + i * 60 + step * 100;
+					Link from = trip == 0 ? link1 : link3;
+					Link to = trip == 0 ? link2 : link1;
+					String fromType = trip == 0 ? "home" : "work";
+					String toType = trip == 0 ? "work" : "home";
+					Event event;
+					switch (step) {
+					case 0: event = new ActivityEndEvent(time, personId, from.getId(), null, fromType); break;
+					case 1: event = new PersonDepartureEvent(time, personId, from.getId(), TransportMode.car); break;
+					case 2: event = new VehicleEntersTrafficEvent(time, personId, from.getId(), vehicleId, TransportMode.car, 1.0); break;
+					case 3: event = new LinkLeaveEvent(time, vehicleId, from.getId()); break;
+					case 4: event = new LinkEnterEvent(time + i, vehicleId, to.getId()); break;
+					case 5: event = new VehicleLeavesTrafficEvent(time + i, personId, to.getId(), vehicleId, TransportMode.car, 1.0); break;
+					default: event = new PersonArrivalEvent(time + i, personId, to.getId(), TransportMode.car);
+					}
+					events.processEvent(event);
+					if (step == 6) {
+						events.processEvent(new ActivityStartEvent(time + i, personId, to.getId(), null, toType));
+						if (i % 3 == 0) {
+							events.processEvent(new PersonMoneyEvent(time + i, personId, -i));
+						}
+					}
+				}
+			}
+		}
+		e2s.finish();
+
+		double[] scores = new double[personCount];
+		for (int i = 0; i < personCount; i++) {
+			scores[i] = e2s.getAgentScore(personIds.get(i));
+		}
+		return scores;
+	}
+
 	private static class MockScoringFunctionFactory implements ScoringFunctionFactory {
 
 		@Override
@@ -1,6 +1,7 @@
 package org.matsim.core.trafficmonitoring;
 
 import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
 import com.google.inject.name.Names;
 import org.junit.Rule;
 import org.junit.Test;
@@ -16,14 +17,21 @@ import org.matsim.api.core.v01.network.Node;
 import org.matsim.core.api.experimental.events.EventsManager;
 import org.matsim.core.config.Config;
 import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType;
 import org.matsim.core.controler.Injector;
+import org.matsim.core.controler.listener.ControlerListener;
 import org.matsim.core.events.EventsManagerModule;
+import org.matsim.core.router.util.TravelTime;
 import org.matsim.core.scenario.ScenarioByInstanceModule;
 import org.matsim.core.scenario.ScenarioUtils;
 import org.matsim.testcases.MatsimTestUtils;
 
+import java.util.Set;
+
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 public class TravelTimeCalculatorModuleTest {
 
@@ -90,4 +98,37 @@ public class TravelTimeCalculatorModuleTest {
 		assertThat(bike.getLinkTravelTime(link, 0.0), is(8.0));
 	}
 
+	@Test
+	public void testSnapshotsForFlatArrays() {
+		Config config = ConfigUtils.createConfig();
+		config.travelTimeCalculator().setAnalyzedModes("car,bike");
+		config.travelTimeCalculator().setTravelTimeCalculatorType(TravelTimeCalculatorType.TravelTimeCalculatorFlatArray.toString());
+		Scenario scenario = ScenarioUtils.createScenario(config);
+		Node node0 = scenario.getNetwork().getFactory().createNode(Id.createNodeId(0), new Coord(0, 0));
+		Node node1 = scenario.getNetwork().getFactory().createNode(Id.createNodeId(1), new Coord(1, 0));
+		scenario.getNetwork().addNode(node0);
+		scenario.getNetwork().addNode(node1);
+		Id<Link> linkId = Id.createLinkId(0);
+		Link link = scenario.getNetwork().getFactory().createLink(linkId, node0, node1);
+		link.setLength(10.0);
+		link.setFreespeed(10.0);
+		scenario.getNetwork().addLink(link);
+		com.google.inject.Injector injector = Injector.createInjector(config, new TravelTimeCalculatorModule(), new EventsManagerModule(), new ScenarioByInstanceModule(scenario));
+		TravelTime car = injector.getInstance(Key.get(TravelTime.class, Names.named("car")));
+		TravelTime bike = injector.getInstance(Key.get(TravelTime.class, Names.named("bike")));
+		assertTrue(car instanceof SnapshotLinkTravelTimes);
+		assertSame(car, bike);
+		assertTrue(injector.getInstance(Key.get(new TypeLiteral<Set<ControlerListener>>() {})).contains(car));
+
+		assertEquals(1.0, car.getLinkTravelTime(link, 0.0, null, null), 0.0);
+		EventsManager events = injector.getInstance(EventsManager.class);
+		events.processEvent(new VehicleEntersTrafficEvent(0.0, Id.createPersonId(0), linkId, Id.createVehicleId(0), "car", 0.0));
+		events.processEvent(new LinkEnterEvent(0.0, Id.createVehicleId(0), linkId));
+		events.processEvent(new LinkLeaveEvent(5.0, Id.createVehicleId(0), linkId));
+		events.processEvent(new VehicleLeavesTrafficEvent(5.0, Id.createPersonId(0), linkId, Id.createVehicleId(0), "car", 0.0));
+		assertEquals(1.0, car.getLinkTravelTime(link, 0.0, null, null), 0.0);
+		((SnapshotLinkTravelTimes) car).notifyAfterMobsim(null);
+		assertEquals(5.0, car.getLinkTravelTime(link, 0.0, null, null), 0.0);
+	}
+
 }
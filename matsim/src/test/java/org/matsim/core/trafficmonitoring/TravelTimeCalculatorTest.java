@@ -49,8 +49,12 @@ import org.matsim.core.config.groups.TravelTimeCalculatorConfigGroup;
 import org.matsim.core.events.EventsManagerImpl;
 import org.matsim.core.events.EventsUtils;
 import org.matsim.core.events.MatsimEventsReader;
+import org.matsim.core.network.NetworkChangeEvent;
+import org.matsim.core.network.NetworkChangeEvent.ChangeType;
+import org.matsim.core.network.NetworkChangeEvent.ChangeValue;
 import org.matsim.core.network.NetworkUtils;
 import org.matsim.core.network.io.MatsimNetworkReader;
+import org.matsim.core.router.util.TravelTime;
 import org.matsim.core.scenario.MutableScenario;
 import org.matsim.core.scenario.ScenarioUtils;
 import org.matsim.core.utils.io.IOUtils;
@@ -579,4 +583,104 @@ public class TravelTimeCalculatorTest extends MatsimTestCase {
 		Assert.assertEquals("Filtering analyzed transport modes is enabled, but no modes set. Therefore, use default (=car)", 100.0, 
 				ttc.getLinkTravelTimes().getLinkTravelTime(link2, 200, null, null), 1e-8);
 	}
+
+	/**
+	 * Feeds the same events to a calculator with flat arrays and to a calculator with the default data structures.
+	 * Both, and the snapshot of the first one, must return the same travel times.
+	 */
+	public void testGetLinkTravelTime_FlatArray() {
+		Network network = NetworkUtils.createNetwork();
+		final int linkCount = 20;
+		Node[] nodes = new Node[linkCount + 1];
+		for (int i = 0; i <= linkCount; i++) {
+			nodes[i] = NetworkUtils.createAndAddNode(network, Id.create(i, Node.class), new Coord(i * 1000, 0));
+		}
+		Link[] links = new Link[linkCount];
+		for (int i = 0; i < linkCount; i++) {
+			links[i] = NetworkUtils.createAndAddLink(network, Id.create(i, Link.class), nodes[i], nodes[i + 1], 1000.0, 20.0, 3600.0, 1.0);
+		}
+
+		TravelTimeCalculatorConfigGroup config = new TravelTimeCalculatorConfigGroup();
+		config.setTraveltimeBinSize(900);
+		config.setMaxTime(6 * 3600);
+		config.setTravelTimeCalculatorType(TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType.TravelTimeCalculatorFlatArray.toString());
+		TravelTimeCalculator flatArray = TravelTimeCalculator.create(network, config);
+		config.setTravelTimeCalculatorType(TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType.TravelTimeCalculatorArray.toString());
+		TravelTimeCalculator array = TravelTimeCalculator.create(network, config);
+
+		for (int v = 0; v < 200; v++) {
+			Id<Vehicle> vehId = Id.create(v, Vehicle.class);
+			double time = (v % 50) * 300 + (v / 50) * 7;
+			for (Link link : links) {
+				for (TravelTimeCalculator calculator : new TravelTimeCalculator[] {flatArray, array}) {
+					calculator.handleEvent(new LinkEnterEvent(time, vehId, link.getId()));
+					calculator.handleEvent(new LinkLeaveEvent(time + 50 + (v * 13 + link.getId().index()) % 100, vehId, link.getId()));
+				}
+				time += 50 + (v * 13 + link.getId().index()) % 100;
+			}
+		}
+
+		TravelTime snapshot = flatArray.getLinkTravelTimesSnapshot();
+		for (Link link : links) {
+			for (double time = 0; time < 6 * 3600; time += 450) {
+				double expected = array.getLinkTravelTimes().getLinkTravelTime(link, time, null, null);
+				Assert.assertEquals(expected, flatArray.getLinkTravelTimes().getLinkTravelTime(link, time, null, null), 1e-8);
+				Assert.assertEquals(expected, snapshot.getLinkTravelTime(link, time, null, null), 1e-8);
+			}
+		}
+	}
+
+	/**
+	 * Time bins without travel times return the free speed travel time at the time of the query, not at the start of
+	 * the time bin.
+	 */
+	public void testGetLinkTravelTimesSnapshot_freespeedAtQueryTime() {
+		Config config = ConfigUtils.createConfig();
+		config.network().setTimeVariantNetwork(true);
+		Network network = NetworkUtils.createNetwork(config);
+		Node node1 = NetworkUtils.createAndAddNode(network, Id.create(1, Node.class), new Coord(0, 0));
+		Node node2 = NetworkUtils.createAndAddNode(network, Id.create(2, Node.class), new Coord(1000, 0));
+		Link link = NetworkUtils.createAndAddLink(network, Id.create(1, Link.class), node1, node2, 1000.0, 20.0, 3600.0, 1.0);
+		NetworkChangeEvent change = new NetworkChangeEvent(1800.0);
+		change.setFreespeedChange(new ChangeValue(ChangeType.ABSOLUTE_IN_SI_UNITS, 10.0));
+		change.addLink(link);
+		NetworkUtils.addNetworkChangeEvent(network, change);
+
+		config.travelTimeCalculator().setTraveltimeBinSize(3600);
+		config.travelTimeCalculator().setTravelTimeCalculatorType(TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType.TravelTimeCalculatorFlatArray.toString());
+		TravelTimeCalculator calculator = TravelTimeCalculator.create(network, config.travelTimeCalculator());
+		Id<Vehicle> vehId = Id.create(1, Vehicle.class);
+		calculator.handleEvent(new LinkEnterEvent(7200.0, vehId, link.getId()));
+		calculator.handleEvent(new LinkLeaveEvent(7400.0, vehId, link.getId()));
+
+		TravelTime snapshot = calculator.getLinkTravelTimesSnapshot();
+		Assert.assertEquals(50.0, snapshot.getLinkTravelTime(link, 0.0, null, null), 1e-8);
+		Assert.assertEquals(100.0, snapshot.getLinkTravelTime(link, 2000.0, null, null), 1e-8);
+		Assert.assertEquals(200.0, snapshot.getLinkTravelTime(link, 7500.0, null, null), 1e-8);
+		Assert.assertEquals(100.0, snapshot.getLinkTravelTime(link, 11000.0, null, null), 1e-8);
+	}
+
+	/**
+	 * The travel times bound for the routers with flat arrays keep the snapshot until the next mobsim has ended.
+	 */
+	public void testSnapshotLinkTravelTimes() {
+		Network network = NetworkUtils.createNetwork();
+		Node node1 = NetworkUtils.createAndAddNode(network, Id.create(1, Node.class), new Coord(0, 0));
+		Node node2 = NetworkUtils.createAndAddNode(network, Id.create(2, Node.class), new Coord(1000, 0));
+		Link link = NetworkUtils.createAndAddLink(network, Id.create(1, Link.class), node1, node2, 1000.0, 20.0, 3600.0, 1.0);
+		TravelTimeCalculatorConfigGroup config = new TravelTimeCalculatorConfigGroup();
+		config.setTravelTimeCalculatorType(TravelTimeCalculatorConfigGroup.TravelTimeCalculatorType.TravelTimeCalculatorFlatArray.toString());
+		TravelTimeCalculator calculator = TravelTimeCalculator.create(network, config);
+		SnapshotLinkTravelTimes travelTimes = new SnapshotLinkTravelTimes(calculator);
+
+		Assert.assertEquals(50.0, travelTimes.getLinkTravelTime(link, 100.0, null, null), 1e-8);
+		Id<Vehicle> vehId = Id.create(1, Vehicle.class);
+		calculator.handleEvent(new LinkEnterEvent(100.0, vehId, link.getId()));
+		calculator.handleEvent(new LinkLeaveEvent(300.0, vehId, link.getId()));
+		Assert.assertEquals(50.0, travelTimes.getLinkTravelTime(link, 100.0, null, null), 1e-8);
+		Assert.assertEquals(200.0, calculator.getLinkTravelTimes().getLinkTravelTime(link, 100.0, null, null), 1e-8);
+
+		travelTimes.notifyAfterMobsim(null);
+		Assert.assertEquals(200.0, travelTimes.getLinkTravelTime(link, 100.0, null, null), 1e-8);
+	}
 }
@@ -20,6 +20,8 @@
 package org.matsim.core.utils.io;
 
 import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Stack;
 
 import org.junit.Assert;
@@ -131,4 +133,68 @@ public class MatsimXmlParserTest {
 		Assert.assertEquals("value+value", parser.lastAttributes.getValue("someAttribute"));
 	}
 
+	@Test
+	public void testParsingPipelined() {
+		StringBuilder str = new StringBuilder("<?xml version='1.0' encoding='UTF-8'?>\n<root>\n");
+		for (int i = 0; i < 5000; i++) {
+			str.append("<dummy id=\"").append(i).append("\"><inner>content").append(i).append("</inner></dummy>\n");
+		}
+		str.append("</root>");
+
+		RecordingParser direct = new RecordingParser();
+		direct.setValidating(false);
+		direct.parse(new ByteArrayInputStream(str.toString().getBytes()));
+
+		RecordingParser pipelined = new RecordingParser();
+		pipelined.setValidating(false);
+		pipelined.setPipelined(true);
+		pipelined.parse(new ByteArrayInputStream(str.toString().getBytes()));
+
+		Assert.assertEquals(2 * (1 + 2 * 5000), direct.log.size());
+		Assert.assertEquals(direct.log, pipelined.log);
+	}
+
+	@Test
+	public void testParsingPipelined_exceptionInTag() {
+		StringBuilder str = new StringBuilder("<?xml version='1.0' encoding='UTF-8'?>\n<root>\n");
+		for (int i = 0; i < 5000; i++) {
+			str.append("<dummy id=\"").append(i).append("\">content</dummy>\n");
+		}
+		str.append("</root>");
+
+		RecordingParser parser = new RecordingParser() {
+			@Override
+			public void startTag(String name, Attributes atts, Stack<String> context) {
+				if ("1234".equals(atts.getValue("id"))) {
+					throw new IllegalArgumentException("just testing");
+				}
+				super.startTag(name, atts, context);
+			}
+		};
+		parser.setValidating(false);
+		parser.setPipelined(true);
+		try {
+			parser.parse(new ByteArrayInputStream(str.toString().getBytes()));
+			Assert.fail("Expected exception.");
+		} catch (IllegalArgumentException e) {
+			Assert.assertEquals("just testing", e.getMessage());
+		}
+	}
+
+	private static class RecordingParser extends MatsimXmlParser {
+
+		final List<String> log = new ArrayList<>();
+
+		@Override
+		public void startTag(String name, Attributes atts, Stack<String> context) {
+			this.log.add("start " + name + " " + atts.getValue("id") + " " + context);
+		}
+
+		@Override
+		public void endTag(String name, String content, Stack<String> context) {
+			this.log.add("end " + name + " " + content + " " + context);
+		}
+
+	}
+
 }
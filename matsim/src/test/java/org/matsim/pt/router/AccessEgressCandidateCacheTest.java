@@ -0,0 +1,75 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * AccessEgressCandidateCacheTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+
+public class AccessEgressCandidateCacheTest {
+
+	@Test
+	public void testSearchesOncePerCoord() {
+		AccessEgressCandidateCache<String> cache = new AccessEgressCandidateCache<>();
+		AtomicInteger searches = new AtomicInteger();
+		List<String> first = cache.getCandidates(new Coord(1, 2), c -> {
+			searches.incrementAndGet();
+			return Collections.singletonList("stop");
+		});
+		List<String> second = cache.getCandidates(new Coord(1, 2), c -> {
+			searches.incrementAndGet();
+			return Collections.singletonList("other stop");
+		});
+		assertSame(first, second);
+		assertEquals(1, searches.get());
+	}
+
+	@Test
+	public void testDropsLeastRecentlyUsed() {
+		AccessEgressCandidateCache<String> cache = new AccessEgressCandidateCache<>(2);
+		AtomicInteger searches = new AtomicInteger();
+		cache.getCandidates(new Coord(0, 0), c -> search(searches));
+		cache.getCandidates(new Coord(1, 0), c -> search(searches));
+		cache.getCandidates(new Coord(0, 0), c -> search(searches));
+		cache.getCandidates(new Coord(2, 0), c -> search(searches));
+		assertEquals(2, cache.size());
+		assertEquals(3, searches.get());
+
+		// (0, 0) was used more recently than (1, 0), so only (1, 0) must be searched again
+		cache.getCandidates(new Coord(0, 0), c -> search(searches));
+		assertEquals(3, searches.get());
+		cache.getCandidates(new Coord(1, 0), c -> search(searches));
+		assertEquals(4, searches.get());
+		assertEquals(2, cache.size());
+	}
+
+	private static List<String> search(final AtomicInteger searches) {
+		searches.incrementAndGet();
+		return Collections.emptyList();
+	}
+
+}
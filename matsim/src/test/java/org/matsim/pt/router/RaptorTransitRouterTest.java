@@ -0,0 +1,297 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * RaptorTransitRouterTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.TransportMode;
+import org.matsim.api.core.v01.population.Leg;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.testcases.MatsimTestCase;
+
+public class RaptorTransitRouterTest {
+
+	@Test
+	public void testParetoSet() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig trConfig = new TransitRouterConfig(f.scenario.getConfig());
+		RaptorTransitRouter router = new RaptorTransitRouter(trConfig, f.schedule);
+		// from C to F: the blue line directly, or the red line to G and back with blue, which arrives earlier
+		List<RaptorConnection> connections = router.calcConnections(new FakeFacility(new Coord(11900, 5100)),
+				new FakeFacility(new Coord(24100, 4950)), 6.0*3600 - 5.0*60, 6.0*3600 - 5.0*60, null);
+		assertEquals(2, connections.size());
+
+		RaptorConnection direct = connections.get(0);
+		assertEquals(0, direct.getNumberOfTransfers());
+		assertEquals(1, direct.getRouteSegments().size());
+		assertEquals(f.blueLine.getId(), direct.getRouteSegments().get(0).getLineTaken());
+
+		RaptorConnection withTransfer = connections.get(1);
+		assertEquals(1, withTransfer.getNumberOfTransfers());
+		assertEquals(3, withTransfer.getRouteSegments().size());
+		assertEquals(f.redLine.getId(), withTransfer.getRouteSegments().get(0).getLineTaken());
+		assertNull(withTransfer.getRouteSegments().get(1).getRouteTaken());
+		assertEquals(f.blueLine.getId(), withTransfer.getRouteSegments().get(2).getLineTaken());
+		assertTrue(withTransfer.getArrivalTime() < direct.getArrivalTime());
+
+		for (RaptorConnection connection : connections) {
+			assertEquals(6.0*3600 - 5.0*60, connection.getDepartureTime(), 0.0);
+			List<Leg> legs = router.getLegs(connection, new FakeFacility(new Coord(11900, 5100)), new FakeFacility(new Coord(24100, 4950)), null);
+			double travelTime = 0.0;
+			for (Leg leg : legs) {
+				travelTime += leg.getTravelTime();
+			}
+			assertEquals(connection.getArrivalTime() - connection.getDepartureTime(), travelTime, MatsimTestCase.EPSILON);
+		}
+	}
+
+	@Test
+	public void testRangeQuery() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig trConfig = new TransitRouterConfig(f.scenario.getConfig());
+		RaptorTransitRouter router = new RaptorTransitRouter(trConfig, f.schedule);
+		FakeFacility fromFacility = new FakeFacility(new Coord(3800, 5100));
+		FakeFacility toFacility = new FakeFacility(new Coord(16100, 5050));
+		List<RaptorConnection> connections = router.calcConnections(fromFacility, toFacility, 5.0*3600, 7.0*3600, null);
+
+		// the blue line departs at A at *:06, *:26 and *:46, and the end of the range catches the 7:06 departure
+		assertEquals(7, connections.size());
+		TransitStopFacility stopA = f.schedule.getFacilities().get(Id.create("0", TransitStopFacility.class));
+		double accessTime = router.getWalkTime(null, fromFacility.getCoord(), stopA.getCoord());
+		double previousDepartureTime = Double.NEGATIVE_INFINITY;
+		for (RaptorConnection connection : connections) {
+			assertTrue(connection.getDepartureTime() >= 5.0*3600 && connection.getDepartureTime() <= 7.0*3600);
+			assertTrue(connection.getDepartureTime() > previousDepartureTime);
+			previousDepartureTime = connection.getDepartureTime();
+			assertEquals(0, connection.getNumberOfTransfers());
+			assertEquals(stopA, connection.getRouteSegments().get(0).getFromStop());
+			if (connection.getDepartureTime() < 7.0*3600) {
+				// no waiting at the first stop
+				double minutes = (connection.getDepartureTime() + accessTime) / 60.0;
+				assertEquals(6.0, minutes % 20.0, MatsimTestCase.EPSILON);
+			}
+
+			// the same connection is found for the single departure time
+			List<RaptorConnection> single = router.calcConnections(fromFacility, toFacility, connection.getDepartureTime(), connection.getDepartureTime(), null);
+			assertEquals(1, single.size());
+			assertEquals(connection.getArrivalTime(), single.get(0).getArrivalTime(), MatsimTestCase.EPSILON);
+			assertEquals(connection.getTravelCost(), single.get(0).getTravelCost(), MatsimTestCase.EPSILON);
+		}
+		for (RaptorConnection c1 : connections) {
+			for (RaptorConnection c2 : connections) {
+				assertFalse(c1 != c2 && c1.dominates(c2));
+			}
+		}
+	}
+
+	@Test
+	public void testProfile() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig trConfig = new TransitRouterConfig(f.scenario.getConfig());
+		RaptorTransitRouter router = new RaptorTransitRouter(trConfig, f.schedule);
+		TransitStopFacility stopC = f.schedule.getFacilities().get(Id.create("4", TransitStopFacility.class));
+		TransitStopFacility stopF = f.schedule.getFacilities().get(Id.create("10", TransitStopFacility.class));
+		RaptorProfile profile = router.calcProfile(stopC, stopF, 5.5*3600, 7.0*3600);
+		assertFalse(profile.getConnections().isEmpty());
+		for (RaptorConnection connection : profile.getConnections()) {
+			assertTrue(connection.getDepartureTime() >= 5.5*3600 && connection.getDepartureTime() <= 7.0*3600);
+			assertEquals(stopC, connection.getRouteSegments().get(0).getFromStop());
+			assertEquals(stopF, connection.getRouteSegments().get(connection.getRouteSegments().size() - 1).getToStop());
+		}
+
+		// the profile answers every departure time within the window like a single query
+		for (double time = 5.5*3600; time <= 7.0*3600; time += 7.0*60) {
+			RaptorConnection fromProfile = profile.getConnection(time);
+			RaptorConnection single = router.calcProfile(stopC, stopF, time, time).getConnection(time);
+			assertEquals(single.getArrivalTime(), fromProfile.getArrivalTime(), MatsimTestCase.EPSILON);
+			assertEquals(single.getNumberOfTransfers(), fromProfile.getNumberOfTransfers());
+		}
+		assertNull(profile.getConnection(7.0*3600 + 1.0));
+	}
+
+	@Test
+	public void testProfilesToSeveralStops() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig trConfig = new TransitRouterConfig(f.scenario.getConfig());
+		RaptorTransitRouter router = new RaptorTransitRouter(trConfig, f.schedule);
+		RaptorTransitRouter other = new RaptorTransitRouter(trConfig, f.schedule);
+		TransitStopFacility stopC = f.schedule.getFacilities().get(Id.create("4", TransitStopFacility.class));
+		List<TransitStopFacility> toStops = Arrays.asList(f.schedule.getFacilities().get(Id.create("10", TransitStopFacility.class)),
+				f.schedule.getFacilities().get(Id.create("6", TransitStopFacility.class)),
+				f.schedule.getFacilities().get(Id.create("0", TransitStopFacility.class)));
+		List<RaptorProfile> profiles = router.calcProfiles(stopC, toStops, 5.5*3600, 7.0*3600);
+		assertEquals(toStops.size(), profiles.size());
+		for (int i = 0; i < toStops.size(); i++) {
+			RaptorProfile profile = profiles.get(i);
+			RaptorProfile single = other.calcProfile(stopC, toStops.get(i), 5.5*3600, 7.0*3600);
+			assertEquals(toStops.get(i), profile.getToStop());
+			assertEquals(single.getConnections().size(), profile.getConnections().size());
+			for (int j = 0; j < single.getConnections().size(); j++) {
+				RaptorConnection expected = single.getConnections().get(j);
+				RaptorConnection actual = profile.getConnections().get(j);
+				assertEquals(expected.getDepartureTime(), actual.getDepartureTime(), MatsimTestCase.EPSILON);
+				assertEquals(expected.getArrivalTime(), actual.getArrivalTime(), MatsimTestCase.EPSILON);
+				assertEquals(expected.getNumberOfTransfers(), actual.getNumberOfTransfers());
+				assertEquals(expected.getTravelCost(), actual.getTravelCost(), MatsimTestCase.EPSILON);
+			}
+		}
+	}
+
+	@Test
+	public void testProfileCache() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig trConfig = new TransitRouterConfig(f.scenario.getConfig());
+		RaptorTransitRouterFactory factory = new RaptorTransitRouterFactory(f.schedule, trConfig);
+		RaptorTransitRouter router1 = (RaptorTransitRouter) factory.get();
+		RaptorTransitRouter router2 = (RaptorTransitRouter) factory.get();
+		TransitStopFacility stopA = f.schedule.getFacilities().get(Id.create("0", TransitStopFacility.class));
+		TransitStopFacility stopD = f.schedule.getFacilities().get(Id.create("6", TransitStopFacility.class));
+
+		RaptorProfile profile = router1.calcProfile(stopA, stopD, 7.0*3600, 9.0*3600);
+		assertEquals(1, factory.getProfileCache().size());
+		assertSame(profile, router2.calcProfile(stopA, stopD, 7.0*3600, 9.0*3600));
+		assertNotSame(profile, router2.calcProfile(stopA, stopD, 7.0*3600, 8.0*3600));
+		assertNotSame(profile, router2.calcProfile(stopD, stopA, 7.0*3600, 9.0*3600));
+		assertEquals(3, factory.getProfileCache().size());
+
+		factory.getProfileCache().clear();
+		RaptorProfile recomputed = router2.calcProfile(stopA, stopD, 7.0*3600, 9.0*3600);
+		assertNotSame(profile, recomputed);
+		assertEquals(profile.getConnections().size(), recomputed.getConnections().size());
+
+		// the windows are widened to the time grid
+		assertSame(recomputed, router1.calcProfile(stopA, stopD, 7.0*3600 + 5.0*60, 9.0*3600 - 5.0*60));
+		assertEquals(1, factory.getProfileCache().size());
+	}
+
+	@Test
+	public void testProfileCacheIsBounded() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitStopFacility stopA = f.schedule.getFacilities().get(Id.create("0", TransitStopFacility.class));
+		TransitStopFacility stopD = f.schedule.getFacilities().get(Id.create("6", TransitStopFacility.class));
+		List<RaptorConnection> none = new ArrayList<>();
+		RaptorProfileCache cache = new RaptorProfileCache(2);
+		RaptorProfile first = cache.addProfile(new RaptorProfile(stopA, stopD, 6.0*3600, 7.0*3600, none));
+		cache.addProfile(new RaptorProfile(stopA, stopD, 7.0*3600, 8.0*3600, none));
+		// using the first profile makes the second one the least recently used
+		assertSame(first, cache.getProfile(stopA.getId(), stopD.getId(), 6.0*3600, 7.0*3600));
+		cache.addProfile(new RaptorProfile(stopA, stopD, 8.0*3600, 9.0*3600, none));
+		assertEquals(2, cache.size());
+		assertSame(first, cache.getProfile(stopA.getId(), stopD.getId(), 6.0*3600, 7.0*3600));
+		assertNull(cache.getProfile(stopA.getId(), stopD.getId(), 7.0*3600, 8.0*3600));
+	}
+
+	@Test
+	public void testRoutingFromProfiles() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig trConfig = new TransitRouterConfig(f.scenario.getConfig());
+		TransitRouter single = new RaptorTransitRouter(trConfig, f.schedule);
+		TransitRouterConfig profileConfig = new TransitRouterConfig(f.scenario.getConfig());
+		profileConfig.setRaptorRoutingFromProfiles(true);
+		RaptorTransitRouterFactory factory = new RaptorTransitRouterFactory(f.schedule, profileConfig);
+		TransitRouter fromProfiles = factory.get();
+		Coord from = new Coord(11900, 5100);
+		Coord to = new Coord(24100, 4950);
+		for (double time = 5.0*3600; time < 8.0*3600; time += 7.0*60) {
+			List<Leg> expected = single.calcRoute(new FakeFacility(from), new FakeFacility(to), time, null);
+			List<Leg> actual = fromProfiles.calcRoute(new FakeFacility(from), new FakeFacility(to), time, null);
+			assertEquals(getTravelTime(expected), getTravelTime(actual), MatsimTestCase.EPSILON);
+		}
+
+		// a shifted departure within the same window is answered from the cached profiles
+		int cached = factory.getProfileCache().size();
+		fromProfiles.calcRoute(new FakeFacility(from), new FakeFacility(to), 6.0*3600 + 3.0*60, null);
+		assertEquals(cached, factory.getProfileCache().size());
+	}
+
+	@Test
+	public void testRoutingFromProfiles_headwayLongerThanGrid() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig trConfig = new TransitRouterConfig(f.scenario.getConfig());
+		TransitRouter single = new RaptorTransitRouter(trConfig, f.schedule);
+		TransitRouterConfig profileConfig = new TransitRouterConfig(f.scenario.getConfig());
+		profileConfig.setRaptorRoutingFromProfiles(true);
+		// shorter than the headways of all lines, so that most windows have no departure at all
+		profileConfig.setRaptorProfileTimeGrid(60.0);
+		TransitRouter fromProfiles = new RaptorTransitRouterFactory(f.schedule, profileConfig).get();
+		Coord from = new Coord(11900, 5100);
+		Coord to = new Coord(24100, 4950);
+		for (double time = 5.0*3600; time < 8.0*3600; time += 7.0*60) {
+			List<Leg> expected = single.calcRoute(new FakeFacility(from), new FakeFacility(to), time, null);
+			List<Leg> actual = fromProfiles.calcRoute(new FakeFacility(from), new FakeFacility(to), time, null);
+			assertTrue(actual.size() > 1);
+			assertEquals(TransportMode.pt, actual.get(1).getMode());
+			assertEquals(getTravelTime(expected), getTravelTime(actual), MatsimTestCase.EPSILON);
+		}
+	}
+
+	@Test
+	public void testSameConnectionsAsTransitRouterImpl() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterConfig trConfig = new TransitRouterConfig(f.scenario.getConfig());
+		TransitRouter raptor = new RaptorTransitRouter(trConfig, f.schedule);
+		TransitRouter dijkstra = new TransitRouterImpl(trConfig, f.schedule);
+		List<Coord> coords = new ArrayList<>();
+		for (TransitStopFacility stop : f.schedule.getFacilities().values()) {
+			coords.add(new Coord(stop.getCoord().getX() + 120.0, stop.getCoord().getY() + 80.0 * (coords.size() % 3)));
+		}
+		for (Coord from : coords) {
+			for (Coord to : coords) {
+				for (double time = 5.0*3600; time < 8.0*3600; time += 17.0*60) {
+					List<Leg> expected = dijkstra.calcRoute(new FakeFacility(from), new FakeFacility(to), time, null);
+					List<Leg> actual = raptor.calcRoute(new FakeFacility(from), new FakeFacility(to), time, null);
+					// the legs of the TransitRouterImpl may miss a short transfer at the stops of the green loop line
+					assertEquals(getTravelTime(expected), getTravelTime(actual), 10.0);
+				}
+			}
+		}
+	}
+
+	private static double getTravelTime(final List<Leg> legs) {
+		double travelTime = 0.0;
+		for (Leg leg : legs) {
+			travelTime += leg.getTravelTime();
+		}
+		return travelTime;
+	}
+
+}
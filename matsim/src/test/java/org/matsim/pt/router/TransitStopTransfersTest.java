@@ -0,0 +1,240 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TransitStopTransfersTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.router;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.api.core.v01.network.Network;
+import org.matsim.api.core.v01.network.Node;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.network.NetworkUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.geometry.CoordUtils;
+import org.matsim.pt.config.TransitRouterConfigGroup;
+import org.matsim.pt.config.TransitRouterConfigGroup.TransferDistanceType;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.testcases.MatsimTestUtils;
+
+public class TransitStopTransfersTest {
+
+	@Rule
+	public final MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testBeeline() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitStopTransfers transfers = TransitStopTransfers.createBeeline(f.schedule, 1000.0);
+		int count = 0;
+		for (TransitStopFacility stop : f.schedule.getFacilities().values()) {
+			for (TransitStopFacility other : f.schedule.getFacilities().values()) {
+				double distance = CoordUtils.calcEuclideanDistance(stop.getCoord(), other.getCoord());
+				if (stop != other && distance <= 1000.0) {
+					assertEquals(distance, transfers.getDistance(stop, other), 0.0);
+					count++;
+				} else {
+					assertTrue(Double.isNaN(transfers.getDistance(stop, other)));
+				}
+			}
+		}
+		assertEquals(count, transfers.getTransferCount());
+	}
+
+	@Test
+	public void testSameRouterNetworkAsBeelineSearch() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitRouterNetwork network = TransitRouterNetwork.createFromSchedule(f.schedule, TransitStopTransfers.createBeeline(f.schedule, 1000.0));
+		int transferLinks = 0;
+		for (TransitRouterNetwork.TransitRouterNetworkLink link : network.getLinks().values()) {
+			if (link.getRoute() == null) {
+				transferLinks++;
+				TransitStopFacility from = link.getFromNode().getStop().getStopFacility();
+				TransitStopFacility to = link.getToNode().getStop().getStopFacility();
+				assertEquals(CoordUtils.calcEuclideanDistance(from.getCoord(), to.getCoord()), link.getLength(), 0.0);
+				assertTrue(link.getLength() <= 1000.0);
+				assertTrue(from != to || link.getFromNode().getLine() != link.getToNode().getLine());
+			}
+		}
+		// every node where one can arrive is connected to every node where one can depart nearby
+		int expected = 0;
+		for (TransitRouterNetwork.TransitRouterNetworkNode node : network.getNodes().values()) {
+			if (node.getInLinks().size() > transferLinksTo(node)) {
+				for (TransitRouterNetwork.TransitRouterNetworkNode node2 : network.getNodes().values()) {
+					double distance = CoordUtils.calcEuclideanDistance(node.getCoord(), node2.getCoord());
+					if (node != node2 && distance <= 1000.0 && node2.getOutLinks().size() > transferLinksFrom(node2)
+							&& (node.getLine() != node2.getLine() || node.getStop().getStopFacility() != node2.getStop().getStopFacility())) {
+						expected++;
+					}
+				}
+			}
+		}
+		assertEquals(expected, transferLinks);
+	}
+
+	@Test
+	public void testNetworkDistances() {
+		TransitSchedule schedule = createSchedule();
+		Network network = createNetwork();
+		TransitStopFacility stopA = schedule.getFacilities().get(Id.create("A", TransitStopFacility.class));
+		TransitStopFacility stopB = schedule.getFacilities().get(Id.create("B", TransitStopFacility.class));
+
+		// the beeline distance is 100m, but the walk along the network is 500m long
+		assertEquals(100.0, TransitStopTransfers.createBeeline(schedule, 400.0).getDistance(stopA, stopB), 0.0);
+		assertEquals(0, TransitStopTransfers.createFromNetwork(schedule, network, 400.0, 1.0).getTransferCount());
+		TransitStopTransfers transfers = TransitStopTransfers.createFromNetwork(schedule, network, 600.0, 1.0);
+		assertEquals(2, transfers.getTransferCount());
+		assertEquals(500.0, transfers.getDistance(stopA, stopB), 1e-9);
+		assertEquals(500.0, transfers.getDistance(stopB, stopA), 1e-9);
+		// with a beeline distance factor, the distance is comparable to a beeline distance
+		assertEquals(500.0 / 1.3, TransitStopTransfers.createFromNetwork(schedule, network, 400.0, 1.3).getDistance(stopA, stopB), 1e-9);
+	}
+
+	@Test
+	public void testWriteRead() {
+		Fixture f = new Fixture();
+		f.init();
+		TransitStopTransfers transfers = TransitStopTransfers.createBeeline(f.schedule, 4000.0);
+		String filename = this.utils.getOutputDirectory() + "transfers.bin.gz";
+		transfers.write(filename);
+		TransitStopTransfers read = TransitStopTransfers.read(filename, f.schedule);
+		assertEquals(transfers.getTransferCount(), read.getTransferCount());
+		assertEquals(TransferDistanceType.Beeline, read.getDistanceType());
+		assertEquals(4000.0, read.getMaxDistance(), 0.0);
+		for (TransitStopFacility stop : f.schedule.getFacilities().values()) {
+			assertEquals(transfers.getEndTransfer(stop) - transfers.getFirstTransfer(stop), read.getEndTransfer(stop) - read.getFirstTransfer(stop));
+			for (int t = transfers.getFirstTransfer(stop); t < transfers.getEndTransfer(stop); t++) {
+				assertEquals(transfers.getDistance(t), read.getDistance(stop, transfers.getToStop(t)), 0.0);
+			}
+		}
+	}
+
+	@Test
+	public void testLoadOrCreate() {
+		TransitSchedule schedule = createSchedule();
+		Network network = createNetwork();
+		TransitStopFacility stopA = schedule.getFacilities().get(Id.create("A", TransitStopFacility.class));
+		TransitStopFacility stopB = schedule.getFacilities().get(Id.create("B", TransitStopFacility.class));
+		TransitRouterConfigGroup config = new TransitRouterConfigGroup();
+		config.setMaxBeelineWalkConnectionDistance(600.0);
+		config.setTransferDistanceType(TransferDistanceType.Network);
+		config.setTransferGraphFile(this.utils.getOutputDirectory() + "transfers.bin");
+
+		TransitStopTransfers created = TransitStopTransfers.loadOrCreate(schedule, network, config, 1.0);
+		assertEquals(500.0, created.getDistance(stopA, stopB), 1e-9);
+
+		// the file is used even if the network is not available any more
+		TransitStopTransfers read = TransitStopTransfers.loadOrCreate(schedule, null, config, 1.0);
+		assertEquals(500.0, read.getDistance(stopA, stopB), 1e-9);
+
+		// other settings than the ones of the file
+		config.setTransferDistanceType(TransferDistanceType.Beeline);
+		TransitStopTransfers recreated = TransitStopTransfers.loadOrCreate(schedule, null, config, 1.0);
+		assertEquals(TransferDistanceType.Beeline, recreated.getDistanceType());
+		assertEquals(100.0, recreated.getDistance(stopA, stopB), 0.0);
+	}
+
+	@Test
+	public void testLoadOrCreate_changedStopsOrNetwork() {
+		TransitSchedule schedule = createSchedule();
+		Network network = createNetwork();
+		TransitStopFacility stopA = schedule.getFacilities().get(Id.create("A", TransitStopFacility.class));
+		TransitStopFacility stopB = schedule.getFacilities().get(Id.create("B", TransitStopFacility.class));
+		TransitRouterConfigGroup config = new TransitRouterConfigGroup();
+		config.setMaxBeelineWalkConnectionDistance(600.0);
+		config.setTransferDistanceType(TransferDistanceType.Network);
+		config.setTransferGraphFile(this.utils.getOutputDirectory() + "transfers.bin");
+		assertEquals(500.0, TransitStopTransfers.loadOrCreate(schedule, network, config, 1.0).getDistance(stopA, stopB), 1e-9);
+
+		// another beeline distance factor
+		assertEquals(500.0 / 1.3, TransitStopTransfers.loadOrCreate(schedule, network, config, 1.3).getDistance(stopA, stopB), 1e-9);
+
+		// an edited network
+		network.getLinks().get(Id.create("2", Link.class)).setLength(50.0);
+		assertEquals(450.0 / 1.3, TransitStopTransfers.loadOrCreate(schedule, network, config, 1.3).getDistance(stopA, stopB), 1e-9);
+
+		// a moved stop
+		config.setTransferDistanceType(TransferDistanceType.Beeline);
+		assertEquals(100.0, TransitStopTransfers.loadOrCreate(schedule, network, config, 1.3).getDistance(stopA, stopB), 0.0);
+		stopB.setCoord(new Coord(300, 0));
+		assertEquals(300.0, TransitStopTransfers.loadOrCreate(schedule, network, config, 1.3).getDistance(stopA, stopB), 0.0);
+	}
+
+	private static int transferLinksTo(final TransitRouterNetwork.TransitRouterNetworkNode node) {
+		int count = 0;
+		for (Link link : node.getInLinks().values()) {
+			if (((TransitRouterNetwork.TransitRouterNetworkLink) link).getRoute() == null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static int transferLinksFrom(final TransitRouterNetwork.TransitRouterNetworkNode node) {
+		int count = 0;
+		for (Link link : node.getOutLinks().values()) {
+			if (((TransitRouterNetwork.TransitRouterNetworkLink) link).getRoute() == null) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	private static TransitSchedule createSchedule() {
+		TransitSchedule schedule = ScenarioUtils.createScenario(ConfigUtils.createConfig()).getTransitSchedule();
+		schedule.addStopFacility(schedule.getFactory().createTransitStopFacility(Id.create("A", TransitStopFacility.class), new Coord(0, 0), false));
+		schedule.addStopFacility(schedule.getFactory().createTransitStopFacility(Id.create("B", TransitStopFacility.class), new Coord(100, 0), false));
+		return schedule;
+	}
+
+	/**
+	 * A detour of 500m between the two stops.
+	 */
+	private static Network createNetwork() {
+		Network network = NetworkUtils.createNetwork();
+		Node node1 = network.getFactory().createNode(Id.create("1", Node.class), new Coord(0, 0));
+		Node node2 = network.getFactory().createNode(Id.create("2", Node.class), new Coord(0, 200));
+		Node node3 = network.getFactory().createNode(Id.create("3", Node.class), new Coord(100, 200));
+		Node node4 = network.getFactory().createNode(Id.create("4", Node.class), new Coord(100, 0));
+		network.addNode(node1);
+		network.addNode(node2);
+		network.addNode(node3);
+		network.addNode(node4);
+		addLink(network, "1", node1, node2, 200.0);
+		addLink(network, "2", node2, node3, 100.0);
+		addLink(network, "3", node4, node3, 200.0); // walking against the direction of the link
+		return network;
+	}
+
+	private static void addLink(final Network network, final String id, final Node fromNode, final Node toNode, final double length) {
+		Link link = network.getFactory().createLink(Id.create(id, Link.class), fromNode, toNode);
+		link.setLength(length);
+		network.addLink(link);
+	}
+
+}
@@ -0,0 +1,230 @@
+/* *********************************************************************** *
+ * project: org.matsim.*
+ * TransitScheduleSnapshotTest.java
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ * copyright       : (C) 2018 by the members listed in the COPYING,        *
+ *                   LICENSE and WARRANTY file.                            *
+ * email           : info at matsim dot org                                *
+ *                                                                         *
+ * *********************************************************************** *
+ *                                                                         *
+ *   This program is free software; you can redistribute it and/or modify  *
+ *   it under the terms of the GNU General Public License as published by  *
+ *   the Free Software Foundation; either version 2 of the License, or     *
+ *   (at your option) any later version.                                   *
+ *   See also COPYING, LICENSE and WARRANTY file                           *
+ *                                                                         *
+ * *********************************************************************** */
+
+package org.matsim.pt.transitSchedule;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.matsim.api.core.v01.Coord;
+import org.matsim.api.core.v01.Id;
+import org.matsim.api.core.v01.Scenario;
+import org.matsim.api.core.v01.network.Link;
+import org.matsim.core.config.Config;
+import org.matsim.core.config.ConfigUtils;
+import org.matsim.core.population.routes.NetworkRoute;
+import org.matsim.core.population.routes.RouteUtils;
+import org.matsim.core.scenario.ScenarioUtils;
+import org.matsim.core.utils.io.IOUtils;
+import org.matsim.core.utils.misc.Time;
+import org.matsim.examples.ExamplesUtils;
+import org.matsim.pt.transitSchedule.api.Departure;
+import org.matsim.pt.transitSchedule.api.TransitLine;
+import org.matsim.pt.transitSchedule.api.TransitRoute;
+import org.matsim.pt.transitSchedule.api.TransitRouteStop;
+import org.matsim.pt.transitSchedule.api.TransitSchedule;
+import org.matsim.pt.transitSchedule.api.TransitScheduleFactory;
+import org.matsim.pt.transitSchedule.api.TransitScheduleReader;
+import org.matsim.pt.transitSchedule.api.TransitStopArea;
+import org.matsim.pt.transitSchedule.api.TransitStopFacility;
+import org.matsim.testcases.MatsimTestUtils;
+import org.matsim.vehicles.Vehicle;
+
+public class TransitScheduleSnapshotTest {
+
+	@Rule
+	public final MatsimTestUtils utils = new MatsimTestUtils();
+
+	@Test
+	public void testWriteRead() {
+		TransitSchedule schedule = createSchedule();
+		String filename = this.utils.getOutputDirectory() + "schedule.snapshot";
+		TransitScheduleSnapshot.write(schedule, 42L, filename);
+
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		TransitSchedule schedule2 = scenario.getTransitSchedule();
+		Assert.assertTrue(TransitScheduleSnapshot.read(filename, 42L, schedule2, scenario.getPopulation().getFactory().getRouteFactories()));
+
+		Assert.assertEquals(toXml(schedule), toXml(schedule2));
+		TransitStopFacility stop2 = schedule2.getFacilities().get(Id.create(2, TransitStopFacility.class));
+		Assert.assertEquals(98765.0, stop2.getCoord().getZ(), 0.0);
+		Assert.assertEquals(360, schedule2.getMinimalTransferTimes().get(stop2.getId(), Id.create(1, TransitStopFacility.class)), 0.0);
+		TransitRoute route = schedule2.getTransitLines().get(Id.create("blue", TransitLine.class)).getRoutes().get(Id.create("upwards", TransitRoute.class));
+		Assert.assertEquals(Boolean.FALSE, route.getAttributes().getAttribute("bidirectional"));
+		Assert.assertEquals(2, route.getRoute().getLinkIds().size());
+		Assert.assertTrue(route.getStops().get(1).isAwaitDepartureTime());
+		Assert.assertEquals(Time.UNDEFINED_TIME, route.getStops().get(0).getArrivalOffset(), 0.0);
+		Assert.assertEquals("bus1", route.getDepartures().get(Id.create("first", Departure.class)).getVehicleId().toString());
+	}
+
+	@Test
+	public void testOtherChecksum() {
+		String filename = this.utils.getOutputDirectory() + "schedule.snapshot";
+		TransitScheduleSnapshot.write(createSchedule(), 42L, filename);
+
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Assert.assertFalse(TransitScheduleSnapshot.read(filename, 43L, scenario.getTransitSchedule(), scenario.getPopulation().getFactory().getRouteFactories()));
+		Assert.assertTrue(scenario.getTransitSchedule().getFacilities().isEmpty());
+		Assert.assertFalse(TransitScheduleSnapshot.read(filename + ".missing", 42L, scenario.getTransitSchedule(), scenario.getPopulation().getFactory().getRouteFactories()));
+	}
+
+	@Test
+	public void testUnsupportedAttribute() {
+		TransitSchedule schedule = createSchedule();
+		schedule.getAttributes().putAttribute("coord", new Coord(1, 2));
+		try {
+			TransitScheduleSnapshot.write(schedule, 42L, this.utils.getOutputDirectory() + "schedule.snapshot");
+			Assert.fail("expected IllegalArgumentException");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+		Assert.assertFalse(new File(this.utils.getOutputDirectory() + "schedule.snapshot").exists());
+	}
+
+	@Test
+	public void testConcurrentWriters() throws InterruptedException {
+		TransitSchedule schedule = createSchedule();
+		String filename = this.utils.getOutputDirectory() + "schedule.snapshot";
+		CountDownLatch start = new CountDownLatch(1);
+		List<Throwable> exceptions = new CopyOnWriteArrayList<>();
+		Thread[] writers = new Thread[4];
+		for (int i = 0; i < writers.length; i++) {
+			writers[i] = new Thread(() -> {
+				try {
+					start.await();
+					for (int j = 0; j < 10; j++) {
+						TransitScheduleSnapshot.write(schedule, 42L, filename);
+					}
+				} catch (Throwable e) {
+					exceptions.add(e);
+				}
+			});
+			writers[i].start();
+		}
+		start.countDown();
+		for (Thread writer : writers) {
+			writer.join();
+		}
+		Assert.assertEquals(Collections.emptyList(), exceptions);
+
+		Scenario scenario = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		Assert.assertTrue(TransitScheduleSnapshot.read(filename, 42L, scenario.getTransitSchedule(), scenario.getPopulation().getFactory().getRouteFactories()));
+		Assert.assertEquals(toXml(schedule), toXml(scenario.getTransitSchedule()));
+		// no temporary files are left behind
+		Assert.assertEquals(Collections.singletonList("schedule.snapshot"), Arrays.asList(new File(this.utils.getOutputDirectory()).list()));
+	}
+
+	@Test
+	public void testScenarioLoader() {
+		URL scheduleUrl = IOUtils.newUrl(ExamplesUtils.getTestScenarioURL("pt-tutorial"), "transitschedule.xml");
+		String filename = this.utils.getOutputDirectory() + "schedule.snapshot";
+
+		Config config = ConfigUtils.createConfig(ExamplesUtils.getTestScenarioURL("pt-tutorial"));
+		config.transit().setTransitScheduleFile("transitschedule.xml");
+		config.transit().setTransitScheduleSnapshotFile(filename);
+		Scenario fromXml = ScenarioUtils.loadScenario(config);
+		Assert.assertTrue(new File(filename).exists());
+		long lastModified = new File(filename).lastModified();
+
+		Scenario fromSnapshot = ScenarioUtils.loadScenario(config);
+		Assert.assertEquals(lastModified, new File(filename).lastModified());
+		Assert.assertEquals(toXml(fromXml.getTransitSchedule()), toXml(fromSnapshot.getTransitSchedule()));
+
+		Scenario reference = ScenarioUtils.createScenario(ConfigUtils.createConfig());
+		new TransitScheduleReader(reference).readURL(scheduleUrl);
+		Assert.assertEquals(toXml(reference.getTransitSchedule()), toXml(fromSnapshot.getTransitSchedule()));
+
+		// another coordinate system makes the snapshot outdated
+		config.transit().setInputScheduleCRS("EPSG:3857");
+		config.global().setCoordinateSystem("EPSG:3857");
+		Assert.assertFalse(TransitScheduleSnapshot.read(filename, TransitScheduleSnapshot.calcChecksum(scheduleUrl, "EPSG:3857|EPSG:3857"),
+				reference.getTransitSchedule(), reference.getPopulation().getFactory().getRouteFactories()));
+	}
+
+	private static String toXml(final TransitSchedule schedule) {
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		new TransitScheduleWriterV2(schedule).write(stream);
+		return new String(stream.toByteArray());
+	}
+
+	private static TransitSchedule createSchedule() {
+		TransitScheduleFactory f = new TransitScheduleFactoryImpl();
+		TransitSchedule schedule = new TransitScheduleImpl(f);
+		schedule.getAttributes().putAttribute("source", "myImagination");
+
+		TransitStopFacility stop1 = f.createTransitStopFacility(Id.create(1, TransitStopFacility.class), new Coord(123, 234), true);
+		stop1.setName("Ground");
+		stop1.setLinkId(Id.create("group", Link.class));
+		TransitStopFacility stop2 = f.createTransitStopFacility(Id.create(2, TransitStopFacility.class), new Coord(987, 876, 98765), false);
+		stop2.getAttributes().putAttribute("air", "thin");
+		stop2.getAttributes().putAttribute("height", 98765);
+		stop2.setStopAreaId(Id.create("GZ", TransitStopArea.class));
+		schedule.addStopFacility(stop1);
+		schedule.addStopFacility(stop2);
+
+		schedule.getMinimalTransferTimes().set(stop1.getId(), stop2.getId(), 300.0);
+		schedule.getMinimalTransferTimes().set(stop2.getId(), stop1.getId(), 360.0);
+
+		TransitLine line1 = f.createTransitLine(Id.create("blue", TransitLine.class));
+		line1.setName("Blue Line");
+		line1.getAttributes().putAttribute("color", "like the sky");
+
+		NetworkRoute netRoute = RouteUtils.createLinkNetworkRouteImpl(
+				Id.create("group", Link.class),
+				new Id[]{Id.create("aboveGround", Link.class), Id.create("belowSky", Link.class)},
+				Id.create("sky", Link.class));
+		List<TransitRouteStop> stops = new ArrayList<>();
+		stops.add(f.createTransitRouteStop(stop1, Time.UNDEFINED_TIME, 0.0));
+		TransitRouteStop rStop2 = f.createTransitRouteStop(stop2, 9999.9, 10100.0);
+		rStop2.setAwaitDepartureTime(true);
+		stops.add(rStop2);
+		TransitRoute route1a = f.createTransitRoute(Id.create("upwards", TransitRoute.class), netRoute, stops, "elevator");
+		route1a.setDescription("up and away");
+		route1a.getAttributes().putAttribute("bidirectional", false);
+		route1a.getAttributes().putAttribute("capacity", 12.5);
+
+		Departure dep1 = f.createDeparture(Id.create("first", Departure.class), 100);
+		dep1.setVehicleId(Id.create("bus1", Vehicle.class));
+		dep1.getAttributes().putAttribute("early", "yes");
+		route1a.addDeparture(dep1);
+		route1a.addDeparture(f.createDeparture(Id.create("last", Departure.class), 86300));
+		line1.addRoute(route1a);
+
+		List<TransitRouteStop> stops2 = new ArrayList<>();
+		stops2.add(f.createTransitRouteStop(stop2, 0.0, 0.0));
+		stops2.add(f.createTransitRouteStop(stop1, 60.0, 60.0));
+		line1.addRoute(f.createTransitRoute(Id.create("downwards", TransitRoute.class), null, stops2, "stairs"));
+		schedule.addTransitLine(line1);
+
+		schedule.addTransitLine(f.createTransitLine(Id.create("empty", TransitLine.class)));
+		return schedule;
+	}
+
+}